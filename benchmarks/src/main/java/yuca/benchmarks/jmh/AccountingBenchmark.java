@@ -0,0 +1,107 @@
+package yuca.benchmarks.jmh;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import yuca.emissions.JoulesEmissionsConverter;
+import yuca.linux.CpuInfo;
+import yuca.linux.jiffies.JiffiesAccounting;
+import yuca.linux.jiffies.TaskEnergyAccounting;
+import yuca.signal.Signal;
+import yuca.signal.SignalInterval;
+import yuca.util.DataOperations;
+
+/**
+ * Measures the accounting that turns sampled intervals into task activity, energy, and emissions.
+ * The cpus match the host's because the energy accounting maps them to its sockets.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class AccountingBenchmark {
+  private static final Duration PERIOD = Duration.ofMillis(4);
+  // the intervals of different sources are never aligned
+  private static final Duration OFFSET = Duration.ofNanos(1234567);
+  private static final double CARBON_INTENSITY = 400.0;
+
+  @Param({"16", "256"})
+  public int tasks;
+
+  @Param({"1000"})
+  public int intervals;
+
+  private List<SignalInterval> systemIntervals;
+  private List<SignalInterval> processIntervals;
+  private List<SignalInterval> activityIntervals;
+  private List<SignalInterval> energyIntervals;
+  private Signal energySignal;
+  private JoulesEmissionsConverter converter;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    int[] cpuSockets = CpuInfo.getCpuSocketMapping();
+    int sockets = 1;
+    for (int socket : cpuSockets) {
+      sockets = Math.max(sockets, socket + 1);
+    }
+    systemIntervals =
+        Fixtures.intervals(
+            intervals, PERIOD, Duration.ZERO, Fixtures.systemJiffies(cpuSockets.length));
+    processIntervals =
+        Fixtures.intervals(
+            intervals, PERIOD, OFFSET, Fixtures.taskJiffies(tasks, cpuSockets.length, cpuSockets));
+    activityIntervals =
+        DataOperations.forwardPartialAlign(
+            processIntervals, systemIntervals, JiffiesAccounting::computeTaskActivity);
+    energyIntervals =
+        Fixtures.intervals(intervals, PERIOD, OFFSET.dividedBy(2), Fixtures.socketEnergy(sockets));
+    energySignal =
+        Signal.newBuilder()
+            .setUnit(Signal.Unit.JOULES)
+            .addSource("benchmark")
+            .addAllInterval(
+                DataOperations.forwardPartialAlign(
+                    activityIntervals, energyIntervals, TaskEnergyAccounting::computeTaskEnergy))
+            .build();
+    converter = new JoulesEmissionsConverter(CARBON_INTENSITY, "benchmark");
+  }
+
+  /** Aligns the intervals without doing any work on them. */
+  @Benchmark
+  public List<SignalInterval> forwardPartialAlign() {
+    return DataOperations.forwardPartialAlign(
+        processIntervals, systemIntervals, (first, second) -> Optional.of(first));
+  }
+
+  @Benchmark
+  public Optional<SignalInterval> computeTaskActivity() {
+    return JiffiesAccounting.computeTaskActivity(processIntervals.get(1), systemIntervals.get(1));
+  }
+
+  @Benchmark
+  public Optional<SignalInterval> computeTaskEnergy() {
+    return TaskEnergyAccounting.computeTaskEnergy(
+        activityIntervals.get(1), energyIntervals.get(1));
+  }
+
+  @Benchmark
+  public Signal convert() {
+    return converter.convert(energySignal);
+  }
+}
@@ -0,0 +1,58 @@
+package yuca.benchmarks.jmh;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import yuca.linux.batch.BatchSample;
+import yuca.linux.batch.BatchSampler;
+import yuca.linux.batch.JavaBatchSampler;
+import yuca.linux.batch.NativeBatchSampler;
+
+/** Compares a native batch read against reading each source from Java. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class BatchSamplerBenchmark {
+  private static final long PID = ProcessHandle.current().pid();
+
+  private BatchSampler nativeSampler;
+  private BatchSampler javaSampler;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    nativeSampler = NativeBatchSampler.forProcess(PID);
+    if (nativeSampler == null) {
+      throw new IllegalStateException("the native batch sampler isn't available");
+    }
+    javaSampler = JavaBatchSampler.forProcess(PID);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    nativeSampler.close();
+    javaSampler.close();
+  }
+
+  @Benchmark
+  public BatchSample nativeSample() {
+    return nativeSampler.sample();
+  }
+
+  @Benchmark
+  public BatchSample javaSample() {
+    return javaSampler.sample();
+  }
+}
@@ -0,0 +1,66 @@
+package yuca.benchmarks.jmh;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import yuca.linux.powercap.Powercap;
+import yuca.linux.powercap.PowercapSample;
+import yuca.rapl.Rapl;
+
+/**
+ * Measures reading a synthetic powercap tree and parsing a synthetic rapl reading. The msr read
+ * behind {@code Rapl.read} can't be faked, so only the java side of it is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class EnergyBenchmark {
+  // pkg, dram, core, and gpu
+  private static final int RAPL_COMPONENTS = 4;
+
+  @Param({"1", "2"})
+  public int sockets;
+
+  private Path directory;
+  private String raplReading;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    directory = Fixtures.createPowercap(Files.createTempDirectory("yuca-powercap"), sockets);
+    raplReading = Fixtures.raplReading(sockets, RAPL_COMPONENTS);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    Fixtures.delete(directory);
+  }
+
+  @Benchmark
+  public Optional<PowercapSample> powercapSample() {
+    return Powercap.sample(directory, sockets, Instant.EPOCH);
+  }
+
+  @Benchmark
+  public double[] raplRead() {
+    return Rapl.parseReading(raplReading);
+  }
+}
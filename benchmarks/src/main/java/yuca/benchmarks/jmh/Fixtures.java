@@ -0,0 +1,182 @@
+package yuca.benchmarks.jmh;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import yuca.signal.SignalInterval;
+import yuca.signal.SignalInterval.SignalData;
+import yuca.util.Timestamps;
+
+/**
+ * Synthetic procfs and sysfs trees, and intervals shaped like the ones the samplers produce, so the
+ * benchmarks don't depend on the machine they run on.
+ */
+final class Fixtures {
+  private static final Instant START = Instant.ofEpochSecond(1700000000);
+
+  /** Writes a /proc/stat with a summary line and {@code cpus} cpu lines. */
+  static Path createProcStat(Path directory, int cpus) throws IOException {
+    StringBuilder stat = new StringBuilder();
+    stat.append(cpuLine("cpu ", cpus, 0));
+    for (int cpu = 0; cpu < cpus; cpu++) {
+      stat.append(cpuLine(String.format("cpu%d ", cpu), 1, cpu));
+    }
+    stat.append("intr 123456789 0 0 0 0 0 0 0 0 0 0\n");
+    stat.append("ctxt 987654321\n");
+    stat.append("btime 1700000000\n");
+    stat.append("processes 123456\n");
+    stat.append("procs_running 2\n");
+    stat.append("procs_blocked 0\n");
+    Path statFile = directory.resolve("stat");
+    Files.writeString(statFile, stat);
+    return statFile;
+  }
+
+  /** Writes /proc/[pid]/stat and a /proc/[pid]/task/[tid]/stat for each of {@code tasks}. */
+  static Path createProcTasks(Path directory, long pid, int tasks) throws IOException {
+    Path processDirectory = directory.resolve(Long.toString(pid));
+    Path taskDirectory = Files.createDirectories(processDirectory.resolve("task"));
+    Files.writeString(processDirectory.resolve("stat"), taskStat(pid, "java", tasks, 0));
+    for (int task = 0; task < tasks; task++) {
+      long tid = pid + task;
+      Path statFile = Files.createDirectories(taskDirectory.resolve(Long.toString(tid)));
+      Files.writeString(
+          statFile.resolve("stat"), taskStat(tid, String.format("worker-%d", task), tasks, task));
+    }
+    return directory;
+  }
+
+  /** Writes the package and dram energy_uj files of {@code sockets} intel-rapl domains. */
+  static Path createPowercap(Path directory, int sockets) throws IOException {
+    for (int socket = 0; socket < sockets; socket++) {
+      String prefix = String.format("intel-rapl:%d", socket);
+      Path packageDirectory = Files.createDirectories(directory.resolve(prefix));
+      Path dramDirectory =
+          Files.createDirectories(packageDirectory.resolve(String.format("%s:0", prefix)));
+      Files.writeString(
+          packageDirectory.resolve("energy_uj"), Long.toString(123456789012L + socket));
+      Files.writeString(dramDirectory.resolve("energy_uj"), Long.toString(12345678901L + socket));
+    }
+    return directory;
+  }
+
+  /** Returns a string in the format of the native rapl reading. */
+  static String raplReading(int sockets, int components) {
+    StringBuilder reading = new StringBuilder();
+    for (int i = 0; i < sockets * components; i++) {
+      reading.append(String.format("%.6f;", 12345.678901 + i));
+    }
+    reading.append(1000000 * START.getEpochSecond());
+    return reading.toString();
+  }
+
+  /** Returns intervals of the given period that are shifted forward by {@code offset}. */
+  static List<SignalInterval> intervals(
+      int count, Duration period, Duration offset, List<SignalData> data) {
+    ArrayList<SignalInterval> intervals = new ArrayList<>(count);
+    Instant start = START.plus(offset);
+    for (int i = 0; i < count; i++) {
+      Instant end = start.plus(period);
+      intervals.add(interval(start, end, data));
+      start = end;
+    }
+    return intervals;
+  }
+
+  static SignalInterval interval(Instant start, Instant end, List<SignalData> data) {
+    return SignalInterval.newBuilder()
+        .setStart(Timestamps.fromInstant(start))
+        .setEnd(Timestamps.fromInstant(end))
+        .addAllData(data)
+        .build();
+  }
+
+  /** Returns active and idle jiffies for each cpu, as {@code ProcStat.between} would. */
+  static List<SignalData> systemJiffies(int cpus) {
+    ArrayList<SignalData> data = new ArrayList<>(2 * cpus);
+    for (int cpu = 0; cpu < cpus; cpu++) {
+      data.add(datum(8, "cpu", Integer.toString(cpu), "kind", "active"));
+      data.add(datum(2, "cpu", Integer.toString(cpu), "kind", "idle"));
+    }
+    return data;
+  }
+
+  /** Returns the jiffies of tasks spread over the cpus, as {@code ProcTask.between} would. */
+  static List<SignalData> taskJiffies(int tasks, int cpus, int[] sockets) {
+    ArrayList<SignalData> data = new ArrayList<>(tasks);
+    for (int task = 0; task < tasks; task++) {
+      int cpu = task % cpus;
+      data.add(
+          datum(
+              1 + task % 3,
+              "task",
+              Integer.toString(1000 + task),
+              "cpu",
+              Integer.toString(cpu),
+              "socket",
+              Integer.toString(sockets[cpu])));
+    }
+    return data;
+  }
+
+  /** Returns the package and dram energy of each socket, as {@code Powercap.difference} would. */
+  static List<SignalData> socketEnergy(int sockets) {
+    ArrayList<SignalData> data = new ArrayList<>(2 * sockets);
+    for (int socket = 0; socket < sockets; socket++) {
+      data.add(datum(0.5, "socket", Integer.toString(socket), "component", "package"));
+      data.add(datum(0.1, "socket", Integer.toString(socket), "component", "dram"));
+    }
+    return data;
+  }
+
+  /** Deletes a fixture tree. */
+  static void delete(Path directory) throws IOException {
+    try (Stream<Path> files = Files.walk(directory)) {
+      for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+        Files.delete(file);
+      }
+    }
+  }
+
+  private static SignalData datum(double value, String... metadata) {
+    SignalData.Builder data = SignalData.newBuilder().setValue(value);
+    for (int i = 0; i < metadata.length; i += 2) {
+      data.addMetadata(
+          SignalData.Metadata.newBuilder().setName(metadata[i]).setValue(metadata[i + 1]));
+    }
+    return data.build();
+  }
+
+  private static String cpuLine(String name, int scale, int seed) {
+    return String.format(
+        "%s%d %d %d %d %d %d %d %d %d %d\n",
+        name,
+        scale * (1234567 + seed),
+        scale * 1234,
+        scale * (234567 + seed),
+        scale * (98765432 + seed),
+        scale * 12345,
+        0,
+        scale * 4567,
+        0,
+        0,
+        0);
+  }
+
+  /** Returns a stat line laid out like proc(5), with a name that has a space in it. */
+  private static String taskStat(long tid, String name, int threads, int seed) {
+    return String.format(
+        "%d (%s thread) S 1 %d %d 0 -1 4194560 12345 0 0 0 %d %d 0 0 20 0 %d 0 123456 8589934592"
+            + " 123456 18446744073709551615 1 1 0 0 0 0 0 16781312 17640 0 0 0 17 %d 0 0 0 0 0 0 0"
+            + " 0 0 0 0 0 0\n",
+        tid, name, tid, tid, 1000 + seed, 100 + seed, threads, seed % 8);
+  }
+
+  private Fixtures() {}
+}
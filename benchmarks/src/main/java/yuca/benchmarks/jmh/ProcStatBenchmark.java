@@ -0,0 +1,66 @@
+package yuca.benchmarks.jmh;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import yuca.linux.jiffies.ProcStatReader;
+import yuca.linux.jiffies.SystemSample;
+
+/**
+ * Measures reading a synthetic /proc/stat. {@code sampleCpus} is what {@code ProcStat.sampleCpus}
+ * does with its shared reader, while {@code sampleCpusDoubleBuffered} is what the monitors do.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ProcStatBenchmark {
+  @Param({"4", "64", "256"})
+  public int cpus;
+
+  private Path directory;
+  private ProcStatReader reader;
+  private ProcStatReader doubleBufferedReader;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("yuca-proc-stat");
+    Path statFile = Fixtures.createProcStat(directory, cpus);
+    reader = ProcStatReader.open(statFile);
+    doubleBufferedReader = ProcStatReader.doubleBuffered(statFile);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    reader.close();
+    doubleBufferedReader.close();
+    Fixtures.delete(directory);
+  }
+
+  @Benchmark
+  public SystemSample sampleCpus() {
+    return reader.read(Instant.EPOCH);
+  }
+
+  @Benchmark
+  public SystemSample sampleCpusDoubleBuffered() {
+    return doubleBufferedReader.read(Instant.EPOCH);
+  }
+}
@@ -0,0 +1,65 @@
+package yuca.benchmarks.jmh;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import yuca.linux.jiffies.ProcTask;
+import yuca.linux.jiffies.ProcTaskReader;
+import yuca.linux.jiffies.ProcessSample;
+
+/**
+ * Measures reading a synthetic process's tasks, both with {@code ProcTask.sampleTasksFor}, which
+ * opens every task on each call, and with a {@link ProcTaskReader} that is kept open.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ProcTaskBenchmark {
+  private static final long PID = 4242;
+
+  @Param({"16", "256"})
+  public int tasks;
+
+  private Path directory;
+  private ProcTaskReader reader;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    directory = Fixtures.createProcTasks(Files.createTempDirectory("yuca-proc"), PID, tasks);
+    reader = ProcTaskReader.forProcess(directory, PID, ProcTaskReader.DEFAULT_RESCAN_PERIOD);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    reader.close();
+    Fixtures.delete(directory);
+  }
+
+  @Benchmark
+  public ProcessSample sampleTasksFor() {
+    return ProcTask.sampleTasksFor(directory, PID, Instant.EPOCH);
+  }
+
+  @Benchmark
+  public ProcessSample sampleTasksCached() {
+    return reader.read(Instant.EPOCH);
+  }
+}
@@ -0,0 +1,145 @@
+package yuca.benchmarks.jmh;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import yuca.linux.jiffies.ProcStatReader;
+import yuca.linux.jiffies.ProcTaskReader;
+import yuca.util.CompositeSample;
+import yuca.util.CompositeSampler;
+import yuca.util.SamplerExecution;
+import yuca.util.SamplingFuture;
+
+/**
+ * Compares how closely each {@link SamplerExecution} mode keeps to a 1 ms period while reading
+ * /proc/stat and this process's tasks a few times over. Each invocation takes a fixed number of
+ * samples, so the time of an invocation is the real length of the run; the jitter (how far each
+ * gap between samples is from the period), the drift (how far the whole run is from its length)
+ * and the time spent reading each sample are reported as counters.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SamplerExecutionBenchmark {
+  private static final long PID = ProcessHandle.current().pid();
+  private static final int PERIOD_MILLIS = 1;
+  private static final long PERIOD_NANOS = TimeUnit.MILLISECONDS.toNanos(PERIOD_MILLIS);
+  private static final int SAMPLES = 500;
+
+  @Param({"platform", "virtual", "caller"})
+  public String mode;
+
+  @Param({"1", "8"})
+  public int taskReaders;
+
+  private SamplerExecution execution;
+  private ProcStatReader statReader;
+  private List<ProcTaskReader> readers;
+  private CompositeSampler sampler;
+
+  /** The scheduling error of the last iteration. */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Timing {
+    public double jitterMicros;
+    public double driftMicros;
+    public double readMicros;
+
+    @Setup(Level.Iteration)
+    public void clear() {
+      jitterMicros = 0;
+      driftMicros = 0;
+      readMicros = 0;
+    }
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    execution = SamplerExecution.forMode(mode, "yuca-benchmark-sampling-thread");
+    statReader = ProcStatReader.open();
+    readers = new ArrayList<>();
+    sampler = new CompositeSampler().register("proc_stat", statReader::read);
+    ArrayList<String> sources = new ArrayList<>(List.of("proc_stat"));
+    for (int i = 0; i < taskReaders; i++) {
+      ProcTaskReader reader = ProcTaskReader.forProcess(PID);
+      readers.add(reader);
+      String source = String.format("proc_task_%d", i);
+      sampler.register(source, reader::read);
+      sources.add(source);
+    }
+    execution.configure(sampler, sources.toArray(String[]::new));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    execution.close();
+    statReader.close();
+    readers.forEach(ProcTaskReader::close);
+  }
+
+  @Benchmark
+  public long sample(Timing timing) throws InterruptedException {
+    long[] times = new long[SAMPLES];
+    long[] reads = new long[SAMPLES];
+    CountDownLatch done = new CountDownLatch(SAMPLES);
+    SamplingFuture<CompositeSample> future =
+        SamplingFuture.fixedPeriodMillis(
+            sampler,
+            sample -> {
+              int i = SAMPLES - (int) done.getCount();
+              if (i < SAMPLES) {
+                times[i] = System.nanoTime();
+                reads[i] = sample.latencies().values().stream().mapToLong(l -> l).sum();
+                done.countDown();
+              }
+            },
+            PERIOD_MILLIS,
+            execution.executor());
+    if (execution.mode() == SamplerExecution.Mode.CALLER) {
+      // drive the ticks from here against absolute deadlines
+      long deadline = System.nanoTime();
+      while (done.getCount() > 0) {
+        execution.tick();
+        // restart the deadlines after a slow tick rather than catching up, like a sampling future
+        deadline = Math.max(deadline + PERIOD_NANOS, System.nanoTime());
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+          LockSupport.parkNanos(remaining);
+        }
+      }
+    } else {
+      done.await();
+    }
+    future.cancel(false);
+
+    double jitter = 0;
+    double read = reads[0];
+    for (int i = 1; i < SAMPLES; i++) {
+      jitter += Math.abs(times[i] - times[i - 1] - PERIOD_NANOS);
+      read += reads[i];
+    }
+    timing.jitterMicros = jitter / (SAMPLES - 1) / 1000;
+    timing.driftMicros = (times[SAMPLES - 1] - times[0] - (SAMPLES - 1) * PERIOD_NANOS) / 1000.0;
+    timing.readMicros = read / SAMPLES / 1000;
+    return future.sampleCount();
+  }
+}
@@ -7,8 +7,6 @@ import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -18,6 +16,7 @@ import yuca.YucaMonitor;
 import yuca.signal.Component;
 import yuca.signal.Report;
 import yuca.signal.Signal;
+import yuca.util.SamplerExecution;
 
 public final class YucaUtil {
   private static final Logger logger = getLogger();
@@ -26,13 +25,10 @@ public final class YucaUtil {
   private static final int DEFAULT_PERIOD_MS = 10;
   private static final String OUTPUT_PATH = System.getProperty("yuca.benchmarks.output", "/tmp");
   private static final AtomicInteger counter = new AtomicInteger(0);
-  private static final ScheduledExecutorService executor =
-      Executors.newSingleThreadScheduledExecutor(
-          r -> {
-            Thread t = new Thread(r, "yuca-sampling-thread");
-            t.setDaemon(true);
-            return t;
-          });
+  // one of platform or virtual; caller-driven sampling doesn't make sense for a benchmark plugin
+  private static final SamplerExecution execution =
+      SamplerExecution.forMode(
+          System.getProperty("yuca.benchmarks.sampler", "platform"), "yuca-sampling-thread");
 
   public static YucaMonitor createYuca() {
     String period = System.getProperty("yuca.benchmarks.period", "10");
@@ -41,11 +37,13 @@ public final class YucaUtil {
       periodMillis = Integer.parseInt(period);
     } catch (Exception e) {
       logger.log(Level.INFO, String.format("ignoring bad period (%s) for new Yuca", period), e);
-      return new YucaApplicationMonitor(DEFAULT_PERIOD_MS, ProcessHandle.current().pid(), executor);
+      return new YucaApplicationMonitor(
+          DEFAULT_PERIOD_MS, ProcessHandle.current().pid(), execution);
     }
     if (periodMillis < 0) {
       logger.info(String.format("rejecting negative period (%d) for new Yuca", periodMillis));
-      return new YucaApplicationMonitor(DEFAULT_PERIOD_MS, ProcessHandle.current().pid(), executor);
+      return new YucaApplicationMonitor(
+          DEFAULT_PERIOD_MS, ProcessHandle.current().pid(), execution);
     }
     if (periodMillis == 0) {
       logger.info(
@@ -54,7 +52,7 @@ public final class YucaUtil {
       return new YucaEndToEndMonitor();
     }
     logger.info(String.format("creating Yuca with period of %d milliseconds", periodMillis));
-    return new YucaApplicationMonitor(periodMillis, ProcessHandle.current().pid(), executor);
+    return new YucaApplicationMonitor(periodMillis, ProcessHandle.current().pid(), execution);
   }
 
   public static Path outputPath() {
@@ -0,0 +1,115 @@
+package yuca.server;
+
+import static yuca.server.LoggerUtil.getLogger;
+
+import com.google.protobuf.CodedOutputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import yuca.service.DumpRequest;
+import yuca.service.DumpStatusResponse;
+import yuca.signal.Component;
+import yuca.signal.Report;
+
+/**
+ * Writes a stored report to a file off of the rpc threads. The filtered components are streamed
+ * into the file one at a time, so the filtered report is never built in full. By default the file
+ * is a serialized {@link Report}; a delimited dump instead holds a length-delimited {@link
+ * Component} for each component, which can be read back one at a time with {@link
+ * Component#parseDelimitedFrom}.
+ */
+final class ReportDump {
+  private static final Logger logger = getLogger();
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final long id;
+  private final long processId;
+  private final Report report;
+  private final Path outputPath;
+  private final List<String> signals;
+  private final boolean isDelimited;
+  private final CompletableFuture<DumpStatusResponse> completion = new CompletableFuture<>();
+
+  private volatile DumpStatusResponse.State state = DumpStatusResponse.State.PENDING;
+  private volatile long bytesWritten = 0;
+  private volatile String error;
+
+  ReportDump(long id, long processId, Report report, DumpRequest request) {
+    this.id = id;
+    this.processId = processId;
+    this.report = report;
+    this.outputPath = Path.of(request.getOutputPath());
+    this.signals = List.copyOf(request.getSignalsList());
+    this.isDelimited = request.getDelimited();
+  }
+
+  long id() {
+    return id;
+  }
+
+  /** Returns where the dump is at right now. */
+  DumpStatusResponse status() {
+    DumpStatusResponse.Builder status =
+        DumpStatusResponse.newBuilder().setState(state).setBytesWritten(bytesWritten);
+    if (error != null) {
+      status.setError(error);
+    }
+    return status.build();
+  }
+
+  /** Returns a future of the final status of the dump. It never completes exceptionally. */
+  CompletableFuture<DumpStatusResponse> completion() {
+    return completion;
+  }
+
+  /** Writes the dump. Should only be run once, on the dump executor. */
+  void write() {
+    state = DumpStatusResponse.State.WRITING;
+    try (FileChannel channel =
+            FileChannel.open(
+                outputPath,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        OutputStream stream = Channels.newOutputStream(channel)) {
+      CodedOutputStream output = CodedOutputStream.newInstance(stream, BUFFER_SIZE);
+      for (Component component : report.getComponentList()) {
+        Optional<Component> filtered = SignalFilter.filter(component, signals);
+        if (filtered.isEmpty()) {
+          continue;
+        }
+        if (isDelimited) {
+          output.writeUInt32NoTag(filtered.get().getSerializedSize());
+          filtered.get().writeTo(output);
+        } else {
+          // a report is only its repeated components, so this is the same as writing the report
+          output.writeMessage(Report.COMPONENT_FIELD_NUMBER, filtered.get());
+        }
+        bytesWritten = output.getTotalBytesWritten();
+      }
+      output.flush();
+      bytesWritten = output.getTotalBytesWritten();
+      state = DumpStatusResponse.State.DONE;
+      logger.info(
+          String.format(
+              "dumped %d bytes of yuca report for %d to %s", bytesWritten, processId, outputPath));
+      completion.complete(status());
+    } catch (Exception e) {
+      logger.log(
+          Level.WARNING,
+          String.format("unable to dump yuca report for %d to %s", processId, outputPath),
+          e);
+      error = String.valueOf(e);
+      state = DumpStatusResponse.State.FAILED;
+      completion.complete(status());
+    }
+  }
+}
@@ -0,0 +1,257 @@
+package yuca.server;
+
+import static yuca.util.Timestamps.fromNanos;
+import static yuca.util.Timestamps.toNanos;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import yuca.service.ReadRequest;
+import yuca.signal.Component;
+import yuca.signal.Report;
+import yuca.signal.Signal;
+import yuca.signal.SignalInterval;
+import yuca.signal.SignalInterval.SignalData;
+import yuca.util.SignalUnits;
+
+/**
+ * A time index over a report's intervals that answers windowed reads. The intervals of each signal
+ * are sorted by start along with the running maximum of their ends, so the intervals that overlap a
+ * window are found with a binary search and a scan over just that window.
+ *
+ * <p>A windowed read can also ask for a resolution, in which case each signal is resampled onto a
+ * grid of that period. Intervals are weighted by how much of them falls into a grid cell: amounts,
+ * like joules or jiffies, are split between the cells, while levels, like watts or temperatures,
+ * are averaged over the time they cover in the cell.
+ */
+final class ReportIndex {
+  private static final long NANOS_PER_MILLI = 1000000L;
+  // the three arrays and the interval reference
+  private static final long BYTES_PER_INTERVAL = 3 * Long.BYTES + 8;
+
+  /** Returns if the request asks for a window or a resolution rather than the whole report. */
+  static boolean isWindowed(ReadRequest request) {
+    return request.hasStart() || request.hasEnd() || request.getResolutionMillis() > 0;
+  }
+
+  private final List<ComponentIndex> components = new ArrayList<>();
+  private final long firstStart;
+  private final long bytes;
+
+  ReportIndex(Report report) {
+    long firstStart = Long.MAX_VALUE;
+    long intervalCount = 0;
+    for (Component component : report.getComponentList()) {
+      ComponentIndex index = new ComponentIndex(component);
+      components.add(index);
+      for (SignalIndex signal : index.signals) {
+        if (signal.starts.length > 0) {
+          firstStart = Math.min(firstStart, signal.starts[0]);
+        }
+        intervalCount += signal.starts.length;
+      }
+    }
+    this.firstStart = firstStart;
+    this.bytes = BYTES_PER_INTERVAL * intervalCount;
+  }
+
+  /** Returns roughly how many bytes the index adds on top of its report. */
+  long bytes() {
+    return bytes;
+  }
+
+  /** Returns the requested signals within the requested window, resampled if asked to. */
+  Report query(ReadRequest request) {
+    long start = request.hasStart() ? toNanos(request.getStart()) : Long.MIN_VALUE;
+    long end = request.hasEnd() ? toNanos(request.getEnd()) : Long.MAX_VALUE;
+    long resolution = NANOS_PER_MILLI * request.getResolutionMillis();
+    // without a start, the grid is anchored at the report's first interval
+    long origin = request.hasStart() ? start : firstStart;
+
+    Report.Builder report = Report.newBuilder();
+    if (start >= end) {
+      return report.build();
+    }
+    for (ComponentIndex component : components) {
+      Component.Builder filtered = null;
+      for (SignalIndex signal : component.signals) {
+        if (!SignalFilter.isRequested(
+            component.component, signal.signal, request.getSignalsList())) {
+          continue;
+        }
+        List<SignalInterval> intervals =
+            resolution > 0
+                ? signal.resample(start, end, origin, resolution)
+                : signal.overlapping(start, end);
+        if (intervals.isEmpty()) {
+          continue;
+        }
+        if (filtered == null) {
+          filtered = component.component.toBuilder().clearSignal();
+        }
+        filtered.addSignal(
+            signal.signal.toBuilder().clearInterval().addAllInterval(intervals).build());
+      }
+      if (filtered != null) {
+        report.addComponent(filtered);
+      }
+    }
+    return report.build();
+  }
+
+  private static final class ComponentIndex {
+    private final Component component;
+    private final List<SignalIndex> signals = new ArrayList<>();
+
+    private ComponentIndex(Component component) {
+      this.component = component;
+      for (Signal signal : component.getSignalList()) {
+        signals.add(new SignalIndex(signal));
+      }
+    }
+  }
+
+  private static final class SignalIndex {
+    private final Signal signal;
+    private final boolean isAmount;
+    private final SignalInterval[] intervals;
+    private final long[] starts;
+    private final long[] ends;
+    // the latest end of every interval up to each one, which only grows
+    private final long[] maxEnds;
+
+    private SignalIndex(Signal signal) {
+      this.signal = signal;
+      this.isAmount = SignalUnits.isAmount(signal.getUnit());
+      this.intervals = signal.getIntervalList().toArray(new SignalInterval[0]);
+      if (!isSorted(intervals)) {
+        Arrays.sort(intervals, Comparator.comparingLong(interval -> toNanos(interval.getStart())));
+      }
+      this.starts = new long[intervals.length];
+      this.ends = new long[intervals.length];
+      this.maxEnds = new long[intervals.length];
+      long maxEnd = Long.MIN_VALUE;
+      for (int i = 0; i < intervals.length; i++) {
+        starts[i] = toNanos(intervals[i].getStart());
+        ends[i] = Math.max(starts[i], toNanos(intervals[i].getEnd()));
+        maxEnd = Math.max(maxEnd, ends[i]);
+        maxEnds[i] = maxEnd;
+      }
+    }
+
+    /** Returns the intervals that overlap [start, end) as they are. */
+    private List<SignalInterval> overlapping(long start, long end) {
+      ArrayList<SignalInterval> overlapping = new ArrayList<>();
+      for (int i = firstOverlapping(start); i < intervals.length && starts[i] < end; i++) {
+        if (overlaps(i, start, end)) {
+          overlapping.add(intervals[i]);
+        }
+      }
+      return overlapping;
+    }
+
+    /**
+     * Returns the intervals that overlap [start, end) resampled onto the cells of a grid that is
+     * anchored at the origin. Cells that no interval falls into are left out.
+     */
+    private List<SignalInterval> resample(long start, long end, long origin, long resolution) {
+      ArrayList<SignalInterval> resampled = new ArrayList<>();
+      int first = firstOverlapping(start);
+      if (first == intervals.length || starts[first] >= end) {
+        return resampled;
+      }
+      long cellStart = Math.max(start, cellOf(starts[first], origin, resolution));
+      long lastEnd = Math.min(end, maxEnds[maxEnds.length - 1]);
+      while (cellStart < end && cellStart <= lastEnd) {
+        long cellEnd = Math.min(end, cellStart + resolution);
+        int i = firstOverlapping(cellStart);
+        if (i == intervals.length || starts[i] >= cellEnd) {
+          // skip ahead to the cell of the next interval
+          if (i == intervals.length || starts[i] >= end) {
+            break;
+          }
+          cellStart = cellOf(starts[i], origin, resolution);
+          continue;
+        }
+
+        LinkedHashMap<List<SignalData.Metadata>, double[]> cell = new LinkedHashMap<>();
+        for (; i < intervals.length && starts[i] < cellEnd; i++) {
+          if (!overlaps(i, cellStart, cellEnd)) {
+            continue;
+          }
+          long duration = ends[i] - starts[i];
+          long overlap = Math.min(ends[i], cellEnd) - Math.max(starts[i], cellStart);
+          for (SignalData data : intervals[i].getDataList()) {
+            // the value so far and the time it covers
+            double[] value = cell.computeIfAbsent(data.getMetadataList(), k -> new double[2]);
+            if (isAmount) {
+              value[0] += duration > 0 ? data.getValue() * overlap / duration : data.getValue();
+            } else {
+              // an instantaneous interval covers a nanosecond
+              long weight = duration > 0 ? overlap : 1;
+              value[0] += weight * data.getValue();
+              value[1] += weight;
+            }
+          }
+        }
+
+        if (cell.isEmpty()) {
+          cellStart = cellEnd;
+          continue;
+        }
+        SignalInterval.Builder interval =
+            SignalInterval.newBuilder()
+                .setStart(fromNanos(cellStart))
+                .setEnd(fromNanos(cellEnd));
+        for (Map.Entry<List<SignalData.Metadata>, double[]> data : cell.entrySet()) {
+          double[] value = data.getValue();
+          interval.addData(
+              SignalData.newBuilder()
+                  .addAllMetadata(data.getKey())
+                  .setValue(isAmount ? value[0] : value[0] / value[1]));
+        }
+        resampled.add(interval.build());
+        cellStart = cellEnd;
+      }
+      return resampled;
+    }
+
+    /** Returns the first interval that could overlap a window starting at {@code start}. */
+    private int firstOverlapping(long start) {
+      // the first interval whose running end reaches the start
+      int low = 0;
+      int high = maxEnds.length;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (maxEnds[mid] >= start) {
+          high = mid;
+        } else {
+          low = mid + 1;
+        }
+      }
+      return low;
+    }
+
+    /** Returns if the interval overlaps [start, end). An instantaneous one only has to be in it. */
+    private boolean overlaps(int i, long start, long end) {
+      return starts[i] < end && (ends[i] > start || (ends[i] == starts[i] && starts[i] >= start));
+    }
+  }
+
+  /** Returns the start of the grid cell that a time falls into. */
+  private static long cellOf(long nanos, long origin, long resolution) {
+    return origin + Math.floorDiv(nanos - origin, resolution) * resolution;
+  }
+
+  private static boolean isSorted(SignalInterval[] intervals) {
+    for (int i = 1; i < intervals.length; i++) {
+      if (toNanos(intervals[i - 1].getStart()) > toNanos(intervals[i].getStart())) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,255 @@
+package yuca.server;
+
+import static yuca.server.LoggerUtil.getLogger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.UnaryOperator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import yuca.signal.Report;
+
+/**
+ * A store of stopped reports that keeps at most a budget of bytes on the heap. Reports are kept in
+ * least-recently-used order; once the budget is exceeded, or a report hasn't been touched for
+ * longer than the maximum age, it is spilled to a file in its serialized form and reloaded the next
+ * time it is asked for. The size of a report is taken as its serialized size, which undercounts
+ * the heap it takes up but scales the same way.
+ *
+ * <p>Each store spills into a directory of its own under the spill directory, so stores that share
+ * it (i.e. servers on the same machine) can't overwrite or delete each other's reports.
+ */
+final class ReportStore {
+  private static final Logger logger = getLogger();
+
+  static final long DEFAULT_MAX_HEAP_BYTES = 256L * 1024 * 1024;
+  static final Duration DEFAULT_MAX_AGE = Duration.ofHours(1);
+  static final Path DEFAULT_SPILL_DIRECTORY =
+      Path.of(System.getProperty("java.io.tmpdir"), "yuca-reports");
+
+  /** Creates a store with the default budget that spills under the temp directory. */
+  static ReportStore withDefaults() {
+    return new ReportStore(DEFAULT_MAX_HEAP_BYTES, DEFAULT_MAX_AGE, DEFAULT_SPILL_DIRECTORY);
+  }
+
+  private final long maxHeapBytes;
+  private final long maxAgeNanos;
+  private final Path spillDirectory;
+
+  // guarded by this
+  private final LinkedHashMap<Long, StoredReport> reports = new LinkedHashMap<>(16, 0.75f, true);
+  private final HashMap<Long, Path> spilled = new HashMap<>();
+  // created under the spill directory on the first spill
+  private Path storeDirectory;
+  private long heapBytes = 0;
+  private long hits = 0;
+  private long reloads = 0;
+  private long misses = 0;
+  private long evictions = 0;
+  private long spillFailures = 0;
+
+  ReportStore(long maxHeapBytes, Duration maxAge, Path spillDirectory) {
+    if (maxHeapBytes < 0) {
+      throw new IllegalArgumentException(
+          String.format("report heap budget can't be negative (%d < 0)", maxHeapBytes));
+    }
+    this.maxHeapBytes = maxHeapBytes;
+    this.maxAgeNanos = maxAge.isZero() || maxAge.isNegative() ? Long.MAX_VALUE : maxAge.toNanos();
+    this.spillDirectory = spillDirectory;
+  }
+
+  /** Stores a report, replacing any report already stored for the process. */
+  synchronized void put(long processId, Report report) {
+    removeQuietly(processId);
+    StoredReport stored = new StoredReport(report);
+    reports.put(processId, stored);
+    heapBytes += stored.bytes;
+    evict();
+  }
+
+  /** Returns the process's report, reloading it from disk if it was spilled. */
+  synchronized Optional<Report> get(long processId) {
+    StoredReport stored = reports.get(processId);
+    if (stored != null) {
+      hits++;
+      stored.touch();
+      evict();
+      return Optional.of(stored.report);
+    }
+    Path file = spilled.get(processId);
+    if (file == null) {
+      misses++;
+      return Optional.empty();
+    }
+    Report report;
+    try (InputStream reader = Files.newInputStream(file)) {
+      report = Report.parseFrom(reader);
+    } catch (IOException e) {
+      logger.log(
+          Level.WARNING, String.format("unable to reload yuca report for %d", processId), e);
+      spilled.remove(processId);
+      deleteQuietly(file);
+      misses++;
+      return Optional.empty();
+    }
+    reloads++;
+    spilled.remove(processId);
+    deleteQuietly(file);
+    stored = new StoredReport(report);
+    reports.put(processId, stored);
+    heapBytes += stored.bytes;
+    evict();
+    return Optional.of(report);
+  }
+
+  /**
+   * Returns a time index over a report that was just fetched for the process. The index is kept
+   * with the report and counts against the budget, so it is only built again once the report has
+   * been spilled. The report isn't fetched again, so the read is only counted once.
+   */
+  synchronized ReportIndex index(long processId, Report report) {
+    StoredReport stored = reports.get(processId);
+    if (stored == null || stored.report != report) {
+      // the report alone doesn't fit the budget or was replaced since it was fetched
+      return new ReportIndex(report);
+    }
+    if (stored.index == null) {
+      stored.index = new ReportIndex(stored.report);
+      stored.bytes += stored.index.bytes();
+      heapBytes += stored.index.bytes();
+      ReportIndex index = stored.index;
+      evict();
+      return index;
+    }
+    return stored.index;
+  }
+
+  /** Returns if there is a report for the process, in memory or on disk. */
+  synchronized boolean contains(long processId) {
+    return reports.containsKey(processId) || spilled.containsKey(processId);
+  }
+
+  /** Replaces the process's report with the result of the update if there is one. */
+  synchronized void update(long processId, UnaryOperator<Report> update) {
+    Optional<Report> report = get(processId);
+    if (report.isPresent()) {
+      put(processId, update.apply(report.get()));
+    }
+  }
+
+  /** Drops every report, including the spilled ones. */
+  synchronized void clear() {
+    reports.clear();
+    heapBytes = 0;
+    spilled.values().forEach(ReportStore::deleteQuietly);
+    spilled.clear();
+    if (storeDirectory != null) {
+      deleteQuietly(storeDirectory);
+      storeDirectory = null;
+    }
+  }
+
+  /** Returns a summary of how the store has been used. */
+  synchronized String stats() {
+    return String.format(
+        "%d reports in memory (%d/%d bytes), %d spilled; %d hits, %d reloads, %d misses, %d"
+            + " evictions, %d failed spills",
+        reports.size(),
+        heapBytes,
+        maxHeapBytes,
+        spilled.size(),
+        hits,
+        reloads,
+        misses,
+        evictions,
+        spillFailures);
+  }
+
+  /** Spills reports that are too old and then the least recently used until we fit the budget. */
+  private void evict() {
+    long now = System.nanoTime();
+    Iterator<Map.Entry<Long, StoredReport>> it = reports.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<Long, StoredReport> entry = it.next();
+      boolean isTooOld = now - entry.getValue().lastAccess > maxAgeNanos;
+      if (!isTooOld && heapBytes <= maxHeapBytes) {
+        // the rest were used more recently
+        break;
+      }
+      it.remove();
+      heapBytes -= entry.getValue().bytes;
+      evictions++;
+      spill(entry.getKey(), entry.getValue().report);
+    }
+  }
+
+  private void spill(long processId, Report report) {
+    Path file = null;
+    try {
+      if (storeDirectory == null) {
+        Files.createDirectories(spillDirectory);
+        storeDirectory = Files.createTempDirectory(spillDirectory, "store-");
+      }
+      file = storeDirectory.resolve(String.format("%d.pb", processId));
+      try (OutputStream writer = Files.newOutputStream(file)) {
+        report.writeTo(writer);
+      }
+      spilled.put(processId, file);
+      logger.fine(String.format("spilled yuca report for %d to %s", processId, file));
+    } catch (IOException e) {
+      // there is nowhere left to keep the report
+      spillFailures++;
+      logger.log(
+          Level.WARNING,
+          String.format(
+              "unable to spill yuca report for %d to %s; dropping it",
+              processId, file != null ? file : spillDirectory),
+          e);
+    }
+  }
+
+  private void removeQuietly(long processId) {
+    StoredReport stored = reports.remove(processId);
+    if (stored != null) {
+      heapBytes -= stored.bytes;
+    }
+    Path file = spilled.remove(processId);
+    if (file != null) {
+      deleteQuietly(file);
+    }
+  }
+
+  private static void deleteQuietly(Path file) {
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      logger.log(Level.FINE, String.format("unable to delete %s", file), e);
+    }
+  }
+
+  private static final class StoredReport {
+    private final Report report;
+
+    private long bytes;
+    private ReportIndex index;
+    private long lastAccess = System.nanoTime();
+
+    private StoredReport(Report report) {
+      this.report = report;
+      this.bytes = report.getSerializedSize();
+    }
+
+    private void touch() {
+      lastAccess = System.nanoTime();
+    }
+  }
+}
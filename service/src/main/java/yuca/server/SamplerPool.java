@@ -0,0 +1,31 @@
+package yuca.server;
+
+import java.util.concurrent.ScheduledExecutorService;
+import yuca.util.SamplerExecution;
+
+/**
+ * A pool of single-threaded sampling executors. Each process is always sampled on the same thread,
+ * so a monitor never has two ticks in flight and its readers are only touched by one thread, while
+ * different processes are spread over as many threads as there are cores. The threads are
+ * high-priority platform threads (see {@link SamplerExecution#platform}).
+ */
+final class SamplerPool {
+  private final ScheduledExecutorService[] shards;
+
+  SamplerPool(int size) {
+    if (size < 1) {
+      throw new IllegalArgumentException(
+          String.format("sampler pool must have at least one thread (%d < 1)", size));
+    }
+    shards = new ScheduledExecutorService[size];
+    for (int i = 0; i < size; i++) {
+      String name = String.format("yuca-sampling-thread-%d", i);
+      shards[i] = SamplerExecution.platform(name).executor();
+    }
+  }
+
+  /** Returns the executor that samples the process. */
+  ScheduledExecutorService executorFor(long processId) {
+    return shards[Math.floorMod(Long.hashCode(processId), shards.length)];
+  }
+}
@@ -0,0 +1,54 @@
+package yuca.server;
+
+import java.util.List;
+import java.util.Optional;
+import yuca.signal.Component;
+import yuca.signal.Report;
+import yuca.signal.Signal;
+
+/**
+ * Filters reports down to the requested signals. A signal is kept if both its component's type and
+ * its unit are requested; an empty request keeps everything.
+ */
+final class SignalFilter {
+  /** Returns the report with only the requested signals. */
+  static Report filter(Report report, List<String> signals) {
+    if (signals.isEmpty()) {
+      return report;
+    }
+    Report.Builder filtered = Report.newBuilder();
+    for (Component component : report.getComponentList()) {
+      filter(component, signals).ifPresent(filtered::addComponent);
+    }
+    return filtered.build();
+  }
+
+  /** Returns the component with only the requested signals, if it has any. */
+  static Optional<Component> filter(Component component, List<String> signals) {
+    if (signals.isEmpty()) {
+      return Optional.of(component);
+    }
+    if (!signals.contains(component.getComponentType())) {
+      return Optional.empty();
+    }
+    Component.Builder filtered = component.toBuilder().clearSignal();
+    for (Signal signal : component.getSignalList()) {
+      if (isRequested(component, signal, signals)) {
+        filtered.addSignal(signal);
+      }
+    }
+    if (filtered.getSignalCount() == 0) {
+      return Optional.empty();
+    }
+    return Optional.of(filtered.build());
+  }
+
+  /** Returns if the component's signal is one of the requested signals. */
+  static boolean isRequested(Component component, Signal signal, List<String> signals) {
+    return signals.isEmpty()
+        || (signals.contains(component.getComponentType())
+            && signals.contains(signal.getUnit().name()));
+  }
+
+  private SignalFilter() {}
+}
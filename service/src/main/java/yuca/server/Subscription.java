@@ -0,0 +1,268 @@
+package yuca.server;
+
+import static yuca.server.LoggerUtil.getLogger;
+
+import io.grpc.stub.ServerCallStreamObserver;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+import yuca.service.SubscribeRequest;
+import yuca.service.SubscribeResponse;
+import yuca.signal.Component;
+import yuca.signal.Report;
+import yuca.signal.Signal;
+import yuca.signal.SignalInterval;
+
+/**
+ * Streams the intervals of a running monitor to a client in batches. Intervals are buffered as they
+ * are handed over by the sampling thread and are only sent from the streaming executor, either
+ * when a full batch is ready or when the oldest interval has waited long enough. Nothing is sent
+ * while the client isn't ready; if the buffer fills up in the meantime, the oldest intervals are
+ * dropped and the client is told how many it missed.
+ */
+final class Subscription implements Consumer<Report> {
+  private static final Logger logger = getLogger();
+
+  static final int DEFAULT_MAX_BATCH_SIZE = 256;
+  static final int DEFAULT_MAX_BATCH_DELAY_MILLIS = 100;
+  static final int DEFAULT_MAX_BUFFERED_INTERVALS = 65536;
+
+  private final long processId;
+  private final List<String> signals;
+  private final int maxBatchSize;
+  private final int maxBatchDelayMillis;
+  private final int maxBufferedIntervals;
+  private final ServerCallStreamObserver<SubscribeResponse> observer;
+  private final ScheduledExecutorService executor;
+
+  // guarded by this; the observer is only touched from the executor
+  private final ArrayDeque<BufferedInterval> buffer = new ArrayDeque<>();
+  private long dropped = 0;
+  private boolean flushScheduled = false;
+  private boolean isCompleting = false;
+  private boolean isStarted = false;
+
+  private boolean isClosed = false;
+  private Future<?> periodicFlush;
+
+  Subscription(
+      SubscribeRequest request,
+      ServerCallStreamObserver<SubscribeResponse> observer,
+      ScheduledExecutorService executor) {
+    this.processId = request.getProcessId();
+    this.signals = List.copyOf(request.getSignalsList());
+    this.maxBatchSize =
+        request.hasMaxBatchSize() && request.getMaxBatchSize() > 0
+            ? request.getMaxBatchSize()
+            : DEFAULT_MAX_BATCH_SIZE;
+    this.maxBatchDelayMillis =
+        request.hasMaxBatchDelayMillis() && request.getMaxBatchDelayMillis() > 0
+            ? request.getMaxBatchDelayMillis()
+            : DEFAULT_MAX_BATCH_DELAY_MILLIS;
+    this.maxBufferedIntervals =
+        request.hasMaxBufferedIntervals() && request.getMaxBufferedIntervals() > 0
+            ? Math.max(request.getMaxBufferedIntervals(), maxBatchSize)
+            : Math.max(DEFAULT_MAX_BUFFERED_INTERVALS, maxBatchSize);
+    this.observer = observer;
+    this.executor = executor;
+  }
+
+  /**
+   * Hooks the subscription up to the stream. Must be called before the rpc handler returns. {@code
+   * onCancel} is run if the client goes away. If the subscription was completed before it started,
+   * the stream is closed once it is hooked up.
+   */
+  void start(Runnable onCancel) {
+    logger.info(
+        String.format(
+            "streaming yuca intervals for %d in batches of %d every %d ms",
+            processId, maxBatchSize, maxBatchDelayMillis));
+    observer.setOnReadyHandler(this::scheduleFlush);
+    observer.setOnCancelHandler(
+        () -> {
+          logger.info(String.format("subscriber for %d went away", processId));
+          onCancel.run();
+          executor.execute(this::close);
+        });
+    periodicFlush =
+        executor.scheduleAtFixedRate(
+            this::flush, maxBatchDelayMillis, maxBatchDelayMillis, TimeUnit.MILLISECONDS);
+    boolean isCompleted;
+    synchronized (this) {
+      isStarted = true;
+      isCompleted = isCompleting;
+    }
+    if (isCompleted) {
+      executor.execute(this::flush);
+    }
+  }
+
+  /** Buffers the intervals of the subscribed signals. Called from the sampling thread. */
+  @Override
+  public void accept(Report report) {
+    boolean isBatchReady;
+    synchronized (this) {
+      if (isCompleting) {
+        return;
+      }
+      for (Component component : report.getComponentList()) {
+        if (!isSubscribed(component.getComponentType(), null)) {
+          continue;
+        }
+        Component key =
+            Component.newBuilder()
+                .setComponentType(component.getComponentType())
+                .setComponentId(component.getComponentId())
+                .build();
+        for (Signal signal : component.getSignalList()) {
+          if (!isSubscribed(component.getComponentType(), signal.getUnit())) {
+            continue;
+          }
+          Signal header = signal.toBuilder().clearInterval().build();
+          for (SignalInterval interval : signal.getIntervalList()) {
+            buffer.addLast(new BufferedInterval(key, header, interval));
+          }
+        }
+      }
+      while (buffer.size() > maxBufferedIntervals) {
+        buffer.pollFirst();
+        dropped++;
+      }
+      isBatchReady = buffer.size() >= maxBatchSize;
+    }
+    if (isBatchReady) {
+      scheduleFlush();
+    }
+  }
+
+  /** Sends whatever is left and then closes the stream. */
+  void complete() {
+    boolean isReady;
+    synchronized (this) {
+      isCompleting = true;
+      isReady = isStarted;
+    }
+    if (isReady) {
+      executor.execute(this::flush);
+    }
+  }
+
+  private boolean isSubscribed(String componentType, Signal.Unit unit) {
+    if (signals.isEmpty()) {
+      return true;
+    }
+    return signals.contains(componentType) && (unit == null || signals.contains(unit.name()));
+  }
+
+  private void scheduleFlush() {
+    synchronized (this) {
+      if (flushScheduled) {
+        return;
+      }
+      flushScheduled = true;
+    }
+    executor.execute(this::flush);
+  }
+
+  /** Sends batches for as long as the client can take them. Only run on the executor. */
+  private void flush() {
+    synchronized (this) {
+      flushScheduled = false;
+    }
+    if (isClosed) {
+      return;
+    }
+    if (observer.isCancelled()) {
+      close();
+      return;
+    }
+    while (observer.isReady()) {
+      SubscribeResponse response = nextBatch();
+      if (response == null) {
+        break;
+      }
+      observer.onNext(response);
+    }
+    boolean isDone;
+    synchronized (this) {
+      isDone = isCompleting && buffer.isEmpty();
+    }
+    if (isDone) {
+      logger.info(String.format("finished streaming yuca intervals for %d", processId));
+      observer.onCompleted();
+      close();
+    }
+  }
+
+  /** Pulls the next batch out of the buffer. Returns null if there is nothing to send. */
+  private SubscribeResponse nextBatch() {
+    ArrayList<BufferedInterval> batch = new ArrayList<>(maxBatchSize);
+    long droppedIntervals;
+    synchronized (this) {
+      while (batch.size() < maxBatchSize && !buffer.isEmpty()) {
+        batch.add(buffer.pollFirst());
+      }
+      droppedIntervals = dropped;
+      dropped = 0;
+    }
+    if (batch.isEmpty() && droppedIntervals == 0) {
+      return null;
+    }
+
+    // regroup the intervals by component and signal
+    LinkedHashMap<Component, LinkedHashMap<Signal, Signal.Builder>> components =
+        new LinkedHashMap<>();
+    for (BufferedInterval interval : batch) {
+      components
+          .computeIfAbsent(interval.component, component -> new LinkedHashMap<>())
+          .computeIfAbsent(interval.signal, Signal::toBuilder)
+          .addInterval(interval.interval);
+    }
+    Report.Builder report = Report.newBuilder();
+    components.forEach(
+        (component, componentSignals) -> {
+          Component.Builder builder = component.toBuilder();
+          componentSignals.values().forEach(builder::addSignal);
+          report.addComponent(builder);
+        });
+
+    SubscribeResponse.Builder response = SubscribeResponse.newBuilder().setReport(report);
+    if (droppedIntervals > 0) {
+      logger.info(
+          String.format(
+              "dropped %d yuca intervals for %d because the subscriber fell behind",
+              droppedIntervals, processId));
+      response.setDroppedIntervals(droppedIntervals);
+    }
+    return response.build();
+  }
+
+  private void close() {
+    isClosed = true;
+    if (periodicFlush != null) {
+      periodicFlush.cancel(false);
+    }
+    synchronized (this) {
+      isCompleting = true;
+      buffer.clear();
+    }
+  }
+
+  private static final class BufferedInterval {
+    private final Component component;
+    private final Signal signal;
+    private final SignalInterval interval;
+
+    private BufferedInterval(Component component, Signal signal, SignalInterval interval) {
+      this.component = component;
+      this.signal = signal;
+      this.interval = interval;
+    }
+  }
+}
@@ -8,6 +8,8 @@ import io.grpc.ManagedChannelBuilder;
 import io.grpc.Server;
 import io.grpc.ServerBuilder;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
@@ -39,17 +41,31 @@ final class YucaServer {
                 .maxInboundMessageSize(MAX_MESSAGE_LENGTH)
                 .build());
         stub.stop(StopRequest.getDefaultInstance());
-        serverBuilder.addService(new YucaServerImpl(Optional.of(stub))).build();
+        serverBuilder.addService(createService(Optional.of(stub), args)).build();
       } catch (Exception e) {
         logger.info("could not connect to nvml server...ignoring it");
-        serverBuilder.addService(new YucaServerImpl(Optional.empty()));
+        serverBuilder.addService(createService(Optional.empty(), args));
       }
     } else {
-      serverBuilder.addService(new YucaServerImpl(Optional.empty()));
+      serverBuilder.addService(createService(Optional.empty(), args));
     }
     this.server = serverBuilder.build();
   }
 
+  private static YucaServerImpl createService(
+      Optional<YucaServiceGrpc.YucaServiceBlockingStub> nvmlClient, ServerArgs args) {
+    logger.info(
+        String.format(
+            "keeping up to %d bytes of yuca reports for %s before spilling them to %s",
+            args.reportBudgetBytes, args.reportMaxAge, args.spillDirectory));
+    args.sampleLogDirectory.ifPresent(
+        directory -> logger.info(String.format("logging yuca samples to %s", directory)));
+    return new YucaServerImpl(
+        nvmlClient,
+        new ReportStore(args.reportBudgetBytes, args.reportMaxAge, args.spillDirectory),
+        args.sampleLogDirectory);
+  }
+
   /** Start serving requests. */
   public void start() throws IOException {
     server.start();
@@ -87,14 +103,32 @@ final class YucaServer {
   private static class ServerArgs {
     private final int port;
     private final boolean useNvml;
+    private final long reportBudgetBytes;
+    private final Duration reportMaxAge;
+    private final Path spillDirectory;
+    private final Optional<Path> sampleLogDirectory;
 
-    private ServerArgs(int port, boolean useNvml) {
+    private ServerArgs(
+        int port,
+        boolean useNvml,
+        long reportBudgetBytes,
+        Duration reportMaxAge,
+        Path spillDirectory,
+        Optional<Path> sampleLogDirectory) {
       this.port = port;
       this.useNvml = useNvml;
+      this.reportBudgetBytes = reportBudgetBytes;
+      this.reportMaxAge = reportMaxAge;
+      this.spillDirectory = spillDirectory;
+      this.sampleLogDirectory = sampleLogDirectory;
     }
   }
 
   private static final Integer DEFAULT_PORT = Integer.valueOf(8980);
+  private static final Long DEFAULT_REPORT_BUDGET_MB =
+      Long.valueOf(ReportStore.DEFAULT_MAX_HEAP_BYTES / 1024 / 1024);
+  private static final Long DEFAULT_REPORT_MAX_AGE_MINUTES =
+      Long.valueOf(ReportStore.DEFAULT_MAX_AGE.toMinutes());
 
   private static ServerArgs getServerArgs(String[] args) throws Exception {
     Option portOption =
@@ -104,13 +138,51 @@ final class YucaServer {
             .desc("port to host the server")
             .type(Integer.class)
             .build();
+    Option reportBudgetOption =
+        Option.builder()
+            .hasArg(true)
+            .longOpt("report-budget-mb")
+            .desc("megabytes of stopped reports to keep in memory")
+            .type(Long.class)
+            .build();
+    Option reportMaxAgeOption =
+        Option.builder()
+            .hasArg(true)
+            .longOpt("report-max-age-minutes")
+            .desc("minutes an unused stopped report is kept in memory (0 for no limit)")
+            .type(Long.class)
+            .build();
+    Option spillDirectoryOption =
+        Option.builder()
+            .hasArg(true)
+            .longOpt("spill-directory")
+            .desc("directory to spill stopped reports to")
+            .build();
+    Option sampleLogDirectoryOption =
+        Option.builder()
+            .hasArg(true)
+            .longOpt("sample-log-directory")
+            .desc("directory to log raw samples to instead of keeping running reports in memory")
+            .build();
     Options options =
         new Options()
             .addOption(portOption)
-            .addOption("nvml", false, "create a client to the nvml server");
+            .addOption("nvml", false, "create a client to the nvml server")
+            .addOption(reportBudgetOption)
+            .addOption(reportMaxAgeOption)
+            .addOption(spillDirectoryOption)
+            .addOption(sampleLogDirectoryOption);
     CommandLine cmd = new DefaultParser().parse(options, args);
     return new ServerArgs(
-        cmd.getParsedOptionValue(portOption, DEFAULT_PORT).intValue(), cmd.hasOption("nvml"));
+        cmd.getParsedOptionValue(portOption, DEFAULT_PORT).intValue(),
+        cmd.hasOption("nvml"),
+        1024 * 1024 * cmd.getParsedOptionValue(reportBudgetOption, DEFAULT_REPORT_BUDGET_MB),
+        Duration.ofMinutes(
+            cmd.getParsedOptionValue(reportMaxAgeOption, DEFAULT_REPORT_MAX_AGE_MINUTES)),
+        Path.of(
+            cmd.getOptionValue(
+                spillDirectoryOption, ReportStore.DEFAULT_SPILL_DIRECTORY.toString())),
+        Optional.ofNullable(cmd.getOptionValue(sampleLogDirectoryOption)).map(Path::of));
   }
 
   /** Spins up the server. */
@@ -1,24 +1,37 @@
 package yuca.server;
 
-import static java.nio.file.Files.newOutputStream;
 import static java.util.stream.Collectors.toList;
 import static yuca.server.LoggerUtil.getLogger;
 
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
-import java.io.OutputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import yuca.YucaMonitor;
 import yuca.YucaApplicationMonitor;
 import yuca.YucaEndToEndMonitor;
+import yuca.SystemSamplingHub;
+import yuca.util.SamplerExecution;
 import yuca.service.DumpRequest;
 import yuca.service.DumpResponse;
+import yuca.service.DumpStatusRequest;
+import yuca.service.DumpStatusResponse;
 import yuca.service.YucaServiceGrpc;
 import yuca.service.PurgeRequest;
 import yuca.service.PurgeResponse;
@@ -28,37 +41,87 @@ import yuca.service.StartRequest;
 import yuca.service.StartResponse;
 import yuca.service.StopRequest;
 import yuca.service.StopResponse;
+import yuca.service.SubscribeRequest;
+import yuca.service.SubscribeResponse;
 import yuca.signal.Component;
 import yuca.signal.Report;
-import yuca.signal.Signal;
 
 final class YucaServerImpl extends YucaServiceGrpc.YucaServiceImplBase {
   private static final Logger logger = getLogger();
 
+  private static final int MAX_TRACKED_DUMPS = 1024;
+
   private final Optional<YucaServiceGrpc.YucaServiceBlockingStub> nvmlClient;
 
-  private final HashMap<Long, YucaMonitor> yucas = new HashMap<>();
-  private final HashMap<Long, Report> data = new HashMap<>();
-  private final ScheduledExecutorService executor =
+  // sessions are started, stopped and read concurrently from grpc's threads
+  private final ConcurrentHashMap<Long, YucaMonitor> yucas = new ConcurrentHashMap<>();
+  // stopped reports are kept within a heap budget and spilled to disk past it
+  private final ReportStore data;
+  // if set, monitors log their raw samples under a directory for each process
+  private final Optional<Path> sampleLogDirectory;
+  private final SamplerPool samplers =
+      new SamplerPool(Runtime.getRuntime().availableProcessors());
+  // the system is sampled once per period and shared by every process at that period
+  private final ConcurrentHashMap<Integer, SystemSamplingHub> hubs = new ConcurrentHashMap<>();
+  private final ScheduledExecutorService systemExecutor =
+      SamplerExecution.platform("yuca-system-sampling-thread").executor();
+  // stops are fanned out here so a purge doesn't stop monitors one at a time
+  private final ExecutorService stopExecutor =
+      Executors.newCachedThreadPool(
+          r -> {
+            Thread t = new Thread(r, "yuca-stopping-thread");
+            t.setDaemon(true);
+            return t;
+          });
+  // dumps are written here so large reports don't hold up the rpc threads
+  private final ExecutorService dumpExecutor =
+      Executors.newSingleThreadExecutor(
+          r -> {
+            Thread t = new Thread(r, "yuca-dump-thread");
+            t.setDaemon(true);
+            return t;
+          });
+  private final AtomicLong nextDumpId = new AtomicLong(1);
+  private final ConcurrentHashMap<Long, ReportDump> dumps = new ConcurrentHashMap<>();
+  // subscriptions are modified from grpc's callback threads
+  private final ConcurrentHashMap<Long, Set<Subscription>> subscriptions =
+      new ConcurrentHashMap<>();
+  // batches are sent from here so slow subscribers don't hold up sampling
+  private final ScheduledExecutorService streamingExecutor =
       Executors.newSingleThreadScheduledExecutor(
           r -> {
-            Thread t = new Thread(r, "yuca-sampling-thread");
+            Thread t = new Thread(r, "yuca-streaming-thread");
             t.setDaemon(true);
             return t;
           });
 
   public YucaServerImpl(Optional<YucaServiceGrpc.YucaServiceBlockingStub> nvmlClient) {
+    this(nvmlClient, ReportStore.withDefaults(), Optional.empty());
+  }
+
+  YucaServerImpl(
+      Optional<YucaServiceGrpc.YucaServiceBlockingStub> nvmlClient,
+      ReportStore reportStore,
+      Optional<Path> sampleLogDirectory) {
     this.nvmlClient = nvmlClient;
+    this.data = reportStore;
+    this.sampleLogDirectory = sampleLogDirectory;
   }
 
   @Override
   public void start(StartRequest request, StreamObserver<StartResponse> resultObserver) {
     Long processId = Long.valueOf(request.getProcessId());
-    if (!yucas.containsKey(processId)) {
-      logger.info(String.format("creating yuca for %d", processId));
-      YucaMonitor yuca = getYuca(request.getPeriodMillis(), processId);
-      yuca.start();
-      yucas.put(processId, yuca);
+    // the monitor is started while the pid's entry is locked so a concurrent stop can't miss it
+    AtomicBoolean isCreated = new AtomicBoolean(false);
+    yucas.computeIfAbsent(
+        processId,
+        pid -> {
+          logger.info(String.format("creating yuca for %d", pid));
+          YucaMonitor yuca = startYuca(request, pid);
+          isCreated.set(true);
+          return yuca;
+        });
+    if (isCreated.get()) {
       nvmlClient.ifPresent(client -> client.start(request));
       resultObserver.onNext(StartResponse.getDefaultInstance());
     } else {
@@ -74,37 +137,12 @@ final class YucaServerImpl extends YucaServiceGrpc.YucaServiceImplBase {
   @Override
   public void stop(StopRequest request, StreamObserver<StopResponse> resultObserver) {
     Long processId = Long.valueOf(request.getProcessId());
-    if (yucas.containsKey(processId)) {
-      logger.info(String.format("stopping yuca for %d", processId));
-      YucaMonitor yuca = yucas.get(processId);
-      yucas.remove(processId);
+    YucaMonitor yuca = yucas.remove(processId);
+    if (yuca != null) {
+      stopYuca(processId, yuca);
       nvmlClient.ifPresent(client -> client.stop(request));
-      Report.Builder reportBuilder = yuca.stop().get().toBuilder();
-
-      // TODO: we need the streaming response rpc for this
-      if (nvmlClient.isPresent()) {
-        Report nvmlReport =
-            nvmlClient
-                .map(client -> client.read(ReadRequest.getDefaultInstance()))
-                .get()
-                .getReport();
-        for (Component component : nvmlReport.getComponentList()) {
-          Component.Builder componentBuilder = component.toBuilder();
-          componentBuilder.addAllSignal(
-              componentBuilder.getSignalList().stream()
-                  .map(yuca::convertToEmissions)
-                  .filter(l -> l.getIntervalCount() > 0)
-                  .collect(toList()));
-          logger.info(
-              String.format(
-                  "adding component %s:%s to report for %d",
-                  component.getComponentType(), component.getComponentId(), processId));
-          reportBuilder.addComponent(componentBuilder);
-        }
-      }
-      // TODO: need to be able to combine/delete reports
-      logger.info(String.format("storing yuca report for %d", processId));
-      data.put(processId, reportBuilder.build());
+      addNvmlReport(processId, yuca);
+      completeSubscriptions(processId);
       resultObserver.onNext(StopResponse.getDefaultInstance());
     } else {
       String message =
@@ -121,25 +159,60 @@ final class YucaServerImpl extends YucaServiceGrpc.YucaServiceImplBase {
     Long processId = Long.valueOf(request.getProcessId());
     String outputPath = request.getOutputPath();
     logger.info(String.format("dumping yuca report for %d at %s", processId, outputPath));
-    if (data.containsKey(processId)) {
-      Report report = getReportFromSignals(data.get(processId), request.getSignalsList());
-      try (OutputStream writer = newOutputStream(Path.of(outputPath))) {
-        data.get(processId).writeTo(writer);
-      } catch (Exception error) {
-        logger.log(
-            Level.WARNING,
-            String.format("unable to dump yuca report for %d to %s", processId, outputPath),
-            error);
-      }
-      resultObserver.onNext(DumpResponse.getDefaultInstance());
-    } else {
+    Optional<Report> stored = getStoredReport(processId);
+    if (stored.isEmpty()) {
       String message =
           String.format(
               "ignoring request to dump yuca report for %d since it does not exist", processId);
       logger.info(message);
       resultObserver.onNext(DumpResponse.newBuilder().setResponse(message).build());
+      resultObserver.onCompleted();
+      return;
+    }
+
+    ReportDump dump =
+        new ReportDump(nextDumpId.getAndIncrement(), processId, stored.get(), request);
+    trackDump(dump);
+    dumpExecutor.execute(dump::write);
+    DumpResponse response = DumpResponse.newBuilder().setDumpId(dump.id()).build();
+    if (request.getAwaitCompletion()) {
+      dump.completion()
+          .thenAccept(
+              status -> {
+                if (status.getState() == DumpStatusResponse.State.FAILED) {
+                  resultObserver.onNext(
+                      response.toBuilder().setResponse(status.getError()).build());
+                } else {
+                  resultObserver.onNext(response);
+                }
+                resultObserver.onCompleted();
+              });
+    } else {
+      resultObserver.onNext(response);
+      resultObserver.onCompleted();
+    }
+  }
+
+  @Override
+  public void dumpStatus(
+      DumpStatusRequest request, StreamObserver<DumpStatusResponse> resultObserver) {
+    ReportDump dump = dumps.get(request.getDumpId());
+    if (dump == null) {
+      logger.info(String.format("no yuca dump with id %d", request.getDumpId()));
+      resultObserver.onNext(
+          DumpStatusResponse.newBuilder().setState(DumpStatusResponse.State.UNKNOWN).build());
+      resultObserver.onCompleted();
+    } else if (request.getAwaitCompletion()) {
+      dump.completion()
+          .thenAccept(
+              status -> {
+                resultObserver.onNext(status);
+                resultObserver.onCompleted();
+              });
+    } else {
+      resultObserver.onNext(dump.status());
+      resultObserver.onCompleted();
     }
-    resultObserver.onCompleted();
   }
 
   @Override
@@ -147,11 +220,27 @@ final class YucaServerImpl extends YucaServiceGrpc.YucaServiceImplBase {
     Long processId = Long.valueOf(request.getProcessId());
     ReadResponse.Builder response = ReadResponse.newBuilder();
     logger.info(String.format("reading yuca report for %d", processId));
-    if (data.containsKey(processId)) {
-      Report report = getReportFromSignals(data.get(processId), request.getSignalsList());
+    Optional<Report> stored = getStoredReport(processId);
+    if (stored.isPresent()) {
+      Report report =
+          ReportIndex.isWindowed(request)
+              ? data.index(processId, stored.get()).query(request)
+              : SignalFilter.filter(stored.get(), request.getSignalsList());
       if (report.getComponentCount() > 0) {
         response.setReport(report);
       }
+    } else if (yucas.containsKey(processId)) {
+      // a running monitor can hand out what it has collected so far
+      yucas
+          .get(processId)
+          .read()
+          .map(
+              report ->
+                  ReportIndex.isWindowed(request)
+                      ? new ReportIndex(report).query(request)
+                      : SignalFilter.filter(report, request.getSignalsList()))
+          .filter(report -> report.getComponentCount() > 0)
+          .ifPresent(response::setReport);
     } else {
       logger.info(
           String.format(
@@ -165,8 +254,17 @@ final class YucaServerImpl extends YucaServiceGrpc.YucaServiceImplBase {
   public void purge(PurgeRequest request, StreamObserver<PurgeResponse> resultObserver) {
     logger.info(String.format("purging yuca"));
 
-    yucas.forEach((pid, yuca) -> yuca.stop());
-    yucas.clear();
+    ArrayList<CompletableFuture<Void>> stops = new ArrayList<>();
+    for (Long processId : List.copyOf(yucas.keySet())) {
+      YucaMonitor yuca = yucas.remove(processId);
+      if (yuca != null) {
+        stops.add(CompletableFuture.runAsync(() -> yuca.stop(), stopExecutor));
+      }
+    }
+    CompletableFuture.allOf(stops.toArray(new CompletableFuture[0])).join();
+    pruneHubs();
+    subscriptions.keySet().forEach(this::completeSubscriptions);
+    logger.info(String.format("dropping stored yuca reports: %s", data.stats()));
     data.clear();
     nvmlClient.ifPresent(client -> client.stop(StopRequest.getDefaultInstance()));
 
@@ -174,39 +272,189 @@ final class YucaServerImpl extends YucaServiceGrpc.YucaServiceImplBase {
     resultObserver.onCompleted();
   }
 
-  private YucaMonitor getYuca(int periodMillis, Long processId){
+  @Override
+  public void subscribe(
+      SubscribeRequest request, StreamObserver<SubscribeResponse> resultObserver) {
+    Long processId = Long.valueOf(request.getProcessId());
+    logger.info(String.format("subscribing to yuca for %d", processId));
+    YucaMonitor yuca = yucas.get(processId);
+    Subscription subscription =
+        new Subscription(
+            request,
+            (ServerCallStreamObserver<SubscribeResponse>) resultObserver,
+            streamingExecutor);
+    // track the subscription before the monitor can publish to it so a concurrent stop completes
+    // it instead of leaving the stream open
+    subscriptions
+        .computeIfAbsent(processId, pid -> ConcurrentHashMap.newKeySet())
+        .add(subscription);
+    if (yuca == null || !yuca.subscribe(subscription)) {
+      Optional.ofNullable(subscriptions.get(processId))
+          .ifPresent(subs -> subs.remove(subscription));
+      String message =
+          String.format(
+              "ignoring request to subscribe to yuca for %d since it is not running", processId);
+      logger.info(message);
+      resultObserver.onError(Status.NOT_FOUND.withDescription(message).asRuntimeException());
+      return;
+    }
+    subscription.start(
+        () -> {
+          yuca.unsubscribe(subscription);
+          Optional.ofNullable(subscriptions.get(processId))
+              .ifPresent(subs -> subs.remove(subscription));
+        });
+  }
+
+  /**
+   * Creates and starts a monitor. A monitor that shares a hub joins it while the hub's entry is
+   * locked, so the hub can't be pruned between being looked up and getting the monitor's session.
+   */
+  private YucaMonitor startYuca(StartRequest request, Long processId) {
+    int periodMillis = request.getPeriodMillis();
+    if (periodMillis == 0) {
+      YucaMonitor yuca = getYuca(request, processId, null);
+      yuca.start();
+      return yuca;
+    }
+    AtomicReference<YucaMonitor> started = new AtomicReference<>();
+    hubs.compute(
+        periodMillis,
+        (period, hub) -> {
+          SystemSamplingHub sharedHub =
+              hub != null ? hub : new SystemSamplingHub(period, systemExecutor);
+          YucaMonitor yuca = getYuca(request, processId, sharedHub);
+          yuca.start();
+          started.set(yuca);
+          return sharedHub;
+        });
+    return started.get();
+  }
+
+  private YucaMonitor getYuca(StartRequest request, Long processId, SystemSamplingHub hub){
+    int periodMillis = request.getPeriodMillis();
     if (periodMillis == 0){
       return new YucaEndToEndMonitor();
     } else {
-      return new YucaApplicationMonitor(
-            periodMillis, processId, executor);
-    }
-  }
-
-  private Report getReportFromSignals(Report report, List<String> signals) {
-    if (signals.isEmpty()) {
-      logger.info("returning all components");
-      return report;
-    }
-    Report.Builder newReport = Report.newBuilder();
-    logger.info(String.format("signal query: %s", signals));
-    for (Component component : report.getComponentList()) {
-      Component.Builder comp = Component.newBuilder();
-      if (signals.contains(component.getComponentType())) {
-        for (Signal signal : component.getSignalList()) {
-          if (signals.contains(signal.getUnit().name())) {
-            logger.info(
-                String.format(
-                    "adding component %s's %s signal",
-                    component.getComponentType(), signal.getUnit().name()));
-            comp.addSignal(signal);
-          }
-        }
-      }
-      if (comp.getSignalCount() > 0) {
-        newReport.addComponent(component);
+      YucaApplicationMonitor yuca =
+          new YucaApplicationMonitor(processId, hub, samplers.executorFor(processId));
+      if (request.getFollowChildren()) {
+        yuca.followChildren();
       }
+      sampleLogDirectory.ifPresent(
+          directory ->
+              yuca.logSamplesTo(
+                  directory
+                      .resolve(Long.toString(processId))
+                      .resolve(Long.toString(System.currentTimeMillis()))));
+      return yuca;
+    }
+  }
+
+  /**
+   * Returns the stored report of a process. If there isn't one and the process isn't being
+   * monitored, the report is recovered from the latest sample log the process left behind.
+   */
+  private Optional<Report> getStoredReport(Long processId) {
+    Optional<Report> stored = data.get(processId);
+    if (stored.isPresent() || sampleLogDirectory.isEmpty() || yucas.containsKey(processId)) {
+      return stored;
+    }
+    Path processLogs = sampleLogDirectory.get().resolve(Long.toString(processId));
+    if (!Files.isDirectory(processLogs)) {
+      return stored;
     }
-    return newReport.build();
+    Optional<Path> latestLog;
+    try (Stream<Path> logs = Files.list(processLogs)) {
+      latestLog = logs.max(YucaServerImpl::compareRuns);
+    } catch (Exception e) {
+      logger.log(Level.WARNING, String.format("unable to list sample logs at %s", processLogs), e);
+      return stored;
+    }
+    Optional<Report> recovered =
+        latestLog.flatMap(log -> YucaApplicationMonitor.recover(processId, log));
+    if (recovered.isPresent()) {
+      logger.info(
+          String.format("recovered yuca report for %d from %s", processId, latestLog.get()));
+      data.put(processId, recovered.get());
+    }
+    return recovered;
+  }
+
+  /** Orders sample log directories by the time their run started. */
+  private static int compareRuns(Path first, Path second) {
+    try {
+      return Long.compare(
+          Long.parseLong(first.getFileName().toString()),
+          Long.parseLong(second.getFileName().toString()));
+    } catch (NumberFormatException e) {
+      return first.compareTo(second);
+    }
+  }
+
+  /** Stops a monitor and stores its report. */
+  private void stopYuca(Long processId, YucaMonitor yuca) {
+    logger.info(String.format("stopping yuca for %d", processId));
+    // TODO: need to be able to combine/delete reports
+    logger.info(String.format("storing yuca report for %d", processId));
+    data.put(processId, yuca.stop().orElse(Report.getDefaultInstance()));
+    logger.info(String.format("yuca report store: %s", data.stats()));
+    pruneHubs();
+  }
+
+  /** Forgets the hubs that were left without sessions, which have already stopped sampling. */
+  private void pruneHubs() {
+    for (Integer periodMillis : hubs.keySet()) {
+      hubs.computeIfPresent(periodMillis, (period, hub) -> hub.hasSessions() ? hub : null);
+    }
+  }
+
+  /**
+   * Adds the nvml server's report to a stopped monitor's report. The nvml server only hands over
+   * its report on read, so it is streamed to subscribers as a final batch.
+   */
+  private void addNvmlReport(Long processId, YucaMonitor yuca) {
+    if (nvmlClient.isEmpty()) {
+      return;
+    }
+    Report nvmlReport =
+        nvmlClient.map(client -> client.read(ReadRequest.getDefaultInstance())).get().getReport();
+    Report.Builder nvmlBatch = Report.newBuilder();
+    for (Component component : nvmlReport.getComponentList()) {
+      Component.Builder componentBuilder = component.toBuilder();
+      componentBuilder.addAllSignal(
+          componentBuilder.getSignalList().stream()
+              .map(yuca::convertToEmissions)
+              .filter(l -> l.getIntervalCount() > 0)
+              .collect(toList()));
+      logger.info(
+          String.format(
+              "adding component %s:%s to report for %d",
+              component.getComponentType(), component.getComponentId(), processId));
+      nvmlBatch.addComponent(componentBuilder);
+    }
+    if (nvmlBatch.getComponentCount() > 0) {
+      data.update(
+          processId,
+          report -> report.toBuilder().addAllComponent(nvmlBatch.getComponentList()).build());
+      publishToSubscriptions(processId, nvmlBatch.build());
+    }
+  }
+
+  /** Keeps the dump around for status requests, forgetting the oldest ones past the limit. */
+  private void trackDump(ReportDump dump) {
+    dumps.put(dump.id(), dump);
+    long oldestId = dump.id() - MAX_TRACKED_DUMPS;
+    dumps.keySet().removeIf(id -> id <= oldestId);
+  }
+
+  private void publishToSubscriptions(Long processId, Report report) {
+    Optional.ofNullable(subscriptions.get(processId))
+        .ifPresent(subs -> subs.forEach(subscription -> subscription.accept(report)));
+  }
+
+  private void completeSubscriptions(Long processId) {
+    Optional.ofNullable(subscriptions.remove(processId))
+        .ifPresent(subs -> subs.forEach(Subscription::complete));
   }
 }
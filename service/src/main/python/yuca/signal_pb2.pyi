@@ -51,6 +51,9 @@ class Signal(_message.Message):
         NANOSECONDS: _ClassVar[Signal.Unit]
         WATTS: _ClassVar[Signal.Unit]
         CELSIUS: _ClassVar[Signal.Unit]
+        BYTES: _ClassVar[Signal.Unit]
+        SAMPLES: _ClassVar[Signal.Unit]
+        EVENTS: _ClassVar[Signal.Unit]
     UNKNOWN: Signal.Unit
     ACTIVITY: Signal.Unit
     GRAMS_OF_CO2: Signal.Unit
@@ -60,6 +63,9 @@ class Signal(_message.Message):
     NANOSECONDS: Signal.Unit
     WATTS: Signal.Unit
     CELSIUS: Signal.Unit
+    BYTES: Signal.Unit
+    SAMPLES: Signal.Unit
+    EVENTS: Signal.Unit
     UNIT_FIELD_NUMBER: _ClassVar[int]
     SOURCE_FIELD_NUMBER: _ClassVar[int]
     INTERVAL_FIELD_NUMBER: _ClassVar[int]
@@ -83,3 +89,55 @@ class Report(_message.Message):
     COMPONENT_FIELD_NUMBER: _ClassVar[int]
     component: _containers.RepeatedCompositeFieldContainer[Component]
     def __init__(self, component: _Optional[_Iterable[_Union[Component, _Mapping]]] = ...) -> None: ...
+
+class CompactSignal(_message.Message):
+    __slots__ = ("unit", "source", "name", "value", "key", "layout", "start", "duration", "interval_layout", "data_value")
+    class Key(_message.Message):
+        __slots__ = ("name", "value")
+        NAME_FIELD_NUMBER: _ClassVar[int]
+        VALUE_FIELD_NUMBER: _ClassVar[int]
+        name: _containers.RepeatedScalarFieldContainer[int]
+        value: _containers.RepeatedScalarFieldContainer[int]
+        def __init__(self, name: _Optional[_Iterable[int]] = ..., value: _Optional[_Iterable[int]] = ...) -> None: ...
+    class Layout(_message.Message):
+        __slots__ = ("key",)
+        KEY_FIELD_NUMBER: _ClassVar[int]
+        key: _containers.RepeatedScalarFieldContainer[int]
+        def __init__(self, key: _Optional[_Iterable[int]] = ...) -> None: ...
+    UNIT_FIELD_NUMBER: _ClassVar[int]
+    SOURCE_FIELD_NUMBER: _ClassVar[int]
+    NAME_FIELD_NUMBER: _ClassVar[int]
+    VALUE_FIELD_NUMBER: _ClassVar[int]
+    KEY_FIELD_NUMBER: _ClassVar[int]
+    LAYOUT_FIELD_NUMBER: _ClassVar[int]
+    START_FIELD_NUMBER: _ClassVar[int]
+    DURATION_FIELD_NUMBER: _ClassVar[int]
+    INTERVAL_LAYOUT_FIELD_NUMBER: _ClassVar[int]
+    DATA_VALUE_FIELD_NUMBER: _ClassVar[int]
+    unit: Signal.Unit
+    source: _containers.RepeatedScalarFieldContainer[str]
+    name: _containers.RepeatedScalarFieldContainer[str]
+    value: _containers.RepeatedScalarFieldContainer[str]
+    key: _containers.RepeatedCompositeFieldContainer[CompactSignal.Key]
+    layout: _containers.RepeatedCompositeFieldContainer[CompactSignal.Layout]
+    start: _containers.RepeatedScalarFieldContainer[int]
+    duration: _containers.RepeatedScalarFieldContainer[int]
+    interval_layout: _containers.RepeatedScalarFieldContainer[int]
+    data_value: _containers.RepeatedScalarFieldContainer[float]
+    def __init__(self, unit: _Optional[_Union[Signal.Unit, str]] = ..., source: _Optional[_Iterable[str]] = ..., name: _Optional[_Iterable[str]] = ..., value: _Optional[_Iterable[str]] = ..., key: _Optional[_Iterable[_Union[CompactSignal.Key, _Mapping]]] = ..., layout: _Optional[_Iterable[_Union[CompactSignal.Layout, _Mapping]]] = ..., start: _Optional[_Iterable[int]] = ..., duration: _Optional[_Iterable[int]] = ..., interval_layout: _Optional[_Iterable[int]] = ..., data_value: _Optional[_Iterable[float]] = ...) -> None: ...
+
+class CompactComponent(_message.Message):
+    __slots__ = ("component_type", "component_id", "signal")
+    COMPONENT_TYPE_FIELD_NUMBER: _ClassVar[int]
+    COMPONENT_ID_FIELD_NUMBER: _ClassVar[int]
+    SIGNAL_FIELD_NUMBER: _ClassVar[int]
+    component_type: str
+    component_id: str
+    signal: _containers.RepeatedCompositeFieldContainer[CompactSignal]
+    def __init__(self, component_type: _Optional[str] = ..., component_id: _Optional[str] = ..., signal: _Optional[_Iterable[_Union[CompactSignal, _Mapping]]] = ...) -> None: ...
+
+class CompactReport(_message.Message):
+    __slots__ = ("component",)
+    COMPONENT_FIELD_NUMBER: _ClassVar[int]
+    component: _containers.RepeatedCompositeFieldContainer[CompactComponent]
+    def __init__(self, component: _Optional[_Iterable[_Union[CompactComponent, _Mapping]]] = ...) -> None: ...
@@ -25,7 +25,7 @@ _sym_db = _symbol_database.Default()
 import yuca.signal_pb2 as signal__pb2
 
 
-DESCRIPTOR = _descriptor_pool.Default().AddSerializedFile(b'\n\x12yuca_service.proto\x12\x0cyuca.service\x1a\x0csignal.proto\"d\n\x0cStartRequest\x12\x17\n\nprocess_id\x18\x01 \x01(\x04H\x00\x88\x01\x01\x12\x1a\n\rperiod_millis\x18\x02 \x01(\rH\x01\x88\x01\x01\x42\r\n\x0b_process_idB\x10\n\x0e_period_millis\"3\n\rStartResponse\x12\x15\n\x08response\x18\x01 \x01(\tH\x00\x88\x01\x01\x42\x0b\n\t_response\"5\n\x0bStopRequest\x12\x17\n\nprocess_id\x18\x01 \x01(\x04H\x00\x88\x01\x01\x42\r\n\x0b_process_id\"2\n\x0cStopResponse\x12\x15\n\x08response\x18\x01 \x01(\tH\x00\x88\x01\x01\x42\x0b\n\t_response\"F\n\x0bReadRequest\x12\x17\n\nprocess_id\x18\x01 \x01(\x04H\x00\x88\x01\x01\x12\x0f\n\x07signals\x18\x02 \x03(\tB\r\n\x0b_process_id\"C\n\x0cReadResponse\x12(\n\x06report\x18\x01 \x01(\x0b\x32\x13.yuca.signal.ReportH\x00\x88\x01\x01\x42\t\n\x07_report\"p\n\x0b\x44umpRequest\x12\x17\n\nprocess_id\x18\x01 \x01(\x04H\x00\x88\x01\x01\x12\x18\n\x0boutput_path\x18\x02 \x01(\tH\x01\x88\x01\x01\x12\x0f\n\x07signals\x18\x03 \x03(\tB\r\n\x0b_process_idB\x0e\n\x0c_output_path\"2\n\x0c\x44umpResponse\x12\x15\n\x08response\x18\x01 \x01(\tH\x00\x88\x01\x01\x42\x0b\n\t_response\"\x0e\n\x0cPurgeRequest\"\x0f\n\rPurgeResponse2\xd8\x02\n\x0bYucaService\x12\x42\n\x05Start\x12\x1a.yuca.service.StartRequest\x1a\x1b.yuca.service.StartResponse\"\x00\x12?\n\x04Stop\x12\x19.yuca.service.StopRequest\x1a\x1a.yuca.service.StopResponse\"\x00\x12?\n\x04\x44ump\x12\x19.yuca.service.DumpRequest\x1a\x1a.yuca.service.DumpResponse\"\x00\x12?\n\x04Read\x12\x19.yuca.service.ReadRequest\x1a\x1a.yuca.service.ReadResponse\"\x00\x12\x42\n\x05Purge\x12\x1a.yuca.service.PurgeRequest\x1a\x1b.yuca.service.PurgeResponse\"\x00\x42\x10\n\x0cyuca.serviceP\x01\x62\x06proto3')
+DESCRIPTOR = _descriptor_pool.Default().AddSerializedFile(b'\n\x12yuca_service.proto\x12\x0cyuca.service\x1a\x0csignal.proto\"\x96\x01\n\x0cStartRequest\x12\x17\n\nprocess_id\x18\x01 \x01(\x04H\x00\x88\x01\x01\x12\x1a\n\rperiod_millis\x18\x02 \x01(\rH\x01\x88\x01\x01\x12\x1c\n\x0f\x66ollow_children\x18\x03 \x01(\x08H\x02\x88\x01\x01\x42\r\n\x0b_process_idB\x10\n\x0e_period_millisB\x12\n\x10_follow_children\"3\n\rStartResponse\x12\x15\n\x08response\x18\x01 \x01(\tH\x00\x88\x01\x01\x42\x0b\n\t_response\"5\n\x0bStopRequest\x12\x17\n\nprocess_id\x18\x01 \x01(\x04H\x00\x88\x01\x01\x42\r\n\x0b_process_id\"2\n\x0cStopResponse\x12\x15\n\x08response\x18\x01 \x01(\tH\x00\x88\x01\x01\x42\x0b\n\t_response\"\x82\x02\n\x0bReadRequest\x12\x17\n\nprocess_id\x18\x01 \x01(\x04H\x00\x88\x01\x01\x12\x0f\n\x07signals\x18\x02 \x03(\t\x12\x39\n\x05start\x18\x03 \x01(\x0b\x32%.yuca.signal.SignalInterval.TimestampH\x01\x88\x01\x01\x12\x37\n\x03\x65nd\x18\x04 \x01(\x0b\x32%.yuca.signal.SignalInterval.TimestampH\x02\x88\x01\x01\x12\x1e\n\x11resolution_millis\x18\x05 \x01(\x04H\x03\x88\x01\x01\x42\r\n\x0b_process_idB\x08\n\x06_startB\x06\n\x04_endB\x14\n\x12_resolution_millis\"C\n\x0cReadResponse\x12(\n\x06report\x18\x01 \x01(\x0b\x32\x13.yuca.signal.ReportH\x00\x88\x01\x01\x42\t\n\x07_report\"\xca\x01\n\x0b\x44umpRequest\x12\x17\n\nprocess_id\x18\x01 \x01(\x04H\x00\x88\x01\x01\x12\x18\n\x0boutput_path\x18\x02 \x01(\tH\x01\x88\x01\x01\x12\x0f\n\x07signals\x18\x03 \x03(\t\x12\x16\n\tdelimited\x18\x04 \x01(\x08H\x02\x88\x01\x01\x12\x1d\n\x10\x61wait_completion\x18\x05 \x01(\x08H\x03\x88\x01\x01\x42\r\n\x0b_process_idB\x0e\n\x0c_output_pathB\x0c\n\n_delimitedB\x13\n\x11_await_completion\"T\n\x0c\x44umpResponse\x12\x15\n\x08response\x18\x01 \x01(\tH\x00\x88\x01\x01\x12\x14\n\x07\x64ump_id\x18\x02 \x01(\x04H\x01\x88\x01\x01\x42\x0b\n\t_responseB\n\n\x08_dump_id\"i\n\x11\x44umpStatusRequest\x12\x14\n\x07\x64ump_id\x18\x01 \x01(\x04H\x00\x88\x01\x01\x12\x1d\n\x10\x61wait_completion\x18\x02 \x01(\x08H\x01\x88\x01\x01\x42\n\n\x08_dump_idB\x13\n\x11_await_completion\"\xec\x01\n\x12\x44umpStatusResponse\x12:\n\x05state\x18\x01 \x01(\x0e\x32&.yuca.service.DumpStatusResponse.StateH\x00\x88\x01\x01\x12\x1a\n\rbytes_written\x18\x02 \x01(\x04H\x01\x88\x01\x01\x12\x12\n\x05\x65rror\x18\x03 \x01(\tH\x02\x88\x01\x01\"D\n\x05State\x12\x0b\n\x07UNKNOWN\x10\x00\x12\x0b\n\x07PENDING\x10\x01\x12\x0b\n\x07WRITING\x10\x02\x12\x08\n\x04\x44ONE\x10\x03\x12\n\n\x06\x46\x41ILED\x10\x04\x42\x08\n\x06_stateB\x10\n\x0e_bytes_writtenB\x08\n\x06_error\"\x0e\n\x0cPurgeRequest\"\x0f\n\rPurgeResponse\"\xfb\x01\n\x10SubscribeRequest\x12\x17\n\nprocess_id\x18\x01 \x01(\x04H\x00\x88\x01\x01\x12\x0f\n\x07signals\x18\x02 \x03(\t\x12\x1b\n\x0emax_batch_size\x18\x03 \x01(\rH\x01\x88\x01\x01\x12#\n\x16max_batch_delay_millis\x18\x04 \x01(\rH\x02\x88\x01\x01\x12#\n\x16max_buffered_intervals\x18\x05 \x01(\rH\x03\x88\x01\x01\x42\r\n\x0b_process_idB\x11\n\x0f_max_batch_sizeB\x19\n\x17_max_batch_delay_millisB\x19\n\x17_max_buffered_intervals\"~\n\x11SubscribeResponse\x12(\n\x06report\x18\x01 \x01(\x0b\x32\x13.yuca.signal.ReportH\x00\x88\x01\x01\x12\x1e\n\x11\x64ropped_intervals\x18\x02 \x01(\x04H\x01\x88\x01\x01\x42\t\n\x07_reportB\x14\n\x12_dropped_intervals2\xfd\x03\n\x0bYucaService\x12\x42\n\x05Start\x12\x1a.yuca.service.StartRequest\x1a\x1b.yuca.service.StartResponse\"\x00\x12?\n\x04Stop\x12\x19.yuca.service.StopRequest\x1a\x1a.yuca.service.StopResponse\"\x00\x12?\n\x04\x44ump\x12\x19.yuca.service.DumpRequest\x1a\x1a.yuca.service.DumpResponse\"\x00\x12Q\n\nDumpStatus\x12\x1f.yuca.service.DumpStatusRequest\x1a .yuca.service.DumpStatusResponse\"\x00\x12?\n\x04Read\x12\x19.yuca.service.ReadRequest\x1a\x1a.yuca.service.ReadResponse\"\x00\x12\x42\n\x05Purge\x12\x1a.yuca.service.PurgeRequest\x1a\x1b.yuca.service.PurgeResponse\"\x00\x12P\n\tSubscribe\x12\x1e.yuca.service.SubscribeRequest\x1a\x1f.yuca.service.SubscribeResponse\"\x00\x30\x01\x42\x10\n\x0cyuca.serviceP\x01\x62\x06proto3')
 
 _globals = globals()
 _builder.BuildMessageAndEnumDescriptors(DESCRIPTOR, _globals)
@@ -33,26 +33,36 @@ _builder.BuildTopDescriptorsAndMessages(DESCRIPTOR, 'yuca_service_pb2', _globals
 if not _descriptor._USE_C_DESCRIPTORS:
   _globals['DESCRIPTOR']._loaded_options = None
   _globals['DESCRIPTOR']._serialized_options = b'\n\014yuca.serviceP\001'
-  _globals['_STARTREQUEST']._serialized_start=50
-  _globals['_STARTREQUEST']._serialized_end=150
-  _globals['_STARTRESPONSE']._serialized_start=152
-  _globals['_STARTRESPONSE']._serialized_end=203
-  _globals['_STOPREQUEST']._serialized_start=205
-  _globals['_STOPREQUEST']._serialized_end=258
-  _globals['_STOPRESPONSE']._serialized_start=260
-  _globals['_STOPRESPONSE']._serialized_end=310
-  _globals['_READREQUEST']._serialized_start=312
-  _globals['_READREQUEST']._serialized_end=382
-  _globals['_READRESPONSE']._serialized_start=384
-  _globals['_READRESPONSE']._serialized_end=451
-  _globals['_DUMPREQUEST']._serialized_start=453
-  _globals['_DUMPREQUEST']._serialized_end=565
-  _globals['_DUMPRESPONSE']._serialized_start=567
-  _globals['_DUMPRESPONSE']._serialized_end=617
-  _globals['_PURGEREQUEST']._serialized_start=619
-  _globals['_PURGEREQUEST']._serialized_end=633
-  _globals['_PURGERESPONSE']._serialized_start=635
-  _globals['_PURGERESPONSE']._serialized_end=650
-  _globals['_YUCASERVICE']._serialized_start=653
-  _globals['_YUCASERVICE']._serialized_end=997
+  _globals['_STARTREQUEST']._serialized_start=51
+  _globals['_STARTREQUEST']._serialized_end=201
+  _globals['_STARTRESPONSE']._serialized_start=203
+  _globals['_STARTRESPONSE']._serialized_end=254
+  _globals['_STOPREQUEST']._serialized_start=256
+  _globals['_STOPREQUEST']._serialized_end=309
+  _globals['_STOPRESPONSE']._serialized_start=311
+  _globals['_STOPRESPONSE']._serialized_end=361
+  _globals['_READREQUEST']._serialized_start=364
+  _globals['_READREQUEST']._serialized_end=622
+  _globals['_READRESPONSE']._serialized_start=624
+  _globals['_READRESPONSE']._serialized_end=691
+  _globals['_DUMPREQUEST']._serialized_start=694
+  _globals['_DUMPREQUEST']._serialized_end=896
+  _globals['_DUMPRESPONSE']._serialized_start=898
+  _globals['_DUMPRESPONSE']._serialized_end=982
+  _globals['_DUMPSTATUSREQUEST']._serialized_start=984
+  _globals['_DUMPSTATUSREQUEST']._serialized_end=1089
+  _globals['_DUMPSTATUSRESPONSE']._serialized_start=1092
+  _globals['_DUMPSTATUSRESPONSE']._serialized_end=1328
+  _globals['_DUMPSTATUSRESPONSE_STATE']._serialized_start=1222
+  _globals['_DUMPSTATUSRESPONSE_STATE']._serialized_end=1290
+  _globals['_PURGEREQUEST']._serialized_start=1330
+  _globals['_PURGEREQUEST']._serialized_end=1344
+  _globals['_PURGERESPONSE']._serialized_start=1346
+  _globals['_PURGERESPONSE']._serialized_end=1361
+  _globals['_SUBSCRIBEREQUEST']._serialized_start=1364
+  _globals['_SUBSCRIBEREQUEST']._serialized_end=1615
+  _globals['_SUBSCRIBERESPONSE']._serialized_start=1617
+  _globals['_SUBSCRIBERESPONSE']._serialized_end=1743
+  _globals['_YUCASERVICE']._serialized_start=1746
+  _globals['_YUCASERVICE']._serialized_end=2255
 # @@protoc_insertion_point(module_scope)
@@ -1,5 +1,6 @@
 import signal_pb2 as _signal_pb2
 from google.protobuf.internal import containers as _containers
+from google.protobuf.internal import enum_type_wrapper as _enum_type_wrapper
 from google.protobuf import descriptor as _descriptor
 from google.protobuf import message as _message
 from collections.abc import Iterable as _Iterable, Mapping as _Mapping
@@ -8,12 +9,14 @@ from typing import ClassVar as _ClassVar, Optional as _Optional, Union as _Union
 DESCRIPTOR: _descriptor.FileDescriptor
 
 class StartRequest(_message.Message):
-    __slots__ = ("process_id", "period_millis")
+    __slots__ = ("process_id", "period_millis", "follow_children")
     PROCESS_ID_FIELD_NUMBER: _ClassVar[int]
     PERIOD_MILLIS_FIELD_NUMBER: _ClassVar[int]
+    FOLLOW_CHILDREN_FIELD_NUMBER: _ClassVar[int]
     process_id: int
     period_millis: int
-    def __init__(self, process_id: _Optional[int] = ..., period_millis: _Optional[int] = ...) -> None: ...
+    follow_children: bool
+    def __init__(self, process_id: _Optional[int] = ..., period_millis: _Optional[int] = ..., follow_children: _Optional[bool] = ...) -> None: ...
 
 class StartResponse(_message.Message):
     __slots__ = ("response",)
@@ -34,12 +37,18 @@ class StopResponse(_message.Message):
     def __init__(self, response: _Optional[str] = ...) -> None: ...
 
 class ReadRequest(_message.Message):
-    __slots__ = ("process_id", "signals")
+    __slots__ = ("process_id", "signals", "start", "end", "resolution_millis")
     PROCESS_ID_FIELD_NUMBER: _ClassVar[int]
     SIGNALS_FIELD_NUMBER: _ClassVar[int]
+    START_FIELD_NUMBER: _ClassVar[int]
+    END_FIELD_NUMBER: _ClassVar[int]
+    RESOLUTION_MILLIS_FIELD_NUMBER: _ClassVar[int]
     process_id: int
     signals: _containers.RepeatedScalarFieldContainer[str]
-    def __init__(self, process_id: _Optional[int] = ..., signals: _Optional[_Iterable[str]] = ...) -> None: ...
+    start: _signal_pb2.SignalInterval.Timestamp
+    end: _signal_pb2.SignalInterval.Timestamp
+    resolution_millis: int
+    def __init__(self, process_id: _Optional[int] = ..., signals: _Optional[_Iterable[str]] = ..., start: _Optional[_Union[_signal_pb2.SignalInterval.Timestamp, _Mapping]] = ..., end: _Optional[_Union[_signal_pb2.SignalInterval.Timestamp, _Mapping]] = ..., resolution_millis: _Optional[int] = ...) -> None: ...
 
 class ReadResponse(_message.Message):
     __slots__ = ("report",)
@@ -48,20 +57,56 @@ class ReadResponse(_message.Message):
     def __init__(self, report: _Optional[_Union[_signal_pb2.Report, _Mapping]] = ...) -> None: ...
 
 class DumpRequest(_message.Message):
-    __slots__ = ("process_id", "output_path", "signals")
+    __slots__ = ("process_id", "output_path", "signals", "delimited", "await_completion")
     PROCESS_ID_FIELD_NUMBER: _ClassVar[int]
     OUTPUT_PATH_FIELD_NUMBER: _ClassVar[int]
     SIGNALS_FIELD_NUMBER: _ClassVar[int]
+    DELIMITED_FIELD_NUMBER: _ClassVar[int]
+    AWAIT_COMPLETION_FIELD_NUMBER: _ClassVar[int]
     process_id: int
     output_path: str
     signals: _containers.RepeatedScalarFieldContainer[str]
-    def __init__(self, process_id: _Optional[int] = ..., output_path: _Optional[str] = ..., signals: _Optional[_Iterable[str]] = ...) -> None: ...
+    delimited: bool
+    await_completion: bool
+    def __init__(self, process_id: _Optional[int] = ..., output_path: _Optional[str] = ..., signals: _Optional[_Iterable[str]] = ..., delimited: _Optional[bool] = ..., await_completion: _Optional[bool] = ...) -> None: ...
 
 class DumpResponse(_message.Message):
-    __slots__ = ("response",)
+    __slots__ = ("response", "dump_id")
     RESPONSE_FIELD_NUMBER: _ClassVar[int]
+    DUMP_ID_FIELD_NUMBER: _ClassVar[int]
     response: str
-    def __init__(self, response: _Optional[str] = ...) -> None: ...
+    dump_id: int
+    def __init__(self, response: _Optional[str] = ..., dump_id: _Optional[int] = ...) -> None: ...
+
+class DumpStatusRequest(_message.Message):
+    __slots__ = ("dump_id", "await_completion")
+    DUMP_ID_FIELD_NUMBER: _ClassVar[int]
+    AWAIT_COMPLETION_FIELD_NUMBER: _ClassVar[int]
+    dump_id: int
+    await_completion: bool
+    def __init__(self, dump_id: _Optional[int] = ..., await_completion: _Optional[bool] = ...) -> None: ...
+
+class DumpStatusResponse(_message.Message):
+    __slots__ = ("state", "bytes_written", "error")
+    class State(int, metaclass=_enum_type_wrapper.EnumTypeWrapper):
+        __slots__ = ()
+        UNKNOWN: _ClassVar[DumpStatusResponse.State]
+        PENDING: _ClassVar[DumpStatusResponse.State]
+        WRITING: _ClassVar[DumpStatusResponse.State]
+        DONE: _ClassVar[DumpStatusResponse.State]
+        FAILED: _ClassVar[DumpStatusResponse.State]
+    UNKNOWN: DumpStatusResponse.State
+    PENDING: DumpStatusResponse.State
+    WRITING: DumpStatusResponse.State
+    DONE: DumpStatusResponse.State
+    FAILED: DumpStatusResponse.State
+    STATE_FIELD_NUMBER: _ClassVar[int]
+    BYTES_WRITTEN_FIELD_NUMBER: _ClassVar[int]
+    ERROR_FIELD_NUMBER: _ClassVar[int]
+    state: DumpStatusResponse.State
+    bytes_written: int
+    error: str
+    def __init__(self, state: _Optional[_Union[DumpStatusResponse.State, str]] = ..., bytes_written: _Optional[int] = ..., error: _Optional[str] = ...) -> None: ...
 
 class PurgeRequest(_message.Message):
     __slots__ = ()
@@ -70,3 +115,25 @@ class PurgeRequest(_message.Message):
 class PurgeResponse(_message.Message):
     __slots__ = ()
     def __init__(self) -> None: ...
+
+class SubscribeRequest(_message.Message):
+    __slots__ = ("process_id", "signals", "max_batch_size", "max_batch_delay_millis", "max_buffered_intervals")
+    PROCESS_ID_FIELD_NUMBER: _ClassVar[int]
+    SIGNALS_FIELD_NUMBER: _ClassVar[int]
+    MAX_BATCH_SIZE_FIELD_NUMBER: _ClassVar[int]
+    MAX_BATCH_DELAY_MILLIS_FIELD_NUMBER: _ClassVar[int]
+    MAX_BUFFERED_INTERVALS_FIELD_NUMBER: _ClassVar[int]
+    process_id: int
+    signals: _containers.RepeatedScalarFieldContainer[str]
+    max_batch_size: int
+    max_batch_delay_millis: int
+    max_buffered_intervals: int
+    def __init__(self, process_id: _Optional[int] = ..., signals: _Optional[_Iterable[str]] = ..., max_batch_size: _Optional[int] = ..., max_batch_delay_millis: _Optional[int] = ..., max_buffered_intervals: _Optional[int] = ...) -> None: ...
+
+class SubscribeResponse(_message.Message):
+    __slots__ = ("report", "dropped_intervals")
+    REPORT_FIELD_NUMBER: _ClassVar[int]
+    DROPPED_INTERVALS_FIELD_NUMBER: _ClassVar[int]
+    report: _signal_pb2.Report
+    dropped_intervals: int
+    def __init__(self, report: _Optional[_Union[_signal_pb2.Report, _Mapping]] = ..., dropped_intervals: _Optional[int] = ...) -> None: ...
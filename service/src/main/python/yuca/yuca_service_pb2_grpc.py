@@ -49,6 +49,11 @@ class YucaServiceStub(object):
                 request_serializer=yuca__service__pb2.DumpRequest.SerializeToString,
                 response_deserializer=yuca__service__pb2.DumpResponse.FromString,
                 _registered_method=True)
+        self.DumpStatus = channel.unary_unary(
+                '/yuca.service.YucaService/DumpStatus',
+                request_serializer=yuca__service__pb2.DumpStatusRequest.SerializeToString,
+                response_deserializer=yuca__service__pb2.DumpStatusResponse.FromString,
+                _registered_method=True)
         self.Read = channel.unary_unary(
                 '/yuca.service.YucaService/Read',
                 request_serializer=yuca__service__pb2.ReadRequest.SerializeToString,
@@ -59,6 +64,11 @@ class YucaServiceStub(object):
                 request_serializer=yuca__service__pb2.PurgeRequest.SerializeToString,
                 response_deserializer=yuca__service__pb2.PurgeResponse.FromString,
                 _registered_method=True)
+        self.Subscribe = channel.unary_stream(
+                '/yuca.service.YucaService/Subscribe',
+                request_serializer=yuca__service__pb2.SubscribeRequest.SerializeToString,
+                response_deserializer=yuca__service__pb2.SubscribeResponse.FromString,
+                _registered_method=True)
 
 
 class YucaServiceServicer(object):
@@ -82,6 +92,12 @@ class YucaServiceServicer(object):
         context.set_details('Method not implemented!')
         raise NotImplementedError('Method not implemented!')
 
+    def DumpStatus(self, request, context):
+        """Missing associated documentation comment in .proto file."""
+        context.set_code(grpc.StatusCode.UNIMPLEMENTED)
+        context.set_details('Method not implemented!')
+        raise NotImplementedError('Method not implemented!')
+
     def Read(self, request, context):
         """Missing associated documentation comment in .proto file."""
         context.set_code(grpc.StatusCode.UNIMPLEMENTED)
@@ -94,6 +110,12 @@ class YucaServiceServicer(object):
         context.set_details('Method not implemented!')
         raise NotImplementedError('Method not implemented!')
 
+    def Subscribe(self, request, context):
+        """Missing associated documentation comment in .proto file."""
+        context.set_code(grpc.StatusCode.UNIMPLEMENTED)
+        context.set_details('Method not implemented!')
+        raise NotImplementedError('Method not implemented!')
+
 
 def add_YucaServiceServicer_to_server(servicer, server):
     rpc_method_handlers = {
@@ -112,6 +134,11 @@ def add_YucaServiceServicer_to_server(servicer, server):
                     request_deserializer=yuca__service__pb2.DumpRequest.FromString,
                     response_serializer=yuca__service__pb2.DumpResponse.SerializeToString,
             ),
+            'DumpStatus': grpc.unary_unary_rpc_method_handler(
+                    servicer.DumpStatus,
+                    request_deserializer=yuca__service__pb2.DumpStatusRequest.FromString,
+                    response_serializer=yuca__service__pb2.DumpStatusResponse.SerializeToString,
+            ),
             'Read': grpc.unary_unary_rpc_method_handler(
                     servicer.Read,
                     request_deserializer=yuca__service__pb2.ReadRequest.FromString,
@@ -122,6 +149,11 @@ def add_YucaServiceServicer_to_server(servicer, server):
                     request_deserializer=yuca__service__pb2.PurgeRequest.FromString,
                     response_serializer=yuca__service__pb2.PurgeResponse.SerializeToString,
             ),
+            'Subscribe': grpc.unary_stream_rpc_method_handler(
+                    servicer.Subscribe,
+                    request_deserializer=yuca__service__pb2.SubscribeRequest.FromString,
+                    response_serializer=yuca__service__pb2.SubscribeResponse.SerializeToString,
+            ),
     }
     generic_handler = grpc.method_handlers_generic_handler(
             'yuca.service.YucaService', rpc_method_handlers)
@@ -214,6 +246,33 @@ class YucaService(object):
             metadata,
             _registered_method=True)
 
+    @staticmethod
+    def DumpStatus(request,
+            target,
+            options=(),
+            channel_credentials=None,
+            call_credentials=None,
+            insecure=False,
+            compression=None,
+            wait_for_ready=None,
+            timeout=None,
+            metadata=None):
+        return grpc.experimental.unary_unary(
+            request,
+            target,
+            '/yuca.service.YucaService/DumpStatus',
+            yuca__service__pb2.DumpStatusRequest.SerializeToString,
+            yuca__service__pb2.DumpStatusResponse.FromString,
+            options,
+            channel_credentials,
+            insecure,
+            call_credentials,
+            compression,
+            wait_for_ready,
+            timeout,
+            metadata,
+            _registered_method=True)
+
     @staticmethod
     def Read(request,
             target,
@@ -267,3 +326,30 @@ class YucaService(object):
             timeout,
             metadata,
             _registered_method=True)
+
+    @staticmethod
+    def Subscribe(request,
+            target,
+            options=(),
+            channel_credentials=None,
+            call_credentials=None,
+            insecure=False,
+            compression=None,
+            wait_for_ready=None,
+            timeout=None,
+            metadata=None):
+        return grpc.experimental.unary_stream(
+            request,
+            target,
+            '/yuca.service.YucaService/Subscribe',
+            yuca__service__pb2.SubscribeRequest.SerializeToString,
+            yuca__service__pb2.SubscribeResponse.FromString,
+            options,
+            channel_credentials,
+            insecure,
+            call_credentials,
+            compression,
+            wait_for_ready,
+            timeout,
+            metadata,
+            _registered_method=True)
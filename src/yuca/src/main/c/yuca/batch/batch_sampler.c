@@ -0,0 +1,399 @@
+#include <dirent.h>
+#include <fcntl.h>
+#include <jni.h>
+#include <stdint.h>
+#include <stdio.h>
+#include <stdlib.h>
+#include <string.h>
+#include <sys/time.h>
+#include <unistd.h>
+
+#include "batch_sampler.h"
+
+#define MAX_SOCKETS 64
+#define TASK_STAT_SIZE 1024
+#define PATH_LENGTH 384
+// fields after the task name, i.e. field n of proc(5) is at n - 3
+#define TASK_USER 11
+#define TASK_SYSTEM 12
+#define TASK_CPU 36
+#define NUM_THREADS 17
+#define RESCAN_PERIOD 100
+
+typedef struct {
+	jlong tid;
+	int fd;
+} task_t;
+
+typedef struct {
+	char task_path[64];
+	int process_fd;
+	int reads_since_scan;
+	int stat_fd;
+	char* stat_buffer;
+	size_t stat_capacity;
+	int socket_count;
+	int package_fds[MAX_SOCKETS];
+	int dram_fds[MAX_SOCKETS];
+	// sorted by tid so tasks that are still alive can reuse their descriptors
+	task_t* tasks;
+	int task_count;
+	int task_capacity;
+} batch_sampler_t;
+
+static int
+compare_tasks(const void* first, const void* second) {
+	jlong a = ((const task_t*) first)->tid;
+	jlong b = ((const task_t*) second)->tid;
+	return (a > b) - (a < b);
+}
+
+static int
+is_digit(char c) {
+	return c >= '0' && c <= '9';
+}
+
+static jlong
+parse_long(const char* buffer, ssize_t* position, ssize_t limit) {
+	jlong value = 0;
+	while (*position < limit && is_digit(buffer[*position])) {
+		value = 10 * value + (buffer[(*position)++] - '0');
+	}
+	return value;
+}
+
+static jlong
+read_counter(int fd) {
+	char buffer[32];
+	ssize_t length = fd < 0 ? -1 : pread(fd, buffer, sizeof(buffer), 0);
+	ssize_t position = 0;
+	return length > 0 ? parse_long(buffer, &position, length) : 0;
+}
+
+static void
+open_powercap(batch_sampler_t* sampler) {
+	char path[128];
+	sampler->socket_count = 0;
+	for (int socket = 0; socket < MAX_SOCKETS; socket++) {
+		snprintf(path, sizeof(path),
+			"/sys/devices/virtual/powercap/intel-rapl/intel-rapl:%d/energy_uj", socket);
+		int package_fd = open(path, O_RDONLY);
+		if (package_fd < 0) {
+			break;
+		}
+		snprintf(path, sizeof(path),
+			"/sys/devices/virtual/powercap/intel-rapl/intel-rapl:%d/intel-rapl:%d:0/energy_uj",
+			socket, socket);
+		sampler->package_fds[socket] = package_fd;
+		sampler->dram_fds[socket] = open(path, O_RDONLY);
+		sampler->socket_count++;
+	}
+}
+
+// reads /proc/stat from the start, growing the buffer until the whole file fits
+static ssize_t
+read_stat(batch_sampler_t* sampler) {
+	while (1) {
+		ssize_t length = 0;
+		while (length < (ssize_t) sampler->stat_capacity) {
+			ssize_t n = pread(
+				sampler->stat_fd, sampler->stat_buffer + length, sampler->stat_capacity - length, length);
+			if (n < 0) {
+				return -1;
+			} else if (n == 0) {
+				return length;
+			}
+			length += n;
+		}
+		char* buffer = realloc(sampler->stat_buffer, 2 * sampler->stat_capacity);
+		if (buffer == NULL) {
+			return -1;
+		}
+		sampler->stat_buffer = buffer;
+		sampler->stat_capacity *= 2;
+	}
+}
+
+// parses the "cpuN" lines into the output, returning the number of cpus or -1 if out of room
+static int
+write_cpus(const char* buffer, ssize_t limit, jlong* output, int capacity) {
+	ssize_t position = 0;
+	int count = 0;
+	while (position + 3 < limit && strncmp(buffer + position, "cpu", 3) == 0) {
+		position += 3;
+		if (buffer[position] != ' ') {
+			if (BATCH_CPU_LENGTH * (count + 1) > capacity) {
+				return -1;
+			}
+			jlong* cpu = output + BATCH_CPU_LENGTH * count++;
+			memset(cpu, 0, BATCH_CPU_LENGTH * sizeof(jlong));
+			cpu[0] = parse_long(buffer, &position, limit);
+			int field = 1;
+			while (position < limit && buffer[position] != '\n') {
+				if (!is_digit(buffer[position])) {
+					position++;
+				} else if (field < BATCH_CPU_LENGTH) {
+					cpu[field++] = parse_long(buffer, &position, limit);
+				} else {
+					parse_long(buffer, &position, limit);
+				}
+			}
+		}
+		while (position < limit && buffer[position] != '\n') {
+			position++;
+		}
+		position++;
+	}
+	return count;
+}
+
+// hands a descriptor taken by a failed scan back to the task it was taken from
+static void
+restore_task(batch_sampler_t* sampler, task_t* task) {
+	task_t* cached = bsearch(
+		task, sampler->tasks, sampler->task_count, sizeof(task_t), compare_tasks);
+	if (cached != NULL) {
+		cached->fd = task->fd;
+	} else {
+		close(task->fd);
+	}
+}
+
+// lists the task directory, reusing the descriptors of tasks we already had open. returns 0 if
+// the new list couldn't be allocated, in which case the old one is kept
+static int
+refresh_tasks(batch_sampler_t* sampler) {
+	sampler->reads_since_scan = 0;
+	DIR* directory = opendir(sampler->task_path);
+	if (directory == NULL) {
+		for (int i = 0; i < sampler->task_count; i++) {
+			close(sampler->tasks[i].fd);
+		}
+		sampler->task_count = 0;
+		return 1;
+	}
+
+	int capacity = sampler->task_count > 16 ? 2 * sampler->task_count : 32;
+	task_t* tasks = malloc(capacity * sizeof(task_t));
+	if (tasks == NULL) {
+		closedir(directory);
+		return 0;
+	}
+	int count = 0;
+	char path[PATH_LENGTH];
+	struct dirent* entry;
+	while ((entry = readdir(directory)) != NULL) {
+		if (!is_digit(entry->d_name[0])) {
+			continue;
+		}
+		task_t task;
+		task.tid = strtoll(entry->d_name, NULL, 10);
+		task_t* cached = bsearch(
+			&task, sampler->tasks, sampler->task_count, sizeof(task_t), compare_tasks);
+		if (cached != NULL) {
+			task.fd = cached->fd;
+			cached->fd = -1;
+		} else {
+			snprintf(path, sizeof(path), "%s/%s/stat", sampler->task_path, entry->d_name);
+			task.fd = open(path, O_RDONLY);
+			if (task.fd < 0) {
+				continue;
+			}
+		}
+		if (count == capacity) {
+			task_t* grown = realloc(tasks, 2 * capacity * sizeof(task_t));
+			if (grown == NULL) {
+				closedir(directory);
+				restore_task(sampler, &task);
+				for (int i = 0; i < count; i++) {
+					restore_task(sampler, &tasks[i]);
+				}
+				free(tasks);
+				return 0;
+			}
+			tasks = grown;
+			capacity *= 2;
+		}
+		tasks[count++] = task;
+	}
+	closedir(directory);
+
+	for (int i = 0; i < sampler->task_count; i++) {
+		if (sampler->tasks[i].fd >= 0) {
+			close(sampler->tasks[i].fd);
+		}
+	}
+	free(sampler->tasks);
+	qsort(tasks, count, sizeof(task_t), compare_tasks);
+	sampler->tasks = tasks;
+	sampler->task_count = count;
+	sampler->task_capacity = capacity;
+	return 1;
+}
+
+// parses the numeric fields after the name of a stat line up to the last field, returning 0 if
+// the file couldn't be read or was cut short
+static int
+read_fields(int fd, jlong* fields, int last_field) {
+	char buffer[TASK_STAT_SIZE];
+	ssize_t limit = pread(fd, buffer, sizeof(buffer), 0);
+	if (limit <= 0) {
+		return 0;
+	}
+	ssize_t position = limit - 1;
+	while (position >= 0 && buffer[position] != ')') {
+		position--;
+	}
+	if (position < 0) {
+		return 0;
+	}
+	position++;
+
+	int field = -1;
+	while (position < limit && field <= last_field) {
+		if (buffer[position] == ' ') {
+			position++;
+			field++;
+		} else if (is_digit(buffer[position])) {
+			fields[field] = parse_long(buffer, &position, limit);
+			if (field == last_field) {
+				return 1;
+			}
+		} else {
+			position++;
+		}
+	}
+	return 0;
+}
+
+// checks the process's thread count against the tasks we are tracking
+static int
+needs_rescan(batch_sampler_t* sampler) {
+	jlong fields[NUM_THREADS + 1];
+	if (sampler->reads_since_scan >= RESCAN_PERIOD) {
+		return 1;
+	}
+	if (sampler->process_fd < 0 || !read_fields(sampler->process_fd, fields, NUM_THREADS)) {
+		// the process is gone, so let the tasks fail on their own
+		return 0;
+	}
+	return fields[NUM_THREADS] != sampler->task_count;
+}
+
+// reads a task's stat into the output, returning 0 if the task is gone
+static int
+write_task(task_t* task, jlong* output) {
+	jlong fields[TASK_CPU + 1];
+	if (!read_fields(task->fd, fields, TASK_CPU)) {
+		return 0;
+	}
+	output[0] = task->tid;
+	output[1] = fields[TASK_CPU];
+	output[2] = fields[TASK_USER];
+	output[3] = fields[TASK_SYSTEM];
+	return 1;
+}
+
+JNIEXPORT jlong JNICALL
+Java_yuca_linux_batch_NativeBatchSampler_openNative(JNIEnv *env, jclass jcls, jlong pid) {
+	batch_sampler_t* sampler = calloc(1, sizeof(batch_sampler_t));
+	if (sampler == NULL) {
+		return 0;
+	}
+	char path[PATH_LENGTH];
+	snprintf(path, sizeof(path), "/proc/%ld/stat", (long) pid);
+	sampler->process_fd = open(path, O_RDONLY);
+	snprintf(sampler->task_path, sizeof(sampler->task_path), "/proc/%ld/task", (long) pid);
+	sampler->stat_fd = open("/proc/stat", O_RDONLY);
+	sampler->stat_capacity = 16384;
+	sampler->stat_buffer = malloc(sampler->stat_capacity);
+	if (sampler->stat_fd < 0 || sampler->stat_buffer == NULL) {
+		Java_yuca_linux_batch_NativeBatchSampler_closeNative(env, jcls, (jlong) sampler);
+		return 0;
+	}
+	open_powercap(sampler);
+	return (jlong) sampler;
+}
+
+JNIEXPORT jint JNICALL
+Java_yuca_linux_batch_NativeBatchSampler_sampleNative(
+		JNIEnv *env, jclass jcls, jlong handle, jobject buffer) {
+	batch_sampler_t* sampler = (batch_sampler_t*) handle;
+	jlong* output = (*env)->GetDirectBufferAddress(env, buffer);
+	int capacity = (*env)->GetDirectBufferCapacity(env, buffer) / sizeof(jlong);
+	if (output == NULL || capacity < BATCH_HEADER_LENGTH) {
+		return -BATCH_HEADER_LENGTH;
+	}
+
+	struct timeval now;
+	gettimeofday(&now, 0);
+	output[0] = now.tv_sec * 1000000L + now.tv_usec;
+	int length = BATCH_HEADER_LENGTH;
+
+	ssize_t stat_length = read_stat(sampler);
+	int cpu_count = stat_length < 0
+		? 0
+		: write_cpus(sampler->stat_buffer, stat_length, output + length, capacity - length);
+	if (cpu_count < 0) {
+		// ask for room for twice as many cpus as the buffer held
+		return -(2 * capacity);
+	}
+	output[1] = cpu_count;
+	length += BATCH_CPU_LENGTH * cpu_count;
+
+	if (length + BATCH_SOCKET_LENGTH * sampler->socket_count > capacity) {
+		return -(length + BATCH_SOCKET_LENGTH * sampler->socket_count);
+	}
+	for (int socket = 0; socket < sampler->socket_count; socket++) {
+		output[length++] = read_counter(sampler->package_fds[socket]);
+		output[length++] = read_counter(sampler->dram_fds[socket]);
+	}
+	output[2] = sampler->socket_count;
+
+	if (needs_rescan(sampler) && !refresh_tasks(sampler)) {
+		// try the scan again on the next read
+		sampler->reads_since_scan = RESCAN_PERIOD;
+		return 0;
+	}
+	sampler->reads_since_scan++;
+	if (length + BATCH_TASK_LENGTH * sampler->task_count > capacity) {
+		return -(length + BATCH_TASK_LENGTH * sampler->task_count);
+	}
+	int task_count = 0;
+	for (int i = 0; i < sampler->task_count; i++) {
+		task_count += write_task(&sampler->tasks[i], output + length + BATCH_TASK_LENGTH * task_count);
+	}
+	if (task_count < sampler->task_count) {
+		// a task terminated so rescan on the next read
+		sampler->reads_since_scan = RESCAN_PERIOD;
+	}
+	output[3] = task_count;
+	length += BATCH_TASK_LENGTH * task_count;
+	return length;
+}
+
+JNIEXPORT void JNICALL
+Java_yuca_linux_batch_NativeBatchSampler_closeNative(JNIEnv *env, jclass jcls, jlong handle) {
+	batch_sampler_t* sampler = (batch_sampler_t*) handle;
+	if (sampler == NULL) {
+		return;
+	}
+	if (sampler->stat_fd >= 0) {
+		close(sampler->stat_fd);
+	}
+	if (sampler->process_fd >= 0) {
+		close(sampler->process_fd);
+	}
+	for (int socket = 0; socket < sampler->socket_count; socket++) {
+		close(sampler->package_fds[socket]);
+		if (sampler->dram_fds[socket] >= 0) {
+			close(sampler->dram_fds[socket]);
+		}
+	}
+	for (int i = 0; i < sampler->task_count; i++) {
+		close(sampler->tasks[i].fd);
+	}
+	free(sampler->tasks);
+	free(sampler->stat_buffer);
+	free(sampler);
+}
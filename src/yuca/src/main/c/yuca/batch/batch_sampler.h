@@ -0,0 +1,25 @@
+#include <jni.h>
+
+#ifndef _Included_yuca_linux_batch_NativeBatchSampler
+#define _Included_yuca_linux_batch_NativeBatchSampler
+
+// layout of the sample buffer, as longs in native byte order:
+//   [timestamp_us, cpu_count, socket_count, task_count,
+//    cpu_count x (cpu, user, nice, system, idle, iowait, irq, softirq, steal, guest, guest_nice),
+//    socket_count x (package_uj, dram_uj),
+//    task_count x (tid, cpu, utime, stime)]
+#define BATCH_HEADER_LENGTH 4
+#define BATCH_CPU_LENGTH 11
+#define BATCH_SOCKET_LENGTH 2
+#define BATCH_TASK_LENGTH 4
+
+JNIEXPORT jlong JNICALL Java_yuca_linux_batch_NativeBatchSampler_openNative
+  (JNIEnv *, jclass, jlong);
+
+JNIEXPORT jint JNICALL Java_yuca_linux_batch_NativeBatchSampler_sampleNative
+  (JNIEnv *, jclass, jlong, jobject);
+
+JNIEXPORT void JNICALL Java_yuca_linux_batch_NativeBatchSampler_closeNative
+  (JNIEnv *, jclass, jlong);
+
+#endif
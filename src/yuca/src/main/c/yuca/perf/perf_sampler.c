@@ -0,0 +1,347 @@
+#include <dirent.h>
+#include <errno.h>
+#include <fcntl.h>
+#include <jni.h>
+#include <linux/perf_event.h>
+#include <stdint.h>
+#include <stdio.h>
+#include <stdlib.h>
+#include <string.h>
+#include <sys/syscall.h>
+#include <unistd.h>
+
+#include "perf_sampler.h"
+
+#define TASK_STAT_SIZE 1024
+#define PATH_LENGTH 384
+// fields after the task name, i.e. field n of proc(5) is at n - 3
+#define TASK_CPU 36
+#define NUM_THREADS 17
+#define RESCAN_PERIOD 100
+// the leader and up to two hardware counters
+#define MAX_GROUP_SIZE 3
+
+typedef struct {
+	jlong tid;
+	// the task-clock leader; the hardware counters are read through it
+	int group_fd;
+	int cycles_fd;
+	int instructions_fd;
+	// only reread for the cpu the task last ran on when its task-clock moved
+	int stat_fd;
+	jlong task_clock;
+	jlong cpu;
+} task_t;
+
+typedef struct {
+	char task_path[64];
+	int process_fd;
+	int reads_since_scan;
+	// set once an open is refused, i.e. by perf_event_paranoid
+	int exclude_kernel;
+	// -1 until the first task tries to open them
+	int has_hardware;
+	// sorted by tid so tasks that are still alive can reuse their descriptors
+	task_t* tasks;
+	int task_count;
+} perf_sampler_t;
+
+static int
+compare_tasks(const void* first, const void* second) {
+	jlong a = ((const task_t*) first)->tid;
+	jlong b = ((const task_t*) second)->tid;
+	return (a > b) - (a < b);
+}
+
+static int
+is_digit(char c) {
+	return c >= '0' && c <= '9';
+}
+
+static jlong
+parse_long(const char* buffer, ssize_t* position, ssize_t limit) {
+	jlong value = 0;
+	while (*position < limit && is_digit(buffer[*position])) {
+		value = 10 * value + (buffer[(*position)++] - '0');
+	}
+	return value;
+}
+
+// parses the numeric fields after the name of a stat line up to the last field, returning 0 if
+// the file couldn't be read or was cut short
+static int
+read_fields(int fd, jlong* fields, int last_field) {
+	char buffer[TASK_STAT_SIZE];
+	ssize_t limit = fd < 0 ? -1 : pread(fd, buffer, sizeof(buffer), 0);
+	if (limit <= 0) {
+		return 0;
+	}
+	ssize_t position = limit - 1;
+	while (position >= 0 && buffer[position] != ')') {
+		position--;
+	}
+	if (position < 0) {
+		return 0;
+	}
+	position++;
+
+	int field = -1;
+	while (position < limit && field <= last_field) {
+		if (buffer[position] == ' ') {
+			position++;
+			field++;
+		} else if (is_digit(buffer[position])) {
+			fields[field] = parse_long(buffer, &position, limit);
+			if (field == last_field) {
+				return 1;
+			}
+		} else {
+			position++;
+		}
+	}
+	return 0;
+}
+
+static int
+open_counter(perf_sampler_t* sampler, jlong tid, uint32_t type, uint64_t config, int group_fd) {
+	struct perf_event_attr attr;
+	memset(&attr, 0, sizeof(attr));
+	attr.size = sizeof(attr);
+	attr.type = type;
+	attr.config = config;
+	attr.read_format =
+		PERF_FORMAT_GROUP | PERF_FORMAT_TOTAL_TIME_ENABLED | PERF_FORMAT_TOTAL_TIME_RUNNING;
+	attr.exclude_kernel = sampler->exclude_kernel;
+	attr.exclude_hv = sampler->exclude_kernel;
+	int fd = syscall(SYS_perf_event_open, &attr, (pid_t) tid, -1, group_fd, 0);
+	if (fd < 0 && (errno == EACCES || errno == EPERM) && !sampler->exclude_kernel) {
+		// kernel counting isn't allowed, so count user time only from here on
+		sampler->exclude_kernel = 1;
+		return open_counter(sampler, tid, type, config, group_fd);
+	}
+	return fd;
+}
+
+static void
+close_task(task_t* task) {
+	if (task->cycles_fd >= 0) {
+		close(task->cycles_fd);
+	}
+	if (task->instructions_fd >= 0) {
+		close(task->instructions_fd);
+	}
+	if (task->group_fd >= 0) {
+		close(task->group_fd);
+	}
+	if (task->stat_fd >= 0) {
+		close(task->stat_fd);
+	}
+}
+
+// opens a task's counters as a group, returning 0 if the task-clock couldn't be opened
+static int
+open_task(perf_sampler_t* sampler, task_t* task) {
+	char path[PATH_LENGTH];
+	task->cycles_fd = -1;
+	task->instructions_fd = -1;
+	task->task_clock = -1;
+	task->cpu = 0;
+	task->group_fd =
+		open_counter(sampler, task->tid, PERF_TYPE_SOFTWARE, PERF_COUNT_SW_TASK_CLOCK, -1);
+	if (task->group_fd < 0) {
+		return 0;
+	}
+	if (sampler->has_hardware != 0) {
+		task->cycles_fd = open_counter(
+			sampler, task->tid, PERF_TYPE_HARDWARE, PERF_COUNT_HW_CPU_CYCLES, task->group_fd);
+		task->instructions_fd = open_counter(
+			sampler, task->tid, PERF_TYPE_HARDWARE, PERF_COUNT_HW_INSTRUCTIONS, task->group_fd);
+		if (task->cycles_fd < 0 || task->instructions_fd < 0) {
+			// there's no pmu (i.e. in a vm) so stop trying
+			if (task->cycles_fd >= 0) {
+				close(task->cycles_fd);
+				task->cycles_fd = -1;
+			}
+			if (task->instructions_fd >= 0) {
+				close(task->instructions_fd);
+				task->instructions_fd = -1;
+			}
+			sampler->has_hardware = 0;
+		} else {
+			sampler->has_hardware = 1;
+		}
+	}
+	snprintf(path, sizeof(path), "%s/%ld/stat", sampler->task_path, (long) task->tid);
+	task->stat_fd = open(path, O_RDONLY);
+	return 1;
+}
+
+// lists the task directory, reusing the counters of tasks we already had open
+static void
+refresh_tasks(perf_sampler_t* sampler) {
+	sampler->reads_since_scan = 0;
+	DIR* directory = opendir(sampler->task_path);
+	if (directory == NULL) {
+		for (int i = 0; i < sampler->task_count; i++) {
+			close_task(&sampler->tasks[i]);
+		}
+		sampler->task_count = 0;
+		return;
+	}
+
+	int capacity = sampler->task_count > 16 ? 2 * sampler->task_count : 32;
+	task_t* tasks = malloc(capacity * sizeof(task_t));
+	int count = 0;
+	struct dirent* entry;
+	while (tasks != NULL && (entry = readdir(directory)) != NULL) {
+		if (!is_digit(entry->d_name[0])) {
+			continue;
+		}
+		task_t task;
+		task.tid = strtoll(entry->d_name, NULL, 10);
+		task_t* cached = bsearch(
+			&task, sampler->tasks, sampler->task_count, sizeof(task_t), compare_tasks);
+		if (cached != NULL) {
+			task = *cached;
+			cached->group_fd = -1;
+			cached->cycles_fd = -1;
+			cached->instructions_fd = -1;
+			cached->stat_fd = -1;
+		} else if (!open_task(sampler, &task)) {
+			continue;
+		}
+		if (count == capacity) {
+			capacity *= 2;
+			task_t* grown = realloc(tasks, capacity * sizeof(task_t));
+			if (grown == NULL) {
+				close_task(&task);
+				break;
+			}
+			tasks = grown;
+		}
+		tasks[count++] = task;
+	}
+	closedir(directory);
+
+	for (int i = 0; i < sampler->task_count; i++) {
+		close_task(&sampler->tasks[i]);
+	}
+	free(sampler->tasks);
+	qsort(tasks, count, sizeof(task_t), compare_tasks);
+	sampler->tasks = tasks;
+	sampler->task_count = tasks == NULL ? 0 : count;
+}
+
+// checks the process's thread count against the tasks we are tracking
+static int
+needs_rescan(perf_sampler_t* sampler) {
+	jlong fields[NUM_THREADS + 1];
+	if (sampler->reads_since_scan >= RESCAN_PERIOD) {
+		return 1;
+	}
+	if (!read_fields(sampler->process_fd, fields, NUM_THREADS)) {
+		// the process is gone, so let the tasks fail on their own
+		return 0;
+	}
+	return fields[NUM_THREADS] != sampler->task_count;
+}
+
+// reads a task's counter group into the output, returning 0 if the task is gone
+static int
+write_task(task_t* task, jlong* output) {
+	// nr, time_enabled, time_running, then a value for each counter in the group
+	uint64_t values[3 + MAX_GROUP_SIZE];
+	ssize_t length = read(task->group_fd, values, sizeof(values));
+	if (length < (ssize_t) (4 * sizeof(uint64_t)) || values[0] < 1) {
+		return 0;
+	}
+	if ((jlong) values[3] != task->task_clock) {
+		// the task ran since the last read, so it may have moved
+		jlong fields[TASK_CPU + 1];
+		if (read_fields(task->stat_fd, fields, TASK_CPU)) {
+			task->cpu = fields[TASK_CPU];
+		}
+		task->task_clock = values[3];
+	}
+	output[0] = task->tid;
+	output[1] = task->cpu;
+	output[2] = values[3];
+	output[3] = values[0] > 1 ? (jlong) values[4] : -1;
+	output[4] = values[0] > 2 ? (jlong) values[5] : -1;
+	output[5] = values[1];
+	output[6] = values[2];
+	return 1;
+}
+
+JNIEXPORT jlong JNICALL
+Java_yuca_linux_perf_PerfEventReader_openNative(JNIEnv *env, jclass jcls, jlong pid) {
+	perf_sampler_t* sampler = calloc(1, sizeof(perf_sampler_t));
+	if (sampler == NULL) {
+		return 0;
+	}
+	char path[PATH_LENGTH];
+	snprintf(path, sizeof(path), "/proc/%ld/stat", (long) pid);
+	sampler->process_fd = open(path, O_RDONLY);
+	snprintf(sampler->task_path, sizeof(sampler->task_path), "/proc/%ld/task", (long) pid);
+	sampler->has_hardware = -1;
+
+	// make sure we can count the main thread before handing out a handle
+	task_t probe;
+	probe.tid = pid;
+	if (sampler->process_fd < 0 || !open_task(sampler, &probe)) {
+		Java_yuca_linux_perf_PerfEventReader_closeNative(env, jcls, (jlong) sampler);
+		return 0;
+	}
+	close_task(&probe);
+	refresh_tasks(sampler);
+	return (jlong) sampler;
+}
+
+JNIEXPORT jint JNICALL
+Java_yuca_linux_perf_PerfEventReader_sampleNative(
+		JNIEnv *env, jclass jcls, jlong handle, jobject buffer) {
+	perf_sampler_t* sampler = (perf_sampler_t*) handle;
+	jlong* output = (*env)->GetDirectBufferAddress(env, buffer);
+	int capacity = (*env)->GetDirectBufferCapacity(env, buffer) / sizeof(jlong);
+	if (output == NULL || capacity < PERF_HEADER_LENGTH) {
+		return -PERF_HEADER_LENGTH;
+	}
+
+	if (needs_rescan(sampler)) {
+		refresh_tasks(sampler);
+	}
+	sampler->reads_since_scan++;
+	int length = PERF_HEADER_LENGTH;
+	if (length + PERF_TASK_LENGTH * sampler->task_count > capacity) {
+		return -(length + PERF_TASK_LENGTH * sampler->task_count);
+	}
+	int task_count = 0;
+	for (int i = 0; i < sampler->task_count; i++) {
+		jlong* task_output = output + length + PERF_TASK_LENGTH * task_count;
+		task_count += write_task(&sampler->tasks[i], task_output);
+	}
+	if (task_count < sampler->task_count) {
+		// a task terminated so rescan on the next read
+		sampler->reads_since_scan = RESCAN_PERIOD;
+	}
+	output[0] = task_count;
+	output[1] = sampler->has_hardware == 1;
+	length += PERF_TASK_LENGTH * task_count;
+	return length;
+}
+
+JNIEXPORT void JNICALL
+Java_yuca_linux_perf_PerfEventReader_closeNative(JNIEnv *env, jclass jcls, jlong handle) {
+	perf_sampler_t* sampler = (perf_sampler_t*) handle;
+	if (sampler == NULL) {
+		return;
+	}
+	if (sampler->process_fd >= 0) {
+		close(sampler->process_fd);
+	}
+	for (int i = 0; i < sampler->task_count; i++) {
+		close_task(&sampler->tasks[i]);
+	}
+	free(sampler->tasks);
+	free(sampler);
+}
@@ -0,0 +1,21 @@
+#include <jni.h>
+
+#ifndef _Included_yuca_linux_perf_PerfEventReader
+#define _Included_yuca_linux_perf_PerfEventReader
+
+// layout of the sample buffer, as longs in native byte order:
+//   [task_count, has_hardware,
+//    task_count x (tid, cpu, task_clock_ns, cycles, instructions, time_enabled, time_running)]
+#define PERF_HEADER_LENGTH 2
+#define PERF_TASK_LENGTH 7
+
+JNIEXPORT jlong JNICALL Java_yuca_linux_perf_PerfEventReader_openNative
+  (JNIEnv *, jclass, jlong);
+
+JNIEXPORT jint JNICALL Java_yuca_linux_perf_PerfEventReader_sampleNative
+  (JNIEnv *, jclass, jlong, jobject);
+
+JNIEXPORT void JNICALL Java_yuca_linux_perf_PerfEventReader_closeNative
+  (JNIEnv *, jclass, jlong);
+
+#endif
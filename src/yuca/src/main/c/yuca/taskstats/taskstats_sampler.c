@@ -0,0 +1,633 @@
+#include <dirent.h>
+#include <errno.h>
+#include <fcntl.h>
+#include <jni.h>
+#include <linux/genetlink.h>
+#include <linux/netlink.h>
+#include <linux/taskstats.h>
+#include <stddef.h>
+#include <stdint.h>
+#include <stdio.h>
+#include <stdlib.h>
+#include <string.h>
+#include <sys/socket.h>
+#include <sys/time.h>
+#include <unistd.h>
+
+#include "taskstats_sampler.h"
+
+#define TASK_STAT_SIZE 1024
+#define PATH_LENGTH 384
+// fields after the task name, i.e. field n of proc(5) is at n - 3
+#define TASK_CPU 36
+#define NUM_THREADS 17
+#define RESCAN_PERIOD 100
+// taskstats are in microseconds while /proc is in USER_HZ, which is 100 on every platform
+#define MICROS_PER_JIFFY 10000
+// requests sent with each send; the replies are a few hundred bytes so they fit in the receive
+// buffer before we drain it
+#define REQUESTS_PER_SEND 128
+#define REQUEST_SIZE \
+	NLMSG_ALIGN(NLMSG_LENGTH(GENL_HDRLEN + NLA_HDRLEN + NLA_ALIGN(sizeof(uint32_t))))
+#define RECEIVE_SIZE 65536
+#define RECEIVE_TIMEOUT_US 100000
+
+typedef struct {
+	jlong tid;
+	jlong cpu;
+	jlong utime_us;
+	jlong stime_us;
+	// only read for the cpu the task last ran on, and only when the task ran
+	int stat_fd;
+	// set once the task is known to be gone
+	int is_gone;
+} task_t;
+
+typedef struct {
+	// queries the tasks
+	int fd;
+	// receives the stats of every task that exits on the machine, or -1 if we couldn't register
+	int exit_fd;
+	uint16_t family;
+	uint32_t seq;
+	char cpumask[32];
+	char task_path[64];
+	int process_fd;
+	int reads_since_scan;
+	// sorted by tid so tasks that are still alive can keep their state across rescans
+	task_t* tasks;
+	int task_count;
+	// tasks that exited since the last sample with their final times
+	task_t* exited;
+	int exited_count;
+	int exited_capacity;
+	char* requests;
+	uint64_t* replies;
+} taskstats_sampler_t;
+
+static int
+compare_tasks(const void* first, const void* second) {
+	jlong a = ((const task_t*) first)->tid;
+	jlong b = ((const task_t*) second)->tid;
+	return (a > b) - (a < b);
+}
+
+static int
+is_digit(char c) {
+	return c >= '0' && c <= '9';
+}
+
+static jlong
+parse_long(const char* buffer, ssize_t* position, ssize_t limit) {
+	jlong value = 0;
+	while (*position < limit && is_digit(buffer[*position])) {
+		value = 10 * value + (buffer[(*position)++] - '0');
+	}
+	return value;
+}
+
+// parses the numeric fields after the name of a stat line up to the last field, returning 0 if
+// the file couldn't be read or was cut short
+static int
+read_fields(int fd, jlong* fields, int last_field) {
+	char buffer[TASK_STAT_SIZE];
+	ssize_t limit = fd < 0 ? -1 : pread(fd, buffer, sizeof(buffer), 0);
+	if (limit <= 0) {
+		return 0;
+	}
+	ssize_t position = limit - 1;
+	while (position >= 0 && buffer[position] != ')') {
+		position--;
+	}
+	if (position < 0) {
+		return 0;
+	}
+	position++;
+
+	int field = -1;
+	while (position < limit && field <= last_field) {
+		if (buffer[position] == ' ') {
+			position++;
+			field++;
+		} else if (is_digit(buffer[position])) {
+			fields[field] = parse_long(buffer, &position, limit);
+			if (field == last_field) {
+				return 1;
+			}
+		} else {
+			position++;
+		}
+	}
+	return 0;
+}
+
+// writes a generic netlink request with a single attribute at the offset, returning its length
+static size_t
+write_request(
+		char* buffer, uint16_t type, uint8_t cmd, uint32_t seq,
+		uint16_t attr_type, const void* data, uint16_t length) {
+	struct nlmsghdr* header = (struct nlmsghdr*) buffer;
+	header->nlmsg_len = NLMSG_LENGTH(GENL_HDRLEN + NLA_HDRLEN + length);
+	header->nlmsg_type = type;
+	header->nlmsg_flags = NLM_F_REQUEST;
+	header->nlmsg_seq = seq;
+	header->nlmsg_pid = 0;
+	struct genlmsghdr* genl = NLMSG_DATA(header);
+	genl->cmd = cmd;
+	genl->version = TASKSTATS_GENL_VERSION;
+	genl->reserved = 0;
+	struct nlattr* attr = (struct nlattr*) ((char*) genl + GENL_HDRLEN);
+	attr->nla_type = attr_type;
+	attr->nla_len = NLA_HDRLEN + length;
+	memcpy((char*) attr + NLA_HDRLEN, data, length);
+	return NLMSG_ALIGN(header->nlmsg_len);
+}
+
+static int
+send_all(int fd, const char* buffer, size_t length) {
+	struct sockaddr_nl kernel;
+	memset(&kernel, 0, sizeof(kernel));
+	kernel.nl_family = AF_NETLINK;
+	while (length > 0) {
+		ssize_t sent = sendto(fd, buffer, length, 0, (struct sockaddr*) &kernel, sizeof(kernel));
+		if (sent < 0) {
+			if (errno == EINTR) {
+				continue;
+			}
+			return 0;
+		}
+		buffer += sent;
+		length -= sent;
+	}
+	return 1;
+}
+
+// returns the first attribute of a generic netlink message
+static struct nlattr*
+first_attr(struct nlmsghdr* header, int* remaining) {
+	*remaining = header->nlmsg_len - NLMSG_LENGTH(GENL_HDRLEN);
+	return (struct nlattr*) ((char*) NLMSG_DATA(header) + GENL_HDRLEN);
+}
+
+static int
+attr_ok(struct nlattr* attr, int remaining) {
+	return remaining >= NLA_HDRLEN && attr->nla_len >= NLA_HDRLEN && attr->nla_len <= remaining;
+}
+
+static struct nlattr*
+next_attr(struct nlattr* attr, int* remaining) {
+	*remaining -= NLA_ALIGN(attr->nla_len);
+	return (struct nlattr*) ((char*) attr + NLA_ALIGN(attr->nla_len));
+}
+
+// looks up the id of the taskstats family, returning 0 if it isn't there
+static uint16_t
+resolve_family(int fd, uint64_t* replies) {
+	char request[NLMSG_ALIGN(NLMSG_LENGTH(GENL_HDRLEN + NLA_HDRLEN + NLA_ALIGN(32)))];
+	size_t length = write_request(
+		request, GENL_ID_CTRL, CTRL_CMD_GETFAMILY, 0,
+		CTRL_ATTR_FAMILY_NAME, TASKSTATS_GENL_NAME, strlen(TASKSTATS_GENL_NAME) + 1);
+	if (!send_all(fd, request, length)) {
+		return 0;
+	}
+	ssize_t received = recv(fd, replies, RECEIVE_SIZE, 0);
+	struct nlmsghdr* header = (struct nlmsghdr*) replies;
+	if (received <= 0 || !NLMSG_OK(header, received) || header->nlmsg_type == NLMSG_ERROR) {
+		return 0;
+	}
+	int remaining;
+	for (struct nlattr* attr = first_attr(header, &remaining);
+			attr_ok(attr, remaining);
+			attr = next_attr(attr, &remaining)) {
+		if (attr->nla_type == CTRL_ATTR_FAMILY_ID) {
+			return *(uint16_t*) ((char*) attr + NLA_HDRLEN);
+		}
+	}
+	return 0;
+}
+
+static int
+open_socket(void) {
+	int fd = socket(AF_NETLINK, SOCK_RAW | SOCK_CLOEXEC, NETLINK_GENERIC);
+	if (fd < 0) {
+		return -1;
+	}
+	struct sockaddr_nl local;
+	memset(&local, 0, sizeof(local));
+	local.nl_family = AF_NETLINK;
+	if (bind(fd, (struct sockaddr*) &local, sizeof(local)) < 0) {
+		close(fd);
+		return -1;
+	}
+	return fd;
+}
+
+// pulls the tid and cpu times out of a taskstats reply, returning 0 if it doesn't have them
+static int
+parse_stats(struct nlmsghdr* header, jlong* tid, jlong* utime_us, jlong* stime_us) {
+	int found = 0;
+	int remaining;
+	for (struct nlattr* attr = first_attr(header, &remaining);
+			attr_ok(attr, remaining);
+			attr = next_attr(attr, &remaining)) {
+		if (attr->nla_type != TASKSTATS_TYPE_AGGR_PID) {
+			// exits of a whole process also carry the process's aggregate
+			continue;
+		}
+		int nested_remaining = attr->nla_len - NLA_HDRLEN;
+		for (struct nlattr* nested = (struct nlattr*) ((char*) attr + NLA_HDRLEN);
+				attr_ok(nested, nested_remaining);
+				nested = next_attr(nested, &nested_remaining)) {
+			char* data = (char*) nested + NLA_HDRLEN;
+			int length = nested->nla_len - NLA_HDRLEN;
+			if (nested->nla_type == TASKSTATS_TYPE_PID && length >= (int) sizeof(uint32_t)) {
+				*tid = *(uint32_t*) data;
+				found |= 1;
+			} else if (nested->nla_type == TASKSTATS_TYPE_STATS
+					&& length >= (int) offsetof(struct taskstats, ac_stime) + 8) {
+				// the struct grows with each version, so only read the fields we need
+				struct taskstats stats;
+				memset(&stats, 0, sizeof(stats));
+				memcpy(&stats, data, length < (int) sizeof(stats) ? length : (int) sizeof(stats));
+				*utime_us = stats.ac_utime;
+				*stime_us = stats.ac_stime;
+				found |= 2;
+			}
+		}
+	}
+	return found == 3;
+}
+
+static task_t*
+find_task(taskstats_sampler_t* sampler, jlong tid) {
+	task_t key;
+	key.tid = tid;
+	return bsearch(&key, sampler->tasks, sampler->task_count, sizeof(task_t), compare_tasks);
+}
+
+static void
+close_task(task_t* task) {
+	if (task->stat_fd >= 0) {
+		close(task->stat_fd);
+		task->stat_fd = -1;
+	}
+}
+
+// updates a task's times, rereading its cpu if it ran since the last update
+static void
+update_task(task_t* task, jlong utime_us, jlong stime_us) {
+	if (utime_us + stime_us != task->utime_us + task->stime_us) {
+		jlong fields[TASK_CPU + 1];
+		if (read_fields(task->stat_fd, fields, TASK_CPU)) {
+			task->cpu = fields[TASK_CPU];
+		}
+	}
+	task->utime_us = utime_us;
+	task->stime_us = stime_us;
+}
+
+// keeps the final times of a tracked task that exited so they are reported once
+static void
+add_exited(taskstats_sampler_t* sampler, task_t* task) {
+	if (sampler->exited_count == sampler->exited_capacity) {
+		int capacity = sampler->exited_capacity > 0 ? 2 * sampler->exited_capacity : 16;
+		task_t* grown = realloc(sampler->exited, capacity * sizeof(task_t));
+		if (grown == NULL) {
+			return;
+		}
+		sampler->exited = grown;
+		sampler->exited_capacity = capacity;
+	}
+	sampler->exited[sampler->exited_count++] = *task;
+}
+
+// drains the exit notifications, keeping the ones of the tasks we track
+static void
+drain_exits(taskstats_sampler_t* sampler) {
+	if (sampler->exit_fd < 0) {
+		return;
+	}
+	while (1) {
+		ssize_t received = recv(sampler->exit_fd, sampler->replies, RECEIVE_SIZE, MSG_DONTWAIT);
+		if (received < 0 && (errno == EINTR || errno == ENOBUFS)) {
+			// notifications were dropped because the machine is busy; the rest are still good
+			continue;
+		} else if (received <= 0) {
+			return;
+		}
+		int remaining = received;
+		for (struct nlmsghdr* header = (struct nlmsghdr*) sampler->replies;
+				NLMSG_OK(header, remaining);
+				header = NLMSG_NEXT(header, remaining)) {
+			jlong tid, utime_us, stime_us;
+			if (header->nlmsg_type != sampler->family
+					|| !parse_stats(header, &tid, &utime_us, &stime_us)) {
+				continue;
+			}
+			task_t* task = find_task(sampler, tid);
+			if (task != NULL && !task->is_gone) {
+				task->utime_us = utime_us;
+				task->stime_us = stime_us;
+				task->is_gone = 1;
+				add_exited(sampler, task);
+			}
+		}
+	}
+}
+
+// lists the task directory, keeping the state of tasks we already had
+static void
+refresh_tasks(taskstats_sampler_t* sampler) {
+	sampler->reads_since_scan = 0;
+	DIR* directory = opendir(sampler->task_path);
+	if (directory == NULL) {
+		for (int i = 0; i < sampler->task_count; i++) {
+			close_task(&sampler->tasks[i]);
+		}
+		sampler->task_count = 0;
+		return;
+	}
+
+	int capacity = sampler->task_count > 16 ? 2 * sampler->task_count : 32;
+	task_t* tasks = malloc(capacity * sizeof(task_t));
+	int count = 0;
+	struct dirent* entry;
+	while (tasks != NULL && (entry = readdir(directory)) != NULL) {
+		if (!is_digit(entry->d_name[0])) {
+			continue;
+		}
+		task_t task;
+		task.tid = strtoll(entry->d_name, NULL, 10);
+		task_t* cached = find_task(sampler, task.tid);
+		if (cached != NULL && !cached->is_gone) {
+			task = *cached;
+			cached->stat_fd = -1;
+		} else if (cached == NULL) {
+			char path[PATH_LENGTH];
+			snprintf(path, sizeof(path), "%s/%s/stat", sampler->task_path, entry->d_name);
+			task.stat_fd = open(path, O_RDONLY | O_CLOEXEC);
+			task.cpu = 0;
+			task.utime_us = -1;
+			task.stime_us = 0;
+			task.is_gone = 0;
+		} else {
+			// the task exited but hasn't been reaped yet
+			continue;
+		}
+		if (count == capacity) {
+			capacity *= 2;
+			task_t* grown = realloc(tasks, capacity * sizeof(task_t));
+			if (grown == NULL) {
+				close_task(&task);
+				break;
+			}
+			tasks = grown;
+		}
+		tasks[count++] = task;
+	}
+	closedir(directory);
+
+	for (int i = 0; i < sampler->task_count; i++) {
+		close_task(&sampler->tasks[i]);
+	}
+	free(sampler->tasks);
+	qsort(tasks, count, sizeof(task_t), compare_tasks);
+	sampler->tasks = tasks;
+	sampler->task_count = tasks == NULL ? 0 : count;
+}
+
+// checks the process's thread count against the tasks we are tracking
+static int
+needs_rescan(taskstats_sampler_t* sampler) {
+	jlong fields[NUM_THREADS + 1];
+	if (sampler->reads_since_scan >= RESCAN_PERIOD) {
+		return 1;
+	}
+	if (!read_fields(sampler->process_fd, fields, NUM_THREADS)) {
+		// the process is gone, so let the tasks fail on their own
+		return 0;
+	}
+	return fields[NUM_THREADS] != sampler->task_count;
+}
+
+// asks for the stats of tasks [start, end) with a single send and reads back every reply
+static void
+query_tasks(taskstats_sampler_t* sampler, int start, int end) {
+	size_t length = 0;
+	uint32_t first_seq = sampler->seq;
+	for (int i = start; i < end; i++) {
+		uint32_t tid = sampler->tasks[i].tid;
+		length += write_request(
+			sampler->requests + length, sampler->family, TASKSTATS_CMD_GET, sampler->seq++,
+			TASKSTATS_CMD_ATTR_PID, &tid, sizeof(tid));
+	}
+	if (!send_all(sampler->fd, sampler->requests, length)) {
+		return;
+	}
+
+	int pending = end - start;
+	while (pending > 0) {
+		ssize_t received = recv(sampler->fd, sampler->replies, RECEIVE_SIZE, 0);
+		if (received < 0 && errno == EINTR) {
+			continue;
+		} else if (received <= 0) {
+			// replies were dropped or timed out; those tasks keep their last times
+			return;
+		}
+		int remaining = received;
+		for (struct nlmsghdr* header = (struct nlmsghdr*) sampler->replies;
+				NLMSG_OK(header, remaining);
+				header = NLMSG_NEXT(header, remaining)) {
+			uint32_t index = header->nlmsg_seq - first_seq;
+			if (index >= (uint32_t) (end - start)) {
+				// a late reply to an earlier query
+				continue;
+			}
+			pending--;
+			task_t* task = &sampler->tasks[start + index];
+			jlong tid, utime_us, stime_us;
+			if (header->nlmsg_type == NLMSG_ERROR) {
+				// the task exited
+				task->is_gone = 1;
+			} else if (parse_stats(header, &tid, &utime_us, &stime_us) && tid == task->tid) {
+				update_task(task, utime_us, stime_us);
+			}
+		}
+	}
+}
+
+// listens for the exits of tasks on every cpu, leaving the exit socket closed if we can't
+static void
+register_exits(taskstats_sampler_t* sampler) {
+	struct timeval timeout = {0, RECEIVE_TIMEOUT_US};
+	long cpus = sysconf(_SC_NPROCESSORS_CONF);
+	snprintf(sampler->cpumask, sizeof(sampler->cpumask), "0-%ld", cpus > 0 ? cpus - 1 : 0);
+	sampler->exit_fd = open_socket();
+	if (sampler->exit_fd < 0) {
+		return;
+	}
+	size_t length = write_request(
+		sampler->requests, sampler->family, TASKSTATS_CMD_GET, 0,
+		TASKSTATS_CMD_ATTR_REGISTER_CPUMASK, sampler->cpumask, strlen(sampler->cpumask) + 1);
+	// ask for an ack since a registration doesn't otherwise get a reply
+	((struct nlmsghdr*) sampler->requests)->nlmsg_flags |= NLM_F_ACK;
+	int is_registered = 0;
+	if (setsockopt(sampler->exit_fd, SOL_SOCKET, SO_RCVTIMEO, &timeout, sizeof(timeout)) == 0
+			&& send_all(sampler->exit_fd, sampler->requests, length)) {
+		ssize_t received = recv(sampler->exit_fd, sampler->replies, RECEIVE_SIZE, 0);
+		struct nlmsghdr* header = (struct nlmsghdr*) sampler->replies;
+		is_registered = received > 0
+			&& NLMSG_OK(header, received)
+			&& header->nlmsg_type == NLMSG_ERROR
+			&& ((struct nlmsgerr*) NLMSG_DATA(header))->error == 0;
+	}
+	if (!is_registered) {
+		close(sampler->exit_fd);
+		sampler->exit_fd = -1;
+	}
+}
+
+static void
+write_task(const task_t* task, jlong* output) {
+	output[0] = task->tid;
+	output[1] = task->cpu;
+	output[2] = task->utime_us / MICROS_PER_JIFFY;
+	output[3] = task->stime_us / MICROS_PER_JIFFY;
+}
+
+JNIEXPORT jlong JNICALL
+Java_yuca_linux_taskstats_TaskstatsReader_openNative(JNIEnv *env, jclass jcls, jlong pid) {
+	taskstats_sampler_t* sampler = calloc(1, sizeof(taskstats_sampler_t));
+	if (sampler == NULL) {
+		return 0;
+	}
+	sampler->fd = -1;
+	sampler->exit_fd = -1;
+	sampler->process_fd = -1;
+	sampler->requests = malloc(REQUESTS_PER_SEND * REQUEST_SIZE);
+	sampler->replies = malloc(RECEIVE_SIZE);
+	if (sampler->requests == NULL || sampler->replies == NULL) {
+		Java_yuca_linux_taskstats_TaskstatsReader_closeNative(env, jcls, (jlong) sampler);
+		return 0;
+	}
+
+	// a reply that never comes shouldn't hang the sampling thread
+	struct timeval timeout = {0, RECEIVE_TIMEOUT_US};
+	sampler->fd = open_socket();
+	if (sampler->fd < 0
+			|| setsockopt(sampler->fd, SOL_SOCKET, SO_RCVTIMEO, &timeout, sizeof(timeout)) < 0
+			|| (sampler->family = resolve_family(sampler->fd, sampler->replies)) == 0) {
+		Java_yuca_linux_taskstats_TaskstatsReader_closeNative(env, jcls, (jlong) sampler);
+		return 0;
+	}
+
+	char path[PATH_LENGTH];
+	snprintf(path, sizeof(path), "/proc/%ld/stat", (long) pid);
+	sampler->process_fd = open(path, O_RDONLY | O_CLOEXEC);
+	snprintf(sampler->task_path, sizeof(sampler->task_path), "/proc/%ld/task", (long) pid);
+	if (sampler->process_fd < 0) {
+		Java_yuca_linux_taskstats_TaskstatsReader_closeNative(env, jcls, (jlong) sampler);
+		return 0;
+	}
+
+	// make sure we are allowed to query before handing out a handle, which needs CAP_NET_ADMIN
+	refresh_tasks(sampler);
+	int probe = sampler->task_count < REQUESTS_PER_SEND ? sampler->task_count : REQUESTS_PER_SEND;
+	query_tasks(sampler, 0, probe);
+	int answered = 0;
+	for (int i = 0; i < probe; i++) {
+		answered |= sampler->tasks[i].utime_us >= 0;
+	}
+	if (!answered) {
+		Java_yuca_linux_taskstats_TaskstatsReader_closeNative(env, jcls, (jlong) sampler);
+		return 0;
+	}
+
+	register_exits(sampler);
+	return (jlong) sampler;
+}
+
+JNIEXPORT jint JNICALL
+Java_yuca_linux_taskstats_TaskstatsReader_sampleNative(
+		JNIEnv *env, jclass jcls, jlong handle, jobject buffer) {
+	taskstats_sampler_t* sampler = (taskstats_sampler_t*) handle;
+	jlong* output = (*env)->GetDirectBufferAddress(env, buffer);
+	int capacity = (*env)->GetDirectBufferCapacity(env, buffer) / sizeof(jlong);
+	if (output == NULL || capacity < TASKSTATS_HEADER_LENGTH) {
+		return -TASKSTATS_HEADER_LENGTH;
+	}
+
+	// exits that were pushed before the rescan would otherwise be missed once their task is gone
+	drain_exits(sampler);
+	if (needs_rescan(sampler)) {
+		refresh_tasks(sampler);
+	}
+	int needed = TASKSTATS_HEADER_LENGTH
+		+ TASKSTATS_TASK_LENGTH * (sampler->task_count + sampler->exited_count);
+	if (needed > capacity) {
+		return -needed;
+	}
+	sampler->reads_since_scan++;
+
+	for (int start = 0; start < sampler->task_count; start += REQUESTS_PER_SEND) {
+		int end = start + REQUESTS_PER_SEND;
+		query_tasks(sampler, start, end < sampler->task_count ? end : sampler->task_count);
+	}
+	drain_exits(sampler);
+
+	int length = TASKSTATS_HEADER_LENGTH;
+	int task_count = 0;
+	int live_count = 0;
+	for (int i = 0; i < sampler->task_count; i++) {
+		task_t* task = &sampler->tasks[i];
+		if (task->is_gone) {
+			close_task(task);
+			continue;
+		}
+		if (task->utime_us >= 0) {
+			write_task(task, output + length + TASKSTATS_TASK_LENGTH * task_count++);
+		}
+		sampler->tasks[live_count++] = *task;
+	}
+	if (live_count < sampler->task_count) {
+		// a task terminated so rescan on the next read
+		sampler->reads_since_scan = RESCAN_PERIOD;
+	}
+	sampler->task_count = live_count;
+	for (int i = 0; i < sampler->exited_count; i++) {
+		write_task(&sampler->exited[i], output + length + TASKSTATS_TASK_LENGTH * task_count++);
+	}
+	output[0] = task_count;
+	output[1] = sampler->exited_count;
+	sampler->exited_count = 0;
+	return length + TASKSTATS_TASK_LENGTH * task_count;
+}
+
+JNIEXPORT void JNICALL
+Java_yuca_linux_taskstats_TaskstatsReader_closeNative(JNIEnv *env, jclass jcls, jlong handle) {
+	taskstats_sampler_t* sampler = (taskstats_sampler_t*) handle;
+	if (sampler == NULL) {
+		return;
+	}
+	if (sampler->exit_fd >= 0) {
+		size_t length = write_request(
+			sampler->requests, sampler->family, TASKSTATS_CMD_GET, 0,
+			TASKSTATS_CMD_ATTR_DEREGISTER_CPUMASK, sampler->cpumask, strlen(sampler->cpumask) + 1);
+		send_all(sampler->exit_fd, sampler->requests, length);
+		close(sampler->exit_fd);
+	}
+	if (sampler->fd >= 0) {
+		close(sampler->fd);
+	}
+	if (sampler->process_fd >= 0) {
+		close(sampler->process_fd);
+	}
+	for (int i = 0; i < sampler->task_count; i++) {
+		close_task(&sampler->tasks[i]);
+	}
+	free(sampler->tasks);
+	free(sampler->exited);
+	free(sampler->requests);
+	free(sampler->replies);
+	free(sampler);
+}
@@ -0,0 +1,21 @@
+#include <jni.h>
+
+#ifndef _Included_yuca_linux_taskstats_TaskstatsReader
+#define _Included_yuca_linux_taskstats_TaskstatsReader
+
+// layout of the sample buffer, as longs in native byte order:
+//   [task_count, exited_count, task_count x (tid, cpu, utime, stime)]
+// where the last exited_count tasks exited since the last sample and are only reported once
+#define TASKSTATS_HEADER_LENGTH 2
+#define TASKSTATS_TASK_LENGTH 4
+
+JNIEXPORT jlong JNICALL Java_yuca_linux_taskstats_TaskstatsReader_openNative
+  (JNIEnv *, jclass, jlong);
+
+JNIEXPORT jint JNICALL Java_yuca_linux_taskstats_TaskstatsReader_sampleNative
+  (JNIEnv *, jclass, jlong, jobject);
+
+JNIEXPORT void JNICALL Java_yuca_linux_taskstats_TaskstatsReader_closeNative
+  (JNIEnv *, jclass, jlong);
+
+#endif
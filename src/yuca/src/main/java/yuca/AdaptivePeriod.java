@@ -0,0 +1,106 @@
+package yuca;
+
+import java.time.Duration;
+
+/**
+ * How a {@link YucaApplicationMonitor} picks its sampling period from what it observes. The
+ * monitor drops to the shortest period as soon as the process's activity or the package power
+ * changes by more than the threshold, and doubles its period, up to the longest, each time it has
+ * seen enough steady windows in a row. An idle process is steady, so it is sampled at the longest
+ * period.
+ *
+ * <p>Jiffies only move every 10 ms, so the change is measured over windows of at least the
+ * shortest window rather than between each pair of samples.
+ */
+public final class AdaptivePeriod {
+  private static final double DEFAULT_THRESHOLD = 0.2;
+  private static final int DEFAULT_STEADY_WINDOWS = 10;
+  private static final Duration DEFAULT_WINDOW = Duration.ofMillis(20);
+
+  /** Samples between 1 ms and 100 ms, backing off after ten steady windows of a 20% change. */
+  public static AdaptivePeriod defaults() {
+    return between(Duration.ofMillis(1), Duration.ofMillis(100));
+  }
+
+  /** Samples between the two periods, which are rounded down to whole milliseconds. */
+  public static AdaptivePeriod between(Duration shortest, Duration longest) {
+    if (shortest.toMillis() < 1 || longest.toMillis() < shortest.toMillis()) {
+      throw new IllegalArgumentException(
+          String.format(
+              "periods need to be at least 1 ms and in order (%s, %s)", shortest, longest));
+    }
+    return new AdaptivePeriod(
+        (int) shortest.toMillis(),
+        (int) Math.min(Integer.MAX_VALUE, longest.toMillis()),
+        DEFAULT_THRESHOLD,
+        DEFAULT_STEADY_WINDOWS,
+        DEFAULT_WINDOW.toNanos());
+  }
+
+  final int shortestMillis;
+  final int longestMillis;
+  final double threshold;
+  final int steadyWindows;
+  final long windowNanos;
+
+  private AdaptivePeriod(
+      int shortestMillis,
+      int longestMillis,
+      double threshold,
+      int steadyWindows,
+      long windowNanos) {
+    this.shortestMillis = shortestMillis;
+    this.longestMillis = longestMillis;
+    this.threshold = threshold;
+    this.steadyWindows = steadyWindows;
+    this.windowNanos = windowNanos;
+  }
+
+  /**
+   * Returns a policy that treats a relative change of more than the threshold in the activity or
+   * power of a window as a change.
+   */
+  public AdaptivePeriod withThreshold(double threshold) {
+    if (!(threshold > 0)) {
+      throw new IllegalArgumentException(
+          String.format("the threshold has to be positive (%f)", threshold));
+    }
+    return new AdaptivePeriod(
+        shortestMillis, longestMillis, threshold, steadyWindows, windowNanos);
+  }
+
+  /** Returns a policy that waits for this many steady windows before each back off. */
+  public AdaptivePeriod withHysteresis(int steadyWindows) {
+    if (steadyWindows < 1) {
+      throw new IllegalArgumentException(
+          String.format("there has to be at least one steady window (%d)", steadyWindows));
+    }
+    return new AdaptivePeriod(
+        shortestMillis, longestMillis, threshold, steadyWindows, windowNanos);
+  }
+
+  /** Returns a policy that measures the change over windows of at least this long. */
+  public AdaptivePeriod withWindow(Duration window) {
+    if (window.isNegative()) {
+      throw new IllegalArgumentException(String.format("window can't be negative (%s)", window));
+    }
+    return new AdaptivePeriod(
+        shortestMillis, longestMillis, threshold, steadyWindows, window.toNanos());
+  }
+
+  /** Clamps a period to the policy's limits. */
+  int clamp(int periodMillis) {
+    return Math.max(shortestMillis, Math.min(longestMillis, periodMillis));
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "%d-%d ms, backing off after %d steady windows of %s within %.0f%%",
+        shortestMillis,
+        longestMillis,
+        steadyWindows,
+        Duration.ofNanos(windowNanos),
+        100 * threshold);
+  }
+}
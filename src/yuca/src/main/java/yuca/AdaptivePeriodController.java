@@ -0,0 +1,207 @@
+package yuca;
+
+import static yuca.linux.jiffies.JiffiesAccounting.nanosToJiffies;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.function.BiFunction;
+import yuca.linux.jiffies.ProcessSample;
+import yuca.linux.jiffies.RuntimeSample;
+import yuca.linux.jiffies.TaskJiffies;
+import yuca.linux.jiffies.TaskRuntime;
+import yuca.linux.perf.PerfSample;
+import yuca.linux.perf.TaskCounters;
+import yuca.signal.SignalInterval;
+import yuca.signal.SignalInterval.SignalData;
+import yuca.util.CompositeSample;
+import yuca.util.Timestamps;
+
+/**
+ * The state of an {@link AdaptivePeriod} for a single run. It is handed every sample on the
+ * sampling thread and is asked for the period right after, so a change is acted on from the next
+ * sample.
+ */
+final class AdaptivePeriodController {
+  private static final double NANOS_PER_SECOND = 1000000000.0;
+  // changes below these are noise rather than a change in what the process is doing
+  private static final double ACTIVITY_FLOOR = 5; // jiffies per second, i.e. 5% of a cpu
+  private static final double POWER_FLOOR = 1; // watts
+  // how far the baselines move towards each window
+  private static final double SMOOTHING = 0.5;
+
+  private final AdaptivePeriod policy;
+  private final String processSourceName;
+  private final String energySourceName;
+  private final BiFunction<Object, Object, SignalInterval> energyDifference;
+  private final HashMap<Long, Double> lastTaskJiffies = new HashMap<>();
+
+  private volatile int periodMillis;
+  // the period that was last handed to the sampler, i.e. the one waited before the next sample
+  private volatile int scheduledMillis;
+  private Object lastEnergy;
+  private long windowStart = -1;
+  private double windowJiffies = 0;
+  private double windowJoules = 0;
+  private double activityBaseline = Double.NaN;
+  private double powerBaseline = Double.NaN;
+  private int steadyCount = 0;
+
+  AdaptivePeriodController(
+      AdaptivePeriod policy,
+      int initialPeriodMillis,
+      String processSourceName,
+      String energySourceName,
+      BiFunction<Object, Object, SignalInterval> energyDifference) {
+    this.policy = policy;
+    this.periodMillis = policy.clamp(initialPeriodMillis);
+    this.scheduledMillis = periodMillis;
+    this.processSourceName = processSourceName;
+    this.energySourceName = energySourceName;
+    this.energyDifference = energyDifference;
+  }
+
+  /** Returns the current period. */
+  int periodMillis() {
+    return periodMillis;
+  }
+
+  /**
+   * Returns the period to wait before the next sample. This is what the sampler should schedule
+   * with, since the next sample records it as the period of the interval that ends at it.
+   */
+  int nextPeriodMillis() {
+    scheduledMillis = periodMillis;
+    return scheduledMillis;
+  }
+
+  /**
+   * Returns the period that was waited before a sample, so it can be recorded in the report. The
+   * source is read before the sample is observed, so this is never a period picked from the sample
+   * itself.
+   */
+  PeriodSample sample(Instant timestamp) {
+    return new PeriodSample(timestamp, scheduledMillis);
+  }
+
+  /** Adds the sample to the current window and picks a new period if the window is done. */
+  void observe(CompositeSample sample) {
+    sample.get(processSourceName, ProcessSample.class).ifPresent(this::addJiffies);
+    sample.get(processSourceName, PerfSample.class).ifPresent(this::addTaskClock);
+    sample.get(processSourceName, RuntimeSample.class).ifPresent(this::addRuntime);
+    sample.get(energySourceName, Object.class).ifPresent(this::addEnergy);
+
+    long timestamp = Timestamps.toNanos(sample.timestamp());
+    if (windowStart < 0) {
+      windowStart = timestamp;
+      return;
+    }
+    long elapsed = timestamp - windowStart;
+    if (elapsed <= 0 || elapsed < policy.windowNanos) {
+      return;
+    }
+    double seconds = elapsed / NANOS_PER_SECOND;
+    // a window can be off by a jiffy on either end no matter what the process is doing
+    double jiffyNoise = 1 / seconds;
+    update(windowJiffies / seconds, jiffyNoise, windowJoules / seconds);
+    windowStart = timestamp;
+    windowJiffies = 0;
+    windowJoules = 0;
+  }
+
+  private void update(double activity, double jiffyNoise, double power) {
+    if (Double.isNaN(activityBaseline)) {
+      activityBaseline = activity;
+      powerBaseline = power;
+      return;
+    }
+    boolean isChanging =
+        isChange(activity, activityBaseline, ACTIVITY_FLOOR, jiffyNoise)
+            || isChange(power, powerBaseline, POWER_FLOOR, 0);
+    activityBaseline += SMOOTHING * (activity - activityBaseline);
+    powerBaseline += SMOOTHING * (power - powerBaseline);
+    if (isChanging) {
+      steadyCount = 0;
+      periodMillis = policy.shortestMillis;
+    } else if (++steadyCount >= policy.steadyWindows) {
+      steadyCount = 0;
+      periodMillis = (int) Math.min(policy.longestMillis, 2L * periodMillis);
+    }
+  }
+
+  private boolean isChange(double value, double baseline, double floor, double noise) {
+    return Math.abs(value - baseline) > policy.threshold * Math.max(baseline, floor) + noise;
+  }
+
+  /** Adds the jiffies of the tasks that were also in the last sample. */
+  private void addJiffies(ProcessSample process) {
+    HashMap<Long, Double> taskJiffies = new HashMap<>();
+    for (TaskJiffies task : process.data()) {
+      addTaskJiffies(taskJiffies, task.taskId, task.totalJiffies);
+    }
+    lastTaskJiffies.clear();
+    lastTaskJiffies.putAll(taskJiffies);
+  }
+
+  /** Adds the task-clock of the tasks that were also in the last sample as jiffies. */
+  private void addTaskClock(PerfSample process) {
+    HashMap<Long, Double> taskJiffies = new HashMap<>();
+    for (TaskCounters task : process.data()) {
+      addTaskJiffies(taskJiffies, task.taskId, nanosToJiffies(task.taskClockNanos));
+    }
+    lastTaskJiffies.clear();
+    lastTaskJiffies.putAll(taskJiffies);
+  }
+
+  /** Adds the run time of the tasks that were also in the last sample as jiffies. */
+  private void addRuntime(RuntimeSample process) {
+    HashMap<Long, Double> taskJiffies = new HashMap<>();
+    for (TaskRuntime task : process.data()) {
+      addTaskJiffies(taskJiffies, task.taskId, nanosToJiffies(task.runtimeNanos));
+    }
+    lastTaskJiffies.clear();
+    lastTaskJiffies.putAll(taskJiffies);
+  }
+
+  private void addTaskJiffies(HashMap<Long, Double> taskJiffies, long taskId, double jiffies) {
+    taskJiffies.put(taskId, jiffies);
+    Double last = lastTaskJiffies.get(taskId);
+    if (last != null) {
+      windowJiffies += Math.max(0, jiffies - last);
+    }
+  }
+
+  private void addEnergy(Object energy) {
+    if (lastEnergy != null) {
+      try {
+        for (SignalData data : energyDifference.apply(lastEnergy, energy).getDataList()) {
+          windowJoules += data.getValue();
+        }
+      } catch (IllegalArgumentException e) {
+        // the samples were out of order so there's no energy for this one
+      }
+    }
+    lastEnergy = energy;
+  }
+
+  /** Records the period that was waited for the interval that ends at the second sample. */
+  static SignalInterval periodDifference(PeriodSample first, PeriodSample second) {
+    return SignalInterval.newBuilder()
+        .setStart(Timestamps.fromInstant(first.timestamp))
+        .setEnd(Timestamps.fromInstant(second.timestamp))
+        .addData(
+            SignalData.newBuilder()
+                .setValue((double) Duration.ofMillis(second.periodMillis).toNanos()))
+        .build();
+  }
+
+  static final class PeriodSample {
+    private final Instant timestamp;
+    private final int periodMillis;
+
+    private PeriodSample(Instant timestamp, int periodMillis) {
+      this.timestamp = timestamp;
+      this.periodMillis = periodMillis;
+    }
+  }
+}
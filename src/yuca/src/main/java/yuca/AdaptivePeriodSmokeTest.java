@@ -0,0 +1,80 @@
+package yuca;
+
+import static yuca.util.LoggerUtil.getLogger;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.logging.Logger;
+import yuca.signal.SignalInterval;
+import yuca.util.CompositeSample;
+import yuca.util.Timestamps;
+
+/**
+ * A smoke test to check that an adaptive period is recorded for the interval it was waited for.
+ * The controller is driven the way a {@link yuca.util.SamplingFuture} drives it, with the clock
+ * advanced by each scheduled period, so every recorded period should match its interval's length.
+ */
+final class AdaptivePeriodSmokeTest {
+  private static final Logger logger = getLogger();
+
+  private static final int TICKS = 64;
+
+  /** Checks that the recorded periods match the intervals while the period grows. */
+  private static boolean periodsMatchIntervals() {
+    // an idle process never changes, so the period doubles after every couple of windows
+    AdaptivePeriod policy =
+        AdaptivePeriod.between(Duration.ofMillis(1), Duration.ofMillis(64))
+            .withHysteresis(2)
+            .withWindow(Duration.ofMillis(1));
+    AdaptivePeriodController controller =
+        new AdaptivePeriodController(policy, 1, "process", "energy", (first, second) -> null);
+
+    ArrayList<AdaptivePeriodController.PeriodSample> samples = new ArrayList<>();
+    Instant timestamp = Instant.EPOCH;
+    for (int i = 0; i < TICKS; i++) {
+      // the source is read before the sink observes the sample, like in a sampling tick
+      samples.add(controller.sample(timestamp));
+      controller.observe(CompositeSample.of(timestamp, Map.of()));
+      timestamp = timestamp.plusMillis(controller.nextPeriodMillis());
+    }
+
+    int changes = 0;
+    double lastPeriod = -1;
+    for (int i = 1; i < samples.size(); i++) {
+      SignalInterval interval =
+          AdaptivePeriodController.periodDifference(samples.get(i - 1), samples.get(i));
+      double period = interval.getData(0).getValue();
+      long elapsed = Timestamps.between(interval.getStart(), interval.getEnd()).toNanos();
+      if (period != elapsed) {
+        logger.info(
+            String.format(
+                "interval %d recorded a period of %.0f ns but lasted %d ns", i, period, elapsed));
+        return false;
+      }
+      if (lastPeriod >= 0 && period != lastPeriod) {
+        changes++;
+      }
+      lastPeriod = period;
+    }
+    if (changes == 0) {
+      logger.info("the period never changed, so nothing was checked");
+      return false;
+    }
+    logger.info(
+        String.format(
+            "%d recorded periods matched their intervals across %d changes",
+            samples.size() - 1, changes));
+    return true;
+  }
+
+  public static void main(String[] args) throws Exception {
+    logger.info("testing adaptive period recording...");
+    if (periodsMatchIntervals()) {
+      logger.info("all smoke tests passed!");
+    } else {
+      logger.info("smoke testing failed; please consult the log.");
+    }
+  }
+}
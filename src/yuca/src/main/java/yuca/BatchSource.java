@@ -0,0 +1,34 @@
+package yuca;
+
+import java.time.Instant;
+import yuca.linux.batch.BatchSample;
+import yuca.linux.batch.BatchSampler;
+
+/**
+ * Shares a {@link BatchSampler} between the system, process, and energy sources of a tick. The
+ * first source that is read in a tick takes the batch and the others reuse it, so the three are
+ * read with a single call whichever order (or threads) they are read in.
+ */
+final class BatchSource implements AutoCloseable {
+  private final BatchSampler sampler;
+
+  private BatchSample last;
+
+  BatchSource(BatchSampler sampler) {
+    this.sampler = sampler;
+  }
+
+  /** Returns the batch of the tick, reading it if this is the tick's first source. */
+  synchronized BatchSample read(Instant timestamp) {
+    if (last == null || !last.timestamp().equals(timestamp)) {
+      last = sampler.sample(timestamp);
+    }
+    return last;
+  }
+
+  @Override
+  public synchronized void close() {
+    sampler.close();
+    last = null;
+  }
+}
@@ -0,0 +1,601 @@
+package yuca;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import yuca.emissions.EmissionsConverter;
+import yuca.linux.cgroup.Cgroups;
+import yuca.linux.jiffies.JiffiesAccounting;
+import yuca.linux.jiffies.SocketEnergy;
+import yuca.linux.jiffies.SystemJiffies;
+import yuca.linux.jiffies.TaskEnergyAccounting;
+import yuca.signal.Component;
+import yuca.signal.Report;
+import yuca.signal.Signal;
+import yuca.signal.SignalInterval;
+import yuca.signal.SignalInterval.SignalData;
+import yuca.signal.SignalInterval.Timestamp;
+import yuca.util.CompositeSample;
+import yuca.util.LatencyHistogram;
+import yuca.util.LoggerUtil;
+import yuca.util.Timestamps;
+
+/**
+ * Builds a {@link Report} incrementally from {@link CompositeSample}s as they are collected. Only
+ * the previous sample of each source is kept; each new sample is immediately differenced into
+ * intervals, which are then used to compute the emissions, process activity and attributed energy
+ * for the same tick. A snapshot of the report can be taken at any time, so stopping doesn't need
+ * to do any work and partial reports can be handed out while sampling continues.
+ *
+ * <p>Signals of the system can instead be shared with other reports through a {@link
+ * SystemSamplingHub}. Those signals are added with {@link #addSharedSignal} and their intervals are
+ * taken as-is from the {@link SystemTick}, along with the system side of the process accounting.
+ *
+ * <p>A report that runs indefinitely can be given a {@link RollupPolicy}, in which case only the
+ * recent intervals are kept as they are and older ones are rolled up into coarser intervals.
+ *
+ * <p>Listeners are handed a {@link Report} of only the intervals computed in each tick, on the
+ * sampling thread, so they should hand the data off rather than doing any real work.
+ */
+public final class IncrementalReport {
+  private static final Logger logger = LoggerUtil.getLogger();
+
+  private final EmissionsConverter converter;
+
+  // every signal in the report in the order it should be reported
+  private final ArrayList<Channel> channels = new ArrayList<>();
+  private final LinkedHashMap<String, PhysicalSignal<?>> physicalSignals = new LinkedHashMap<>();
+  private final LinkedHashMap<String, SharedSignal> sharedSignals = new LinkedHashMap<>();
+  private final ArrayList<EmissionsSignal> emissionsSignals = new ArrayList<>();
+  private final ArrayList<ProcessAccounting> processAccountings = new ArrayList<>();
+  private LatencySignal latencies;
+  private RollupPolicy rollups;
+  private final CopyOnWriteArrayList<Consumer<? super Report>> listeners =
+      new CopyOnWriteArrayList<>();
+
+  public IncrementalReport(EmissionsConverter converter) {
+    this.converter = converter;
+  }
+
+  /** Rolls up the intervals of every signal once they are older than the policy's raw retention. */
+  public IncrementalReport withRollups(RollupPolicy rollups) {
+    synchronized (this) {
+      this.rollups = rollups;
+      for (Channel channel : channels) {
+        channel.rollUp(rollups);
+      }
+    }
+    return this;
+  }
+
+  /**
+   * Adds a signal that is computed by differencing adjacent samples of a source from a {@link
+   * CompositeSample}.
+   */
+  public <T> IncrementalReport addPhysicalSignal(
+      Component component,
+      String sourceName,
+      Class<T> cls,
+      BiFunction<T, T, SignalInterval> difference,
+      Signal.Unit unit,
+      String source) {
+    synchronized (this) {
+      Channel channel = addChannel(component, unit, List.of(source));
+      physicalSignals.put(
+          sourceName, new PhysicalSignal<>(sourceName, cls, difference, source, channel));
+    }
+    return this;
+  }
+
+  /**
+   * Adds a signal whose intervals were already differenced by a {@link SystemSamplingHub}. Shared
+   * signals are only updated by {@link #add(SystemTick, CompositeSample)}.
+   */
+  public IncrementalReport addSharedSignal(
+      Component component, String sourceName, Signal.Unit unit, String source) {
+    synchronized (this) {
+      Channel channel = addChannel(component, unit, List.of(source));
+      sharedSignals.put(sourceName, new SharedSignal(sourceName, source, channel));
+    }
+    return this;
+  }
+
+  /** Adds a signal that converts the energy of a physical or shared signal to emissions. */
+  public IncrementalReport addEmissionsSignal(Component component, String energySourceName) {
+    synchronized (this) {
+      String energySource = getSource(energySourceName);
+      Channel channel =
+          addChannel(component, Signal.Unit.GRAMS_OF_CO2, emissionsSources(List.of(energySource)));
+      emissionsSignals.add(new EmissionsSignal(energySourceName, channel));
+    }
+    return this;
+  }
+
+  /**
+   * Adds the activity, energy and emissions signals of a process that are attributed from the
+   * process's jiffies, the system's jiffies and the system's energy.
+   */
+  public IncrementalReport addProcessAccounting(
+      Component component,
+      String processSourceName,
+      String systemSourceName,
+      String energySourceName) {
+    synchronized (this) {
+      addAccounting(
+          component,
+          processSourceName,
+          systemSourceName,
+          energySourceName,
+          JiffiesAccounting::computeTaskActivity);
+    }
+    return this;
+  }
+
+  /**
+   * Adds the activity, energy and emissions signals of a cgroup that are attributed from the
+   * cgroup's cpu time, the system's jiffies and the system's energy.
+   */
+  public IncrementalReport addCgroupAccounting(
+      Component component,
+      String cgroupSourceName,
+      String systemSourceName,
+      String energySourceName) {
+    synchronized (this) {
+      addAccounting(
+          component,
+          cgroupSourceName,
+          systemSourceName,
+          energySourceName,
+          Cgroups::computeActivity);
+    }
+    return this;
+  }
+
+  /**
+   * Adds a signal of how many samples of each source took how long to read, as a histogram over
+   * the whole run. It is only in snapshots and isn't handed to listeners.
+   */
+  public IncrementalReport addLatencyHistograms(Component component) {
+    synchronized (this) {
+      latencies = new LatencySignal(component);
+    }
+    return this;
+  }
+
+  /** Differences the sample against the previous one and computes the signals for the tick. */
+  public void add(CompositeSample sample) {
+    synchronized (this) {
+      update(null, sample);
+    }
+  }
+
+  /**
+   * Takes the shared signals from a {@link SystemTick} and differences the sample of this report's
+   * own sources, which should have been taken with the tick's timestamp.
+   */
+  public void add(SystemTick tick, CompositeSample sample) {
+    synchronized (this) {
+      update(tick, sample);
+    }
+  }
+
+  /** Adds a listener that will be handed the intervals of every following tick. */
+  public void addListener(Consumer<? super Report> listener) {
+    synchronized (this) {
+      // new listeners only see what is computed from here on
+      for (Channel channel : channels) {
+        channel.published = channel.signal.getIntervalCount();
+      }
+      listeners.add(listener);
+    }
+  }
+
+  /** Removes a listener so it won't receive any more intervals. */
+  public void removeListener(Consumer<? super Report> listener) {
+    listeners.remove(listener);
+  }
+
+  /** Returns a report of everything computed so far if there is any data. */
+  public Optional<Report> snapshot() {
+    synchronized (this) {
+      LinkedHashMap<Component, Component.Builder> components = new LinkedHashMap<>();
+      for (Channel channel : channels) {
+        if (channel.intervalCount() > 0) {
+          components
+              .computeIfAbsent(channel.component, Component::toBuilder)
+              .addSignal(channel.build());
+        }
+      }
+      if (latencies != null && latencies.start != null) {
+        components
+            .computeIfAbsent(latencies.component, Component::toBuilder)
+            .addSignal(latencies.build());
+      }
+      if (components.isEmpty()) {
+        return Optional.empty();
+      }
+      Report.Builder report = Report.newBuilder();
+      components.values().forEach(report::addComponent);
+      return Optional.of(report.build());
+    }
+  }
+
+  /** Computes the signals for a tick. Only called while holding the lock. */
+  private void update(SystemTick tick, CompositeSample sample) {
+    if (latencies != null) {
+      if (tick != null) {
+        latencies.update(tick.sample());
+      }
+      latencies.update(sample);
+    }
+    HashMap<String, SignalInterval> intervals = new HashMap<>();
+    if (tick != null) {
+      for (SharedSignal signal : sharedSignals.values()) {
+        tick.interval(signal.sourceName)
+            .ifPresent(
+                interval -> {
+                  signal.channel.add(interval);
+                  intervals.put(signal.sourceName, interval);
+                });
+      }
+    }
+    for (PhysicalSignal<?> signal : physicalSignals.values()) {
+      signal
+          .update(sample)
+          .ifPresent(
+              interval -> {
+                signal.channel.add(interval);
+                intervals.put(signal.sourceName, interval);
+              });
+    }
+    for (EmissionsSignal signal : emissionsSignals) {
+      SignalInterval energy = intervals.get(signal.energySourceName);
+      if (energy != null) {
+        signal.channel.add(converter.convert(Signal.Unit.JOULES, energy));
+      }
+    }
+    for (ProcessAccounting accounting : processAccountings) {
+      accounting.update(intervals, tick);
+    }
+    if (!listeners.isEmpty()) {
+      publish();
+    }
+  }
+
+  /** Hands the intervals that haven't been published yet to the listeners. */
+  private void publish() {
+    LinkedHashMap<Component, Component.Builder> components = new LinkedHashMap<>();
+    for (Channel channel : channels) {
+      int count = channel.signal.getIntervalCount();
+      if (count > channel.published) {
+        Signal.Builder signal = channel.header.toBuilder();
+        for (int i = channel.published; i < count; i++) {
+          signal.addInterval(channel.signal.getInterval(i));
+        }
+        channel.published = count;
+        components.computeIfAbsent(channel.component, Component::toBuilder).addSignal(signal);
+      }
+    }
+    if (components.isEmpty()) {
+      return;
+    }
+    Report.Builder report = Report.newBuilder();
+    components.values().forEach(report::addComponent);
+    Report tick = report.build();
+    for (Consumer<? super Report> listener : listeners) {
+      try {
+        listener.accept(tick);
+      } catch (Exception e) {
+        logger.log(Level.WARNING, "a report listener failed", e);
+      }
+    }
+  }
+
+  private void addAccounting(
+      Component component,
+      String processSourceName,
+      String systemSourceName,
+      String energySourceName,
+      BiFunction<SignalInterval, SystemJiffies, Optional<SignalInterval>> activityOf) {
+    String processSource = getSource(processSourceName);
+    String systemSource = getSource(systemSourceName);
+    String energySource = getSource(energySourceName);
+    List<String> energySources = List.of(processSource, systemSource, energySource);
+    processAccountings.add(
+        new ProcessAccounting(
+            processSourceName,
+            systemSourceName,
+            energySourceName,
+            activityOf,
+            addChannel(component, Signal.Unit.ACTIVITY, List.of(processSource, systemSource)),
+            addChannel(component, Signal.Unit.JOULES, energySources),
+            addChannel(component, Signal.Unit.GRAMS_OF_CO2, emissionsSources(energySources))));
+  }
+
+  private Channel addChannel(Component component, Signal.Unit unit, List<String> sources) {
+    Channel channel = new Channel(component, unit, sources);
+    if (rollups != null) {
+      channel.rollUp(rollups);
+    }
+    channels.add(channel);
+    return channel;
+  }
+
+  /** Returns the source of the physical or shared signal that was added for a source name. */
+  private String getSource(String sourceName) {
+    if (physicalSignals.containsKey(sourceName)) {
+      return physicalSignals.get(sourceName).source;
+    } else if (sharedSignals.containsKey(sourceName)) {
+      return sharedSignals.get(sourceName).source;
+    }
+    throw new IllegalArgumentException(
+        String.format("no physical or shared signal was added for source %s", sourceName));
+  }
+
+  /** Uses the converter to get the sources of an emissions signal. */
+  private List<String> emissionsSources(List<String> energySources) {
+    Signal energy =
+        Signal.newBuilder().setUnit(Signal.Unit.JOULES).addAllSource(energySources).build();
+    return converter.convert(energy).getSourceList();
+  }
+
+  /** A signal of a component that intervals are appended to. */
+  private static final class Channel {
+    private final Component component;
+    private final Signal header;
+    // the raw intervals
+    private final Signal.Builder signal;
+
+    // the number of intervals that have been handed to listeners
+    private int published = 0;
+    private SignalRollup rollup;
+    private long rawRetentionNanos;
+
+    private Channel(Component component, Signal.Unit unit, List<String> sources) {
+      this.component = component;
+      this.header = Signal.newBuilder().setUnit(unit).addAllSource(sources).build();
+      this.signal = header.toBuilder();
+    }
+
+    private void rollUp(RollupPolicy rollups) {
+      rollup = new SignalRollup(rollups, header.getUnit());
+      rawRetentionNanos = rollups.rawRetention().toNanos();
+    }
+
+    private void add(SignalInterval interval) {
+      signal.addInterval(interval);
+      if (rollup != null) {
+        compact(Timestamps.toNanos(interval.getEnd()) - rawRetentionNanos);
+      }
+    }
+
+    private int intervalCount() {
+      return signal.getIntervalCount() + (rollup != null ? rollup.intervalCount() : 0);
+    }
+
+    /** Returns the rolled up intervals followed by the raw ones. */
+    private Signal build() {
+      if (rollup == null) {
+        return signal.build();
+      }
+      Signal.Builder built = header.toBuilder();
+      rollup.addTo(built);
+      return built.addAllInterval(signal.getIntervalList()).build();
+    }
+
+    /**
+     * Rolls up the raw intervals that ended before the horizon. This only happens once a quarter
+     * of the retention has piled up past it, so the remaining intervals are copied rarely.
+     */
+    private void compact(long horizon) {
+      long slack = rawRetentionNanos / 4;
+      if (Timestamps.toNanos(signal.getInterval(0).getEnd()) >= horizon - slack) {
+        return;
+      }
+      List<SignalInterval> intervals = signal.getIntervalList();
+      int count = 0;
+      while (count < intervals.size()
+          && Timestamps.toNanos(intervals.get(count).getEnd()) < horizon) {
+        rollup.add(intervals.get(count++));
+      }
+      List<SignalInterval> kept = new ArrayList<>(intervals.subList(count, intervals.size()));
+      signal.clearInterval().addAllInterval(kept);
+      published = Math.max(0, published - count);
+    }
+  }
+
+  /** A signal that only keeps the last sample of its source. */
+  private static final class PhysicalSignal<T> {
+    private final String sourceName;
+    private final Class<T> cls;
+    private final BiFunction<T, T, SignalInterval> difference;
+    private final String source;
+    private final Channel channel;
+
+    private T previous;
+
+    private PhysicalSignal(
+        String sourceName,
+        Class<T> cls,
+        BiFunction<T, T, SignalInterval> difference,
+        String source,
+        Channel channel) {
+      this.sourceName = sourceName;
+      this.cls = cls;
+      this.difference = difference;
+      this.source = source;
+      this.channel = channel;
+    }
+
+    private Optional<SignalInterval> update(CompositeSample sample) {
+      Optional<T> current = sample.get(sourceName, cls);
+      if (current.isEmpty()) {
+        return Optional.empty();
+      }
+      T first = previous;
+      previous = current.get();
+      if (first == null) {
+        return Optional.empty();
+      }
+      try {
+        return Optional.of(difference.apply(first, current.get()));
+      } catch (IllegalArgumentException e) {
+        // the samples can't be differenced (i.e. out of order), so start over from this one
+        return Optional.empty();
+      }
+    }
+  }
+
+  /** A signal whose intervals are differenced elsewhere and handed over in a {@link SystemTick}. */
+  private static final class SharedSignal {
+    private final String sourceName;
+    private final String source;
+    private final Channel channel;
+
+    private SharedSignal(String sourceName, String source, Channel channel) {
+      this.sourceName = sourceName;
+      this.source = source;
+      this.channel = channel;
+    }
+  }
+
+  /** A signal that is the emissions of a physical energy signal. */
+  private static final class EmissionsSignal {
+    private final String energySourceName;
+    private final Channel channel;
+
+    private EmissionsSignal(String energySourceName, Channel channel) {
+      this.energySourceName = energySourceName;
+      this.channel = channel;
+    }
+  }
+
+  /** Histograms of how long each source took to read. */
+  private static final class LatencySignal {
+    private final Component component;
+    private final LinkedHashMap<String, LatencyHistogram> histograms = new LinkedHashMap<>();
+
+    private Timestamp start;
+    private Timestamp end;
+
+    private LatencySignal(Component component) {
+      this.component = component;
+    }
+
+    private void update(CompositeSample sample) {
+      Timestamp timestamp = Timestamps.fromInstant(sample.timestamp());
+      if (start == null) {
+        start = timestamp;
+      }
+      end = timestamp;
+      sample
+          .latencies()
+          .forEach(
+              (source, nanos) ->
+                  histograms.computeIfAbsent(source, s -> new LatencyHistogram()).record(nanos));
+    }
+
+    /** Puts each source's non-empty buckets, keyed by their upper bound, in a single interval. */
+    private Signal build() {
+      SignalInterval.Builder interval = SignalInterval.newBuilder().setStart(start).setEnd(end);
+      histograms.forEach(
+          (source, histogram) -> {
+            for (int bucket = 0; bucket < LatencyHistogram.buckets(); bucket++) {
+              long count = histogram.count(bucket);
+              if (count == 0) {
+                continue;
+              }
+              interval.addData(
+                  SignalData.newBuilder()
+                      .addMetadata(
+                          SignalData.Metadata.newBuilder().setName("source").setValue(source))
+                      .addMetadata(
+                          SignalData.Metadata.newBuilder()
+                              .setName("le_nanos")
+                              .setValue(Long.toString(LatencyHistogram.upperBoundNanos(bucket))))
+                      .setValue(count));
+            }
+          });
+      return Signal.newBuilder()
+          .setUnit(Signal.Unit.SAMPLES)
+          .addSource("System.nanoTime()")
+          .addInterval(interval)
+          .build();
+    }
+  }
+
+  /**
+   * The activity and energy signals of a process, or anything else whose activity can be computed
+   * from the system's jiffies, that are attributed for each tick.
+   */
+  private final class ProcessAccounting {
+    private final String processSourceName;
+    private final String systemSourceName;
+    private final String energySourceName;
+    private final BiFunction<SignalInterval, SystemJiffies, Optional<SignalInterval>> activityOf;
+    private final Channel activity;
+    private final Channel energy;
+    private final Channel emissions;
+
+    private ProcessAccounting(
+        String processSourceName,
+        String systemSourceName,
+        String energySourceName,
+        BiFunction<SignalInterval, SystemJiffies, Optional<SignalInterval>> activityOf,
+        Channel activity,
+        Channel energy,
+        Channel emissions) {
+      this.processSourceName = processSourceName;
+      this.systemSourceName = systemSourceName;
+      this.energySourceName = energySourceName;
+      this.activityOf = activityOf;
+      this.activity = activity;
+      this.energy = energy;
+      this.emissions = emissions;
+    }
+
+    /**
+     * Attributes the tick to the process. The system's jiffies and energy are taken from the
+     * {@link SystemTick} if there is one so they are only computed once across reports.
+     */
+    private void update(HashMap<String, SignalInterval> intervals, SystemTick tick) {
+      SignalInterval process = intervals.get(processSourceName);
+      SignalInterval system = intervals.get(systemSourceName);
+      if (process == null || system == null) {
+        return;
+      }
+      SystemJiffies systemJiffies =
+          tick != null && sharedSignals.containsKey(systemSourceName)
+              ? tick.systemJiffies(systemSourceName).get()
+              : SystemJiffies.of(system);
+      Optional<SignalInterval> taskActivity = activityOf.apply(process, systemJiffies);
+      if (taskActivity.isEmpty()) {
+        return;
+      }
+      activity.add(taskActivity.get());
+
+      SignalInterval systemEnergy = intervals.get(energySourceName);
+      if (systemEnergy == null) {
+        return;
+      }
+      SocketEnergy socketEnergy =
+          tick != null && sharedSignals.containsKey(energySourceName)
+              ? tick.socketEnergy(energySourceName).get()
+              : SocketEnergy.of(systemEnergy);
+      Optional<SignalInterval> taskEnergy =
+          TaskEnergyAccounting.computeTaskEnergy(taskActivity.get(), socketEnergy);
+      if (taskEnergy.isEmpty()) {
+        return;
+      }
+      energy.add(taskEnergy.get());
+      emissions.add(converter.convert(Signal.Unit.JOULES, taskEnergy.get()));
+    }
+  }
+}
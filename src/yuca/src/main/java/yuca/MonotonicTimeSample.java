@@ -0,0 +1,37 @@
+package yuca;
+
+import java.time.Instant;
+import yuca.signal.SignalInterval;
+import yuca.signal.SignalInterval.SignalData;
+import yuca.signal.SignalInterval.Timestamp;
+import yuca.util.Timestamps;
+
+/** A reading of the monotonic clock, stamped with the wall clock time it was read at. */
+final class MonotonicTimeSample {
+  /** Returns an interval between the samples with the monotonic time of the first sample. */
+  static SignalInterval difference(MonotonicTimeSample first, MonotonicTimeSample second) {
+    return SignalInterval.newBuilder()
+        .setStart(first.timestamp)
+        .setEnd(second.timestamp)
+        .addData(
+            SignalData.newBuilder()
+                .setValue(
+                    (double)
+                        (1000000000 * first.monotonicTime.getSecs()
+                            + first.monotonicTime.getNanos())))
+        .build();
+  }
+
+  private final Timestamp timestamp;
+  private final Timestamp monotonicTime;
+
+  MonotonicTimeSample() {
+    this.timestamp = Timestamps.now();
+    this.monotonicTime = Timestamps.monotonicTime();
+  }
+
+  MonotonicTimeSample(Instant timestamp) {
+    this.timestamp = Timestamps.fromInstant(timestamp);
+    this.monotonicTime = Timestamps.monotonicTime();
+  }
+}
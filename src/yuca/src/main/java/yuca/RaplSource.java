@@ -2,8 +2,10 @@ package yuca;
 
 import static yuca.util.LoggerUtil.getLogger;
 
+import java.time.Instant;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.logging.Logger;
 import yuca.linux.powercap.Powercap;
@@ -19,9 +21,11 @@ import yuca.util.Timestamps;
 final class RaplSource {
   private static final Logger logger = getLogger();
 
-  private static final RaplSource RAPL = new RaplSource("/dev/cpu/<socket>/msr", Rapl::sample);
+  private static final RaplSource RAPL =
+      new RaplSource("/dev/cpu/<socket>/msr", Rapl::sample, Rapl::sample);
   private static final RaplSource POWERCAP =
-      new RaplSource("/sys/devices/virtual/powercap/intel-rapl", Powercap::sample);
+      new RaplSource(
+          "/sys/devices/virtual/powercap/intel-rapl", Powercap::sample, Powercap::sample);
   private static final RaplSource FAKE = createFakeSource();
 
   /** Grab the first available energy source. Priority is rapl > powercap > fake */
@@ -40,10 +44,21 @@ final class RaplSource {
 
   final String name;
   final Supplier<Optional<?>> source;
+  // used when the sample has to share a timestamp with other sources
+  final Function<Instant, Optional<?>> timestampedSource;
 
-  private RaplSource(String name, Supplier<Optional<?>> source) {
+  private RaplSource(
+      String name,
+      Supplier<Optional<?>> source,
+      Function<Instant, Optional<?>> timestampedSource) {
     this.name = name;
     this.source = source;
+    this.timestampedSource = timestampedSource;
+  }
+
+  /** Returns whether this reads powercap, whose samples a {@link BatchSource} can stand in for. */
+  boolean isPowercap() {
+    return name.equals(POWERCAP.name);
   }
 
   public SignalInterval difference(Object first, Object second) {
@@ -64,6 +79,10 @@ final class RaplSource {
           int value = counter.getAndIncrement();
           Timestamp timestamp = Timestamps.now();
           return Optional.of(new FakeRaplReading(timestamp, value));
+        },
+        timestamp -> {
+          int value = counter.getAndIncrement();
+          return Optional.of(new FakeRaplReading(Timestamps.fromInstant(timestamp), value));
         });
   }
 
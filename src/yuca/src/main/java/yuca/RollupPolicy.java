@@ -0,0 +1,96 @@
+package yuca;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * How long an {@link IncrementalReport} keeps its intervals at each resolution. Intervals are kept
+ * as they are for the raw retention, and are then rolled up into tiers of increasing resolution,
+ * each of which keeps its intervals for its own retention before handing them to the next tier.
+ * Intervals that age out of the last tier are dropped, so a report's size is bounded no matter how
+ * long it runs.
+ */
+public final class RollupPolicy {
+  /**
+   * Keeps a minute of raw intervals, an hour at 1 second, a day at 1 minute and a month at 1 hour.
+   */
+  public static RollupPolicy defaults() {
+    return keepingRawFor(Duration.ofMinutes(1))
+        .withTier(Duration.ofSeconds(1), Duration.ofHours(1))
+        .withTier(Duration.ofMinutes(1), Duration.ofDays(1))
+        .withTier(Duration.ofHours(1), Duration.ofDays(30));
+  }
+
+  /** Keeps intervals as they are for the retention and drops them after, unless tiers are added. */
+  public static RollupPolicy keepingRawFor(Duration rawRetention) {
+    if (rawRetention.isNegative()) {
+      throw new IllegalArgumentException(
+          String.format("raw retention can't be negative (%s)", rawRetention));
+    }
+    return new RollupPolicy(rawRetention, List.of());
+  }
+
+  private final Duration rawRetention;
+  private final List<Tier> tiers;
+
+  private RollupPolicy(Duration rawRetention, List<Tier> tiers) {
+    this.rawRetention = rawRetention;
+    this.tiers = tiers;
+  }
+
+  /**
+   * Returns a policy that rolls what ages out of the current last tier up into intervals of the
+   * resolution, which are kept for the retention. The resolution has to be a multiple of the
+   * previous tier's.
+   */
+  public RollupPolicy withTier(Duration resolution, Duration retention) {
+    if (resolution.isZero() || resolution.isNegative() || retention.isNegative()) {
+      throw new IllegalArgumentException(
+          String.format(
+              "tiers need a positive resolution and retention (%s, %s)", resolution, retention));
+    }
+    if (!tiers.isEmpty()) {
+      long previous = tiers.get(tiers.size() - 1).resolutionNanos;
+      if (resolution.toNanos() <= previous || resolution.toNanos() % previous != 0) {
+        throw new IllegalArgumentException(
+            String.format(
+                "tier resolution %s isn't a multiple of the previous tier's %s",
+                resolution, Duration.ofNanos(previous)));
+      }
+    }
+    ArrayList<Tier> tiers = new ArrayList<>(this.tiers);
+    tiers.add(new Tier(resolution.toNanos(), retention.toNanos()));
+    return new RollupPolicy(rawRetention, List.copyOf(tiers));
+  }
+
+  public Duration rawRetention() {
+    return rawRetention;
+  }
+
+  List<Tier> tiers() {
+    return tiers;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder policy = new StringBuilder(String.format("raw for %s", rawRetention));
+    for (Tier tier : tiers) {
+      policy.append(
+          String.format(
+              ", %s for %s",
+              Duration.ofNanos(tier.resolutionNanos), Duration.ofNanos(tier.retentionNanos)));
+    }
+    return policy.toString();
+  }
+
+  static final class Tier {
+    final long resolutionNanos;
+    final long retentionNanos;
+
+    private Tier(long resolutionNanos, long retentionNanos) {
+      this.resolutionNanos = resolutionNanos;
+      this.retentionNanos = retentionNanos;
+    }
+  }
+}
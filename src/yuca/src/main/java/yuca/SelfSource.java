@@ -0,0 +1,154 @@
+package yuca;
+
+import static yuca.util.LoggerUtil.getLogger;
+import static yuca.util.Timestamps.fromInstant;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+import yuca.linux.jiffies.ProcessSample;
+import yuca.linux.jiffies.TaskSetReader;
+import yuca.signal.Component;
+import yuca.signal.SignalInterval;
+import yuca.signal.SignalInterval.SignalData;
+
+/**
+ * Sources for yuca's own footprint. Both sources are read on the sampling thread, so the first read
+ * from a thread starts tracking it; only threads that have sampled are ever reported. The jiffies
+ * come from /proc/self/task and the allocated bytes from the jvm's {@code ThreadMXBean}.
+ */
+final class SelfSource implements AutoCloseable {
+  private static final Logger logger = getLogger();
+
+  static final String COMPONENT_TYPE = "yuca_self";
+  static final long PID = ProcessHandle.current().pid();
+
+  private static final Path THREAD_SELF = Path.of("/proc", "thread-self");
+  private static final com.sun.management.ThreadMXBean THREADS = getThreadBean();
+
+  /** Returns the component that the footprint is reported under. */
+  static Component component() {
+    return Component.newBuilder()
+        .setComponentType(COMPONENT_TYPE)
+        .setComponentId(Long.toString(PID))
+        .build();
+  }
+
+  // the native tid of each java thread that has sampled
+  private final ConcurrentHashMap<Long, Long> samplerThreads = new ConcurrentHashMap<>();
+  private final TaskSetReader taskReader = TaskSetReader.forProcess(PID);
+
+  /** Reads the jiffies of the sampler threads. */
+  ProcessSample sampleTasks(Instant timestamp) {
+    trackCurrentThread();
+    return taskReader.read(timestamp);
+  }
+
+  /** Reads the bytes allocated by the sampler threads. Empty if the jvm can't measure it. */
+  Optional<AllocationSample> sampleAllocations(Instant timestamp) {
+    trackCurrentThread();
+    if (THREADS == null) {
+      return Optional.empty();
+    }
+    long[] javaIds = samplerThreads.keySet().stream().mapToLong(Long::longValue).toArray();
+    long[] bytes = THREADS.getThreadAllocatedBytes(javaIds);
+    long[] tids = new long[javaIds.length];
+    for (int i = 0; i < javaIds.length; i++) {
+      tids[i] = samplerThreads.get(javaIds[i]);
+    }
+    return Optional.of(new AllocationSample(timestamp, tids, bytes));
+  }
+
+  @Override
+  public void close() {
+    taskReader.close();
+  }
+
+  private void trackCurrentThread() {
+    long javaId = Thread.currentThread().getId();
+    if (samplerThreads.containsKey(javaId)) {
+      return;
+    }
+    try {
+      // /proc/thread-self links to <pid>/task/<tid>
+      long tid = Long.parseLong(Files.readSymbolicLink(THREAD_SELF).getFileName().toString());
+      if (taskReader.add(tid)) {
+        samplerThreads.put(javaId, tid);
+      }
+    } catch (IOException | NumberFormatException e) {
+      logger.fine(String.format("unable to find the tid of %s", Thread.currentThread()));
+    }
+  }
+
+  /** The bytes allocated since birth by each sampler thread, keyed by native tid. */
+  static final class AllocationSample implements Comparable<AllocationSample> {
+    private final Instant timestamp;
+    private final long[] tids;
+    // -1 if the thread is gone
+    private final long[] bytes;
+
+    private AllocationSample(Instant timestamp, long[] tids, long[] bytes) {
+      this.timestamp = timestamp;
+      this.tids = tids;
+      this.bytes = bytes;
+    }
+
+    @Override
+    public int compareTo(AllocationSample other) {
+      return timestamp.compareTo(other.timestamp);
+    }
+  }
+
+  /** Computes the bytes each sampler thread allocated between two samples. */
+  static SignalInterval allocationDifference(AllocationSample first, AllocationSample second) {
+    if (first.compareTo(second) > -1) {
+      throw new IllegalArgumentException(
+          String.format(
+              "first sample is not before second sample (%s !< %s)",
+              first.timestamp, second.timestamp));
+    }
+    SignalInterval.Builder interval =
+        SignalInterval.newBuilder()
+            .setStart(fromInstant(first.timestamp))
+            .setEnd(fromInstant(second.timestamp));
+    for (int i = 0; i < second.tids.length; i++) {
+      if (second.bytes[i] < 0) {
+        continue;
+      }
+      int j = 0;
+      while (j < first.tids.length && first.tids[j] != second.tids[i]) {
+        j++;
+      }
+      // skip threads that started being tracked in this interval
+      if (j == first.tids.length || first.bytes[j] < 0) {
+        continue;
+      }
+      interval.addData(
+          SignalData.newBuilder()
+              .addMetadata(
+                  SignalData.Metadata.newBuilder()
+                      .setName("task")
+                      .setValue(Long.toString(second.tids[i])))
+              .setValue(second.bytes[i] - first.bytes[j]));
+    }
+    return interval.build();
+  }
+
+  private static com.sun.management.ThreadMXBean getThreadBean() {
+    java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    if (threads instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+      if (allocations.isThreadAllocatedMemorySupported()) {
+        allocations.setThreadAllocatedMemoryEnabled(true);
+        return allocations;
+      }
+    }
+    logger.info("thread allocations can't be measured on this jvm");
+    return null;
+  }
+}
@@ -0,0 +1,147 @@
+package yuca;
+
+import static yuca.util.Timestamps.fromNanos;
+import static yuca.util.Timestamps.toNanos;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import yuca.signal.Signal;
+import yuca.signal.SignalInterval;
+import yuca.signal.SignalInterval.SignalData;
+import yuca.util.SignalUnits;
+
+/**
+ * The rolled up intervals of a signal that aged out of its raw intervals. Each tier folds the
+ * intervals that start in the same cell of its resolution into one interval; data are kept apart
+ * by their metadata, so per-socket and per-cpu values stay separate. Amounts, like joules or
+ * jiffies, are summed, while levels, like temperatures or frequencies, are averaged over the time
+ * their intervals cover.
+ */
+final class SignalRollup {
+  private final boolean isAmount;
+  private final ArrayList<Tier> tiers = new ArrayList<>();
+
+  private long droppedCount = 0;
+
+  SignalRollup(RollupPolicy policy, Signal.Unit unit) {
+    this.isAmount = SignalUnits.isAmount(unit);
+    for (RollupPolicy.Tier tier : policy.tiers()) {
+      tiers.add(new Tier(tier.resolutionNanos, tier.retentionNanos));
+    }
+  }
+
+  /** Rolls up an interval that aged out of the raw intervals. */
+  void add(SignalInterval interval) {
+    add(0, interval);
+  }
+
+  /** Returns the number of rolled up intervals, including the ones that are still filling up. */
+  int intervalCount() {
+    int count = 0;
+    for (Tier tier : tiers) {
+      count += tier.completed.size() + (tier.open != null ? 1 : 0);
+    }
+    return count;
+  }
+
+  /** Returns the number of intervals that aged out of the last tier. */
+  long droppedCount() {
+    return droppedCount;
+  }
+
+  /** Adds the rolled up intervals to the signal, oldest first. */
+  void addTo(Signal.Builder signal) {
+    for (int i = tiers.size() - 1; i >= 0; i--) {
+      Tier tier = tiers.get(i);
+      signal.addAllInterval(tier.completed);
+      if (tier.open != null) {
+        signal.addInterval(tier.open.build());
+      }
+    }
+  }
+
+  private void add(int level, SignalInterval interval) {
+    if (level == tiers.size()) {
+      droppedCount++;
+      return;
+    }
+    Tier tier = tiers.get(level);
+    long start = toNanos(interval.getStart());
+    long end = toNanos(interval.getEnd());
+    long cellStart = Math.floorDiv(start, tier.resolutionNanos) * tier.resolutionNanos;
+    if (tier.open != null && tier.open.cellStart != cellStart) {
+      tier.completed.addLast(tier.open.build());
+      tier.open = null;
+    }
+    if (tier.open == null) {
+      tier.open = new Cell(cellStart);
+    }
+    tier.open.add(interval, start, end);
+
+    // anything that ended before the retention is handed up to the next tier
+    long horizon = end - tier.retentionNanos;
+    while (!tier.completed.isEmpty()
+        && toNanos(tier.completed.peekFirst().getEnd()) < horizon) {
+      add(level + 1, tier.completed.pollFirst());
+    }
+  }
+
+  private static final class Tier {
+    private final long resolutionNanos;
+    private final long retentionNanos;
+    private final ArrayDeque<SignalInterval> completed = new ArrayDeque<>();
+
+    private Cell open;
+
+    private Tier(long resolutionNanos, long retentionNanos) {
+      this.resolutionNanos = resolutionNanos;
+      this.retentionNanos = retentionNanos;
+    }
+  }
+
+  /** The intervals that have been folded into a cell so far. */
+  private final class Cell {
+    private final long cellStart;
+    // the value so far and the time it covers for each distinct metadata
+    private final LinkedHashMap<List<SignalData.Metadata>, double[]> data = new LinkedHashMap<>();
+
+    private long start = Long.MAX_VALUE;
+    private long end = Long.MIN_VALUE;
+
+    private Cell(long cellStart) {
+      this.cellStart = cellStart;
+    }
+
+    private void add(SignalInterval interval, long start, long end) {
+      this.start = Math.min(this.start, start);
+      this.end = Math.max(this.end, end);
+      // an instantaneous interval covers a nanosecond
+      long weight = Math.max(1, end - start);
+      for (SignalData datum : interval.getDataList()) {
+        double[] value = data.computeIfAbsent(datum.getMetadataList(), k -> new double[2]);
+        if (isAmount) {
+          value[0] += datum.getValue();
+        } else {
+          value[0] += weight * datum.getValue();
+          value[1] += weight;
+        }
+      }
+    }
+
+    private SignalInterval build() {
+      SignalInterval.Builder interval =
+          SignalInterval.newBuilder().setStart(fromNanos(start)).setEnd(fromNanos(end));
+      for (Map.Entry<List<SignalData.Metadata>, double[]> datum : data.entrySet()) {
+        double[] value = datum.getValue();
+        interval.addData(
+            SignalData.newBuilder()
+                .addAllMetadata(datum.getKey())
+                .setValue(isAmount ? value[0] : value[0] / value[1]));
+      }
+      return interval.build();
+    }
+  }
+}
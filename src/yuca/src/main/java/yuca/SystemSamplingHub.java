@@ -0,0 +1,212 @@
+package yuca;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import yuca.linux.freq.CpuFreq;
+import yuca.linux.freq.CpuFrequencySample;
+import yuca.linux.jiffies.ProcStat;
+import yuca.linux.jiffies.ProcStatReader;
+import yuca.linux.jiffies.SystemSample;
+import yuca.linux.thermal.SysThermal;
+import yuca.linux.thermal.ThermalZonesSample;
+import yuca.signal.Component;
+import yuca.signal.Signal;
+import yuca.signal.SignalInterval;
+import yuca.util.CompositeSample;
+import yuca.util.CompositeSampler;
+import yuca.util.LoggerUtil;
+import yuca.util.SamplingFuture;
+
+/**
+ * Reads the system-wide sources once per tick and hands the result to every process session that
+ * is sampling at the same period. The system samples are differenced here, so each session only
+ * has to read and difference its own process's tasks; the per-cpu jiffies and per-socket energy
+ * that the accounting needs are computed once per tick in the {@link SystemTick}.
+ *
+ * <p>The hub only samples while it has sessions. Sessions are handed ticks on the hub's sampling
+ * thread, so they should hand the tick off rather than doing any real work.
+ */
+public final class SystemSamplingHub {
+  private static final Logger logger = LoggerUtil.getLogger();
+
+  private static final String OS_NAME = System.getProperty("os.name", "unknown");
+
+  // names of the system sources in each tick
+  public static final String MONOTONIC_TIME_SOURCE = "monotonic_time";
+  public static final String SYSTEM_SOURCE = "proc_stat";
+  public static final String RAPL_SOURCE = "rapl";
+  public static final String TEMPERATURE_SOURCE = "sys_thermal";
+  public static final String FREQUENCY_SOURCE = "cpufreq";
+
+  private final RaplSource raplSource = RaplSource.getRaplSource();
+  private final int periodMillis;
+  private final ScheduledExecutorService executor;
+  private final CompositeSampler sampler;
+  private final List<SourceDifference<?>> differences;
+  private final CopyOnWriteArrayList<Consumer<? super SystemTick>> sessions =
+      new CopyOnWriteArrayList<>();
+
+  // opened while there are sessions; sessions may hold onto a tick's raw samples on their own
+  // threads, so stat isn't double-buffered
+  private ProcStatReader systemReader;
+  private SamplingFuture<CompositeSample> future;
+
+  public SystemSamplingHub(int periodMillis, ScheduledExecutorService executor) {
+    this.periodMillis = periodMillis;
+    this.executor = executor;
+    this.sampler =
+        new CompositeSampler()
+            .register(MONOTONIC_TIME_SOURCE, MonotonicTimeSample::new)
+            .register(SYSTEM_SOURCE, timestamp -> systemReader.read(timestamp))
+            .register(RAPL_SOURCE, raplSource.timestampedSource)
+            .register(TEMPERATURE_SOURCE, SysThermal::sample)
+            .register(FREQUENCY_SOURCE, CpuFreq::sample);
+    this.differences =
+        List.of(
+            new SourceDifference<>(
+                MONOTONIC_TIME_SOURCE,
+                MonotonicTimeSample.class,
+                MonotonicTimeSample::difference),
+            new SourceDifference<>(SYSTEM_SOURCE, SystemSample.class, ProcStat::between),
+            new SourceDifference<>(RAPL_SOURCE, Object.class, raplSource::difference),
+            new SourceDifference<>(
+                TEMPERATURE_SOURCE, ThermalZonesSample.class, SysThermal::difference),
+            new SourceDifference<>(
+                FREQUENCY_SOURCE, CpuFrequencySample.class, CpuFreq::difference));
+  }
+
+  public int periodMillis() {
+    return periodMillis;
+  }
+
+  /** Returns the component that the system signals are reported under. */
+  public static Component component() {
+    return Component.newBuilder().setComponentType("linux_system").setComponentId(OS_NAME).build();
+  }
+
+  /**
+   * Adds the system signals to a report as shared signals. The report has to be fed with {@link
+   * IncrementalReport#add(SystemTick, CompositeSample)}.
+   */
+  public IncrementalReport addSystemSignals(IncrementalReport report) {
+    Component systemComponent = component();
+    return report
+        .addSharedSignal(
+            systemComponent,
+            MONOTONIC_TIME_SOURCE,
+            Signal.Unit.NANOSECONDS,
+            "clock_gettime(CLOCK_MONOTONIC, &ts)")
+        .addSharedSignal(systemComponent, RAPL_SOURCE, Signal.Unit.JOULES, raplSource.name)
+        .addSharedSignal(systemComponent, SYSTEM_SOURCE, Signal.Unit.JIFFIES, "/proc/stat")
+        .addSharedSignal(
+            systemComponent, TEMPERATURE_SOURCE, Signal.Unit.CELSIUS, "/sys/class/thermal")
+        .addSharedSignal(
+            systemComponent,
+            FREQUENCY_SOURCE,
+            Signal.Unit.HERTZ,
+            "/sys/devices/system/cpu/cpu_i/cpufreq")
+        .addEmissionsSignal(systemComponent, RAPL_SOURCE);
+  }
+
+  /** Hands every following tick to the session, starting to sample if this is the first one. */
+  public void addSession(Consumer<? super SystemTick> session) {
+    synchronized (this) {
+      sessions.add(session);
+      if (future == null) {
+        logger.info(String.format("starting system sampling at %d ms", periodMillis));
+        differences.forEach(SourceDifference::reset);
+        systemReader = ProcStatReader.open();
+        future = SamplingFuture.fixedPeriodMillis(sampler, this::publish, periodMillis, executor);
+      }
+    }
+  }
+
+  /** Returns whether any sessions are being handed ticks. */
+  public boolean hasSessions() {
+    return !sessions.isEmpty();
+  }
+
+  /** Stops handing ticks to the session, and stops sampling if it was the last one. */
+  public void removeSession(Consumer<? super SystemTick> session) {
+    synchronized (this) {
+      sessions.remove(session);
+      if (sessions.isEmpty() && future != null) {
+        future.get();
+        logger.info(
+            String.format(
+                "stopped system sampling at %d ms after %d samples (%d overruns, %d failed)",
+                periodMillis,
+                future.sampleCount(),
+                future.overrunCount(),
+                future.failureCount()));
+        future = null;
+        systemReader.close();
+        systemReader = null;
+      }
+    }
+  }
+
+  /** Differences the system sources and hands the tick to the sessions. */
+  private void publish(CompositeSample sample) {
+    HashMap<String, SignalInterval> intervals = new HashMap<>();
+    for (SourceDifference<?> difference : differences) {
+      SignalInterval interval = difference.update(sample);
+      if (interval != null) {
+        intervals.put(difference.sourceName, interval);
+      }
+    }
+    SystemTick tick = new SystemTick(sample, intervals);
+    for (Consumer<? super SystemTick> session : sessions) {
+      try {
+        session.accept(tick);
+      } catch (Exception e) {
+        logger.log(Level.WARNING, "a system sampling session failed", e);
+      }
+    }
+  }
+
+  /** Keeps the last sample of a source and differences each new one against it. */
+  private static final class SourceDifference<T> {
+    private final String sourceName;
+    private final Class<T> cls;
+    private final BiFunction<T, T, SignalInterval> difference;
+
+    private T previous;
+
+    private SourceDifference(
+        String sourceName, Class<T> cls, BiFunction<T, T, SignalInterval> difference) {
+      this.sourceName = sourceName;
+      this.cls = cls;
+      this.difference = difference;
+    }
+
+    private void reset() {
+      previous = null;
+    }
+
+    /** Returns the interval since the last sample, or null if there isn't one. */
+    private SignalInterval update(CompositeSample sample) {
+      T current = sample.get(sourceName, cls).orElse(null);
+      if (current == null) {
+        return null;
+      }
+      T first = previous;
+      previous = current;
+      if (first == null) {
+        return null;
+      }
+      try {
+        return difference.apply(first, current);
+      } catch (IllegalArgumentException e) {
+        // the samples can't be differenced (i.e. out of order), so start over from this one
+        return null;
+      }
+    }
+  }
+}
@@ -0,0 +1,58 @@
+package yuca;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import yuca.linux.jiffies.SocketEnergy;
+import yuca.linux.jiffies.SystemJiffies;
+import yuca.signal.SignalInterval;
+import yuca.util.CompositeSample;
+
+/**
+ * The system-wide sample of a tick from a {@link SystemSamplingHub}, along with the intervals since
+ * the previous tick. A tick is handed to every process session, so the system side of the
+ * accounting is computed by whichever session gets to it first and then reused by the rest.
+ */
+public final class SystemTick {
+  private final CompositeSample sample;
+  private final Map<String, SignalInterval> intervals;
+  private final ConcurrentHashMap<String, SystemJiffies> systemJiffies = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, SocketEnergy> socketEnergy = new ConcurrentHashMap<>();
+
+  SystemTick(CompositeSample sample, Map<String, SignalInterval> intervals) {
+    this.sample = sample;
+    this.intervals = Map.copyOf(intervals);
+  }
+
+  public Instant timestamp() {
+    return sample.timestamp();
+  }
+
+  /** Returns the raw samples of the system sources. */
+  public CompositeSample sample() {
+    return sample;
+  }
+
+  /** Returns the interval of a system source if it could be differenced this tick. */
+  public Optional<SignalInterval> interval(String source) {
+    return Optional.ofNullable(intervals.get(source));
+  }
+
+  /** Returns the intervals of every system source that could be differenced this tick. */
+  public Map<String, SignalInterval> intervals() {
+    return intervals;
+  }
+
+  /** Returns the per-cpu jiffies of a jiffies source, computing them on first use. */
+  public Optional<SystemJiffies> systemJiffies(String source) {
+    return interval(source)
+        .map(interval -> systemJiffies.computeIfAbsent(source, s -> SystemJiffies.of(interval)));
+  }
+
+  /** Returns the per-socket energy of an energy source, computing it on first use. */
+  public Optional<SocketEnergy> socketEnergy(String source) {
+    return interval(source)
+        .map(interval -> socketEnergy.computeIfAbsent(source, s -> SocketEnergy.of(interval)));
+  }
+}
@@ -1,62 +1,284 @@
 package yuca;
 
-import static java.util.stream.Collectors.toList;
-import static yuca.util.DataOperations.forwardApply;
-import static yuca.util.DataOperations.forwardPartialAlign;
-
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Consumer;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import yuca.emissions.EmissionsConverter;
 import yuca.emissions.LocaleEmissionsConverters;
+import yuca.linux.batch.BatchSampler;
 import yuca.linux.freq.CpuFreq;
 import yuca.linux.freq.CpuFrequencySample;
-import yuca.linux.jiffies.JiffiesAccounting;
 import yuca.linux.jiffies.ProcStat;
+import yuca.linux.jiffies.ProcStatReader;
 import yuca.linux.jiffies.ProcTask;
+import yuca.linux.jiffies.ProcSchedstat;
+import yuca.linux.jiffies.ProcTaskReader;
 import yuca.linux.jiffies.ProcessSample;
+import yuca.linux.jiffies.ProcessTreeReader;
+import yuca.linux.jiffies.RuntimeSample;
+import yuca.linux.jiffies.SchedstatReader;
 import yuca.linux.jiffies.SystemSample;
-import yuca.linux.jiffies.TaskEnergyAccounting;
+import yuca.linux.perf.PerfEventReader;
+import yuca.linux.perf.PerfEvents;
+import yuca.linux.perf.PerfSample;
+import yuca.linux.taskstats.TaskstatsReader;
 import yuca.linux.thermal.SysThermal;
 import yuca.linux.thermal.ThermalZonesSample;
+import yuca.log.SampleLogReader;
+import yuca.log.SampleLogWriter;
 import yuca.signal.Component;
 import yuca.signal.Report;
 import yuca.signal.Signal;
-import yuca.signal.SignalInterval;
-import yuca.signal.SignalInterval.SignalData;
-import yuca.signal.SignalInterval.Timestamp;
+import yuca.util.CompositeSample;
+import yuca.util.CompositeSampler;
 import yuca.util.LoggerUtil;
+import yuca.util.SamplerExecution;
 import yuca.util.SamplingFuture;
-import yuca.util.Timestamps;
 
-/** A class to collect and provide yuca signals. */
+/**
+ * A class to collect and provide yuca signals.
+ *
+ * <p>A monitor either samples the system by itself or shares a {@link SystemSamplingHub} with
+ * other monitors at the same period, in which case it only reads its own process's tasks on each
+ * of the hub's ticks.
+ *
+ * <p>A monitor can also append its raw samples to a {@link SampleLogWriter} instead of building the
+ * report as it goes. The report is then rebuilt by replaying the log when it is read or stopped, so
+ * the heap doesn't grow with the length of the run, and the log can be recovered with {@link
+ * #recover} if the monitor never got to stop.
+ *
+ * <p>A monitor can follow the process's descendants as well, in which case the process signals
+ * cover the whole tree and each datum is tagged with the process it came from.
+ *
+ * <p>A monitor can count the process's cpu time with perf events instead of /proc, which resolves
+ * below a jiffy and adds the tasks' cycles and instructions on machines with hardware counters.
+ * Without perf events, the tasks' schedstat files give the same resolution from /proc.
+ *
+ * <p>A monitor that samples by itself can read the system jiffies, its process's jiffies, and the
+ * powercap energy with a single {@link BatchSampler} call per tick instead of reading each source
+ * separately.
+ *
+ * <p>A monitor that samples by itself can adapt its period with an {@link AdaptivePeriod}, in which
+ * case the period used for each interval is reported as a signal of yuca itself.
+ */
 public final class YucaApplicationMonitor implements YucaMonitor {
   private static final Logger logger = LoggerUtil.getLogger();
 
-  private static final String OS_NAME = System.getProperty("os.name", "unknown");
   private static final String PROC_STAT = "/proc/stat";
 
+  // names of the sources in the composite sampler
+  private static final String MONOTONIC_TIME_SOURCE = SystemSamplingHub.MONOTONIC_TIME_SOURCE;
+  private static final String PROCESS_SOURCE = "proc_task";
+  private static final String SYSTEM_SOURCE = SystemSamplingHub.SYSTEM_SOURCE;
+  private static final String RAPL_SOURCE = SystemSamplingHub.RAPL_SOURCE;
+  private static final String SELF_TASK_SOURCE = "yuca_self_task";
+  private static final String SELF_ALLOCATION_SOURCE = "yuca_self_allocation";
+  private static final String TEMPERATURE_SOURCE = SystemSamplingHub.TEMPERATURE_SOURCE;
+  private static final String FREQUENCY_SOURCE = SystemSamplingHub.FREQUENCY_SOURCE;
+  private static final String SAMPLING_PERIOD_SOURCE = "yuca_sampling_period";
+  private static final String PERF_COUNTERS_SOURCE = "perf_counters";
+  // the sources with raw samples that can be logged
+  private static final List<String> LOGGED_SOURCES =
+      List.of(
+          SYSTEM_SOURCE,
+          RAPL_SOURCE,
+          TEMPERATURE_SOURCE,
+          FREQUENCY_SOURCE,
+          PROCESS_SOURCE,
+          SELF_TASK_SOURCE);
+
+  /**
+   * Rebuilds the report of a monitor from its sample log. This works on the log of a monitor that
+   * died while sampling, up to the last entry that was completely written.
+   */
+  public static Optional<Report> recover(long processId, Path sampleLogDirectory) {
+    if (!SampleLogReader.exists(sampleLogDirectory)) {
+      return Optional.empty();
+    }
+    return new YucaApplicationMonitor(0, processId, (ScheduledExecutorService) null)
+        .replay(sampleLogDirectory);
+  }
+
   // TODO: do we need to wire this back in?
   private final RaplSource raplSource = RaplSource.getRaplSource();
   private final EmissionsConverter converter = LocaleEmissionsConverters.forDefaultLocale();
   private final int periodMillis;
   private final long processId;
   private final ScheduledExecutorService executor;
+  private final CompositeSampler sampler;
+  // null if we sample the system ourselves
+  private final SystemSamplingHub hub;
+  // ticks are handed off to our executor so the hub isn't held up by our tasks
+  private final Consumer<SystemTick> session = this::handOff;
 
   private boolean isRunning = false;
-  private SamplingFuture<MonotonicTimeSample> monotonicTimeFuture;
-  private SamplingFuture<ProcessSample> processFuture;
-  private SamplingFuture<SystemSample> systemFuture;
-  private SamplingFuture<Optional<?>> raplFuture;
-  private SamplingFuture<ThermalZonesSample> systemTemperatureFuture;
-  private SamplingFuture<CpuFrequencySample> frequencyFuture;
+  private long tickCount = 0;
+  // set if samples should be logged rather than reported as they are collected
+  private Path sampleLogDirectory;
+  private SampleLogWriter sampleLog;
+  private boolean isFollowingChildren = false;
+  private boolean isCountingPerfEvents = false;
+  private boolean isReadingSchedstat = false;
+  private boolean isReadingTaskstats = false;
+  private boolean isSamplingInBatches = false;
+  // set if the period should follow what is being sampled
+  private AdaptivePeriod adaptivePeriod;
+  private AdaptivePeriodController periodController;
+  // opened for each run; samples are differenced as they arrive so stat can be double-buffered
+  private ProcStatReader systemReader;
+  private ProcTaskReader taskReader;
+  private ProcessTreeReader treeReader;
+  private PerfEventReader perfReader;
+  private SchedstatReader schedstatReader;
+  private TaskstatsReader taskstatsReader;
+  private BatchSource batchSource;
+  private SelfSource selfSource;
+  private SamplingFuture<CompositeSample> future;
+  private IncrementalReport report;
 
   public YucaApplicationMonitor(
       int periodMillis, long processId, ScheduledExecutorService executor) {
     this.periodMillis = periodMillis;
     this.processId = processId;
     this.executor = executor;
+    this.hub = null;
+    // all sources are read in a single tick so their intervals align exactly
+    this.sampler =
+        new CompositeSampler()
+            .register(MONOTONIC_TIME_SOURCE, MonotonicTimeSample::new)
+            .register(PROCESS_SOURCE, this::readProcess)
+            .register(SYSTEM_SOURCE, this::readSystem)
+            .register(RAPL_SOURCE, this::readEnergy)
+            .register(TEMPERATURE_SOURCE, SysThermal::sample)
+            .register(FREQUENCY_SOURCE, CpuFreq::sample)
+            .register(SELF_TASK_SOURCE, timestamp -> selfSource.sampleTasks(timestamp))
+            .register(
+                SELF_ALLOCATION_SOURCE, timestamp -> selfSource.sampleAllocations(timestamp));
+  }
+
+  /**
+   * Creates a monitor that samples with an execution mode. The procfs and sysfs sources are read
+   * concurrently if the execution has readers.
+   */
+  public YucaApplicationMonitor(int periodMillis, long processId, SamplerExecution execution) {
+    this(periodMillis, processId, execution.executor());
+    execution.configure(
+        sampler, PROCESS_SOURCE, SYSTEM_SOURCE, TEMPERATURE_SOURCE, FREQUENCY_SOURCE);
+  }
+
+  /**
+   * Creates a monitor that takes the system signals from a shared hub. The process's tasks are read
+   * on {@code executor} with the timestamp of each of the hub's ticks.
+   */
+  public YucaApplicationMonitor(
+      long processId, SystemSamplingHub hub, ScheduledExecutorService executor) {
+    this.periodMillis = hub.periodMillis();
+    this.processId = processId;
+    this.executor = executor;
+    this.hub = hub;
+    this.sampler =
+        new CompositeSampler()
+            .register(PROCESS_SOURCE, this::readProcess)
+            .register(SELF_TASK_SOURCE, timestamp -> selfSource.sampleTasks(timestamp))
+            .register(
+                SELF_ALLOCATION_SOURCE, timestamp -> selfSource.sampleAllocations(timestamp));
+  }
+
+  /**
+   * Logs the raw samples of the following runs to a directory instead of keeping the report on the
+   * heap. Only some of the sources can be logged, so the replayed report doesn't have the monotonic
+   * time or yuca's own allocations.
+   */
+  public YucaApplicationMonitor logSamplesTo(Path directory) {
+    synchronized (this) {
+      this.sampleLogDirectory = directory;
+    }
+    return this;
+  }
+
+  /**
+   * Reads the process's descendants along with it on the following runs. Descendants are found
+   * through the children of the tracked tasks, so only the tree is read on each tick.
+   */
+  public YucaApplicationMonitor followChildren() {
+    synchronized (this) {
+      this.isFollowingChildren = true;
+    }
+    return this;
+  }
+
+  /**
+   * Counts the process's cpu time with perf events instead of /proc on the following runs. Each
+   * task's task-clock is reported in fractional jiffies so it is accounted for like the jiffies
+   * from /proc, and the tasks' cycles and instructions are reported as well if the machine has the
+   * hardware counters. Falls back to /proc if perf events aren't available or if the run follows
+   * children or logs its samples.
+   */
+  public YucaApplicationMonitor countPerfEvents() {
+    synchronized (this) {
+      this.isCountingPerfEvents = true;
+    }
+    return this;
+  }
+
+  /**
+   * Reads the nanoseconds each task ran for from its schedstat file instead of its jiffies on the
+   * following runs, which keeps the process's activity meaningful at periods of a few jiffies. The
+   * run time is reported in fractional jiffies like perf events' task-clock. Falls back to jiffies
+   * if the kernel doesn't have schedstat files or if the run follows children or logs its samples,
+   * and is ignored if perf events are counted.
+   */
+  public YucaApplicationMonitor readSchedstat() {
+    synchronized (this) {
+      this.isReadingSchedstat = true;
+    }
+    return this;
+  }
+
+  /**
+   * Reads the process's jiffies from taskstats over netlink instead of each task's stat file on
+   * the following runs, which is cheaper for processes with many threads and keeps the last
+   * jiffies of tasks that exit between samples. Falls back to /proc if taskstats can't be queried,
+   * which needs CAP_NET_ADMIN, and is ignored if the run follows children or reads perf events or
+   * schedstat.
+   */
+  public YucaApplicationMonitor readTaskstats() {
+    synchronized (this) {
+      this.isReadingTaskstats = true;
+    }
+    return this;
+  }
+
+  /**
+   * Reads the system jiffies, the process's jiffies, and the powercap energy together with a {@link
+   * BatchSampler} on the following runs, which crosses into native code once per tick if the
+   * native sampler can be loaded. The energy is still read on its own if the machine doesn't have
+   * powercap. Ignored if the monitor shares a hub, or if the run follows children or reads perf
+   * events, schedstat, or taskstats.
+   */
+  public YucaApplicationMonitor sampleInBatches() {
+    synchronized (this) {
+      this.isSamplingInBatches = true;
+    }
+    return this;
+  }
+
+  /**
+   * Adapts the sampling period of the following runs to the process's activity and the package
+   * power, starting from the monitor's period. This has no effect on a monitor that shares a hub,
+   * since the hub sets the period.
+   */
+  public YucaApplicationMonitor adaptPeriod(AdaptivePeriod policy) {
+    synchronized (this) {
+      this.adaptivePeriod = policy;
+    }
+    return this;
   }
 
   /** Starts the sampling futures is we aren't already running. */
@@ -65,202 +287,449 @@ public final class YucaApplicationMonitor implements YucaMonitor {
     synchronized (this) {
       if (!isRunning && ProcessHandle.of(processId).isPresent()) {
         logger.info(
-            String.format("starting yuca for process %d at %d ms", processId, periodMillis));
-        monotonicTimeFuture =
-            SamplingFuture.fixedPeriodMillis(MonotonicTimeSample::new, periodMillis, executor);
-        // TODO: there's a conceptual hole here if
-        processFuture =
-            SamplingFuture.fixedPeriodMillis(
-                () -> ProcTask.sampleTasksFor(processId), periodMillis, executor);
-        systemFuture =
-            SamplingFuture.fixedPeriodMillis(ProcStat::sampleCpus, periodMillis, executor);
-        raplFuture =
-            SamplingFuture.fixedPeriodMillis(raplSource.source::get, periodMillis, executor);
-        systemTemperatureFuture =
-            SamplingFuture.fixedPeriodMillis(SysThermal::sample, periodMillis, executor);
-        frequencyFuture = SamplingFuture.fixedPeriodMillis(CpuFreq::sample, periodMillis, executor);
+            String.format(
+                "starting yuca for process %d%s at %d ms",
+                processId, isFollowingChildren ? " and its children" : "", periodMillis));
+        if (isCountingPerfEvents) {
+          perfReader = openPerfReader();
+        }
+        if (perfReader == null && isReadingSchedstat) {
+          schedstatReader = openSchedstatReader();
+        }
+        if (perfReader != null && perfReader.read().hasHardwareCounters()) {
+          sampler.register(PERF_COUNTERS_SOURCE, timestamp -> perfReader.read(timestamp));
+        }
+        if (perfReader == null && schedstatReader == null && !isFollowingChildren) {
+          if (isReadingTaskstats) {
+            taskstatsReader = openTaskstatsReader();
+          }
+          if (taskstatsReader == null && isSamplingInBatches) {
+            batchSource = openBatchSource();
+          }
+          if (taskstatsReader == null && batchSource == null) {
+            taskReader = ProcTaskReader.forProcess(processId);
+          }
+        } else if (perfReader == null && schedstatReader == null) {
+          treeReader = ProcessTreeReader.forProcess(processId);
+        }
+        selfSource = new SelfSource();
+        if (adaptivePeriod != null && hub == null) {
+          logger.info(String.format("adapting the sampling period (%s)", adaptivePeriod));
+          periodController =
+              new AdaptivePeriodController(
+                  adaptivePeriod,
+                  periodMillis,
+                  PROCESS_SOURCE,
+                  RAPL_SOURCE,
+                  raplSource::difference);
+          sampler.register(SAMPLING_PERIOD_SOURCE, periodController::sample);
+        } else if (adaptivePeriod != null) {
+          logger.warning("not adapting the sampling period since it is set by the hub");
+        }
+        sampleLog = openSampleLog();
+        report = sampleLog == null ? createReport(hub != null) : null;
         isRunning = true;
+        if (hub != null) {
+          tickCount = 0;
+          hub.addSession(session);
+        } else {
+          if (batchSource == null) {
+            systemReader = ProcStatReader.doubleBuffered();
+          }
+          Consumer<CompositeSample> sink = sampleLog != null ? sampleLog::append : report::add;
+          if (periodController != null) {
+            future =
+                SamplingFuture.fromMillisSupplier(
+                    sampler,
+                    sink.andThen(periodController::observe),
+                    periodController::nextPeriodMillis,
+                    executor);
+          } else {
+            future = SamplingFuture.fixedPeriodMillis(sampler, sink, periodMillis, executor);
+          }
+        }
       }
     }
   }
 
   /**
-   * Stops the sampling futures and merges the data they collected into a {@link YucaReport}.
+   * Stops the sampling futures and returns the {@link Report} that was built while sampling.
    * Returns an empty {@link Optional} if yuca wasn't running.
    */
-  // TODO: this can throw if any of the futures are empty. i don't know how to handle this yet
   @Override
   public Optional<Report> stop() {
     synchronized (this) {
       if (isRunning) {
         logger.info("stopping yuca");
         isRunning = false;
-
-        String procTask = String.format("/proc/%d/task", processId);
-        Component.Builder processComponent =
-            Component.newBuilder()
-                .setComponentType("linux_process")
-                .setComponentId(Long.toString(processId));
-        Component.Builder systemComponent =
-            Component.newBuilder().setComponentType("linux_system").setComponentId(OS_NAME);
-
-        // physical signals
-        logger.info("creating monotonic time signal");
-        createPhysicalSignal(
-                forwardApply(
-                    monotonicTimeFuture.get(), YucaApplicationMonitor::monotonicTimeDifference),
-                Signal.Unit.NANOSECONDS,
-                "clock_gettime(CLOCK_MONOTONIC, &ts)")
-            .ifPresent(systemComponent::addSignal);
-
-        logger.info("creating rapl energy signal");
-        Optional<Signal> raplEnergy =
-            createPhysicalSignal(
-                forwardApply(
-                    raplFuture.get().stream()
-                        .filter(Optional::isPresent)
-                        .map(Optional::get)
-                        .collect(toList()),
-                    raplSource::difference),
-                Signal.Unit.JOULES,
-                raplSource.name);
-        raplEnergy.ifPresent(systemComponent::addSignal);
-
-        logger.info("creating process jiffies signal");
-        Optional<Signal> processJiffies =
-            createPhysicalSignal(
-                forwardApply(processFuture.get(), ProcTask::between),
-                Signal.Unit.JIFFIES,
-                procTask);
-        processJiffies.ifPresent(processComponent::addSignal);
-
-        logger.info("creating system jiffies signal");
-        Optional<Signal> systemJiffies =
-            createPhysicalSignal(
-                forwardApply(systemFuture.get(), ProcStat::between),
-                Signal.Unit.JIFFIES,
-                PROC_STAT);
-        systemJiffies.ifPresent(systemComponent::addSignal);
-
-        logger.info("creating cpu temperature signal");
-        createPhysicalSignal(
-                forwardApply(systemTemperatureFuture.get(), SysThermal::difference),
-                Signal.Unit.CELSIUS,
-                "/sys/class/thermal")
-            .ifPresent(systemComponent::addSignal);
-
-        logger.info("creating cpu frequency signal");
-        createPhysicalSignal(
-                forwardApply(frequencyFuture.get(), CpuFreq::difference),
-                Signal.Unit.HERTZ,
-                "/sys/devices/system/cpu/cpu_i/cpufreq")
-            .ifPresent(systemComponent::addSignal);
-        monotonicTimeFuture = null;
-        systemTemperatureFuture = null;
-        processFuture = null;
-        systemFuture = null;
-        raplFuture = null;
-        frequencyFuture = null;
-
-        // virtual signals
-        if (raplEnergy.isEmpty()) {
-          logger.info("not creating rapl emissions: no rapl energy");
+        if (hub != null) {
+          hub.removeSession(session);
+          logger.info(String.format("collected %d shared ticks", tickCount));
         } else {
-          logger.info("creating rapl emissions signal");
-          systemComponent.addSignal(convertToEmissions(raplEnergy.get()));
-        }
-
-        if (processJiffies.isEmpty() && systemJiffies.isEmpty()) {
-          logger.info("not creating linux process activity: no jiffies");
-        } else {
-          List<SignalInterval> activity =
-              forwardPartialAlign(
-                  processJiffies.get().getIntervalList(),
-                  systemJiffies.get().getIntervalList(),
-                  JiffiesAccounting::computeTaskActivity);
-          if (activity.size() > 0) {
-            logger.info("creating linux process activity signal");
-            processComponent.addSignal(
-                Signal.newBuilder()
-                    .setUnit(Signal.Unit.ACTIVITY)
-                    .addSource(procTask)
-                    .addSource(PROC_STAT)
-                    .addAllInterval(activity));
-            if (raplEnergy.isPresent()) {
-              logger.info("creating linux process energy signal");
-              Signal processEnergy =
-                  Signal.newBuilder()
-                      .setUnit(Signal.Unit.JOULES)
-                      .addSource(procTask)
-                      .addSource(PROC_STAT)
-                      .addSource("/sys/devices/virtual/powercap/intel-rapl")
-                      .addAllInterval(
-                          forwardPartialAlign(
-                              activity,
-                              raplEnergy.get().getIntervalList(),
-                              TaskEnergyAccounting::computeTaskEnergy))
-                      .build();
-              processComponent.addSignal(processEnergy);
-
-              logger.info("creating linux process emissions signal");
-              processComponent.addSignal(convertToEmissions(processEnergy));
-            } else {
-              logger.info("not creating linux process energy: no rapl energy");
-            }
-          } else {
-            logger.info("not creating linux process activity: no activity");
+          future.get();
+          logger.info(
+              String.format(
+                  "collected %d samples (%d overruns, %d dropped, %d failed; jitter of %s)",
+                  future.sampleCount(),
+                  future.overrunCount(),
+                  future.droppedCount(),
+                  future.failureCount(),
+                  future.jitter()));
+          future = null;
+          if (systemReader != null) {
+            systemReader.close();
+            systemReader = null;
           }
         }
-        Report.Builder report = Report.newBuilder();
-        if (systemComponent.getSignalCount() > 0) {
-          report.addComponent(systemComponent);
+        if (periodController != null) {
+          logger.info(
+              String.format("finished at a period of %d ms", periodController.periodMillis()));
+          sampler.unregister(SAMPLING_PERIOD_SOURCE);
+          periodController = null;
         }
-        if (processComponent.getSignalCount() > 0) {
-          report.addComponent(processComponent);
+        if (perfReader != null) {
+          sampler.unregister(PERF_COUNTERS_SOURCE);
+          perfReader.close();
+          perfReader = null;
+        } else if (schedstatReader != null) {
+          schedstatReader.close();
+          schedstatReader = null;
+        } else if (taskstatsReader != null) {
+          logger.info(String.format("caught %d task exits", taskstatsReader.exitCount()));
+          taskstatsReader.close();
+          taskstatsReader = null;
+        } else if (batchSource != null) {
+          batchSource.close();
+          batchSource = null;
+        } else if (treeReader != null) {
+          logger.info(String.format("followed %d processes", treeReader.processCount()));
+          treeReader.close();
+          treeReader = null;
+        } else {
+          taskReader.close();
+          taskReader = null;
         }
-        if (report.getComponentCount() > 0) {
-          return Optional.of(report.build());
+        selfSource.close();
+        if (sampleLog != null) {
+          sampleLog.close();
+          sampleLog = null;
+          Optional<Report> stoppedReport = replay(sampleLogDirectory);
+          try {
+            // the report is handed back so the log isn't needed anymore
+            SampleLogWriter.delete(sampleLogDirectory);
+          } catch (IOException e) {
+            logger.log(
+                Level.WARNING,
+                String.format("unable to delete the sample log at %s", sampleLogDirectory),
+                e);
+          }
+          return stoppedReport;
         }
+        Optional<Report> stoppedReport = report.snapshot();
+        report = null;
+        return stoppedReport;
       }
     }
     return Optional.empty();
   }
 
+  /** Returns the {@link Report} of what has been collected so far if we are running. */
+  @Override
+  public Optional<Report> read() {
+    synchronized (this) {
+      if (isRunning && sampleLog != null) {
+        return replay(sampleLogDirectory);
+      } else if (isRunning) {
+        return report.snapshot();
+      }
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * Hands the intervals of each following tick to the listener if we are running. Nothing is
+   * computed while samples are being logged, so there is nothing to subscribe to.
+   */
+  @Override
+  public boolean subscribe(Consumer<? super Report> listener) {
+    synchronized (this) {
+      if (isRunning && report != null) {
+        report.addListener(listener);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public void unsubscribe(Consumer<? super Report> listener) {
+    synchronized (this) {
+      if (isRunning && report != null) {
+        report.removeListener(listener);
+      }
+    }
+  }
+
   @Override
   public Signal convertToEmissions(Signal signal) {
     return converter.convert(signal);
   }
 
-  private Optional<Signal> createPhysicalSignal(
-      List<SignalInterval> intervals, Signal.Unit unit, String source) {
-    if (intervals.isEmpty()) {
-      return Optional.empty();
+  private Object readProcess(Instant timestamp) {
+    if (perfReader != null) {
+      return perfReader.read(timestamp);
+    } else if (schedstatReader != null) {
+      return schedstatReader.read(timestamp);
+    } else if (taskstatsReader != null) {
+      return taskstatsReader.read(timestamp);
+    } else if (batchSource != null) {
+      return batchSource.read(timestamp).process();
     }
-    return Optional.of(
-        Signal.newBuilder().setUnit(unit).addSource(source).addAllInterval(intervals).build());
+    return treeReader != null ? treeReader.read(timestamp) : taskReader.read(timestamp);
   }
 
-  private static class MonotonicTimeSample {
-    private final Timestamp timestamp;
-    private final Timestamp monotonicTime;
+  private Object readSystem(Instant timestamp) {
+    if (batchSource != null) {
+      return batchSource.read(timestamp).system();
+    }
+    return systemReader.read(timestamp);
+  }
 
-    private MonotonicTimeSample() {
-      this.timestamp = Timestamps.now();
-      this.monotonicTime = Timestamps.monotonicTime();
+  private Object readEnergy(Instant timestamp) {
+    if (batchSource != null && raplSource.isPowercap()) {
+      return batchSource.read(timestamp).energy();
     }
+    return raplSource.timestampedSource.apply(timestamp);
   }
 
-  private static SignalInterval monotonicTimeDifference(
-      MonotonicTimeSample first, MonotonicTimeSample second) {
-    return SignalInterval.newBuilder()
-        .setStart(first.timestamp)
-        .setEnd(second.timestamp)
-        .addData(
-            SignalData.newBuilder()
-                .setValue(
-                    (double)
-                        (1000000000 * first.monotonicTime.getSecs()
-                            + first.monotonicTime.getNanos())))
-        .build();
+  /** Opens the perf events of the process, or returns null if they can't be used for this run. */
+  private PerfEventReader openPerfReader() {
+    if (isFollowingChildren || sampleLogDirectory != null) {
+      logger.warning("not counting perf events since they can't follow children or be logged");
+      return null;
+    }
+    PerfEventReader reader = PerfEventReader.forProcess(processId);
+    if (reader == null) {
+      logger.warning("perf events aren't available; reading /proc instead");
+    }
+    return reader;
+  }
+
+  /** Opens the schedstat files of the process, or returns null if they can't be used this run. */
+  private SchedstatReader openSchedstatReader() {
+    if (isFollowingChildren || sampleLogDirectory != null) {
+      logger.warning("not reading schedstat since it can't follow children or be logged");
+      return null;
+    } else if (!SchedstatReader.isAvailable()) {
+      logger.warning("schedstat isn't available; reading jiffies instead");
+      return null;
+    }
+    return SchedstatReader.forProcess(processId);
+  }
+
+  /** Opens a batch sampler for the process, or returns null if this run can't share one. */
+  private BatchSource openBatchSource() {
+    if (hub != null) {
+      logger.warning("not sampling in batches since the system is sampled by the hub");
+      return null;
+    }
+    return new BatchSource(BatchSampler.forProcess(processId));
+  }
+
+  /** Opens the taskstats of the process, or returns null if they can't be queried. */
+  private TaskstatsReader openTaskstatsReader() {
+    TaskstatsReader reader = TaskstatsReader.forProcess(processId);
+    if (reader == null) {
+      logger.warning("taskstats aren't available; reading /proc instead");
+    }
+    return reader;
+  }
+
+  private void handOff(SystemTick tick) {
+    executor.execute(() -> onTick(tick));
+  }
+
+  /** Reads the process's tasks for one of the hub's ticks. Runs on our executor. */
+  private void onTick(SystemTick tick) {
+    synchronized (this) {
+      if (!isRunning) {
+        // the tick was queued before we stopped
+        return;
+      }
+      tickCount++;
+      CompositeSample sample = sampler.sample(tick.timestamp());
+      if (sampleLog != null) {
+        // the system samples are logged too so the log can be replayed on its own
+        sampleLog.append(tick.sample());
+        sampleLog.append(sample);
+      } else {
+        report.add(tick, sample);
+      }
+    }
+  }
+
+  /** Opens a log in the sample log directory if there is one, or returns null. */
+  private SampleLogWriter openSampleLog() {
+    if (sampleLogDirectory == null) {
+      return null;
+    }
+    try {
+      logger.info(String.format("logging yuca samples to %s", sampleLogDirectory));
+      return SampleLogWriter.create(sampleLogDirectory, LOGGED_SOURCES);
+    } catch (IOException e) {
+      logger.log(
+          Level.WARNING,
+          String.format(
+              "unable to log samples to %s; keeping the report in memory instead",
+              sampleLogDirectory),
+          e);
+      return null;
+    }
+  }
+
+  /** Rebuilds a report by streaming the ticks of a sample log through a new report. */
+  private Optional<Report> replay(Path directory) {
+    // the log has the raw system samples, so it is replayed as if we sampled the system ourselves
+    IncrementalReport replayed = createReport(false);
+    try {
+      SampleLogReader.replay(directory, replayed::add);
+    } catch (IOException e) {
+      logger.log(
+          Level.WARNING, String.format("unable to replay the sample log at %s", directory), e);
+    }
+    return replayed.snapshot();
+  }
+
+  /** Sets up the physical and virtual signals that are computed from each sample. */
+  private IncrementalReport createReport(boolean isShared) {
+    IncrementalReport report = new IncrementalReport(converter);
+    if (isShared) {
+      hub.addSystemSignals(report);
+    } else {
+      addSystemSignals(report);
+    }
+    return addProcessSignals(report);
+  }
+
+  /** Sets up the system signals for when we sample the system ourselves. */
+  private IncrementalReport addSystemSignals(IncrementalReport report) {
+    Component systemComponent = SystemSamplingHub.component();
+    return report
+        .addPhysicalSignal(
+            systemComponent,
+            MONOTONIC_TIME_SOURCE,
+            MonotonicTimeSample.class,
+            MonotonicTimeSample::difference,
+            Signal.Unit.NANOSECONDS,
+            "clock_gettime(CLOCK_MONOTONIC, &ts)")
+        .addPhysicalSignal(
+            systemComponent,
+            RAPL_SOURCE,
+            Object.class,
+            raplSource::difference,
+            Signal.Unit.JOULES,
+            raplSource.name)
+        .addPhysicalSignal(
+            systemComponent,
+            SYSTEM_SOURCE,
+            SystemSample.class,
+            ProcStat::between,
+            Signal.Unit.JIFFIES,
+            PROC_STAT)
+        .addPhysicalSignal(
+            systemComponent,
+            TEMPERATURE_SOURCE,
+            ThermalZonesSample.class,
+            SysThermal::difference,
+            Signal.Unit.CELSIUS,
+            "/sys/class/thermal")
+        .addPhysicalSignal(
+            systemComponent,
+            FREQUENCY_SOURCE,
+            CpuFrequencySample.class,
+            CpuFreq::difference,
+            Signal.Unit.HERTZ,
+            "/sys/devices/system/cpu/cpu_i/cpufreq")
+        .addEmissionsSignal(systemComponent, RAPL_SOURCE);
+  }
+
+  /** Sets up the signals of the process and of yuca itself. */
+  private IncrementalReport addProcessSignals(IncrementalReport report) {
+    String procTask =
+        String.format(
+            isFollowingChildren ? "/proc/%d/task and descendants" : "/proc/%d/task", processId);
+    if (taskstatsReader != null) {
+      procTask = String.format("taskstats of /proc/%d/task", processId);
+    }
+    Component processComponent =
+        Component.newBuilder()
+            .setComponentType("linux_process")
+            .setComponentId(Long.toString(processId))
+            .build();
+    Component selfComponent = SelfSource.component();
+    if (perfReader != null) {
+      String perfEvents = String.format("perf_event_open(%d's tasks)", processId);
+      report.addPhysicalSignal(
+          processComponent,
+          PROCESS_SOURCE,
+          PerfSample.class,
+          PerfEvents::between,
+          Signal.Unit.JIFFIES,
+          perfEvents);
+      if (sampler.sources().contains(PERF_COUNTERS_SOURCE)) {
+        report.addPhysicalSignal(
+            processComponent,
+            PERF_COUNTERS_SOURCE,
+            PerfSample.class,
+            PerfEvents::countersBetween,
+            Signal.Unit.EVENTS,
+            perfEvents);
+      }
+    } else if (schedstatReader != null) {
+      report.addPhysicalSignal(
+          processComponent,
+          PROCESS_SOURCE,
+          RuntimeSample.class,
+          ProcSchedstat::between,
+          Signal.Unit.JIFFIES,
+          String.format("/proc/%d/task/tid/schedstat", processId));
+    } else {
+      report.addPhysicalSignal(
+          processComponent,
+          PROCESS_SOURCE,
+          ProcessSample.class,
+          ProcTask::between,
+          Signal.Unit.JIFFIES,
+          procTask);
+    }
+    report
+        .addProcessAccounting(processComponent, PROCESS_SOURCE, SYSTEM_SOURCE, RAPL_SOURCE)
+        // yuca's own footprint
+        .addPhysicalSignal(
+            selfComponent,
+            SELF_TASK_SOURCE,
+            ProcessSample.class,
+            ProcTask::between,
+            Signal.Unit.JIFFIES,
+            "/proc/self/task")
+        .addPhysicalSignal(
+            selfComponent,
+            SELF_ALLOCATION_SOURCE,
+            SelfSource.AllocationSample.class,
+            SelfSource::allocationDifference,
+            Signal.Unit.BYTES,
+            "ThreadMXBean.getThreadAllocatedBytes")
+        .addProcessAccounting(selfComponent, SELF_TASK_SOURCE, SYSTEM_SOURCE, RAPL_SOURCE)
+        .addLatencyHistograms(selfComponent);
+    if (periodController != null) {
+      report.addPhysicalSignal(
+          selfComponent,
+          SAMPLING_PERIOD_SOURCE,
+          AdaptivePeriodController.PeriodSample.class,
+          AdaptivePeriodController::periodDifference,
+          Signal.Unit.NANOSECONDS,
+          "adaptive sampling period");
+    }
+    return report;
   }
 }
@@ -0,0 +1,218 @@
+package yuca;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+import yuca.emissions.EmissionsConverter;
+import yuca.emissions.LocaleEmissionsConverters;
+import yuca.linux.cgroup.CgroupReader;
+import yuca.linux.cgroup.CgroupSample;
+import yuca.linux.cgroup.Cgroups;
+import yuca.linux.jiffies.ProcStat;
+import yuca.linux.jiffies.ProcStatReader;
+import yuca.linux.jiffies.SystemSample;
+import yuca.signal.Component;
+import yuca.signal.Report;
+import yuca.signal.Signal;
+import yuca.util.CompositeSample;
+import yuca.util.CompositeSampler;
+import yuca.util.LoggerUtil;
+import yuca.util.SamplerExecution;
+import yuca.util.SamplingFuture;
+
+/**
+ * A monitor for a set of cgroup v2s, such as the containers on a node. Each cgroup's cpu.stat is
+ * read on every tick, so the cost of a tick grows with the number of cgroups rather than with the
+ * number of threads in them. Every cgroup is reported as its own component with its cpu time and
+ * the activity, energy and emissions that are attributed to it from the system's jiffies and
+ * energy.
+ *
+ * <p>Like the {@link YucaSystemMonitor}, this is meant to run continuously, so its report is rolled
+ * up with a {@link RollupPolicy}.
+ */
+public final class YucaCgroupMonitor implements YucaMonitor {
+  private static final Logger logger = LoggerUtil.getLogger();
+
+  private static final String PROC_STAT = "/proc/stat";
+
+  // names of the sources in the composite sampler
+  private static final String SYSTEM_SOURCE = SystemSamplingHub.SYSTEM_SOURCE;
+  private static final String RAPL_SOURCE = SystemSamplingHub.RAPL_SOURCE;
+  private static final String CGROUP_SOURCE_PREFIX = "cgroup:";
+
+  private final SamplerExecution execution;
+  private final ScheduledExecutorService executor;
+  private final RaplSource raplSource = RaplSource.getRaplSource();
+  private final EmissionsConverter converter = LocaleEmissionsConverters.forDefaultLocale();
+  private final int periodMillis;
+  private final List<String> cgroups;
+  private final RollupPolicy rollups;
+
+  private boolean isRunning = false;
+  // opened for each run; samples are differenced as they arrive so stat can be double-buffered
+  private ProcStatReader systemReader;
+  private List<CgroupReader> cgroupReaders;
+  private SamplingFuture<CompositeSample> future;
+  private IncrementalReport report;
+
+  /** Creates a monitor for cgroups given as paths that are relative to /sys/fs/cgroup. */
+  public YucaCgroupMonitor(int periodMillis, List<String> cgroups) {
+    this(periodMillis, cgroups, RollupPolicy.defaults());
+  }
+
+  public YucaCgroupMonitor(int periodMillis, List<String> cgroups, RollupPolicy rollups) {
+    this(periodMillis, cgroups, rollups, SamplerExecution.platform("yuca-sampling-thread"));
+  }
+
+  /**
+   * Creates a monitor that samples with an execution mode. /proc/stat and the cgroups' cpu.stat are
+   * read concurrently if the execution has readers.
+   */
+  public YucaCgroupMonitor(
+      int periodMillis, List<String> cgroups, RollupPolicy rollups, SamplerExecution execution) {
+    this.periodMillis = periodMillis;
+    this.cgroups = List.copyOf(cgroups);
+    this.rollups = rollups;
+    this.execution = execution;
+    this.executor = execution.executor();
+  }
+
+  /** Starts the sampling futures is we aren't already running. */
+  @Override
+  public void start() {
+    synchronized (this) {
+      if (!isRunning) {
+        logger.info(
+            String.format(
+                "starting yuca for %d cgroups at %d ms on %s threads (keeping %s)",
+                cgroups.size(), periodMillis, execution, rollups));
+        systemReader = ProcStatReader.doubleBuffered();
+        cgroupReaders = new ArrayList<>();
+        ArrayList<String> slowSources = new ArrayList<>(List.of(SYSTEM_SOURCE));
+        CompositeSampler sampler =
+            new CompositeSampler()
+                .register(SYSTEM_SOURCE, timestamp -> systemReader.read(timestamp))
+                .register(RAPL_SOURCE, raplSource.timestampedSource);
+        for (String cgroup : cgroups) {
+          CgroupReader reader = CgroupReader.forCgroup(cgroup);
+          cgroupReaders.add(reader);
+          sampler.register(CGROUP_SOURCE_PREFIX + cgroup, reader::read);
+          slowSources.add(CGROUP_SOURCE_PREFIX + cgroup);
+        }
+        execution.configure(sampler, slowSources.toArray(String[]::new));
+        report = createReport();
+        future = SamplingFuture.fixedPeriodMillis(sampler, report::add, periodMillis, executor);
+        isRunning = true;
+      }
+    }
+  }
+
+  /**
+   * Stops the sampling futures and returns the {@link Report} that was built while sampling.
+   * Returns an empty {@link Optional} if yuca wasn't running.
+   */
+  @Override
+  public Optional<Report> stop() {
+    synchronized (this) {
+      if (isRunning) {
+        logger.info("stopping yuca");
+        isRunning = false;
+        future.get();
+        logger.info(
+            String.format(
+                "collected %d samples (%d overruns, %d dropped, %d failed; jitter of %s)",
+                future.sampleCount(),
+                future.overrunCount(),
+                future.droppedCount(),
+                future.failureCount(),
+                future.jitter()));
+        future = null;
+        systemReader.close();
+        cgroupReaders.forEach(CgroupReader::close);
+        cgroupReaders = null;
+        Optional<Report> stoppedReport = report.snapshot();
+        report = null;
+        return stoppedReport;
+      }
+    }
+    return Optional.empty();
+  }
+
+  /** Returns the {@link Report} of what has been collected so far if we are running. */
+  @Override
+  public Optional<Report> read() {
+    synchronized (this) {
+      if (isRunning) {
+        return report.snapshot();
+      }
+    }
+    return Optional.empty();
+  }
+
+  /** Hands the intervals of each following tick to the listener if we are running. */
+  @Override
+  public boolean subscribe(Consumer<? super Report> listener) {
+    synchronized (this) {
+      if (isRunning) {
+        report.addListener(listener);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public void unsubscribe(Consumer<? super Report> listener) {
+    synchronized (this) {
+      if (isRunning) {
+        report.removeListener(listener);
+      }
+    }
+  }
+
+  @Override
+  public Signal convertToEmissions(Signal signal) {
+    return converter.convert(signal);
+  }
+
+  /** Sets up the system signals and the signals of each cgroup. */
+  private IncrementalReport createReport() {
+    Component systemComponent = SystemSamplingHub.component();
+    IncrementalReport report =
+        new IncrementalReport(converter)
+            .withRollups(rollups)
+            .addPhysicalSignal(
+                systemComponent,
+                RAPL_SOURCE,
+                Object.class,
+                raplSource::difference,
+                Signal.Unit.JOULES,
+                raplSource.name)
+            .addPhysicalSignal(
+                systemComponent,
+                SYSTEM_SOURCE,
+                SystemSample.class,
+                ProcStat::between,
+                Signal.Unit.JIFFIES,
+                PROC_STAT)
+            .addEmissionsSignal(systemComponent, RAPL_SOURCE);
+    for (String cgroup : cgroups) {
+      Component cgroupComponent =
+          Component.newBuilder().setComponentType("linux_cgroup").setComponentId(cgroup).build();
+      String sourceName = CGROUP_SOURCE_PREFIX + cgroup;
+      report
+          .addPhysicalSignal(
+              cgroupComponent,
+              sourceName,
+              CgroupSample.class,
+              Cgroups::between,
+              Signal.Unit.JIFFIES,
+              String.format("/sys/fs/cgroup/%s/cpu.stat", cgroup))
+          .addCgroupAccounting(cgroupComponent, sourceName, SYSTEM_SOURCE, RAPL_SOURCE);
+    }
+    return report;
+  }
+}
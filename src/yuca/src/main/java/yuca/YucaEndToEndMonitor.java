@@ -5,6 +5,7 @@ import static yuca.util.DataOperations.forwardApply;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
 import yuca.emissions.EmissionsConverter;
 import yuca.emissions.LocaleEmissionsConverters;
@@ -14,10 +15,7 @@ import yuca.signal.Component;
 import yuca.signal.Report;
 import yuca.signal.Signal;
 import yuca.signal.SignalInterval;
-import yuca.signal.SignalInterval.SignalData;
-import yuca.signal.SignalInterval.Timestamp;
 import yuca.util.LoggerUtil;
-import yuca.util.Timestamps;
 
 /** A class to collect and provide yuca signals for single sampling. */
 public final class YucaEndToEndMonitor implements YucaMonitor {
@@ -67,7 +65,7 @@ public final class YucaEndToEndMonitor implements YucaMonitor {
     createPhysicalSignal(
             forwardApply(
                 List.of(monotonicTimeStart, monotonicTimeEnd),
-                YucaEndToEndMonitor::monotonicTimeDifference),
+                MonotonicTimeSample::difference),
             Signal.Unit.NANOSECONDS,
             "clock_gettime(CLOCK_MONOTONIC, &ts)")
         .ifPresent(systemComponent::addSignal);
@@ -110,6 +108,21 @@ public final class YucaEndToEndMonitor implements YucaMonitor {
     return Optional.empty();
   }
 
+  /** Returns nothing since only the end points are sampled. */
+  @Override
+  public Optional<Report> read() {
+    return Optional.empty();
+  }
+
+  /** Can't be subscribed to since there are no intervals until stopping. */
+  @Override
+  public boolean subscribe(Consumer<? super Report> listener) {
+    return false;
+  }
+
+  @Override
+  public void unsubscribe(Consumer<? super Report> listener) {}
+
   @Override
   public Signal convertToEmissions(Signal signal) {
     return converter.convert(signal);
@@ -123,28 +136,4 @@ public final class YucaEndToEndMonitor implements YucaMonitor {
     return Optional.of(
         Signal.newBuilder().setUnit(unit).addSource(source).addAllInterval(intervals).build());
   }
-
-  private static class MonotonicTimeSample {
-    private final Timestamp timestamp;
-    private final Timestamp monotonicTime;
-
-    private MonotonicTimeSample() {
-      this.timestamp = Timestamps.now();
-      this.monotonicTime = Timestamps.monotonicTime();
-    }
-  }
-
-  private static SignalInterval monotonicTimeDifference(
-      MonotonicTimeSample first, MonotonicTimeSample second) {
-    return SignalInterval.newBuilder()
-        .setStart(first.timestamp)
-        .setEnd(second.timestamp)
-        .addData(
-            SignalData.newBuilder()
-                .setValue(
-                    (double)
-                        (1000000000 * first.monotonicTime.getSecs()
-                            + first.monotonicTime.getNanos())))
-        .build();
-  }
 }
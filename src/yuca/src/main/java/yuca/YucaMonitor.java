@@ -1,6 +1,7 @@
 package yuca;
 
 import java.util.Optional;
+import java.util.function.Consumer;
 import yuca.signal.Report;
 import yuca.signal.Signal;
 
@@ -12,5 +13,17 @@ public interface YucaMonitor {
   /** Stops monitoring and maybe return a report if there was any data. */
   Optional<Report> stop();
 
+  /** Returns a report of the data collected so far without stopping, if there is any. */
+  Optional<Report> read();
+
+  /**
+   * Hands the intervals computed in each following tick to a listener. Returns false if the monitor
+   * isn't running or can't produce intervals while running.
+   */
+  boolean subscribe(Consumer<? super Report> listener);
+
+  /** Stops handing intervals to a listener. */
+  void unsubscribe(Consumer<? super Report> listener);
+
   Signal convertToEmissions(Signal signal);
 }
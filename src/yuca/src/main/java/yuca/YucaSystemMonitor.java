@@ -1,53 +1,84 @@
 package yuca;
 
-import static java.util.stream.Collectors.toList;
-import static yuca.util.DataOperations.forwardApply;
-
-import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
 import yuca.emissions.EmissionsConverter;
 import yuca.emissions.LocaleEmissionsConverters;
 import yuca.linux.jiffies.ProcStat;
+import yuca.linux.jiffies.ProcStatReader;
+import yuca.linux.jiffies.ProcTask;
+import yuca.linux.jiffies.ProcessSample;
 import yuca.linux.jiffies.SystemSample;
 import yuca.signal.Component;
 import yuca.signal.Report;
 import yuca.signal.Signal;
-import yuca.signal.SignalInterval;
-import yuca.signal.SignalInterval.SignalData;
-import yuca.signal.SignalInterval.Timestamp;
+import yuca.util.CompositeSample;
+import yuca.util.CompositeSampler;
 import yuca.util.LoggerUtil;
+import yuca.util.SamplerExecution;
 import yuca.util.SamplingFuture;
-import yuca.util.Timestamps;
 
-/** A class to collect and provide yuca signals. */
+/**
+ * A class to collect and provide yuca signals. The monitor is meant to run continuously, so its
+ * report is rolled up with a {@link RollupPolicy} to stay within a fixed size.
+ */
 public final class YucaSystemMonitor implements YucaMonitor {
   private static final Logger logger = LoggerUtil.getLogger();
 
   private static final String OS_NAME = System.getProperty("os.name", "unknown");
   private static final String PROC_STAT = "/proc/stat";
 
-  private final ScheduledExecutorService executor =
-      Executors.newSingleThreadScheduledExecutor(
-          r -> {
-            Thread t = new Thread(r, "yuca-sampling-thread");
-            t.setDaemon(true);
-            return t;
-          });
+  // names of the sources in the composite sampler
+  private static final String MONOTONIC_TIME_SOURCE = "monotonic_time";
+  private static final String SYSTEM_SOURCE = "proc_stat";
+  private static final String RAPL_SOURCE = "rapl";
+  private static final String SELF_TASK_SOURCE = "yuca_self_task";
+  private static final String SELF_ALLOCATION_SOURCE = "yuca_self_allocation";
+
+  private final SamplerExecution execution;
+  private final ScheduledExecutorService executor;
   // TODO: do we need to wire this back in?
   private final RaplSource raplSource = RaplSource.getRaplSource();
   private final EmissionsConverter converter = LocaleEmissionsConverters.forDefaultLocale();
   private final int periodMillis;
+  private final RollupPolicy rollups;
+
+  private final CompositeSampler sampler =
+      new CompositeSampler()
+          .register(MONOTONIC_TIME_SOURCE, MonotonicTimeSample::new)
+          .register(SYSTEM_SOURCE, timestamp -> this.systemReader.read(timestamp))
+          .register(RAPL_SOURCE, raplSource.timestampedSource)
+          .register(SELF_TASK_SOURCE, timestamp -> this.selfSource.sampleTasks(timestamp))
+          .register(
+              SELF_ALLOCATION_SOURCE, timestamp -> this.selfSource.sampleAllocations(timestamp));
 
   private boolean isRunning = false;
-  private SamplingFuture<MonotonicTimeSample> monotonicTimeFuture;
-  private SamplingFuture<SystemSample> systemFuture;
-  private SamplingFuture<Optional<?>> raplFuture;
+  // opened for each run; samples are differenced as they arrive so it can be double-buffered
+  private ProcStatReader systemReader;
+  private SelfSource selfSource;
+  private SamplingFuture<CompositeSample> future;
+  private IncrementalReport report;
 
   public YucaSystemMonitor(int periodMillis) {
+    this(periodMillis, RollupPolicy.defaults());
+  }
+
+  public YucaSystemMonitor(int periodMillis, RollupPolicy rollups) {
+    this(periodMillis, rollups, SamplerExecution.platform("yuca-sampling-thread"));
+  }
+
+  /**
+   * Creates a monitor that samples with an execution mode. /proc/stat is read concurrently if the
+   * execution has readers.
+   */
+  public YucaSystemMonitor(int periodMillis, RollupPolicy rollups, SamplerExecution execution) {
     this.periodMillis = periodMillis;
+    this.rollups = rollups;
+    this.execution = execution;
+    this.executor = execution.executor();
+    execution.configure(sampler, SYSTEM_SOURCE);
   }
 
   /** Starts the sampling futures is we aren't already running. */
@@ -55,120 +86,133 @@ public final class YucaSystemMonitor implements YucaMonitor {
   public void start() {
     synchronized (this) {
       if (!isRunning) {
-        logger.info(String.format("starting yuca for linux system at %d ms", periodMillis));
-        monotonicTimeFuture =
-            SamplingFuture.fixedPeriodMillis(MonotonicTimeSample::new, periodMillis, executor);
-        systemFuture =
-            SamplingFuture.fixedPeriodMillis(ProcStat::sampleCpus, periodMillis, executor);
-        raplFuture =
-            SamplingFuture.fixedPeriodMillis(raplSource.source::get, periodMillis, executor);
+        logger.info(
+            String.format(
+                "starting yuca for linux system at %d ms on %s threads (keeping %s)",
+                periodMillis, execution, rollups));
+        systemReader = ProcStatReader.doubleBuffered();
+        selfSource = new SelfSource();
+        report = createReport();
+        future = SamplingFuture.fixedPeriodMillis(sampler, report::add, periodMillis, executor);
         isRunning = true;
       }
     }
   }
 
   /**
-   * Stops the sampling futures and merges the data they collected into a {@link YucaReport}.
+   * Stops the sampling futures and returns the {@link Report} that was built while sampling.
    * Returns an empty {@link Optional} if yuca wasn't running.
    */
-  // TODO: this can throw if any of the futures are empty. i don't know how to handle this yet
   @Override
   public Optional<Report> stop() {
     synchronized (this) {
       if (isRunning) {
         logger.info("stopping yuca");
         isRunning = false;
-
-        Component.Builder systemComponent =
-            Component.newBuilder().setComponentType("linux_system").setComponentId(OS_NAME);
-
-        // physical signals
-        logger.info("creating monotonic time signal");
-        createPhysicalSignal(
-                forwardApply(monotonicTimeFuture.get(), YucaSystemMonitor::monotonicTimeDifference),
-                Signal.Unit.NANOSECONDS,
-                "clock_gettime(CLOCK_MONOTONIC, &ts)")
-            .ifPresent(systemComponent::addSignal);
-
-        logger.info("creating rapl energy signal");
-        Optional<Signal> raplEnergy =
-            createPhysicalSignal(
-                forwardApply(
-                    raplFuture.get().stream()
-                        .filter(Optional::isPresent)
-                        .map(Optional::get)
-                        .collect(toList()),
-                    raplSource::difference),
-                Signal.Unit.JOULES,
-                raplSource.name);
-        raplEnergy.ifPresent(systemComponent::addSignal);
-
-        logger.info("creating system jiffies signal");
-        Optional<Signal> systemJiffies =
-            createPhysicalSignal(
-                forwardApply(systemFuture.get(), ProcStat::between),
-                Signal.Unit.JIFFIES,
-                PROC_STAT);
-        systemJiffies.ifPresent(systemComponent::addSignal);
-        monotonicTimeFuture = null;
-        systemFuture = null;
-        raplFuture = null;
-
-        // virtual signals
-        if (raplEnergy.isEmpty()) {
-          logger.info("not creating rapl emissions: no rapl energy");
-        } else {
-          logger.info("creating rapl emissions signal");
-          systemComponent.addSignal(convertToEmissions(raplEnergy.get()));
-        }
-
-        Report.Builder report = Report.newBuilder();
-        if (systemComponent.getSignalCount() > 0) {
-          report.addComponent(systemComponent);
-        }
-        if (report.getComponentCount() > 0) {
-          return Optional.of(report.build());
-        }
+        future.get();
+        logger.info(
+            String.format(
+                "collected %d samples (%d overruns, %d dropped, %d failed; jitter of %s)",
+                future.sampleCount(),
+                future.overrunCount(),
+                future.droppedCount(),
+                future.failureCount(),
+                future.jitter()));
+        future = null;
+        systemReader.close();
+        selfSource.close();
+        Optional<Report> stoppedReport = report.snapshot();
+        report = null;
+        return stoppedReport;
       }
     }
     return Optional.empty();
   }
 
+  /** Returns the {@link Report} of what has been collected so far if we are running. */
   @Override
-  public Signal convertToEmissions(Signal signal) {
-    return converter.convert(signal);
+  public Optional<Report> read() {
+    synchronized (this) {
+      if (isRunning) {
+        return report.snapshot();
+      }
+    }
+    return Optional.empty();
   }
 
-  private Optional<Signal> createPhysicalSignal(
-      List<SignalInterval> intervals, Signal.Unit unit, String source) {
-    if (intervals.isEmpty()) {
-      return Optional.empty();
+  /** Hands the intervals of each following tick to the listener if we are running. */
+  @Override
+  public boolean subscribe(Consumer<? super Report> listener) {
+    synchronized (this) {
+      if (isRunning) {
+        report.addListener(listener);
+        return true;
+      }
     }
-    return Optional.of(
-        Signal.newBuilder().setUnit(unit).addSource(source).addAllInterval(intervals).build());
+    return false;
   }
 
-  private static class MonotonicTimeSample {
-    private final Timestamp timestamp;
-    private final Timestamp monotonicTime;
-
-    private MonotonicTimeSample() {
-      this.timestamp = Timestamps.now();
-      this.monotonicTime = Timestamps.monotonicTime();
+  @Override
+  public void unsubscribe(Consumer<? super Report> listener) {
+    synchronized (this) {
+      if (isRunning) {
+        report.removeListener(listener);
+      }
     }
   }
 
-  private static SignalInterval monotonicTimeDifference(
-      MonotonicTimeSample first, MonotonicTimeSample second) {
-    return SignalInterval.newBuilder()
-        .setStart(first.timestamp)
-        .setEnd(second.timestamp)
-        .addData(
-            SignalData.newBuilder()
-                .setValue(
-                    (double)
-                        (1000000000 * first.monotonicTime.getSecs()
-                            + first.monotonicTime.getNanos())))
-        .build();
+  @Override
+  public Signal convertToEmissions(Signal signal) {
+    return converter.convert(signal);
+  }
+
+  /** Sets up the physical and virtual signals that are computed from each sample. */
+  private IncrementalReport createReport() {
+    Component systemComponent =
+        Component.newBuilder().setComponentType("linux_system").setComponentId(OS_NAME).build();
+    Component selfComponent = SelfSource.component();
+    return new IncrementalReport(converter)
+        .withRollups(rollups)
+        // physical signals
+        .addPhysicalSignal(
+            systemComponent,
+            MONOTONIC_TIME_SOURCE,
+            MonotonicTimeSample.class,
+            MonotonicTimeSample::difference,
+            Signal.Unit.NANOSECONDS,
+            "clock_gettime(CLOCK_MONOTONIC, &ts)")
+        .addPhysicalSignal(
+            systemComponent,
+            RAPL_SOURCE,
+            Object.class,
+            raplSource::difference,
+            Signal.Unit.JOULES,
+            raplSource.name)
+        .addPhysicalSignal(
+            systemComponent,
+            SYSTEM_SOURCE,
+            SystemSample.class,
+            ProcStat::between,
+            Signal.Unit.JIFFIES,
+            PROC_STAT)
+        // virtual signals
+        .addEmissionsSignal(systemComponent, RAPL_SOURCE)
+        // yuca's own footprint
+        .addPhysicalSignal(
+            selfComponent,
+            SELF_TASK_SOURCE,
+            ProcessSample.class,
+            ProcTask::between,
+            Signal.Unit.JIFFIES,
+            "/proc/self/task")
+        .addPhysicalSignal(
+            selfComponent,
+            SELF_ALLOCATION_SOURCE,
+            SelfSource.AllocationSample.class,
+            SelfSource::allocationDifference,
+            Signal.Unit.BYTES,
+            "ThreadMXBean.getThreadAllocatedBytes")
+        .addProcessAccounting(selfComponent, SELF_TASK_SOURCE, SYSTEM_SOURCE, RAPL_SOURCE)
+        .addLatencyHistograms(selfComponent);
   }
 }
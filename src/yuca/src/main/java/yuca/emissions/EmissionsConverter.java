@@ -1,6 +1,7 @@
 package yuca.emissions;
 
 import yuca.signal.Signal;
+import yuca.signal.SignalInterval;
 
 /** An interface that converts an interval of something to co2 emissions. */
 public interface EmissionsConverter {
@@ -9,4 +10,10 @@ public interface EmissionsConverter {
    * cannot be converted to co2, an empty list is returned.
    */
   Signal convert(Signal signal);
+
+  /**
+   * Converts a single {@link SignalInterval} of some {@link Unit} to {@link Unit.GRAMS_OF_CO2}. If
+   * it cannot be converted to co2, an empty interval is returned.
+   */
+  SignalInterval convert(Signal.Unit unit, SignalInterval interval);
 }
@@ -22,63 +22,60 @@ public final class JoulesEmissionsConverter implements EmissionsConverter {
 
   @Override
   public Signal convert(Signal signal) {
-    Signal.Builder emissionsSignal = Signal.newBuilder();
     switch (signal.getUnit()) {
       case JOULES:
+      case WATTS:
         return Signal.newBuilder()
             .setUnit(Signal.Unit.GRAMS_OF_CO2)
             .addAllSource(signal.getSourceList())
             .addSource(source)
             .addAllInterval(
                 signal.getIntervalList().stream()
+                    .map(interval -> convert(signal.getUnit(), interval))
+                    .collect(toList()))
+            .build();
+      default:
+        return Signal.getDefaultInstance();
+    }
+  }
+
+  @Override
+  public SignalInterval convert(Signal.Unit unit, SignalInterval interval) {
+    switch (unit) {
+      case JOULES:
+        return SignalInterval.newBuilder()
+            .setStart(interval.getStart())
+            .setEnd(interval.getEnd())
+            .addAllData(
+                interval.getDataList().stream()
                     .map(
-                        interval ->
-                            SignalInterval.newBuilder()
-                                .setStart(interval.getStart())
-                                .setEnd(interval.getEnd())
-                                .addAllData(
-                                    interval.getDataList().stream()
-                                        .map(
-                                            data ->
-                                                SignalData.newBuilder()
-                                                    .addAllMetadata(data.getMetadataList())
-                                                    .setValue(convertJoules(data.getValue()))
-                                                    .build())
-                                        .collect(toList()))
+                        data ->
+                            SignalData.newBuilder()
+                                .addAllMetadata(data.getMetadataList())
+                                .setValue(convertJoules(data.getValue()))
                                 .build())
                     .collect(toList()))
             .build();
       case WATTS:
-        return Signal.newBuilder()
-            .setUnit(Signal.Unit.GRAMS_OF_CO2)
-            .addAllSource(signal.getSourceList())
-            .addSource(source)
-            .addAllInterval(
-                signal.getIntervalList().stream()
+        return SignalInterval.newBuilder()
+            .setStart(interval.getStart())
+            .setEnd(interval.getEnd())
+            .addAllData(
+                interval.getDataList().stream()
                     .map(
-                        interval ->
-                            SignalInterval.newBuilder()
-                                .setStart(interval.getStart())
-                                .setEnd(interval.getEnd())
-                                .addAllData(
-                                    interval.getDataList().stream()
-                                        .map(
-                                            data ->
-                                                SignalData.newBuilder()
-                                                    .addAllMetadata(data.getMetadataList())
-                                                    .setValue(
-                                                        convertJoules(
-                                                            Timestamps.betweenAsSecs(
-                                                                    interval.getStart(),
-                                                                    interval.getEnd())
-                                                                * data.getValue()))
-                                                    .build())
-                                        .collect(toList()))
+                        data ->
+                            SignalData.newBuilder()
+                                .addAllMetadata(data.getMetadataList())
+                                .setValue(
+                                    convertJoules(
+                                        Timestamps.betweenAsSecs(
+                                                interval.getStart(), interval.getEnd())
+                                            * data.getValue()))
                                 .build())
                     .collect(toList()))
             .build();
       default:
-        return Signal.getDefaultInstance();
+        return SignalInterval.getDefaultInstance();
     }
   }
 
@@ -0,0 +1,47 @@
+package yuca.linux.batch;
+
+import java.time.Instant;
+import java.util.Optional;
+import yuca.linux.jiffies.ProcessSample;
+import yuca.linux.jiffies.SystemSample;
+import yuca.linux.powercap.PowercapSample;
+
+/** The system jiffies, process jiffies, and energy read by a single {@link BatchSampler} call. */
+public final class BatchSample implements Comparable<BatchSample> {
+  private final Instant timestamp;
+  private final SystemSample system;
+  private final ProcessSample process;
+  private final Optional<PowercapSample> energy;
+
+  BatchSample(
+      Instant timestamp,
+      SystemSample system,
+      ProcessSample process,
+      Optional<PowercapSample> energy) {
+    this.timestamp = timestamp;
+    this.system = system;
+    this.process = process;
+    this.energy = energy;
+  }
+
+  public Instant timestamp() {
+    return timestamp;
+  }
+
+  public SystemSample system() {
+    return system;
+  }
+
+  public ProcessSample process() {
+    return process;
+  }
+
+  public Optional<PowercapSample> energy() {
+    return energy;
+  }
+
+  @Override
+  public int compareTo(BatchSample other) {
+    return timestamp().compareTo(other.timestamp());
+  }
+}
@@ -0,0 +1,32 @@
+package yuca.linux.batch;
+
+import java.time.Instant;
+
+/**
+ * A sampler that reads the system jiffies, a process's task jiffies, and the socket energy together
+ * so that all three share a timestamp.
+ */
+public interface BatchSampler extends AutoCloseable {
+  /** Opens the native sampler for the process if it can be loaded, otherwise the Java one. */
+  static BatchSampler forProcess(long pid) {
+    if (NativeBatchSampler.isAvailable()) {
+      BatchSampler sampler = NativeBatchSampler.forProcess(pid);
+      if (sampler != null) {
+        return sampler;
+      }
+    }
+    return JavaBatchSampler.forProcess(pid);
+  }
+
+  /** Reads everything and stamps the {@link BatchSample} with the time it was read. */
+  BatchSample sample();
+
+  /**
+   * Reads everything and stamps the {@link BatchSample} with the given timestamp, i.e. of a tick
+   * that other sources are read in.
+   */
+  BatchSample sample(Instant timestamp);
+
+  @Override
+  void close();
+}
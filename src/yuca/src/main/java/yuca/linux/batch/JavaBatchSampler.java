@@ -0,0 +1,50 @@
+package yuca.linux.batch;
+
+import static yuca.util.Timestamps.nowAsInstant;
+
+import java.time.Instant;
+import yuca.linux.jiffies.ProcStat;
+import yuca.linux.jiffies.ProcStatReader;
+import yuca.linux.jiffies.ProcTaskReader;
+import yuca.linux.jiffies.ProcessSample;
+import yuca.linux.jiffies.SystemSample;
+import yuca.linux.powercap.Powercap;
+
+/** A {@link BatchSampler} that reads each source with its pure Java reader. */
+public final class JavaBatchSampler implements BatchSampler {
+  /** Opens a sampler for the process. */
+  public static JavaBatchSampler forProcess(long pid) {
+    return new JavaBatchSampler(pid);
+  }
+
+  private final long pid;
+  private final ProcStatReader systemReader = ProcStatReader.open();
+  private final ProcTaskReader taskReader;
+
+  private JavaBatchSampler(long pid) {
+    this.pid = pid;
+    this.taskReader = ProcTaskReader.forProcess(pid);
+  }
+
+  @Override
+  public BatchSample sample() {
+    return sample(nowAsInstant());
+  }
+
+  @Override
+  public BatchSample sample(Instant timestamp) {
+    SystemSample system = systemReader.read(timestamp);
+    if (system == null) {
+      // an empty sample, like ProcStat.sampleCpus when /proc/stat can't be read
+      system = ProcStat.readingToSample(new long[0], 0, 0, timestamp);
+    }
+    ProcessSample process = taskReader.read(timestamp);
+    return new BatchSample(timestamp, system, process, Powercap.sample(timestamp));
+  }
+
+  @Override
+  public void close() {
+    systemReader.close();
+    taskReader.close();
+  }
+}
@@ -0,0 +1,172 @@
+package yuca.linux.batch;
+
+import static yuca.util.LoggerUtil.getLogger;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.logging.Logger;
+import yuca.linux.jiffies.ProcStat;
+import yuca.linux.jiffies.ProcTask;
+import yuca.linux.jiffies.ProcessSample;
+import yuca.linux.jiffies.SystemSample;
+import yuca.linux.powercap.Powercap;
+import yuca.linux.powercap.PowercapSample;
+import yuca.util.NativeUtils;
+
+/**
+ * A {@link BatchSampler} that reads every source with a single native call. The native side keeps
+ * the /proc and powercap files open and writes the raw counters as longs into a direct buffer, so
+ * no strings are made on either side of the call. The buffer is laid out as:
+ *
+ * <pre>
+ * [timestamp_us, cpu_count, socket_count, task_count,
+ *  cpu_count x (cpu, user, nice, system, idle, iowait, irq, softirq, steal, guest, guest_nice),
+ *  socket_count x (package_uj, dram_uj),
+ *  task_count x (tid, cpu, user, system)]
+ * </pre>
+ */
+public final class NativeBatchSampler implements BatchSampler {
+  private static final Logger logger = getLogger();
+
+  private static final int HEADER_LENGTH = 4;
+  private static final int CPU_LENGTH = 11;
+  private static final int SOCKET_LENGTH = 2;
+  private static final int MICROS_PER_SEC = 1000000;
+  private static final double MICROJOULES_PER_JOULE = 1000000.0;
+  // enough for the header, the cpus, two sockets, and a few hundred tasks
+  private static final int INITIAL_LENGTH =
+      HEADER_LENGTH
+          + CPU_LENGTH * Runtime.getRuntime().availableProcessors()
+          + 2 * SOCKET_LENGTH
+          + 4 * 512;
+
+  private static final boolean IS_AVAILABLE = loadLibrary();
+
+  /** Returns whether the native library could be loaded. */
+  public static boolean isAvailable() {
+    return IS_AVAILABLE;
+  }
+
+  /** Opens a sampler for the process. Returns null if the native library can't set up. */
+  public static NativeBatchSampler forProcess(long pid) {
+    if (!IS_AVAILABLE) {
+      return null;
+    }
+    long handle = openNative(pid);
+    if (handle == 0) {
+      logger.warning(String.format("unable to open a native batch sampler for %d", pid));
+      return null;
+    }
+    return new NativeBatchSampler(pid, handle);
+  }
+
+  private final long pid;
+
+  private long handle;
+  private ByteBuffer buffer;
+  private long[] entries;
+
+  private NativeBatchSampler(long pid, long handle) {
+    this.pid = pid;
+    this.handle = handle;
+    allocate(INITIAL_LENGTH);
+  }
+
+  @Override
+  public synchronized BatchSample sample() {
+    read();
+    long micros = entries[0];
+    return toSample(
+        Instant.ofEpochSecond(micros / MICROS_PER_SEC, 1000 * (micros % MICROS_PER_SEC)));
+  }
+
+  @Override
+  public synchronized BatchSample sample(Instant timestamp) {
+    read();
+    return toSample(timestamp);
+  }
+
+  @Override
+  public synchronized void close() {
+    if (handle != 0) {
+      closeNative(handle);
+      handle = 0;
+    }
+  }
+
+  /** Makes the native call into the buffer and copies what was written into the entries. */
+  private void read() {
+    if (handle == 0) {
+      throw new IllegalStateException("sampler has been closed");
+    }
+    int length = sampleNative(handle, buffer);
+    while (length < 0) {
+      // the buffer was too small and we were told how much room is needed
+      allocate(Math.max(-length, 2 * entries.length));
+      length = sampleNative(handle, buffer);
+    }
+    if (length == 0) {
+      throw new IllegalStateException("unable to allocate the process's task list");
+    }
+    buffer.asLongBuffer().get(entries, 0, length);
+  }
+
+  /** Builds the sample out of the entries of the last read. */
+  private BatchSample toSample(Instant timestamp) {
+    int cpuCount = (int) entries[1];
+    int socketCount = (int) entries[2];
+    int taskCount = (int) entries[3];
+
+    int offset = HEADER_LENGTH;
+    SystemSample system = ProcStat.readingToSample(entries, offset, cpuCount, timestamp);
+    offset += CPU_LENGTH * cpuCount;
+
+    Optional<PowercapSample> energy = Optional.empty();
+    if (socketCount > 0) {
+      double[] joules = new double[SOCKET_LENGTH * socketCount];
+      for (int i = 0; i < joules.length; i++) {
+        joules[i] = entries[offset + i] / MICROJOULES_PER_JOULE;
+      }
+      energy = Optional.of(Powercap.readingToSample(joules, timestamp));
+    }
+    offset += SOCKET_LENGTH * socketCount;
+
+    ProcessSample process = ProcTask.readingToSample(pid, entries, offset, taskCount, timestamp);
+    return new BatchSample(timestamp, system, process, energy);
+  }
+
+  private void allocate(int length) {
+    buffer = ByteBuffer.allocateDirect(Long.BYTES * length).order(ByteOrder.nativeOrder());
+    entries = new long[length];
+  }
+
+  /** Opens the process's files and returns a handle to them, or 0 if they couldn't be opened. */
+  private static native long openNative(long pid);
+
+  /**
+   * Writes a sample into the buffer. Returns the number of longs written, the negated number of
+   * longs needed if the buffer is too small, or 0 if the task list couldn't be allocated.
+   */
+  private static native int sampleNative(long handle, ByteBuffer buffer);
+
+  /** Closes the files behind the handle. */
+  private static native void closeNative(long handle);
+
+  private static boolean loadLibrary() {
+    try {
+      NativeUtils.loadLibraryFromJar("/yuca/src/main/c/yuca/batch/libbatchsampler.so");
+      return true;
+    } catch (Throwable e) {
+      logger.info("couldn't load native batch sampler library from the jar");
+    }
+    try {
+      System.loadLibrary("batchsampler");
+      return true;
+    } catch (Throwable e) {
+      logger.info("couldn't load native batch sampler library; falling back to java");
+      return false;
+    }
+  }
+}
@@ -0,0 +1,146 @@
+package yuca.linux.cgroup;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static yuca.util.LoggerUtil.getLogger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A reader for the cpu.stat of a cgroup v2 that keeps the file open and parses it in place with a
+ * positional read, so each read costs the same no matter how many tasks are in the cgroup.
+ *
+ * <p>The cgroup's effective cpuset is read once when the reader is opened.
+ */
+public final class CgroupReader implements AutoCloseable {
+  private static final Logger logger = getLogger();
+
+  private static final Path CGROUP_ROOT = Path.of("/sys/fs/cgroup");
+  // cpu.stat is a handful of short lines
+  private static final int BUFFER_SIZE = 1024;
+
+  /** Opens a reader for a cgroup, given as a path that is relative to /sys/fs/cgroup. */
+  public static CgroupReader forCgroup(String cgroup) {
+    return new CgroupReader(CGROUP_ROOT, cgroup);
+  }
+
+  /** Opens a reader for a cgroup under a directory laid out like /sys/fs/cgroup. */
+  public static CgroupReader forCgroup(Path cgroupRoot, String cgroup) {
+    return new CgroupReader(cgroupRoot, cgroup);
+  }
+
+  private final String cgroup;
+  private final Path statFile;
+  private final String cpus;
+  private final FileChannel channel;
+  private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+  CgroupReader(Path cgroupRoot, String cgroup) {
+    this.cgroup = cgroup;
+    Path cgroupDirectory =
+        cgroupRoot.resolve(cgroup.startsWith("/") ? cgroup.substring(1) : cgroup);
+    this.statFile = cgroupDirectory.resolve("cpu.stat");
+    this.cpus = readCpus(cgroupDirectory.resolve("cpuset.cpus.effective"));
+    this.channel = openChannel(statFile);
+  }
+
+  /**
+   * Reads the cgroup's cpu time and stamps the {@link CgroupSample} with the given timestamp.
+   * Returns null if the file couldn't be read, i.e. the cgroup was removed.
+   */
+  public synchronized CgroupSample read(Instant timestamp) {
+    if (channel == null) {
+      return null;
+    }
+    buffer.clear();
+    try {
+      if (channel.read(buffer, 0) <= 0) {
+        return null;
+      }
+    } catch (IOException e) {
+      return null;
+    }
+    buffer.flip();
+    long usage = -1;
+    long user = -1;
+    long system = -1;
+    int limit = buffer.limit();
+    int position = 0;
+    while (position < limit) {
+      int keyStart = position;
+      while (position < limit && buffer.get(position) != ' ' && buffer.get(position) != '\n') {
+        position++;
+      }
+      int keyEnd = position;
+      long value = 0;
+      while (position < limit && buffer.get(position) != '\n') {
+        byte b = buffer.get(position++);
+        if (b >= '0' && b <= '9') {
+          value = 10 * value + (b - '0');
+        }
+      }
+      position++;
+      if (isKey(keyStart, keyEnd, "usage_usec")) {
+        usage = value;
+      } else if (isKey(keyStart, keyEnd, "user_usec")) {
+        user = value;
+      } else if (isKey(keyStart, keyEnd, "system_usec")) {
+        system = value;
+      }
+    }
+    if (usage < 0) {
+      logger.fine(String.format("no usage_usec in %s", statFile));
+      return null;
+    }
+    return new CgroupSample(
+        timestamp, cgroup, cpus, usage, Math.max(0, user), Math.max(0, system));
+  }
+
+  @Override
+  public synchronized void close() {
+    if (channel != null) {
+      try {
+        channel.close();
+      } catch (IOException e) {
+        logger.log(Level.WARNING, String.format("unable to close %s", statFile), e);
+      }
+    }
+  }
+
+  private boolean isKey(int start, int end, String key) {
+    if (end - start != key.length()) {
+      return false;
+    }
+    for (int i = 0; i < key.length(); i++) {
+      if (buffer.get(start + i) != key.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static String readCpus(Path cpusetFile) {
+    try {
+      return new String(Files.readAllBytes(cpusetFile), UTF_8).trim();
+    } catch (IOException e) {
+      // the cpuset controller isn't enabled for the cgroup, so it can run anywhere
+      return "";
+    }
+  }
+
+  private static FileChannel openChannel(Path statFile) {
+    try {
+      return FileChannel.open(statFile, StandardOpenOption.READ);
+    } catch (IOException e) {
+      logger.log(Level.WARNING, String.format("unable to open %s", statFile), e);
+      return null;
+    }
+  }
+}
@@ -0,0 +1,40 @@
+package yuca.linux.cgroup;
+
+import java.time.Instant;
+
+/** A {@link Sample} of the cpu time a cgroup has used since it was created, from cpu.stat. */
+public final class CgroupSample implements Comparable<CgroupSample> {
+  // TODO: immutable data structures are "safe" as public
+  public final String cgroup;
+  // the cpus the cgroup can run on, as a cpu list (i.e. "0-3,8"), or empty if it isn't known
+  public final String cpus;
+  public final long usageMicros;
+  public final long userMicros;
+  public final long systemMicros;
+
+  private final Instant timestamp;
+
+  CgroupSample(
+      Instant timestamp,
+      String cgroup,
+      String cpus,
+      long usageMicros,
+      long userMicros,
+      long systemMicros) {
+    this.timestamp = timestamp;
+    this.cgroup = cgroup;
+    this.cpus = cpus;
+    this.usageMicros = usageMicros;
+    this.userMicros = userMicros;
+    this.systemMicros = systemMicros;
+  }
+
+  public Instant timestamp() {
+    return timestamp;
+  }
+
+  @Override
+  public int compareTo(CgroupSample other) {
+    return timestamp().compareTo(other.timestamp());
+  }
+}
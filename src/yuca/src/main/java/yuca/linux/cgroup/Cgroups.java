@@ -0,0 +1,169 @@
+package yuca.linux.cgroup;
+
+import static yuca.linux.CpuInfo.getCpuSocketMapping;
+import static yuca.linux.jiffies.JiffiesAccounting.nanosToJiffies;
+import static yuca.util.Timestamps.fromInstant;
+import static yuca.util.Timestamps.isAfter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Optional;
+import yuca.linux.jiffies.SystemJiffies;
+import yuca.signal.SignalInterval;
+import yuca.signal.SignalInterval.SignalData;
+import yuca.util.Timestamps;
+
+/**
+ * Helper for the cpu time of cgroup v2s. Refer to
+ * https://docs.kernel.org/admin-guide/cgroup-v2.html#cpu-interface-files
+ *
+ * <p>A cgroup's cpu time isn't broken down by cpu, so its activity is spread over the cpus it can
+ * run on in proportion to how active each of them was. The activity then has the same shape as a
+ * task's, so it can be attributed energy with the {@link
+ * yuca.linux.jiffies.TaskEnergyAccounting}.
+ */
+public final class Cgroups {
+  private static final int[] SOCKETS_MAP = getCpuSocketMapping();
+
+  /** Reads a cgroup's cpu time, given as a path that is relative to /sys/fs/cgroup. */
+  public static CgroupSample sample(String cgroup) {
+    try (CgroupReader reader = CgroupReader.forCgroup(cgroup)) {
+      return reader.read(Timestamps.nowAsInstant());
+    }
+  }
+
+  /**
+   * Computes the user and system jiffies of a cgroup between two samples. The data are tagged with
+   * the cgroup and the cpus it can run on.
+   */
+  public static SignalInterval between(CgroupSample first, CgroupSample second) {
+    if (first.compareTo(second) > -1) {
+      throw new IllegalArgumentException(
+          String.format(
+              "first sample is not before second sample (%s !< %s)",
+              first.timestamp(), second.timestamp()));
+    }
+    SignalInterval.Builder interval =
+        SignalInterval.newBuilder()
+            .setStart(fromInstant(first.timestamp()))
+            .setEnd(fromInstant(second.timestamp()));
+    long user = Math.max(0, second.userMicros - first.userMicros);
+    long system = Math.max(0, second.systemMicros - first.systemMicros);
+    if (user + system == 0) {
+      // older kernels only have the usage
+      user = Math.max(0, second.usageMicros - first.usageMicros);
+    }
+    // cpu.stat is in microseconds while /proc/stat is in jiffies
+    interval.addData(cgroupData(second, "user", nanosToJiffies(user * 1000)));
+    interval.addData(cgroupData(second, "system", nanosToJiffies(system * 1000)));
+    return interval.build();
+  }
+
+  /**
+   * Computes the activity of a cgroup against the active jiffies of the system's cpus. The
+   * cgroup's jiffies are spread over its cpus by how active each cpu was, so the activity is the
+   * same on all of them; each datum is tagged with the cgroup, cpu and socket, with the cpu second
+   * like in a task's activity.
+   */
+  public static Optional<SignalInterval> computeActivity(
+      SignalInterval cgroup, SystemJiffies sys) {
+    if (isAfter(cgroup.getStart(), sys.end()) || isAfter(sys.start(), cgroup.getEnd())) {
+      return Optional.empty();
+    }
+    if (cgroup.getDataCount() == 0) {
+      return Optional.empty();
+    }
+    String name = "";
+    String cpuList = "";
+    double jiffies = 0;
+    for (SignalData data : cgroup.getDataList()) {
+      for (SignalData.Metadata metadata : data.getMetadataList()) {
+        if (metadata.getName().equals("cgroup")) {
+          name = metadata.getValue();
+        } else if (metadata.getName().equals("cpus")) {
+          cpuList = metadata.getValue();
+        }
+      }
+      jiffies += data.getValue();
+    }
+    if (jiffies == 0) {
+      return Optional.empty();
+    }
+
+    boolean[] cpus = parseCpuList(cpuList, sys.cpuCount());
+    double cpuJiffies = 0;
+    for (int cpu = 0; cpu < cpus.length; cpu++) {
+      if (cpus[cpu]) {
+        cpuJiffies += sys.activeJiffies(cpu);
+      }
+    }
+    // the cgroup's jiffies are part of the cpus' so this only corrects for the kernel update
+    double activity = Math.min(1.0, jiffies / Math.max(cpuJiffies, jiffies));
+    ArrayList<SignalData> data = new ArrayList<>();
+    for (int cpu = 0; cpu < cpus.length; cpu++) {
+      if (!cpus[cpu] || sys.activeJiffies(cpu) == 0 || cpu >= SOCKETS_MAP.length) {
+        continue;
+      }
+      data.add(
+          SignalData.newBuilder()
+              .addMetadata(SignalData.Metadata.newBuilder().setName("cgroup").setValue(name))
+              .addMetadata(
+                  SignalData.Metadata.newBuilder()
+                      .setName("cpu")
+                      .setValue(Integer.toString(cpu)))
+              .addMetadata(
+                  SignalData.Metadata.newBuilder()
+                      .setName("socket")
+                      .setValue(Integer.toString(SOCKETS_MAP[cpu])))
+              .setValue(activity)
+              .build());
+    }
+    if (data.isEmpty()) {
+      return Optional.empty();
+    }
+    return Optional.of(
+        SignalInterval.newBuilder()
+            .setStart(Timestamps.max(cgroup.getStart(), sys.start()))
+            .setEnd(Timestamps.min(cgroup.getEnd(), sys.end()))
+            .addAllData(data)
+            .build());
+  }
+
+  /**
+   * Parses a cpu list (i.e. "0-3,8") into a mask of {@code cpuCount} cpus. An empty list has every
+   * cpu.
+   */
+  static boolean[] parseCpuList(String cpuList, int cpuCount) {
+    boolean[] cpus = new boolean[cpuCount];
+    if (cpuList.isBlank()) {
+      Arrays.fill(cpus, true);
+      return cpus;
+    }
+    for (String range : cpuList.split(",")) {
+      String[] bounds = range.trim().split("-");
+      try {
+        int first = Integer.parseInt(bounds[0].trim());
+        int last = bounds.length > 1 ? Integer.parseInt(bounds[1].trim()) : first;
+        for (int cpu = Math.max(0, first); cpu <= Math.min(last, cpuCount - 1); cpu++) {
+          cpus[cpu] = true;
+        }
+      } catch (NumberFormatException e) {
+        // skip anything we don't understand
+      }
+    }
+    return cpus;
+  }
+
+  private static SignalData cgroupData(CgroupSample sample, String kind, double jiffies) {
+    SignalData.Builder data =
+        SignalData.newBuilder()
+            .addMetadata(SignalData.Metadata.newBuilder().setName("cgroup").setValue(sample.cgroup))
+            .addMetadata(SignalData.Metadata.newBuilder().setName("kind").setValue(kind));
+    if (!sample.cpus.isEmpty()) {
+      data.addMetadata(SignalData.Metadata.newBuilder().setName("cpus").setValue(sample.cpus));
+    }
+    return data.setValue(jiffies).build();
+  }
+
+  private Cgroups() {}
+}
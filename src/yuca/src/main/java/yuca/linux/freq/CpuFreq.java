@@ -37,7 +37,11 @@ public final class CpuFreq {
   }
 
   public static CpuFrequencySample sample() {
-    Instant timestamp = Instant.now();
+    return sample(Instant.now());
+  }
+
+  /** Reads the frequencies and stamps the {@link CpuFrequencySample} with the given timestamp. */
+  public static CpuFrequencySample sample(Instant timestamp) {
     ArrayList<CpuFrequency> readings = new ArrayList<>();
     for (int cpu = 0; cpu < CPU_COUNT; cpu++) {
       readings.add(
@@ -46,6 +50,29 @@ public final class CpuFreq {
     return new CpuFrequencySample(timestamp, readings);
   }
 
+  /** Converts readings that were taken elsewhere (i.e. logged) to a {@link CpuFrequencySample}. */
+  public static CpuFrequencySample readingsToSample(
+      int[] cpus,
+      String[] governors,
+      long[] frequencies,
+      long[] setFrequencies,
+      Instant timestamp) {
+    if (cpus.length != governors.length
+        || cpus.length != frequencies.length
+        || cpus.length != setFrequencies.length) {
+      throw new IllegalArgumentException(
+          String.format(
+              "mismatched frequency readings (%d cpus, %d governors, %d frequencies, %d set"
+                  + " frequencies)",
+              cpus.length, governors.length, frequencies.length, setFrequencies.length));
+    }
+    ArrayList<CpuFrequency> readings = new ArrayList<>(cpus.length);
+    for (int i = 0; i < cpus.length; i++) {
+      readings.add(new CpuFrequency(cpus[i], governors[i], frequencies[i], setFrequencies[i]));
+    }
+    return new CpuFrequencySample(timestamp, readings);
+  }
+
   public static List<SignalData> between(List<CpuFrequency> first, List<CpuFrequency> second) {
     Map<Integer, CpuFrequency> secondMap = second.stream().collect(toMap(r -> r.cpu, r -> r));
     ArrayList<SignalData> frequencies = new ArrayList<>();
@@ -4,30 +4,30 @@ package yuca.linux.jiffies;
 public final class CpuJiffies {
   // TODO: immutable data structures are "safe" as public
   public final int cpu;
-  public final int user;
-  public final int nice;
-  public final int system;
-  public final int idle;
-  public final int iowait;
-  public final int irq;
-  public final int softirq;
-  public final int steal;
-  public final int guest;
-  public final int guestNice;
-  public final int activeJiffies;
+  public final long user;
+  public final long nice;
+  public final long system;
+  public final long idle;
+  public final long iowait;
+  public final long irq;
+  public final long softirq;
+  public final long steal;
+  public final long guest;
+  public final long guestNice;
+  public final long activeJiffies;
 
   CpuJiffies(
       int cpu,
-      int user,
-      int nice,
-      int system,
-      int idle,
-      int iowait,
-      int irq,
-      int softirq,
-      int steal,
-      int guest,
-      int guestNice) {
+      long user,
+      long nice,
+      long system,
+      long idle,
+      long iowait,
+      long irq,
+      long softirq,
+      long steal,
+      long guest,
+      long guestNice) {
     this.cpu = cpu;
     this.user = user;
     this.nice = nice;
@@ -3,6 +3,7 @@ package yuca.linux.jiffies;
 import static yuca.util.Timestamps.isAfter;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Optional;
 import yuca.signal.SignalInterval;
 import yuca.signal.SignalInterval.SignalData;
@@ -10,6 +11,17 @@ import yuca.util.Timestamps;
 
 /** Class to compute the activity of tasks in a process using jiffies. */
 public final class JiffiesAccounting {
+  // /proc reports jiffies in USER_HZ, which is 100 on every platform
+  private static final double NANOS_PER_JIFFY = 10000000.0;
+
+  /**
+   * Converts nanoseconds of cpu time to fractional jiffies, so sources that count below a jiffy are
+   * accounted for like the jiffies from /proc.
+   */
+  public static double nanosToJiffies(long nanos) {
+    return nanos / NANOS_PER_JIFFY;
+  }
+
   /**
    * Computes the activity of all tasks in the overlapping region of two intervals by using the
    * ratio between a task's jiffies and cpu jiffies of the task's executing cpu. This also safely
@@ -19,14 +31,26 @@ public final class JiffiesAccounting {
   // TODO: Need to find (or write) something that strictly mentions the timing issue
   public static Optional<SignalInterval> computeTaskActivity(
       SignalInterval proc, SignalInterval sys) {
-    if (isAfter(proc.getStart(), sys.getEnd()) || isAfter(sys.getStart(), proc.getEnd())) {
+    return computeTaskActivity(proc, SystemJiffies.of(sys));
+  }
+
+  /**
+   * Computes the activity of all tasks against the active jiffies of the system's cpus. The {@link
+   * SystemJiffies} can be shared by every process that is accounted for in the same interval.
+   */
+  public static Optional<SignalInterval> computeTaskActivity(
+      SignalInterval proc, SystemJiffies sys) {
+    if (isAfter(proc.getStart(), sys.end()) || isAfter(sys.start(), proc.getEnd())) {
       return Optional.empty();
     }
     ArrayList<SignalData> tasks = new ArrayList<>();
     // Set this up to correct for kernel update.
-    int[] totalJiffies = new int[sys.getDataCount()];
+    double[] totalJiffies = new double[sys.cpuCount()];
     for (SignalData task : proc.getDataList()) {
       int cpu = Integer.parseInt(task.getMetadata(1).getValue());
+      if (cpu >= totalJiffies.length) {
+        totalJiffies = Arrays.copyOf(totalJiffies, cpu + 1);
+      }
       totalJiffies[cpu] += task.getValue();
     }
     for (SignalData task : proc.getDataList()) {
@@ -37,7 +61,7 @@ public final class JiffiesAccounting {
       // Correct for the kernel update by using total jiffies reported by tasks if the cpu
       // reported one is too small (this also catches zero jiffies reported by the cpu).
       int cpu = Integer.parseInt(task.getMetadata(1).getValue());
-      double cpuJiffies = Math.max(sys.getData(cpu).getValue(), totalJiffies[cpu]);
+      double cpuJiffies = Math.max(sys.activeJiffies(cpu), totalJiffies[cpu]);
       double taskActivity = Math.min(1.0, task.getValue() / cpuJiffies);
       tasks.add(task.toBuilder().setValue(taskActivity).build());
     }
@@ -45,8 +69,8 @@ public final class JiffiesAccounting {
     if (!tasks.isEmpty()) {
       return Optional.of(
           SignalInterval.newBuilder()
-              .setStart(Timestamps.max(proc.getStart(), sys.getStart()))
-              .setEnd(Timestamps.min(proc.getEnd(), sys.getEnd()))
+              .setStart(Timestamps.max(proc.getStart(), sys.start()))
+              .setEnd(Timestamps.min(proc.getEnd(), sys.end()))
               .addAllData(tasks)
               .build());
     } else {
@@ -0,0 +1,77 @@
+package yuca.linux.jiffies;
+
+import static java.util.stream.Collectors.toMap;
+import static yuca.linux.CpuInfo.getCpuSocketMapping;
+import static yuca.util.Timestamps.fromInstant;
+import static yuca.util.Timestamps.nowAsInstant;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import yuca.signal.SignalInterval;
+import yuca.signal.SignalInterval.SignalData;
+
+/**
+ * Helper for reading task run time from /proc/[pid]/task/[tid]/schedstat. Refer to
+ * https://docs.kernel.org/scheduler/sched-stats.html
+ */
+public final class ProcSchedstat {
+  private static final int[] SOCKETS_MAP = getCpuSocketMapping();
+
+  /** Reads the run time of a process's tasks. */
+  public static RuntimeSample sampleTasksFor(long pid) {
+    // this opens every task, so a SchedstatReader should be kept around if sampling repeatedly
+    try (SchedstatReader reader = SchedstatReader.forProcess(pid)) {
+      return reader.read(nowAsInstant());
+    }
+  }
+
+  /**
+   * Computes how long each task ran for between two samples in fractional jiffies. The data are
+   * laid out like {@link ProcTask#between} so they are accounted for like the jiffies from /proc.
+   */
+  public static SignalInterval between(RuntimeSample first, RuntimeSample second) {
+    if (first.compareTo(second) > -1) {
+      throw new IllegalArgumentException(
+          String.format(
+              "first sample is not before second sample (%s !< %s)",
+              first.timestamp(), second.timestamp()));
+    }
+    return SignalInterval.newBuilder()
+        .setStart(fromInstant(first.timestamp()))
+        .setEnd(fromInstant(second.timestamp()))
+        .addAllData(difference(first.data(), second.data()))
+        .build();
+  }
+
+  private static List<SignalData> difference(List<TaskRuntime> first, List<TaskRuntime> second) {
+    Map<Long, TaskRuntime> secondMap = second.stream().collect(toMap(r -> r.taskId, r -> r));
+    ArrayList<SignalData> runtimes = new ArrayList<>();
+    for (TaskRuntime task : first) {
+      TaskRuntime other = secondMap.get(task.taskId);
+      if (other == null || other.runtimeNanos - task.runtimeNanos <= 0) {
+        continue;
+      }
+      runtimes.add(
+          SignalData.newBuilder()
+              .addMetadata(
+                  SignalData.Metadata.newBuilder()
+                      .setName("task")
+                      .setValue(Long.toString(task.taskId)))
+              .addMetadata(
+                  SignalData.Metadata.newBuilder()
+                      .setName("cpu")
+                      .setValue(Integer.toString(other.cpu)))
+              .addMetadata(
+                  SignalData.Metadata.newBuilder()
+                      .setName("socket")
+                      .setValue(Integer.toString(SOCKETS_MAP[other.cpu])))
+              .setValue(
+                  JiffiesAccounting.nanosToJiffies(other.runtimeNanos - task.runtimeNanos))
+              .build());
+    }
+    return runtimes;
+  }
+
+  private ProcSchedstat() {}
+}
@@ -3,9 +3,7 @@ package yuca.linux.jiffies;
 import static yuca.util.Timestamps.fromInstant;
 import static yuca.util.Timestamps.nowAsInstant;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import yuca.signal.SignalInterval;
@@ -16,43 +14,49 @@ import yuca.signal.SignalInterval.SignalData;
  * https://man7.org/linux/man-pages/man5/proc.5.html
  */
 public final class ProcStat {
-  // system information
-  private static final int CPU_COUNT = Runtime.getRuntime().availableProcessors();
-  private static final String SYSTEM_STAT_FILE = String.join(File.separator, "/proc", "stat");
+  // shared by the static helpers; every read makes a new sample so they can be held onto
+  private static final ProcStatReader READER = ProcStatReader.open();
 
-  // indicies for cpu stat because there are so many
-  private enum CpuIndex {
-    CPU(0),
-    USER(1),
-    NICE(2),
-    SYSTEM(3),
-    IDLE(4),
-    IOWAIT(5),
-    IRQ(6),
-    SOFTIRQ(7),
-    STEAL(8),
-    GUEST(9),
-    GUEST_NICE(10);
-
-    private int index;
+  public static SystemSample sampleCpus() {
+    return sampleCpus(nowAsInstant());
+  }
 
-    private CpuIndex(int index) {
-      this.index = index;
+  /** Reads the cpus and stamps the {@link SystemSample} with the given timestamp. */
+  public static SystemSample sampleCpus(Instant timestamp) {
+    SystemSample sample = READER.read(timestamp);
+    if (sample == null) {
+      return new SystemSample(timestamp);
     }
+    return sample;
   }
 
-  public static SystemSample sampleCpus() {
-    String[] stats = new String[0];
-    // TODO: using the traditional java method to support android
-    try {
-      BufferedReader reader = new BufferedReader(new FileReader(SYSTEM_STAT_FILE));
-      stats = readCpus(reader);
-      reader.close();
-    } catch (Exception e) {
-      System.out.println("unable to read " + SYSTEM_STAT_FILE);
+  /**
+   * Converts flat cpu entries, i.e. the cpu id followed by the {@link SystemSample#FIELD_COUNT}
+   * fields of its /proc/stat line, to a {@link SystemSample}.
+   */
+  public static SystemSample readingToSample(
+      long[] entries, int offset, int cpuCount, Instant timestamp) {
+    int entryLength = SystemSample.FIELD_COUNT + 1;
+    if (offset + entryLength * cpuCount > entries.length) {
+      throw new IllegalArgumentException(
+          String.format(
+              "not enough entries for %d cpus (%d < %d)",
+              cpuCount, entries.length - offset, entryLength * cpuCount));
     }
-
-    return new SystemSample(nowAsInstant(), parseCpus(stats));
+    SystemSample sample = new SystemSample(cpuCount);
+    for (int i = 0; i < cpuCount; i++) {
+      int entry = offset + entryLength * i;
+      sample.cpus[i] = (int) entries[entry];
+      System.arraycopy(
+          entries,
+          entry + 1,
+          sample.jiffies,
+          SystemSample.FIELD_COUNT * i,
+          SystemSample.FIELD_COUNT);
+    }
+    sample.cpuCount = cpuCount;
+    sample.timestamp = timestamp;
+    return sample;
   }
 
   public static SignalInterval between(SystemSample first, SystemSample second) {
@@ -65,93 +69,41 @@ public final class ProcStat {
     return SignalInterval.newBuilder()
         .setStart(fromInstant(first.timestamp()))
         .setEnd(fromInstant(second.timestamp()))
-        .addAllData(difference(first.data(), second.data()))
+        .addAllData(difference(first, second))
         .build();
   }
 
-  private static List<SignalData> difference(List<CpuJiffies> first, List<CpuJiffies> second) {
-    if (first.size() != second.size()) {
+  private static List<SignalData> difference(SystemSample first, SystemSample second) {
+    if (first.cpuCount != second.cpuCount) {
       throw new IllegalArgumentException(
           String.format(
               "readings do not have the same number of cpus (%s != %s)",
-              first.size(), second.size()));
+              first.cpuCount, second.cpuCount));
     }
-    ArrayList<SignalData> jiffies = new ArrayList<>();
-    for (CpuJiffies cpu : first) {
+    ArrayList<SignalData> jiffies = new ArrayList<>(2 * first.cpuCount);
+    for (int i = 0; i < first.cpuCount; i++) {
+      if (first.cpus[i] != second.cpus[i]) {
+        throw new IllegalArgumentException(
+            String.format(
+                "readings do not have the same cpus (%d != %d)", first.cpus[i], second.cpus[i]));
+      }
+      String cpu = Integer.toString(first.cpus[i]);
       jiffies.add(
           SignalData.newBuilder()
-              .addMetadata(
-                  SignalData.Metadata.newBuilder()
-                      .setName("cpu")
-                      .setValue(Integer.toString(cpu.cpu)))
+              .addMetadata(SignalData.Metadata.newBuilder().setName("cpu").setValue(cpu))
               .addMetadata(SignalData.Metadata.newBuilder().setName("kind").setValue("active"))
-              .setValue(
-                  second.get(cpu.cpu).user
-                      - cpu.user
-                      + second.get(cpu.cpu).nice
-                      - cpu.nice
-                      + second.get(cpu.cpu).system
-                      - cpu.system
-                      + second.get(cpu.cpu).iowait
-                      - cpu.iowait
-                      + second.get(cpu.cpu).irq
-                      - cpu.irq
-                      + second.get(cpu.cpu).softirq
-                      - cpu.softirq
-                      + second.get(cpu.cpu).steal
-                      - cpu.steal
-                      + second.get(cpu.cpu).guest
-                      - cpu.guest
-                      + second.get(cpu.cpu).guestNice
-                      - cpu.guestNice)
+              .setValue(second.activeJiffies(i) - first.activeJiffies(i))
               .build());
       jiffies.add(
           SignalData.newBuilder()
-              .addMetadata(
-                  SignalData.Metadata.newBuilder()
-                      .setName("cpu")
-                      .setValue(Integer.toString(cpu.cpu)))
+              .addMetadata(SignalData.Metadata.newBuilder().setName("cpu").setValue(cpu))
               .addMetadata(SignalData.Metadata.newBuilder().setName("kind").setValue("idle"))
-              .setValue(second.get(cpu.cpu).idle - cpu.idle)
+              .setValue(
+                  second.jiffies(i, SystemSample.IDLE) - first.jiffies(i, SystemSample.IDLE))
               .build());
     }
     return jiffies;
   }
 
-  /** Reads the system's stat file and returns individual cpus. */
-  private static String[] readCpus(BufferedReader reader) throws Exception {
-    String[] stats = new String[CPU_COUNT];
-    reader.readLine(); // first line is total summary; we need by cpu
-    for (int i = 0; i < CPU_COUNT; i++) {
-      stats[i] = reader.readLine();
-    }
-    return stats;
-  }
-
-  /** Turns stat strings into a {@link CpuSample}. */
-  private static ArrayList<CpuJiffies> parseCpus(String[] stats) {
-    ArrayList<CpuJiffies> readings = new ArrayList<>();
-    for (int i = 0; i < stats.length; i++) {
-      String[] stat = stats[i].split(" ");
-      if (stat.length != 11) {
-        continue;
-      }
-      readings.add(
-          new CpuJiffies(
-              Integer.parseInt(stat[CpuIndex.CPU.index].substring(3)),
-              Integer.parseInt(stat[CpuIndex.USER.index]),
-              Integer.parseInt(stat[CpuIndex.NICE.index]),
-              Integer.parseInt(stat[CpuIndex.SYSTEM.index]),
-              Integer.parseInt(stat[CpuIndex.IDLE.index]),
-              Integer.parseInt(stat[CpuIndex.IOWAIT.index]),
-              Integer.parseInt(stat[CpuIndex.IRQ.index]),
-              Integer.parseInt(stat[CpuIndex.SOFTIRQ.index]),
-              Integer.parseInt(stat[CpuIndex.STEAL.index]),
-              Integer.parseInt(stat[CpuIndex.GUEST.index]),
-              Integer.parseInt(stat[CpuIndex.GUEST_NICE.index])));
-    }
-    return readings;
-  }
-
   private ProcStat() {}
 }
@@ -0,0 +1,209 @@
+package yuca.linux.jiffies;
+
+import static yuca.util.LoggerUtil.getLogger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A reader for /proc/stat that keeps the file open and parses the cpu lines in place. Each read is
+ * a single positional read into a reused direct buffer, and the digits are parsed straight into
+ * the {@code long[]} of a {@link SystemSample}, so no strings are created.
+ *
+ * <p>A double-buffered reader alternates between two samples, so reading doesn't allocate at all.
+ * This is only safe if nothing holds onto a sample for longer than the following read, which is
+ * the case when samples are differenced as they arrive.
+ */
+public final class ProcStatReader implements AutoCloseable {
+  private static final Logger logger = getLogger();
+
+  private static final Path SYSTEM_STAT_FILE = Path.of("/proc", "stat");
+  private static final int CPU_COUNT = Runtime.getRuntime().availableProcessors();
+  // a cpu line is around 60 bytes, so this should fit all of them on the first try
+  private static final int INITIAL_BUFFER_SIZE = 4096 + 128 * CPU_COUNT;
+
+  /** Opens a reader that returns a new sample on every read. */
+  public static ProcStatReader open() {
+    return new ProcStatReader(SYSTEM_STAT_FILE, false);
+  }
+
+  /** Opens a reader for a file laid out like /proc/stat. */
+  public static ProcStatReader open(Path statFile) {
+    return new ProcStatReader(statFile, false);
+  }
+
+  /**
+   * Opens a reader that alternates between two samples. A returned sample is overwritten by the
+   * second read after it.
+   */
+  public static ProcStatReader doubleBuffered() {
+    return new ProcStatReader(SYSTEM_STAT_FILE, true);
+  }
+
+  /** Opens a double-buffered reader for a file laid out like /proc/stat. */
+  public static ProcStatReader doubleBuffered(Path statFile) {
+    return new ProcStatReader(statFile, true);
+  }
+
+  private final Path statFile;
+  private final FileChannel channel;
+  private final SystemSample[] samples;
+
+  private ByteBuffer buffer = ByteBuffer.allocateDirect(INITIAL_BUFFER_SIZE);
+  private int nextSample = 0;
+  private int lastCpuCount = CPU_COUNT;
+
+  ProcStatReader(Path statFile, boolean isDoubleBuffered) {
+    this.statFile = statFile;
+    this.channel = openChannel(statFile);
+    this.samples =
+        isDoubleBuffered
+            ? new SystemSample[] {new SystemSample(CPU_COUNT), new SystemSample(CPU_COUNT)}
+            : null;
+  }
+
+  /**
+   * Reads the cpus and stamps the {@link SystemSample} with the given timestamp. Returns null if
+   * the file couldn't be read.
+   */
+  public synchronized SystemSample read(Instant timestamp) {
+    if (channel == null) {
+      return null;
+    }
+    SystemSample sample = samples != null ? samples[nextSample] : new SystemSample(lastCpuCount);
+    try {
+      while (!readCpus(sample)) {
+        // the cpu lines didn't fit so try again with more room
+        buffer = ByteBuffer.allocateDirect(2 * buffer.capacity());
+      }
+    } catch (IOException e) {
+      logger.log(Level.WARNING, String.format("unable to read %s", statFile), e);
+      return null;
+    }
+    sample.timestamp = timestamp;
+    lastCpuCount = sample.cpuCount;
+    if (samples != null) {
+      nextSample = 1 - nextSample;
+    }
+    return sample;
+  }
+
+  @Override
+  public synchronized void close() {
+    if (channel != null) {
+      try {
+        channel.close();
+      } catch (IOException e) {
+        logger.log(Level.WARNING, String.format("unable to close %s", statFile), e);
+      }
+    }
+  }
+
+  /** Reads the file from the start and parses it. Returns false if the buffer was too small. */
+  private boolean readCpus(SystemSample sample) throws IOException {
+    buffer.clear();
+    long position = 0;
+    while (buffer.hasRemaining()) {
+      int bytesRead = channel.read(buffer, position);
+      if (bytesRead < 0) {
+        break;
+      }
+      position += bytesRead;
+    }
+    boolean isComplete = buffer.hasRemaining();
+    buffer.flip();
+    return parseCpus(buffer, sample) || isComplete;
+  }
+
+  /**
+   * Parses every "cpuN" line into the sample, skipping the "cpu" summary line. Fields missing from
+   * older kernels are left as 0. Returns false if the buffer ended in the middle of the cpu lines.
+   */
+  static boolean parseCpus(ByteBuffer buffer, SystemSample sample) {
+    int limit = buffer.limit();
+    int position = 0;
+    int count = 0;
+    while (position + 3 < limit
+        && buffer.get(position) == 'c'
+        && buffer.get(position + 1) == 'p'
+        && buffer.get(position + 2) == 'u') {
+      position += 3;
+      if (buffer.get(position) == ' ') {
+        position = skipLine(buffer, position, limit);
+        continue;
+      }
+
+      if (count == sample.cpus.length) {
+        growSample(sample);
+      }
+      int offset = SystemSample.FIELD_COUNT * count;
+      long cpu = 0;
+      while (position < limit && isDigit(buffer.get(position))) {
+        cpu = 10 * cpu + (buffer.get(position++) - '0');
+      }
+      int field = 0;
+      while (position < limit && buffer.get(position) != '\n') {
+        byte b = buffer.get(position);
+        if (!isDigit(b)) {
+          position++;
+          continue;
+        }
+        long value = 0;
+        while (position < limit && isDigit(buffer.get(position))) {
+          value = 10 * value + (buffer.get(position++) - '0');
+        }
+        if (field < SystemSample.FIELD_COUNT) {
+          sample.jiffies[offset + field] = value;
+        }
+        field++;
+      }
+      if (position >= limit) {
+        // we can't tell if the last line was cut off
+        return false;
+      }
+      for (; field < SystemSample.FIELD_COUNT; field++) {
+        sample.jiffies[offset + field] = 0;
+      }
+      sample.cpus[count++] = (int) cpu;
+      position++;
+    }
+    sample.cpuCount = count;
+    return position + 3 < limit;
+  }
+
+  private static int skipLine(ByteBuffer buffer, int position, int limit) {
+    while (position < limit && buffer.get(position) != '\n') {
+      position++;
+    }
+    return position + 1;
+  }
+
+  private static boolean isDigit(byte b) {
+    return b >= '0' && b <= '9';
+  }
+
+  /** Doubles the room in the sample while keeping what has been parsed so far. */
+  private static void growSample(SystemSample sample) {
+    int[] cpus = sample.cpus;
+    long[] jiffies = sample.jiffies;
+    sample.cpus = new int[Math.max(1, 2 * cpus.length)];
+    sample.jiffies = new long[SystemSample.FIELD_COUNT * sample.cpus.length];
+    System.arraycopy(cpus, 0, sample.cpus, 0, cpus.length);
+    System.arraycopy(jiffies, 0, sample.jiffies, 0, jiffies.length);
+  }
+
+  private static FileChannel openChannel(Path statFile) {
+    try {
+      return FileChannel.open(statFile, StandardOpenOption.READ);
+    } catch (Exception e) {
+      logger.log(Level.WARNING, String.format("unable to open %s", statFile), e);
+      return null;
+    }
+  }
+}
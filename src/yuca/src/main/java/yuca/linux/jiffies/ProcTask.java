@@ -5,11 +5,9 @@ import static yuca.util.Timestamps.fromInstant;
 import static yuca.util.Timestamps.nowAsInstant;
 import static yuca.linux.CpuInfo.getCpuSocketMapping;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
+import java.nio.file.Path;
+import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import yuca.signal.SignalInterval;
@@ -20,34 +18,79 @@ import yuca.signal.SignalInterval.SignalData;
  * https://man7.org/linux/man-pages/man5/proc.5.html
  */
 public final class ProcTask {
+  private static final Path PROC_DIRECTORY = Path.of("/proc");
   private static final long PID = ProcessHandle.current().pid();
   private static final int[] SOCKETS_MAP = getCpuSocketMapping();
-  // task stat indicies
-  private static final int STAT_LENGTH = 52;
 
-  private enum TaskIndex {
-    TID(0),
-    CPU(38),
-    USER(13),
-    SYSTEM(14);
+  /** Reads from a process's tasks and returns a {@link Sample} of it. */
+  public static ProcessSample sampleTasksFor(long pid) {
+    return sampleTasksFor(pid, nowAsInstant());
+  }
 
-    private int index;
+  /** Reads from a process's tasks and stamps the {@link Sample} with the given timestamp. */
+  public static ProcessSample sampleTasksFor(long pid, Instant timestamp) {
+    return sampleTasksFor(PROC_DIRECTORY, pid, timestamp);
+  }
 
-    private TaskIndex(int index) {
-      this.index = index;
+  /** Reads from a process's tasks under a directory laid out like /proc. */
+  public static ProcessSample sampleTasksFor(Path procDirectory, long pid, Instant timestamp) {
+    // this opens every task, so a ProcTaskReader should be kept around if sampling repeatedly
+    try (ProcTaskReader reader =
+        ProcTaskReader.forProcess(procDirectory, pid, ProcTaskReader.DEFAULT_RESCAN_PERIOD)) {
+      return reader.read(timestamp);
     }
-  };
-
-  /** Reads from a process's tasks and returns a {@link Sample} of it. */
-  public static ProcessSample sampleTasksFor(long pid) {
-    return new ProcessSample(nowAsInstant(), pid, parseTasks(readTasks(pid), pid));
   }
 
   /** Reads this process's tasks and returns a {@link Sample} of it. */
   public static ProcessSample sampleTasks() {
-    return new ProcessSample(nowAsInstant(), PID, parseTasks(readTasks(PID), PID));
+    return sampleTasksFor(PID, nowAsInstant());
+  }
+
+  /**
+   * Converts flat task entries, i.e. (task id, cpu, user jiffies, system jiffies) for each task, to
+   * a {@link ProcessSample}.
+   */
+  public static ProcessSample readingToSample(
+      long pid, long[] entries, int offset, int taskCount, Instant timestamp) {
+    if (offset + 4 * taskCount > entries.length) {
+      throw new IllegalArgumentException(
+          String.format(
+              "not enough entries for %d tasks (%d < %d)",
+              taskCount, entries.length - offset, 4 * taskCount));
+    }
+    ArrayList<TaskJiffies> jiffies = new ArrayList<>(taskCount);
+    for (int i = offset; i < offset + 4 * taskCount; i += 4) {
+      jiffies.add(
+          new TaskJiffies(pid, entries[i], (int) entries[i + 1], entries[i + 2], entries[i + 3]));
+    }
+    return new ProcessSample(timestamp, pid, jiffies);
+  }
+
+  /**
+   * Converts flat task entries of a process tree, i.e. (process id, task id, cpu, user jiffies,
+   * system jiffies) for each task, to a tree {@link ProcessSample} of the root process.
+   */
+  public static ProcessSample treeReadingToSample(
+      long pid, long[] entries, int offset, int taskCount, Instant timestamp) {
+    if (offset + 5 * taskCount > entries.length) {
+      throw new IllegalArgumentException(
+          String.format(
+              "not enough entries for %d tasks (%d < %d)",
+              taskCount, entries.length - offset, 5 * taskCount));
+    }
+    ArrayList<TaskJiffies> jiffies = new ArrayList<>(taskCount);
+    for (int i = offset; i < offset + 5 * taskCount; i += 5) {
+      jiffies.add(
+          new TaskJiffies(
+              entries[i], entries[i + 1], (int) entries[i + 2], entries[i + 3], entries[i + 4]));
+    }
+    return new ProcessSample(timestamp, pid, jiffies, true);
   }
 
+  /**
+   * Computes the jiffies of each task between two samples. The data of tree samples are also
+   * tagged with the process of each task.
+   */
   public static SignalInterval between(ProcessSample first, ProcessSample second) {
     if (first.compareTo(second) > -1) {
       throw new IllegalArgumentException(
@@ -60,11 +103,12 @@ public final class ProcTask {
     return SignalInterval.newBuilder()
         .setStart(fromInstant(first.timestamp()))
         .setEnd(fromInstant(second.timestamp()))
-        .addAllData(difference(first.data(), second.data()))
+        .addAllData(difference(first.data(), second.data(), first.isTree()))
         .build();
   }
 
-  private static List<SignalData> difference(List<TaskJiffies> first, List<TaskJiffies> second) {
+  private static List<SignalData> difference(
+      List<TaskJiffies> first, List<TaskJiffies> second, boolean isTree) {
     Map<Long, TaskJiffies> secondMap = second.stream().collect(toMap(r -> r.taskId, r -> r));
     ArrayList<SignalData> jiffies = new ArrayList<>();
     for (TaskJiffies task : first) {
@@ -72,7 +116,7 @@ public final class ProcTask {
         TaskJiffies other = secondMap.get(task.taskId);
         if ((other.userJiffies - task.userJiffies) > 0
             || (other.systemJiffies - task.systemJiffies) > 0) {
-          jiffies.add(
+          SignalData.Builder data =
               SignalData.newBuilder()
                   .addMetadata(
                       SignalData.Metadata.newBuilder()
@@ -88,67 +132,20 @@ public final class ProcTask {
                           .setValue(Integer.toString(SOCKETS_MAP[task.cpu])))
                   .setValue(
                       Math.max(0, other.userJiffies - task.userJiffies)
-                          + Math.max(0, other.systemJiffies - task.systemJiffies))
-                  .build());
+                          + Math.max(0, other.systemJiffies - task.systemJiffies));
+          if (isTree) {
+            // the cpu has to stay second since the accounting looks it up by position
+            data.addMetadata(
+                SignalData.Metadata.newBuilder()
+                    .setName("process")
+                    .setValue(Long.toString(task.processId)));
+          }
+          jiffies.add(data.build());
         }
       }
     }
     return jiffies;
   }
 
-  /** Reads stat files of tasks directory of a process. */
-  private static final ArrayList<String> readTasks(long pid) {
-    ArrayList<String> stats = new ArrayList<String>();
-    File tasks = new File(String.join(File.separator, "/proc", Long.toString(pid), "task"));
-    if (!tasks.exists()) {
-      return stats;
-    }
-
-    for (File task : tasks.listFiles()) {
-      File statFile = new File(task, "stat");
-      if (!statFile.exists()) {
-        continue;
-      }
-      // TODO: if a task terminates while we try to read it, we hang here
-      // TODO: using the traditional java method to support android
-      try {
-        BufferedReader reader = new BufferedReader(new FileReader(statFile));
-        stats.add(reader.readLine());
-        reader.close();
-      } catch (Exception e) {
-        System.out.println("unable to read task " + statFile + " before it terminated");
-      }
-    }
-    return stats;
-  }
-
-  /** Turns task stat strings into {@link TaskJiffiesReadings}. */
-  private static List<TaskJiffies> parseTasks(ArrayList<String> stats, long pid) {
-    ArrayList<TaskJiffies> readings = new ArrayList<>();
-    for (String s : stats) {
-      String[] stat = s.split(" ");
-      if (stat.length >= STAT_LENGTH) {
-        // task name can be space-delimited, so there may be extra entries
-        int offset = stat.length - STAT_LENGTH;
-        readings.add(
-            new TaskJiffies(
-                pid,
-                Long.parseLong(stat[TaskIndex.TID.index]),
-                // TODO: the name is usually garbage unfortunately :/
-                // getName(stat, offset),
-                Integer.parseInt(stat[TaskIndex.CPU.index + offset]),
-                Integer.parseInt(stat[TaskIndex.USER.index + offset]),
-                Integer.parseInt(stat[TaskIndex.SYSTEM.index + offset])));
-      }
-    }
-    return readings;
-  }
-
-  /** Extracts the name from the stat string. */
-  private static final String getName(String[] stat, int offset) {
-    String name = String.join(" ", Arrays.copyOfRange(stat, 1, 2 + offset));
-    return name.substring(1, name.length() - 1);
-  }
-
   private ProcTask() {}
 }
@@ -0,0 +1,243 @@
+package yuca.linux.jiffies;
+
+import static yuca.util.LoggerUtil.getLogger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A reader for the tasks of a process that keeps each task's stat file open and rereads it with a
+ * positional read. The task directory is only rescanned when the process's thread count (read from
+ * /proc/[pid]/stat) changes, when a task goes away, or every {@code rescanPeriod} reads to catch
+ * threads that were replaced between reads.
+ *
+ * <p>Stat lines are parsed after the last ')' so that task names with spaces or parentheses don't
+ * shift the fields.
+ */
+public final class ProcTaskReader implements AutoCloseable {
+  private static final Logger logger = getLogger();
+
+  public static final int DEFAULT_RESCAN_PERIOD = 100;
+
+  // indices of the fields after the name, i.e. field n of proc(5) is at n - 3
+  private static final int NUM_THREADS = 17;
+  private static final int USER = 11;
+  private static final int SYSTEM = 12;
+  private static final int CPU = 36;
+  private static final int FIELD_COUNT = CPU + 1;
+
+  // a stat line is a few hundred bytes
+  private static final int BUFFER_SIZE = 4096;
+
+  /** Opens a reader for a process's tasks. */
+  public static ProcTaskReader forProcess(long pid) {
+    return new ProcTaskReader(Path.of("/proc"), pid, DEFAULT_RESCAN_PERIOD);
+  }
+
+  /** Opens a reader for a process's tasks that rescans at least every {@code rescanPeriod}. */
+  public static ProcTaskReader forProcess(long pid, int rescanPeriod) {
+    return new ProcTaskReader(Path.of("/proc"), pid, rescanPeriod);
+  }
+
+  private final long pid;
+  private final int rescanPeriod;
+  private final Path taskDirectory;
+  private final Path statFile;
+  private final HashMap<Long, FileChannel> tasks = new HashMap<>();
+  private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+  private final long[] fields = new long[FIELD_COUNT];
+
+  private FileChannel processStat;
+  private int readsSinceScan = 0;
+
+  /** Opens a reader for a process's tasks under a directory laid out like /proc. */
+  public static ProcTaskReader forProcess(Path procDirectory, long pid, int rescanPeriod) {
+    return new ProcTaskReader(procDirectory, pid, rescanPeriod);
+  }
+
+  ProcTaskReader(Path procDirectory, long pid, int rescanPeriod) {
+    if (rescanPeriod < 1) {
+      throw new IllegalArgumentException(
+          String.format("rescan period must be positive (%d < 1)", rescanPeriod));
+    }
+    this.pid = pid;
+    this.rescanPeriod = rescanPeriod;
+    Path processDirectory = procDirectory.resolve(Long.toString(pid));
+    this.taskDirectory = processDirectory.resolve("task");
+    this.statFile = processDirectory.resolve("stat");
+  }
+
+  /** Reads the process's tasks and stamps the {@link ProcessSample} with the given timestamp. */
+  public synchronized ProcessSample read(Instant timestamp) {
+    if (needsRescan()) {
+      rescan();
+    }
+    readsSinceScan++;
+
+    ArrayList<TaskJiffies> jiffies = new ArrayList<>(tasks.size());
+    boolean isMissingTasks = false;
+    Iterator<Map.Entry<Long, FileChannel>> it = tasks.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<Long, FileChannel> task = it.next();
+      if (readFields(task.getValue(), CPU)) {
+        jiffies.add(
+            new TaskJiffies(
+                pid, task.getKey(), (int) fields[CPU], fields[USER], fields[SYSTEM]));
+      } else {
+        // the task terminated so stop tracking it
+        closeQuietly(task.getValue());
+        it.remove();
+        isMissingTasks = true;
+      }
+    }
+    if (isMissingTasks) {
+      readsSinceScan = rescanPeriod;
+    }
+    return new ProcessSample(timestamp, pid, jiffies);
+  }
+
+  @Override
+  public synchronized void close() {
+    tasks.values().forEach(ProcTaskReader::closeQuietly);
+    tasks.clear();
+    if (processStat != null) {
+      closeQuietly(processStat);
+      processStat = null;
+    }
+  }
+
+  /** Checks the process's thread count against the tasks we are tracking. */
+  private boolean needsRescan() {
+    if (readsSinceScan >= rescanPeriod) {
+      return true;
+    }
+    if (processStat == null) {
+      processStat = openQuietly(statFile);
+      if (processStat == null) {
+        return false;
+      }
+    }
+    if (!readFields(processStat, NUM_THREADS)) {
+      // the process is gone, so let the tasks fail on their own
+      closeQuietly(processStat);
+      processStat = null;
+      return false;
+    }
+    return fields[NUM_THREADS] != tasks.size();
+  }
+
+  /** Lists the task directory, opening new tasks and closing ones that are gone. */
+  private void rescan() {
+    readsSinceScan = 0;
+    HashSet<Long> alive = new HashSet<>();
+    try (DirectoryStream<Path> taskDirs = Files.newDirectoryStream(taskDirectory)) {
+      for (Path taskDir : taskDirs) {
+        long tid;
+        try {
+          tid = Long.parseLong(taskDir.getFileName().toString());
+        } catch (NumberFormatException e) {
+          continue;
+        }
+        alive.add(tid);
+        if (!tasks.containsKey(tid)) {
+          FileChannel channel = openQuietly(taskDir.resolve("stat"));
+          if (channel != null) {
+            tasks.put(tid, channel);
+          }
+        }
+      }
+    } catch (IOException e) {
+      // the process terminated
+    }
+    Iterator<Map.Entry<Long, FileChannel>> it = tasks.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<Long, FileChannel> task = it.next();
+      if (!alive.contains(task.getKey())) {
+        closeQuietly(task.getValue());
+        it.remove();
+      }
+    }
+  }
+
+  /** Rereads a stat file into {@link fields}. Returns false if it couldn't be read or parsed. */
+  private boolean readFields(FileChannel channel, int lastField) {
+    buffer.clear();
+    try {
+      if (channel.read(buffer, 0) <= 0) {
+        return false;
+      }
+    } catch (IOException e) {
+      return false;
+    }
+    buffer.flip();
+    return parseFields(buffer, fields) > lastField;
+  }
+
+  /**
+   * Parses the fields after the name of a stat line into {@code fields}. Non-numeric fields (i.e.
+   * the state) are parsed as 0. Returns the number of fields that were found.
+   */
+  static int parseFields(ByteBuffer buffer, long[] fields) {
+    int limit = buffer.limit();
+    int position = limit - 1;
+    while (position >= 0 && buffer.get(position) != ')') {
+      position--;
+    }
+    if (position < 0) {
+      return 0;
+    }
+    position++;
+
+    int field = 0;
+    while (field < fields.length) {
+      while (position < limit && buffer.get(position) == ' ') {
+        position++;
+      }
+      if (position >= limit || buffer.get(position) == '\n') {
+        break;
+      }
+      boolean isNegative = buffer.get(position) == '-';
+      if (isNegative) {
+        position++;
+      }
+      long value = 0;
+      while (position < limit && buffer.get(position) != ' ' && buffer.get(position) != '\n') {
+        byte b = buffer.get(position++);
+        if (b >= '0' && b <= '9') {
+          value = 10 * value + (b - '0');
+        }
+      }
+      fields[field++] = isNegative ? -value : value;
+    }
+    return field;
+  }
+
+  private static FileChannel openQuietly(Path file) {
+    try {
+      return FileChannel.open(file, StandardOpenOption.READ);
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  private static void closeQuietly(FileChannel channel) {
+    try {
+      channel.close();
+    } catch (IOException e) {
+      logger.log(Level.FINE, "unable to close a task stat file", e);
+    }
+  }
+}
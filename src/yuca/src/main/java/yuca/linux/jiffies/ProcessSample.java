@@ -4,16 +4,25 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 
-/** A {@link Sample} of task jiffies for a process since task birth. */
+/**
+ * A {@link Sample} of task jiffies for a process since task birth. A tree sample also has the
+ * tasks of the process's descendants, each of which keeps the id of its own process.
+ */
 public final class ProcessSample implements Comparable<ProcessSample> {
   public final long processId;
 
   private final Instant timestamp;
   private final ArrayList<TaskJiffies> jiffies = new ArrayList<>();
+  private final boolean isTree;
 
   ProcessSample(Instant timestamp, long processId, Iterable<TaskJiffies> jiffies) {
+    this(timestamp, processId, jiffies, false);
+  }
+
+  ProcessSample(Instant timestamp, long processId, Iterable<TaskJiffies> jiffies, boolean isTree) {
     this.timestamp = timestamp;
     this.processId = processId;
+    this.isTree = isTree;
     jiffies.forEach(this.jiffies::add);
   }
 
@@ -21,6 +30,11 @@ public final class ProcessSample implements Comparable<ProcessSample> {
     return timestamp;
   }
 
+  /** Returns if the sample has the tasks of the process's descendants as well. */
+  public boolean isTree() {
+    return isTree;
+  }
+
   public List<TaskJiffies> data() {
     return new ArrayList<>(jiffies);
   }
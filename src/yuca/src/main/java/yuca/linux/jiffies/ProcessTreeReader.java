@@ -0,0 +1,257 @@
+package yuca.linux.jiffies;
+
+import static yuca.util.LoggerUtil.getLogger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A reader for the tasks of a process and all of its descendants. Descendants are discovered
+ * through /proc/[pid]/task/[tid]/children, which lists the processes that each task forked, so only
+ * the tracked tree is ever read rather than all of /proc. The children files are kept open and
+ * reread before every read, so a child is sampled from the first read after it is forked; each
+ * tracked process is then read with its own {@link ProcTaskReader}.
+ *
+ * <p>The samples are tree samples (see {@link ProcessSample#isTree}), whose tasks keep the id of
+ * the process they belong to. A process that forks and exits between two reads isn't seen, and
+ * the jiffies of a tracked process are lost from the tree once it exits, since the kernel only adds
+ * them to its parent's waited-for jiffies.
+ *
+ * <p>The children files need a kernel with CONFIG_PROC_CHILDREN. Without them, only the root
+ * process is read.
+ */
+public final class ProcessTreeReader implements AutoCloseable {
+  private static final Logger logger = getLogger();
+
+  // a children file is a list of pids, so this fits a few hundred children before growing
+  private static final int INITIAL_BUFFER_SIZE = 4096;
+
+  /** Opens a reader for a process and its descendants. */
+  public static ProcessTreeReader forProcess(long pid) {
+    return new ProcessTreeReader(Path.of("/proc"), pid, ProcTaskReader.DEFAULT_RESCAN_PERIOD);
+  }
+
+  /** Opens a reader for a process tree under a directory laid out like /proc. */
+  public static ProcessTreeReader forProcess(Path procDirectory, long pid, int rescanPeriod) {
+    return new ProcessTreeReader(procDirectory, pid, rescanPeriod);
+  }
+
+  private final Path procDirectory;
+  private final long pid;
+  private final int rescanPeriod;
+  private final LinkedHashMap<Long, TrackedProcess> processes = new LinkedHashMap<>();
+
+  private ByteBuffer buffer = ByteBuffer.allocateDirect(INITIAL_BUFFER_SIZE);
+  private boolean hasChildrenFiles = true;
+
+  ProcessTreeReader(Path procDirectory, long pid, int rescanPeriod) {
+    this.procDirectory = procDirectory;
+    this.pid = pid;
+    this.rescanPeriod = rescanPeriod;
+    processes.put(pid, new TrackedProcess(pid));
+  }
+
+  /** Returns the number of processes in the tree as of the last read. */
+  public synchronized int processCount() {
+    return processes.size();
+  }
+
+  /**
+   * Picks up any new children and reads the tasks of every process in the tree. The tree sample is
+   * stamped with the given timestamp and the root's process id.
+   */
+  public synchronized ProcessSample read(Instant timestamp) {
+    if (hasChildrenFiles) {
+      discoverChildren();
+    }
+    ArrayList<TaskJiffies> jiffies = new ArrayList<>();
+    Iterator<TrackedProcess> it = processes.values().iterator();
+    while (it.hasNext()) {
+      TrackedProcess process = it.next();
+      List<TaskJiffies> tasks = process.tasks.read(timestamp).data();
+      if (tasks.isEmpty()
+          && process.pid != pid
+          && !Files.exists(procDirectory.resolve(Long.toString(process.pid)))) {
+        // the process exited so stop tracking it
+        process.close();
+        it.remove();
+        continue;
+      }
+      process.retainChildren(tasks);
+      jiffies.addAll(tasks);
+    }
+    return new ProcessSample(timestamp, pid, jiffies, true);
+  }
+
+  @Override
+  public synchronized void close() {
+    processes.values().forEach(TrackedProcess::close);
+    processes.clear();
+  }
+
+  /**
+   * Rereads the children of every tracked task and starts tracking the new ones. New processes are
+   * checked for children right away, so a whole subtree forked between reads is picked up at once.
+   */
+  private void discoverChildren() {
+    ArrayDeque<TrackedProcess> pending = new ArrayDeque<>(processes.values());
+    while (!pending.isEmpty()) {
+      TrackedProcess process = pending.poll();
+      for (Map.Entry<Long, FileChannel> task : process.openChildren().entrySet()) {
+        if (!readChildren(task.getValue())) {
+          continue;
+        }
+        for (long child : parseChildren(buffer)) {
+          if (!processes.containsKey(child)) {
+            TrackedProcess tracked = new TrackedProcess(child);
+            processes.put(child, tracked);
+            pending.add(tracked);
+          }
+        }
+      }
+    }
+  }
+
+  /** Rereads a children file into the buffer. Returns false if it couldn't be read. */
+  private boolean readChildren(FileChannel channel) {
+    try {
+      while (true) {
+        buffer.clear();
+        long position = 0;
+        while (buffer.hasRemaining()) {
+          int bytesRead = channel.read(buffer, position);
+          if (bytesRead < 0) {
+            break;
+          }
+          position += bytesRead;
+        }
+        if (buffer.hasRemaining()) {
+          buffer.flip();
+          return true;
+        }
+        // the list didn't fit so try again with more room
+        buffer = ByteBuffer.allocateDirect(2 * buffer.capacity());
+      }
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /** Parses a space-separated list of pids. */
+  static List<Long> parseChildren(ByteBuffer buffer) {
+    ArrayList<Long> children = new ArrayList<>();
+    int limit = buffer.limit();
+    int position = 0;
+    while (position < limit) {
+      byte b = buffer.get(position);
+      if (b < '0' || b > '9') {
+        position++;
+        continue;
+      }
+      long child = 0;
+      while (position < limit && buffer.get(position) >= '0' && buffer.get(position) <= '9') {
+        child = 10 * child + (buffer.get(position++) - '0');
+      }
+      children.add(child);
+    }
+    return children;
+  }
+
+  private FileChannel openChildren(long processId, long taskId) {
+    Path childrenFile =
+        procDirectory
+            .resolve(Long.toString(processId))
+            .resolve("task")
+            .resolve(Long.toString(taskId))
+            .resolve("children");
+    try {
+      return FileChannel.open(childrenFile, StandardOpenOption.READ);
+    } catch (IOException e) {
+      if (processId == pid
+          && taskId == pid
+          && !Files.exists(childrenFile)
+          && Files.exists(childrenFile.getParent())) {
+        logger.log(
+            Level.WARNING,
+            String.format(
+                "%s doesn't exist (is the kernel missing CONFIG_PROC_CHILDREN?); only reading %d",
+                childrenFile, pid));
+        hasChildrenFiles = false;
+      }
+      return null;
+    }
+  }
+
+  private static void closeQuietly(FileChannel channel) {
+    try {
+      channel.close();
+    } catch (IOException e) {
+      logger.log(Level.FINE, "unable to close a children file", e);
+    }
+  }
+
+  /** A process in the tree along with the children files of its tasks. */
+  private final class TrackedProcess {
+    private final long pid;
+    private final ProcTaskReader tasks;
+    private final HashMap<Long, FileChannel> children = new HashMap<>();
+    // the tasks of the last read; only the main thread is known until the first one
+    private final HashSet<Long> taskIds = new HashSet<>();
+
+    private TrackedProcess(long pid) {
+      this.pid = pid;
+      this.tasks = ProcTaskReader.forProcess(procDirectory, pid, rescanPeriod);
+      taskIds.add(pid);
+    }
+
+    /** Opens the children file of any task that doesn't have one yet. */
+    private Map<Long, FileChannel> openChildren() {
+      for (long taskId : taskIds) {
+        if (!children.containsKey(taskId)) {
+          FileChannel channel = ProcessTreeReader.this.openChildren(pid, taskId);
+          if (channel != null) {
+            children.put(taskId, channel);
+          }
+        }
+      }
+      return children;
+    }
+
+    /** Closes the children files of tasks that weren't in the read. */
+    private void retainChildren(List<TaskJiffies> jiffies) {
+      taskIds.clear();
+      for (TaskJiffies task : jiffies) {
+        taskIds.add(task.taskId);
+      }
+      Iterator<Map.Entry<Long, FileChannel>> it = children.entrySet().iterator();
+      while (it.hasNext()) {
+        Map.Entry<Long, FileChannel> task = it.next();
+        if (!taskIds.contains(task.getKey())) {
+          closeQuietly(task.getValue());
+          it.remove();
+        }
+      }
+    }
+
+    private void close() {
+      tasks.close();
+      children.values().forEach(ProcessTreeReader::closeQuietly);
+      children.clear();
+    }
+  }
+}
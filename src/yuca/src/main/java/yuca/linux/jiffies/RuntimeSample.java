@@ -0,0 +1,32 @@
+package yuca.linux.jiffies;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/** A sample of the run time of a process's tasks since task birth. */
+public final class RuntimeSample implements Comparable<RuntimeSample> {
+  public final long processId;
+
+  private final Instant timestamp;
+  private final ArrayList<TaskRuntime> runtimes = new ArrayList<>();
+
+  RuntimeSample(Instant timestamp, long processId, Iterable<TaskRuntime> runtimes) {
+    this.timestamp = timestamp;
+    this.processId = processId;
+    runtimes.forEach(this.runtimes::add);
+  }
+
+  public Instant timestamp() {
+    return timestamp;
+  }
+
+  public List<TaskRuntime> data() {
+    return new ArrayList<>(runtimes);
+  }
+
+  @Override
+  public int compareTo(RuntimeSample other) {
+    return timestamp().compareTo(other.timestamp());
+  }
+}
@@ -0,0 +1,272 @@
+package yuca.linux.jiffies;
+
+import static yuca.util.LoggerUtil.getLogger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A reader for the run time of a process's tasks from their schedstat files, which count the
+ * nanoseconds each task spent on a cpu rather than the ticks it was caught running in. Files are
+ * kept open and reread with positional reads, and the task directory is rescanned like a {@link
+ * ProcTaskReader}.
+ *
+ * <p>The cpu a task last ran on is only in its stat file, which is only reread when the task ran
+ * since the last read, so idle tasks cost a single read.
+ */
+public final class SchedstatReader implements AutoCloseable {
+  private static final Logger logger = getLogger();
+
+  // indices of the fields after the name, i.e. field n of proc(5) is at n - 3
+  private static final int NUM_THREADS = 17;
+  private static final int CPU = 36;
+  private static final int FIELD_COUNT = CPU + 1;
+  // run time, wait time and timeslices
+  private static final int SCHEDSTAT_FIELDS = 3;
+
+  // a stat line is a few hundred bytes
+  private static final int BUFFER_SIZE = 4096;
+
+  /** Returns if the kernel has schedstat files, which needs CONFIG_SCHED_INFO. */
+  public static boolean isAvailable() {
+    return Files.exists(Path.of("/proc/self/schedstat"));
+  }
+
+  /** Opens a reader for a process's tasks. */
+  public static SchedstatReader forProcess(long pid) {
+    return new SchedstatReader(Path.of("/proc"), pid, ProcTaskReader.DEFAULT_RESCAN_PERIOD);
+  }
+
+  /** Opens a reader for a process's tasks under a directory laid out like /proc. */
+  public static SchedstatReader forProcess(Path procDirectory, long pid, int rescanPeriod) {
+    return new SchedstatReader(procDirectory, pid, rescanPeriod);
+  }
+
+  private final long pid;
+  private final int rescanPeriod;
+  private final Path taskDirectory;
+  private final Path statFile;
+  private final HashMap<Long, Task> tasks = new HashMap<>();
+  private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+  private final long[] fields = new long[FIELD_COUNT];
+
+  private FileChannel processStat;
+  private int readsSinceScan = 0;
+
+  SchedstatReader(Path procDirectory, long pid, int rescanPeriod) {
+    if (rescanPeriod < 1) {
+      throw new IllegalArgumentException(
+          String.format("rescan period must be positive (%d < 1)", rescanPeriod));
+    }
+    this.pid = pid;
+    this.rescanPeriod = rescanPeriod;
+    Path processDirectory = procDirectory.resolve(Long.toString(pid));
+    this.taskDirectory = processDirectory.resolve("task");
+    this.statFile = processDirectory.resolve("stat");
+  }
+
+  /** Reads the process's tasks and stamps the {@link RuntimeSample} with the given timestamp. */
+  public synchronized RuntimeSample read(Instant timestamp) {
+    if (needsRescan()) {
+      rescan();
+    }
+    readsSinceScan++;
+
+    ArrayList<TaskRuntime> runtimes = new ArrayList<>(tasks.size());
+    boolean isMissingTasks = false;
+    Iterator<Map.Entry<Long, Task>> it = tasks.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<Long, Task> entry = it.next();
+      Task task = entry.getValue();
+      if (readSchedstat(task)) {
+        runtimes.add(
+            new TaskRuntime(pid, entry.getKey(), task.cpu, task.runtimeNanos, task.waitNanos));
+      } else {
+        // the task terminated so stop tracking it
+        task.close();
+        it.remove();
+        isMissingTasks = true;
+      }
+    }
+    if (isMissingTasks) {
+      readsSinceScan = rescanPeriod;
+    }
+    return new RuntimeSample(timestamp, pid, runtimes);
+  }
+
+  @Override
+  public synchronized void close() {
+    tasks.values().forEach(Task::close);
+    tasks.clear();
+    if (processStat != null) {
+      closeQuietly(processStat);
+      processStat = null;
+    }
+  }
+
+  /** Rereads a task's run time, and its cpu if it ran. Returns false if the task is gone. */
+  private boolean readSchedstat(Task task) {
+    if (!read(task.schedstat) || parseSchedstat(buffer, fields) < SCHEDSTAT_FIELDS) {
+      return false;
+    }
+    long runtime = fields[0];
+    task.waitNanos = fields[1];
+    if (runtime != task.runtimeNanos) {
+      task.runtimeNanos = runtime;
+      if (read(task.stat) && ProcTaskReader.parseFields(buffer, fields) > CPU) {
+        task.cpu = (int) fields[CPU];
+      }
+    }
+    return true;
+  }
+
+  /** Checks the process's thread count against the tasks we are tracking. */
+  private boolean needsRescan() {
+    if (readsSinceScan >= rescanPeriod) {
+      return true;
+    }
+    if (processStat == null) {
+      processStat = openQuietly(statFile);
+      if (processStat == null) {
+        return false;
+      }
+    }
+    if (!read(processStat) || ProcTaskReader.parseFields(buffer, fields) <= NUM_THREADS) {
+      // the process is gone, so let the tasks fail on their own
+      closeQuietly(processStat);
+      processStat = null;
+      return false;
+    }
+    return fields[NUM_THREADS] != tasks.size();
+  }
+
+  /** Lists the task directory, opening new tasks and closing ones that are gone. */
+  private void rescan() {
+    readsSinceScan = 0;
+    HashSet<Long> alive = new HashSet<>();
+    try (DirectoryStream<Path> taskDirs = Files.newDirectoryStream(taskDirectory)) {
+      for (Path taskDir : taskDirs) {
+        long tid;
+        try {
+          tid = Long.parseLong(taskDir.getFileName().toString());
+        } catch (NumberFormatException e) {
+          continue;
+        }
+        alive.add(tid);
+        if (!tasks.containsKey(tid)) {
+          FileChannel schedstat = openQuietly(taskDir.resolve("schedstat"));
+          FileChannel stat = openQuietly(taskDir.resolve("stat"));
+          if (schedstat != null && stat != null) {
+            tasks.put(tid, new Task(schedstat, stat));
+          } else {
+            closeQuietly(schedstat);
+            closeQuietly(stat);
+          }
+        }
+      }
+    } catch (IOException e) {
+      // the process terminated
+    }
+    Iterator<Map.Entry<Long, Task>> it = tasks.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<Long, Task> task = it.next();
+      if (!alive.contains(task.getKey())) {
+        task.getValue().close();
+        it.remove();
+      }
+    }
+  }
+
+  /** Rereads a file into the buffer. Returns false if it couldn't be read. */
+  private boolean read(FileChannel channel) {
+    buffer.clear();
+    try {
+      if (channel.read(buffer, 0) <= 0) {
+        return false;
+      }
+    } catch (IOException e) {
+      return false;
+    }
+    buffer.flip();
+    return true;
+  }
+
+  /**
+   * Parses the space-separated numbers of a schedstat line into {@code fields}. Returns the number
+   * of fields that were found.
+   */
+  static int parseSchedstat(ByteBuffer buffer, long[] fields) {
+    int limit = buffer.limit();
+    int position = 0;
+    int field = 0;
+    while (field < fields.length) {
+      while (position < limit && buffer.get(position) == ' ') {
+        position++;
+      }
+      if (position >= limit || buffer.get(position) == '\n') {
+        break;
+      }
+      long value = 0;
+      while (position < limit && buffer.get(position) != ' ' && buffer.get(position) != '\n') {
+        byte b = buffer.get(position++);
+        if (b >= '0' && b <= '9') {
+          value = 10 * value + (b - '0');
+        }
+      }
+      fields[field++] = value;
+    }
+    return field;
+  }
+
+  private static FileChannel openQuietly(Path file) {
+    try {
+      return FileChannel.open(file, StandardOpenOption.READ);
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  private static void closeQuietly(FileChannel channel) {
+    if (channel == null) {
+      return;
+    }
+    try {
+      channel.close();
+    } catch (IOException e) {
+      logger.log(Level.FINE, "unable to close a task schedstat file", e);
+    }
+  }
+
+  /** The open files of a task and what was last read from them. */
+  private static final class Task {
+    private final FileChannel schedstat;
+    private final FileChannel stat;
+
+    private long runtimeNanos = -1;
+    private long waitNanos = 0;
+    private int cpu = 0;
+
+    private Task(FileChannel schedstat, FileChannel stat) {
+      this.schedstat = schedstat;
+      this.stat = stat;
+    }
+
+    private void close() {
+      closeQuietly(schedstat);
+      closeQuietly(stat);
+    }
+  }
+}
@@ -0,0 +1,85 @@
+package yuca.linux.jiffies;
+
+import yuca.signal.SignalInterval;
+import yuca.signal.SignalInterval.SignalData;
+import yuca.signal.SignalInterval.Timestamp;
+
+/**
+ * The energy of each socket in an interval of socket energy, indexed by socket. The first reading
+ * of a socket is its package and the second, if there is one, is its dram. It only depends on the
+ * system, so it can be computed once and used to account for every process.
+ */
+public final class SocketEnergy {
+  private static final double[] NO_READINGS = new double[0];
+
+  /** Groups the readings of the interval by the socket in their first metadata. */
+  public static SocketEnergy of(SignalInterval energy) {
+    double[][] readings = new double[0][];
+    for (SignalData data : energy.getDataList()) {
+      int socket = Integer.parseInt(data.getMetadata(0).getValue());
+      if (socket >= readings.length) {
+        double[][] grown = new double[socket + 1][];
+        System.arraycopy(readings, 0, grown, 0, readings.length);
+        readings = grown;
+      }
+      double[] socketReadings = readings[socket] == null ? NO_READINGS : readings[socket];
+      readings[socket] = new double[socketReadings.length + 1];
+      System.arraycopy(socketReadings, 0, readings[socket], 0, socketReadings.length);
+      readings[socket][socketReadings.length] = data.getValue();
+    }
+    return new SocketEnergy(energy.getStart(), energy.getEnd(), readings);
+  }
+
+  private final Timestamp start;
+  private final Timestamp end;
+  private final double[][] readings;
+
+  private SocketEnergy(Timestamp start, Timestamp end, double[][] readings) {
+    this.start = start;
+    this.end = end;
+    this.readings = readings;
+  }
+
+  public Timestamp start() {
+    return start;
+  }
+
+  public Timestamp end() {
+    return end;
+  }
+
+  /** Returns the number of sockets, which is one more than the largest socket seen. */
+  public int socketCount() {
+    return readings.length;
+  }
+
+  /** Returns whether there is any energy for the socket. */
+  public boolean hasSocket(int socket) {
+    return socket < readings.length && readings[socket] != null;
+  }
+
+  /** Returns whether the socket has any readings at all. */
+  public boolean isEmpty() {
+    for (double[] socketReadings : readings) {
+      if (socketReadings != null) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Returns the package energy of a socket. */
+  public double packageEnergy(int socket) {
+    return readings[socket][0];
+  }
+
+  /** Returns whether the socket has a dram reading. */
+  public boolean hasDram(int socket) {
+    return readings[socket].length > 1;
+  }
+
+  /** Returns the dram energy of a socket. */
+  public double dramEnergy(int socket) {
+    return readings[socket][1];
+  }
+}
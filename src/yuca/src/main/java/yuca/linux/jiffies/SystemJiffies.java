@@ -0,0 +1,65 @@
+package yuca.linux.jiffies;
+
+import yuca.signal.SignalInterval;
+import yuca.signal.SignalInterval.SignalData;
+import yuca.signal.SignalInterval.Timestamp;
+
+/**
+ * The active jiffies of each cpu in an interval from {@link ProcStat#between}, indexed by cpu. It
+ * only depends on the system, so it can be computed once and used to account for every process.
+ */
+public final class SystemJiffies {
+  /** Sums the active jiffies of each cpu. Data without a "kind" is counted as active. */
+  public static SystemJiffies of(SignalInterval system) {
+    double[] activeJiffies = new double[0];
+    for (SignalData data : system.getDataList()) {
+      int cpu = -1;
+      boolean isActive = true;
+      for (SignalData.Metadata metadata : data.getMetadataList()) {
+        if (metadata.getName().equals("cpu")) {
+          cpu = Integer.parseInt(metadata.getValue());
+        } else if (metadata.getName().equals("kind")) {
+          isActive = metadata.getValue().equals("active");
+        }
+      }
+      if (cpu < 0 || !isActive) {
+        continue;
+      }
+      if (cpu >= activeJiffies.length) {
+        double[] grown = new double[cpu + 1];
+        System.arraycopy(activeJiffies, 0, grown, 0, activeJiffies.length);
+        activeJiffies = grown;
+      }
+      activeJiffies[cpu] += data.getValue();
+    }
+    return new SystemJiffies(system.getStart(), system.getEnd(), activeJiffies);
+  }
+
+  private final Timestamp start;
+  private final Timestamp end;
+  private final double[] activeJiffies;
+
+  private SystemJiffies(Timestamp start, Timestamp end, double[] activeJiffies) {
+    this.start = start;
+    this.end = end;
+    this.activeJiffies = activeJiffies;
+  }
+
+  public Timestamp start() {
+    return start;
+  }
+
+  public Timestamp end() {
+    return end;
+  }
+
+  /** Returns the number of cpus, which is one more than the largest cpu seen. */
+  public int cpuCount() {
+    return activeJiffies.length;
+  }
+
+  /** Returns the active jiffies of a cpu, or 0 if it wasn't in the interval. */
+  public double activeJiffies(int cpu) {
+    return cpu < activeJiffies.length ? activeJiffies[cpu] : 0;
+  }
+}
@@ -4,14 +4,38 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 
-/** A {@link Sample} of cpu jiffies since boot. */
+/**
+ * A {@link Sample} of cpu jiffies since boot. The jiffies are stored flat in the order of the
+ * fields in /proc/stat so that a {@link ProcStatReader} can parse directly into them.
+ */
 public final class SystemSample implements Comparable<SystemSample> {
-  private final Instant timestamp;
-  private final ArrayList<CpuJiffies> jiffies = new ArrayList<>();
+  // the fields of a cpu line after the cpu name
+  static final int USER = 0;
+  static final int NICE = 1;
+  static final int SYSTEM = 2;
+  static final int IDLE = 3;
+  static final int IOWAIT = 4;
+  static final int IRQ = 5;
+  static final int SOFTIRQ = 6;
+  static final int STEAL = 7;
+  static final int GUEST = 8;
+  static final int GUEST_NICE = 9;
+  static final int FIELD_COUNT = 10;
 
-  SystemSample(Instant timestamp, List<CpuJiffies> jiffies) {
+  // filled in place by the reader
+  Instant timestamp;
+  int cpuCount = 0;
+  int[] cpus;
+  long[] jiffies;
+
+  SystemSample(int capacity) {
+    this.cpus = new int[capacity];
+    this.jiffies = new long[FIELD_COUNT * capacity];
+  }
+
+  SystemSample(Instant timestamp) {
+    this(0);
     this.timestamp = timestamp;
-    jiffies.forEach(this.jiffies::add);
   }
 
   public Instant timestamp() {
@@ -19,11 +43,42 @@ public final class SystemSample implements Comparable<SystemSample> {
   }
 
   public List<CpuJiffies> data() {
-    return new ArrayList<>(jiffies);
+    ArrayList<CpuJiffies> data = new ArrayList<>(cpuCount);
+    for (int i = 0; i < cpuCount; i++) {
+      data.add(
+          new CpuJiffies(
+              cpus[i],
+              jiffies(i, USER),
+              jiffies(i, NICE),
+              jiffies(i, SYSTEM),
+              jiffies(i, IDLE),
+              jiffies(i, IOWAIT),
+              jiffies(i, IRQ),
+              jiffies(i, SOFTIRQ),
+              jiffies(i, STEAL),
+              jiffies(i, GUEST),
+              jiffies(i, GUEST_NICE)));
+    }
+    return data;
   }
 
   @Override
   public int compareTo(SystemSample other) {
     return timestamp().compareTo(other.timestamp());
   }
+
+  long jiffies(int index, int field) {
+    return jiffies[FIELD_COUNT * index + field];
+  }
+
+  long activeJiffies(int index) {
+    int offset = FIELD_COUNT * index;
+    long active = 0;
+    for (int field = 0; field < FIELD_COUNT; field++) {
+      if (field != IDLE) {
+        active += jiffies[offset + field];
+      }
+    }
+    return active;
+  }
 }
@@ -3,8 +3,6 @@ package yuca.linux.jiffies;
 import static yuca.linux.CpuInfo.getCpuSocketMapping;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
 import java.util.Optional;
 import yuca.signal.SignalInterval;
 import yuca.signal.SignalInterval.SignalData;
@@ -21,29 +19,34 @@ public final class TaskEnergyAccounting {
    */
   public static Optional<SignalInterval> computeTaskEnergy(
       SignalInterval process, SignalInterval energy) {
-    HashMap<Integer, List<SignalData>> readings = new HashMap<>();
-    for (SignalData data : energy.getDataList()) {
-      int socket = Integer.parseInt(data.getMetadata(0).getValue());
-      readings.computeIfAbsent(socket, s -> new ArrayList<>());
-      readings.get(socket).add(data);
-    }
-    if (readings.size() == 0) {
+    return computeTaskEnergy(process, SocketEnergy.of(energy));
+  }
+
+  /**
+   * Computes the attributed energy of all tasks from the energy of each socket. The {@link
+   * SocketEnergy} can be shared by every process that is accounted for in the same interval.
+   */
+  public static Optional<SignalInterval> computeTaskEnergy(
+      SignalInterval process, SocketEnergy energy) {
+    if (energy.isEmpty()) {
       return Optional.empty();
     }
 
     // Get the fraction of time the interval encompasses.
-    Timestamp start = Timestamps.max(process.getStart(), energy.getStart());
-    Timestamp end = Timestamps.min(process.getEnd(), energy.getEnd());
+    Timestamp start = Timestamps.max(process.getStart(), energy.start());
+    Timestamp end = Timestamps.min(process.getEnd(), energy.end());
     double intervalFraction =
         Timestamps.divide(
-            Timestamps.between(start, end), Timestamps.between(energy.getStart(), energy.getEnd()));
+            Timestamps.between(start, end), Timestamps.between(energy.start(), energy.end()));
 
     ArrayList<SignalData> tasks = new ArrayList<>();
-    double[] totalActivity = new double[readings.size()];
+    double[] totalActivity = new double[energy.socketCount()];
     // Set this up for the conversation to sockets.
     for (SignalData activity : process.getDataList()) {
-      int cpu = Integer.parseInt(activity.getMetadata(1).getValue());
-      totalActivity[SOCKETS_MAP[cpu]] += activity.getValue();
+      int socket = SOCKETS_MAP[Integer.parseInt(activity.getMetadata(1).getValue())];
+      if (socket < totalActivity.length) {
+        totalActivity[socket] += activity.getValue();
+      }
     }
     for (SignalData activity : process.getDataList()) {
       // Don't bother if there is no activity.
@@ -54,30 +57,23 @@ public final class TaskEnergyAccounting {
       int cpu = Integer.parseInt(activity.getMetadata(1).getValue());
       int socket = SOCKETS_MAP[cpu];
       // Don't bother if there is no energy.
-      if (!readings.containsKey(socket)) {
+      if (!energy.hasSocket(socket)) {
         continue;
       }
 
       // Attribute a fraction of the total energy to the task based on its activity on the socket.
+      double taskFraction = intervalFraction * activity.getValue() / totalActivity[socket];
       tasks.add(
           activity.toBuilder()
               .addMetadata(
                   SignalData.Metadata.newBuilder().setName("component").setValue("package"))
-              .setValue(
-                  readings.get(socket).get(0).getValue()
-                      * intervalFraction
-                      * activity.getValue()
-                      / totalActivity[socket])
+              .setValue(energy.packageEnergy(socket) * taskFraction)
               .build());
-      if (readings.get(socket).size() > 1) {
+      if (energy.hasDram(socket)) {
         tasks.add(
             activity.toBuilder()
                 .addMetadata(SignalData.Metadata.newBuilder().setName("component").setValue("dram"))
-                .setValue(
-                    readings.get(socket).get(1).getValue()
-                        * intervalFraction
-                        * activity.getValue()
-                        / totalActivity[socket])
+                .setValue(energy.dramEnergy(socket) * taskFraction)
                 .build());
       }
     }
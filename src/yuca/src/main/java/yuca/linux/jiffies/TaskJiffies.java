@@ -1,17 +1,16 @@
 package yuca.linux.jiffies;
 
-
 /** Jiffies from proc/<pid>/task/<tid>/stat. */
 public final class TaskJiffies {
   // TODO: immutable data structures are "safe" as public
   public final long processId;
   public final long taskId;
   public final int cpu;
-  public final int userJiffies;
-  public final int systemJiffies;
-  public final int totalJiffies;
+  public final long userJiffies;
+  public final long systemJiffies;
+  public final long totalJiffies;
 
-  TaskJiffies(long processId, long taskId, int cpu, int userJiffies, int systemJiffies) {
+  TaskJiffies(long processId, long taskId, int cpu, long userJiffies, long systemJiffies) {
     this.processId = processId;
     this.taskId = taskId;
     this.cpu = cpu;
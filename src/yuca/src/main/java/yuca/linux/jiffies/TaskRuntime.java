@@ -0,0 +1,19 @@
+package yuca.linux.jiffies;
+
+/** Run time from proc/<pid>/task/<tid>/schedstat. */
+public final class TaskRuntime {
+  // TODO: immutable data structures are "safe" as public
+  public final long processId;
+  public final long taskId;
+  public final int cpu;
+  public final long runtimeNanos;
+  public final long waitNanos;
+
+  TaskRuntime(long processId, long taskId, int cpu, long runtimeNanos, long waitNanos) {
+    this.processId = processId;
+    this.taskId = taskId;
+    this.cpu = cpu;
+    this.runtimeNanos = runtimeNanos;
+    this.waitNanos = waitNanos;
+  }
+}
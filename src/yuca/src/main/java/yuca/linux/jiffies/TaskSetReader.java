@@ -0,0 +1,111 @@
+package yuca.linux.jiffies;
+
+import static yuca.util.LoggerUtil.getLogger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A reader for a chosen set of a process's tasks, such as the threads that yuca samples on. Unlike
+ * {@link ProcTaskReader}, the task directory is never listed; tasks are only read after they are
+ * added and are dropped once they can't be read.
+ */
+public final class TaskSetReader implements AutoCloseable {
+  private static final Logger logger = getLogger();
+
+  // indices of the fields after the name, i.e. field n of proc(5) is at n - 3
+  private static final int USER = 11;
+  private static final int SYSTEM = 12;
+  private static final int CPU = 36;
+
+  // a stat line is a few hundred bytes
+  private static final int BUFFER_SIZE = 4096;
+
+  /** Opens a reader with no tasks for a process. */
+  public static TaskSetReader forProcess(long pid) {
+    return new TaskSetReader(Path.of("/proc"), pid);
+  }
+
+  private final long pid;
+  private final Path taskDirectory;
+  private final LinkedHashMap<Long, FileChannel> tasks = new LinkedHashMap<>();
+  private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+  private final long[] fields = new long[CPU + 1];
+
+  TaskSetReader(Path procDirectory, long pid) {
+    this.pid = pid;
+    this.taskDirectory = procDirectory.resolve(Long.toString(pid)).resolve("task");
+  }
+
+  /** Starts reading a task. Returns false if the task couldn't be opened. */
+  public synchronized boolean add(long tid) {
+    if (tasks.containsKey(tid)) {
+      return true;
+    }
+    try {
+      tasks.put(
+          tid,
+          FileChannel.open(
+              taskDirectory.resolve(Long.toString(tid)).resolve("stat"), StandardOpenOption.READ));
+      return true;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /** Reads the tasks and stamps the {@link ProcessSample} with the given timestamp. */
+  public synchronized ProcessSample read(Instant timestamp) {
+    ArrayList<TaskJiffies> jiffies = new ArrayList<>(tasks.size());
+    Iterator<Map.Entry<Long, FileChannel>> it = tasks.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<Long, FileChannel> task = it.next();
+      if (readFields(task.getValue())) {
+        jiffies.add(
+            new TaskJiffies(
+                pid, task.getKey(), (int) fields[CPU], fields[USER], fields[SYSTEM]));
+      } else {
+        // the task terminated so stop tracking it
+        closeQuietly(task.getValue());
+        it.remove();
+      }
+    }
+    return new ProcessSample(timestamp, pid, jiffies);
+  }
+
+  @Override
+  public synchronized void close() {
+    tasks.values().forEach(TaskSetReader::closeQuietly);
+    tasks.clear();
+  }
+
+  private boolean readFields(FileChannel channel) {
+    buffer.clear();
+    try {
+      if (channel.read(buffer, 0) <= 0) {
+        return false;
+      }
+    } catch (IOException e) {
+      return false;
+    }
+    buffer.flip();
+    return ProcTaskReader.parseFields(buffer, fields) > CPU;
+  }
+
+  private static void closeQuietly(FileChannel channel) {
+    try {
+      channel.close();
+    } catch (IOException e) {
+      logger.log(Level.FINE, "unable to close a task stat file", e);
+    }
+  }
+}
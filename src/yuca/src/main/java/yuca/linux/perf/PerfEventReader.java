@@ -0,0 +1,162 @@
+package yuca.linux.perf;
+
+import static yuca.util.LoggerUtil.getLogger;
+import static yuca.util.Timestamps.nowAsInstant;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.logging.Logger;
+import yuca.util.NativeUtils;
+
+/**
+ * A reader of the perf event counters of a process's tasks. Each task gets a counter group led by
+ * its software task-clock, with its cycles and instructions if the machine has a pmu that can count
+ * them, so a whole group is read with a single call. The native side keeps the groups open across
+ * reads, only opening new ones when the process's thread count changes, and writes the counters as
+ * longs into a direct buffer laid out as:
+ *
+ * <pre>
+ * [task_count, has_hardware,
+ *  task_count x (tid, cpu, task_clock_ns, cycles, instructions, time_enabled, time_running)]
+ * </pre>
+ *
+ * <p>Kernel time is excluded if perf_event_paranoid doesn't allow counting it. Reads with the same
+ * timestamp share one sample, so more than one signal can be differenced from a single read.
+ */
+public final class PerfEventReader implements AutoCloseable {
+  private static final Logger logger = getLogger();
+
+  private static final int HEADER_LENGTH = 2;
+  private static final int TASK_LENGTH = 7;
+  private static final int INITIAL_LENGTH = HEADER_LENGTH + TASK_LENGTH * 256;
+
+  private static final boolean IS_AVAILABLE = loadLibrary();
+
+  /** Returns whether the native library could be loaded. */
+  public static boolean isAvailable() {
+    return IS_AVAILABLE;
+  }
+
+  /**
+   * Opens the counters of a process's tasks. Returns null if the native library isn't available or
+   * the process's tasks can't be counted, i.e. if perf events aren't allowed.
+   */
+  public static PerfEventReader forProcess(long pid) {
+    if (!IS_AVAILABLE) {
+      return null;
+    }
+    long handle = openNative(pid);
+    if (handle == 0) {
+      logger.warning(String.format("unable to open perf events for %d", pid));
+      return null;
+    }
+    return new PerfEventReader(pid, handle);
+  }
+
+  private final long pid;
+
+  private long handle;
+  private ByteBuffer buffer;
+  private long[] entries;
+  private PerfSample last;
+
+  private PerfEventReader(long pid, long handle) {
+    this.pid = pid;
+    this.handle = handle;
+    allocate(INITIAL_LENGTH);
+  }
+
+  /** Reads the counters of the process's tasks. */
+  public PerfSample read() {
+    return read(nowAsInstant());
+  }
+
+  /** Reads the counters of the process's tasks and stamps the sample with the given timestamp. */
+  public synchronized PerfSample read(Instant timestamp) {
+    if (handle == 0) {
+      throw new IllegalStateException("reader has been closed");
+    }
+    if (last != null && last.timestamp().equals(timestamp)) {
+      return last;
+    }
+    int length = sampleNative(handle, buffer);
+    while (length < 0) {
+      // the buffer was too small and we were told how much room is needed
+      allocate(Math.max(-length, 2 * entries.length));
+      length = sampleNative(handle, buffer);
+    }
+    buffer.asLongBuffer().get(entries, 0, length);
+
+    int taskCount = (int) entries[0];
+    boolean hasHardware = entries[1] != 0;
+    ArrayList<TaskCounters> counters = new ArrayList<>(taskCount);
+    for (int i = HEADER_LENGTH; i < HEADER_LENGTH + TASK_LENGTH * taskCount; i += TASK_LENGTH) {
+      long enabled = entries[i + 5];
+      long running = entries[i + 6];
+      counters.add(
+          new TaskCounters(
+              pid,
+              entries[i],
+              (int) entries[i + 1],
+              scale(entries[i + 2], enabled, running),
+              scale(entries[i + 3], enabled, running),
+              scale(entries[i + 4], enabled, running)));
+    }
+    last = new PerfSample(timestamp, pid, counters, hasHardware);
+    return last;
+  }
+
+  @Override
+  public synchronized void close() {
+    if (handle != 0) {
+      closeNative(handle);
+      handle = 0;
+    }
+  }
+
+  private void allocate(int length) {
+    buffer = ByteBuffer.allocateDirect(Long.BYTES * length).order(ByteOrder.nativeOrder());
+    entries = new long[length];
+  }
+
+  /** Scales a count up to the time its group was enabled if the group was multiplexed. */
+  private static long scale(long count, long enabled, long running) {
+    if (count < 0 || running <= 0 || running >= enabled) {
+      return count;
+    }
+    return (long) (count * ((double) enabled / running));
+  }
+
+  /**
+   * Opens counter groups for the process's tasks and returns a handle to them, or 0 if the main
+   * thread couldn't be counted.
+   */
+  private static native long openNative(long pid);
+
+  /**
+   * Writes a sample into the buffer. Returns the number of longs written, or the negated number of
+   * longs needed if the buffer is too small.
+   */
+  private static native int sampleNative(long handle, ByteBuffer buffer);
+
+  /** Closes the counters behind the handle. */
+  private static native void closeNative(long handle);
+
+  private static boolean loadLibrary() {
+    try {
+      NativeUtils.loadLibraryFromJar("/yuca/src/main/c/yuca/perf/libperfsampler.so");
+      return true;
+    } catch (Throwable e) {
+      logger.info("couldn't load native perf event library from the jar");
+    }
+    try {
+      System.loadLibrary("perfsampler");
+      return true;
+    } catch (Throwable e) {
+      logger.info("couldn't load native perf event library; perf events aren't available");
+      return false;
+    }
+  }
+}
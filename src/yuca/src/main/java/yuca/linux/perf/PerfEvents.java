@@ -0,0 +1,110 @@
+package yuca.linux.perf;
+
+import static java.util.stream.Collectors.toMap;
+import static yuca.linux.CpuInfo.getCpuSocketMapping;
+import static yuca.linux.jiffies.JiffiesAccounting.nanosToJiffies;
+import static yuca.util.Timestamps.fromInstant;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import yuca.signal.SignalInterval;
+import yuca.signal.SignalInterval.SignalData;
+
+/** Helper for differencing {@link PerfSample}s into signals. */
+public final class PerfEvents {
+  private static final int[] SOCKETS_MAP = getCpuSocketMapping();
+
+  /**
+   * Computes the task-clock of each task between two samples in jiffies. The data are laid out like
+   * {@link yuca.linux.jiffies.ProcTask#between} so they can be accounted for in the same way, but
+   * the values are fractional since the task-clock counts in nanoseconds.
+   */
+  public static SignalInterval between(PerfSample first, PerfSample second) {
+    checkOrder(first, second);
+    Map<Long, TaskCounters> secondMap = toTaskMap(second);
+    ArrayList<SignalData> jiffies = new ArrayList<>();
+    for (TaskCounters task : first.data()) {
+      TaskCounters other = secondMap.get(task.taskId);
+      if (other == null || other.taskClockNanos - task.taskClockNanos <= 0) {
+        continue;
+      }
+      jiffies.add(
+          taskData(other)
+              .setValue(nanosToJiffies(other.taskClockNanos - task.taskClockNanos))
+              .build());
+    }
+    return interval(first, second, jiffies);
+  }
+
+  /**
+   * Computes the cycles and instructions of each task between two samples. Each task has a datum
+   * for each event, which is named by an extra "event" metadata. The interval is empty if the
+   * hardware counters weren't read.
+   */
+  public static SignalInterval countersBetween(PerfSample first, PerfSample second) {
+    checkOrder(first, second);
+    ArrayList<SignalData> counters = new ArrayList<>();
+    if (first.hasHardwareCounters() && second.hasHardwareCounters()) {
+      Map<Long, TaskCounters> secondMap = toTaskMap(second);
+      for (TaskCounters task : first.data()) {
+        TaskCounters other = secondMap.get(task.taskId);
+        if (other == null || task.cycles < 0 || other.cycles < 0) {
+          continue;
+        }
+        addEvent(counters, other, "cycles", other.cycles - task.cycles);
+        addEvent(counters, other, "instructions", other.instructions - task.instructions);
+      }
+    }
+    return interval(first, second, counters);
+  }
+
+  private static void addEvent(
+      List<SignalData> counters, TaskCounters task, String event, long count) {
+    if (count > 0) {
+      counters.add(
+          taskData(task)
+              .addMetadata(SignalData.Metadata.newBuilder().setName("event").setValue(event))
+              .setValue(count)
+              .build());
+    }
+  }
+
+  /** Tags a task's datum like {@link yuca.linux.jiffies.ProcTask} does. */
+  private static SignalData.Builder taskData(TaskCounters task) {
+    return SignalData.newBuilder()
+        .addMetadata(
+            SignalData.Metadata.newBuilder().setName("task").setValue(Long.toString(task.taskId)))
+        // the cpu has to stay second since the accounting looks it up by position
+        .addMetadata(
+            SignalData.Metadata.newBuilder().setName("cpu").setValue(Integer.toString(task.cpu)))
+        .addMetadata(
+            SignalData.Metadata.newBuilder()
+                .setName("socket")
+                .setValue(Integer.toString(SOCKETS_MAP[task.cpu])));
+  }
+
+  private static Map<Long, TaskCounters> toTaskMap(PerfSample sample) {
+    return sample.data().stream().collect(toMap(t -> t.taskId, t -> t));
+  }
+
+  private static void checkOrder(PerfSample first, PerfSample second) {
+    if (first.compareTo(second) > -1) {
+      throw new IllegalArgumentException(
+          String.format(
+              "first sample is not before second sample (%s !< %s)",
+              first.timestamp(), second.timestamp()));
+    }
+  }
+
+  private static SignalInterval interval(
+      PerfSample first, PerfSample second, List<SignalData> data) {
+    return SignalInterval.newBuilder()
+        .setStart(fromInstant(first.timestamp()))
+        .setEnd(fromInstant(second.timestamp()))
+        .addAllData(data)
+        .build();
+  }
+
+  private PerfEvents() {}
+}
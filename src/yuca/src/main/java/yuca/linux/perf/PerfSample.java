@@ -0,0 +1,43 @@
+package yuca.linux.perf;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/** A sample of the perf event counters of a process's tasks. */
+public final class PerfSample implements Comparable<PerfSample> {
+  public final long processId;
+
+  private final Instant timestamp;
+  private final ArrayList<TaskCounters> counters = new ArrayList<>();
+  private final boolean hasHardwareCounters;
+
+  PerfSample(
+      Instant timestamp,
+      long processId,
+      Iterable<TaskCounters> counters,
+      boolean hasHardwareCounters) {
+    this.timestamp = timestamp;
+    this.processId = processId;
+    this.hasHardwareCounters = hasHardwareCounters;
+    counters.forEach(this.counters::add);
+  }
+
+  public Instant timestamp() {
+    return timestamp;
+  }
+
+  /** Returns if the tasks' cycles and instructions were counted. */
+  public boolean hasHardwareCounters() {
+    return hasHardwareCounters;
+  }
+
+  public List<TaskCounters> data() {
+    return new ArrayList<>(counters);
+  }
+
+  @Override
+  public int compareTo(PerfSample other) {
+    return timestamp().compareTo(other.timestamp());
+  }
+}
@@ -0,0 +1,23 @@
+package yuca.linux.perf;
+
+/** Counters of a task's perf events since they were opened. */
+public final class TaskCounters {
+  // TODO: immutable data structures are "safe" as public
+  public final long processId;
+  public final long taskId;
+  public final int cpu;
+  public final long taskClockNanos;
+  // -1 if the machine doesn't have the hardware counters
+  public final long cycles;
+  public final long instructions;
+
+  TaskCounters(
+      long processId, long taskId, int cpu, long taskClockNanos, long cycles, long instructions) {
+    this.processId = processId;
+    this.taskId = taskId;
+    this.cpu = cpu;
+    this.taskClockNanos = taskClockNanos;
+    this.cycles = cycles;
+    this.instructions = instructions;
+  }
+}
@@ -38,19 +38,47 @@ public final class Powercap {
    * Returns an {@link PowercapSample} populated by parsing the string returned by {@ readNative}.
    */
   public static Optional<PowercapSample> sample() {
-    if (!isAvailable()) {
+    return sample(nowAsInstant());
+  }
+
+  /** Reads the energy of each socket and stamps the {@link PowercapSample} with the timestamp. */
+  public static Optional<PowercapSample> sample(Instant timestamp) {
+    return sample(POWERCAP_ROOT, SOCKETS, timestamp);
+  }
+
+  /** Reads the energy of each socket under a directory laid out like the intel-rapl root. */
+  public static Optional<PowercapSample> sample(Path powercapRoot, int sockets, Instant timestamp) {
+    if (sockets < 1) {
       return Optional.empty();
     }
 
-    Instant timestamp = nowAsInstant();
     ArrayList<PowercapReading> readings = new ArrayList<>();
-    for (int socket = 0; socket < SOCKETS; socket++) {
-      readings.add(new PowercapReading(socket, readPackage(socket), readDram(socket), 0.0, 0.0));
+    for (int socket = 0; socket < sockets; socket++) {
+      readings.add(
+          new PowercapReading(
+              socket, readPackage(powercapRoot, socket), readDram(powercapRoot, socket), 0.0, 0.0));
     }
 
     return Optional.of(new PowercapSample(timestamp, readings));
   }
 
+  /**
+   * Converts the entries to a {@link PowercapSample}. The entries are the package and dram joules
+   * of each socket, i.e. [package_0, dram_0, package_1, dram_1, ...].
+   */
+  public static PowercapSample readingToSample(double[] entries, Instant timestamp) {
+    if (entries.length % 2 != 0) {
+      throw new IllegalArgumentException(
+          String.format("entries are not (package, dram) pairs (%d entries)", entries.length));
+    }
+    ArrayList<PowercapReading> readings = new ArrayList<>(entries.length / 2);
+    for (int socket = 0; socket < entries.length / 2; socket++) {
+      readings.add(
+          new PowercapReading(socket, entries[2 * socket], entries[2 * socket + 1], 0.0, 0.0));
+    }
+    return new PowercapSample(timestamp, readings);
+  }
+
   /** Computes the difference of two {@link PowercapReadings}. */
   public static List<SignalData> between(PowercapReading first, PowercapReading second) {
     if (first.socket != second.socket) {
@@ -177,9 +205,9 @@ public final class Powercap {
    * Parses the contents of /sys/devices/virtual/powercap/intel-rapl/intel-rapl:<socket>/energy_uj,
    * which contains the number of microjoules consumed by the package since boot as an integer.
    */
-  private static double readPackage(int socket) {
+  private static double readPackage(Path powercapRoot, int socket) {
     String socketPrefix = String.format("intel-rapl:%d", socket);
-    Path energyFile = Paths.get(POWERCAP_ROOT.toString(), socketPrefix, "energy_uj");
+    Path energyFile = Paths.get(powercapRoot.toString(), socketPrefix, "energy_uj");
     try {
       return Double.parseDouble(Files.readString(energyFile)) / 1000000;
     } catch (Exception e) {
@@ -192,11 +220,11 @@ public final class Powercap {
    * /sys/devices/virtual/powercap/intel-rapl/intel-rapl:<socket>/intel-rapl:<socket>:0/energy_uj,
    * which contains the number of microjoules consumed by the dram since boot as an integer.
    */
-  private static double readDram(int socket) {
+  private static double readDram(Path powercapRoot, int socket) {
     String socketPrefix = String.format("intel-rapl:%d", socket);
     Path energyFile =
         Paths.get(
-            POWERCAP_ROOT.toString(),
+            powercapRoot.toString(),
             socketPrefix,
             String.format("%s:0", socketPrefix),
             "energy_uj");
@@ -0,0 +1,145 @@
+package yuca.linux.taskstats;
+
+import static yuca.util.LoggerUtil.getLogger;
+import static yuca.util.Timestamps.nowAsInstant;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.Instant;
+import java.util.logging.Logger;
+import yuca.linux.jiffies.ProcTask;
+import yuca.linux.jiffies.ProcessSample;
+import yuca.util.NativeUtils;
+
+/**
+ * A reader for the tasks of a process that asks the kernel's taskstats over generic netlink
+ * instead of reading each task's stat file. The stats of many tasks are asked for with a single
+ * send and come back a receive buffer at a time, so a process with thousands of threads doesn't
+ * cost a syscall per thread. A task's stat file is still reread for the cpu it ran on, but only if
+ * the task ran since the last read. The task directory is rescanned like a {@link
+ * yuca.linux.jiffies.ProcTaskReader}.
+ *
+ * <p>The reader also listens for the exits of tasks, so a task that dies between two reads is
+ * reported once more with its final times instead of losing what it ran since the last read. The
+ * native side writes the tasks as longs into a direct buffer laid out as:
+ *
+ * <pre>
+ * [task_count, exited_count, task_count x (tid, cpu, user_jiffies, system_jiffies)]
+ * </pre>
+ *
+ * <p>Taskstats needs CAP_NET_ADMIN, so {@link #forProcess} returns null for an unprivileged jvm
+ * and the caller should read /proc instead.
+ */
+public final class TaskstatsReader implements AutoCloseable {
+  private static final Logger logger = getLogger();
+
+  private static final int HEADER_LENGTH = 2;
+  private static final int TASK_LENGTH = 4;
+  private static final int INITIAL_LENGTH = HEADER_LENGTH + TASK_LENGTH * 512;
+
+  private static final boolean IS_AVAILABLE = loadLibrary();
+
+  /** Returns whether the native library could be loaded. */
+  public static boolean isAvailable() {
+    return IS_AVAILABLE;
+  }
+
+  /**
+   * Opens a reader for a process's tasks. Returns null if the native library isn't available or
+   * if taskstats can't be queried, i.e. without CAP_NET_ADMIN.
+   */
+  public static TaskstatsReader forProcess(long pid) {
+    if (!IS_AVAILABLE) {
+      return null;
+    }
+    long handle = openNative(pid);
+    if (handle == 0) {
+      logger.warning(String.format("unable to query taskstats for %d", pid));
+      return null;
+    }
+    return new TaskstatsReader(pid, handle);
+  }
+
+  private final long pid;
+
+  private long handle;
+  private ByteBuffer buffer;
+  private long[] entries;
+  private long exitCount = 0;
+
+  private TaskstatsReader(long pid, long handle) {
+    this.pid = pid;
+    this.handle = handle;
+    allocate(INITIAL_LENGTH);
+  }
+
+  /** Reads the process's tasks. */
+  public ProcessSample read() {
+    return read(nowAsInstant());
+  }
+
+  /** Reads the process's tasks and stamps the {@link ProcessSample} with the given timestamp. */
+  public synchronized ProcessSample read(Instant timestamp) {
+    if (handle == 0) {
+      throw new IllegalStateException("reader has been closed");
+    }
+    int length = sampleNative(handle, buffer);
+    while (length < 0) {
+      // the buffer was too small and we were told how much room is needed
+      allocate(Math.max(-length, 2 * entries.length));
+      length = sampleNative(handle, buffer);
+    }
+    buffer.asLongBuffer().get(entries, 0, length);
+    exitCount += entries[1];
+    return ProcTask.readingToSample(pid, entries, HEADER_LENGTH, (int) entries[0], timestamp);
+  }
+
+  /** Returns the number of tasks whose exits were caught between reads. */
+  public synchronized long exitCount() {
+    return exitCount;
+  }
+
+  @Override
+  public synchronized void close() {
+    if (handle != 0) {
+      closeNative(handle);
+      handle = 0;
+    }
+  }
+
+  private void allocate(int length) {
+    buffer = ByteBuffer.allocateDirect(Long.BYTES * length).order(ByteOrder.nativeOrder());
+    entries = new long[length];
+  }
+
+  /**
+   * Opens the netlink sockets for the process's tasks and returns a handle to them, or 0 if
+   * taskstats couldn't be queried.
+   */
+  private static native long openNative(long pid);
+
+  /**
+   * Writes a sample into the buffer. Returns the number of longs written, or the negated number of
+   * longs needed if the buffer is too small.
+   */
+  private static native int sampleNative(long handle, ByteBuffer buffer);
+
+  /** Closes the sockets and files behind the handle. */
+  private static native void closeNative(long handle);
+
+  private static boolean loadLibrary() {
+    try {
+      NativeUtils.loadLibraryFromJar("/yuca/src/main/c/yuca/taskstats/libtaskstatssampler.so");
+      return true;
+    } catch (Throwable e) {
+      logger.info("couldn't load native taskstats library from the jar");
+    }
+    try {
+      System.loadLibrary("taskstatssampler");
+      return true;
+    } catch (Throwable e) {
+      logger.info("couldn't load native taskstats library; taskstats aren't available");
+      return false;
+    }
+  }
+}
@@ -41,7 +41,11 @@ public final class SysThermal {
   }
 
   public static ThermalZonesSample sample() {
-    Instant timestamp = Instant.now();
+    return sample(Instant.now());
+  }
+
+  /** Reads the thermal zones and stamps the {@link ThermalZonesSample} with the given timestamp. */
+  public static ThermalZonesSample sample(Instant timestamp) {
     ArrayList<ThermalZoneTemperature> readings = new ArrayList<>();
     for (int zone = 0; zone < ZONE_COUNT; zone++) {
       readings.add(new ThermalZoneTemperature(zone, ZONES.get(zone), getTemperature(zone)));
@@ -49,6 +53,22 @@ public final class SysThermal {
     return new ThermalZonesSample(timestamp, readings);
   }
 
+  /** Converts readings that were taken elsewhere (i.e. logged) to a {@link ThermalZonesSample}. */
+  public static ThermalZonesSample readingsToSample(
+      int[] zones, String[] types, int[] temperatures, Instant timestamp) {
+    if (zones.length != types.length || zones.length != temperatures.length) {
+      throw new IllegalArgumentException(
+          String.format(
+              "mismatched thermal readings (%d zones, %d types, %d temperatures)",
+              zones.length, types.length, temperatures.length));
+    }
+    ArrayList<ThermalZoneTemperature> readings = new ArrayList<>(zones.length);
+    for (int i = 0; i < zones.length; i++) {
+      readings.add(new ThermalZoneTemperature(zones[i], types[i], temperatures[i]));
+    }
+    return new ThermalZonesSample(timestamp, readings);
+  }
+
   public static List<SignalData> between(
       List<ThermalZoneTemperature> first, List<ThermalZoneTemperature> second) {
     Map<Integer, ThermalZoneTemperature> secondMap =
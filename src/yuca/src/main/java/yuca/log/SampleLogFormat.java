@@ -0,0 +1,86 @@
+package yuca.log;
+
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+
+/**
+ * The layout of a sample log. A log is a directory with a {@code sources} file that names the
+ * sources, one per line, and numbered segment files of entries. Each entry is a header followed by
+ * a fixed-size record for each reading in the sample:
+ *
+ * <pre>
+ *   0  int   kind (0 marks the end of the segment)
+ *   4  int   crc32 of everything after it
+ *   8  int   source index
+ *  12  int   record count
+ *  16  long  epoch seconds
+ *  24  int   nanos
+ *  32  long  key (the (root) process id of task samples)
+ *  40        records
+ * </pre>
+ *
+ * The kind is written last, so an entry that was cut off by a crash is either zero or fails the
+ * checksum.
+ */
+final class SampleLogFormat {
+  static final String SOURCES_FILE = "sources";
+  static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+  // header offsets
+  static final int KIND = 0;
+  static final int CHECKSUM = 4;
+  static final int SOURCE = 8;
+  static final int COUNT = 12;
+  static final int SECONDS = 16;
+  static final int NANOS = 24;
+  static final int KEY = 32;
+  static final int HEADER_SIZE = 40;
+
+  // entry kinds
+  static final int END = 0;
+  static final int PROC_STAT = 1;
+  static final int PROC_TASK = 2;
+  static final int POWERCAP = 3;
+  static final int RAPL = 4;
+  static final int THERMAL = 5;
+  static final int FREQUENCY = 6;
+  static final int PROC_TREE = 7;
+
+  // names (thermal zone types and governors) are truncated to this many bytes
+  static final int NAME_SIZE = 24;
+
+  /** Returns the size of a record of the kind, or -1 if it isn't a kind we know. */
+  static int recordSize(int kind) {
+    switch (kind) {
+      case PROC_STAT:
+        // cpu and the 10 jiffies fields
+        return 11 * Long.BYTES;
+      case PROC_TASK:
+        // task id, cpu, user and system jiffies
+        return 4 * Long.BYTES;
+      case POWERCAP:
+        // package and dram energy
+        return 2 * Double.BYTES;
+      case RAPL:
+        // pkg, dram, core and gpu energy
+        return 4 * Double.BYTES;
+      case THERMAL:
+        // zone, temperature and type
+        return 2 * Integer.BYTES + NAME_SIZE;
+      case FREQUENCY:
+        // cpu, observed and set frequency, and governor
+        return 3 * Long.BYTES + NAME_SIZE;
+      case PROC_TREE:
+        // process id, task id, cpu, user and system jiffies
+        return 5 * Long.BYTES;
+      default:
+        return -1;
+    }
+  }
+
+  static Path segment(Path directory, int index) {
+    return directory.resolve(String.format("segment-%06d.log", index));
+  }
+
+  private SampleLogFormat() {}
+}
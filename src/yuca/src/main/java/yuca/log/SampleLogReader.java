@@ -0,0 +1,229 @@
+package yuca.log;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static yuca.log.SampleLogFormat.BYTE_ORDER;
+import static yuca.log.SampleLogFormat.CHECKSUM;
+import static yuca.log.SampleLogFormat.COUNT;
+import static yuca.log.SampleLogFormat.END;
+import static yuca.log.SampleLogFormat.FREQUENCY;
+import static yuca.log.SampleLogFormat.HEADER_SIZE;
+import static yuca.log.SampleLogFormat.KEY;
+import static yuca.log.SampleLogFormat.KIND;
+import static yuca.log.SampleLogFormat.NAME_SIZE;
+import static yuca.log.SampleLogFormat.NANOS;
+import static yuca.log.SampleLogFormat.POWERCAP;
+import static yuca.log.SampleLogFormat.PROC_STAT;
+import static yuca.log.SampleLogFormat.PROC_TASK;
+import static yuca.log.SampleLogFormat.PROC_TREE;
+import static yuca.log.SampleLogFormat.RAPL;
+import static yuca.log.SampleLogFormat.SECONDS;
+import static yuca.log.SampleLogFormat.SOURCE;
+import static yuca.log.SampleLogFormat.SOURCES_FILE;
+import static yuca.log.SampleLogFormat.THERMAL;
+import static yuca.util.LoggerUtil.getLogger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import yuca.linux.freq.CpuFreq;
+import yuca.linux.jiffies.ProcStat;
+import yuca.linux.jiffies.ProcTask;
+import yuca.linux.powercap.Powercap;
+import yuca.linux.thermal.SysThermal;
+import yuca.rapl.Rapl;
+import yuca.util.CompositeSample;
+
+/**
+ * Streams the ticks out of a sample log written by a {@link SampleLogWriter}. Only one segment is
+ * mapped and one tick is decoded at a time, so replaying a log doesn't depend on how long it is.
+ *
+ * <p>Replay stops at the first entry that wasn't completely written, which is where the writer was
+ * when the log was last synced or the process died. A log can be replayed while it is still being
+ * written.
+ */
+public final class SampleLogReader {
+  private static final Logger logger = getLogger();
+
+  /** Returns if there is a sample log in the directory. */
+  public static boolean exists(Path directory) {
+    return Files.exists(directory.resolve(SOURCES_FILE));
+  }
+
+  /**
+   * Hands each tick of the log, i.e. the entries that share a timestamp, to the consumer in order.
+   * Returns the number of entries that were read.
+   */
+  public static long replay(Path directory, Consumer<? super CompositeSample> ticks)
+      throws IOException {
+    List<String> sources = Files.readAllLines(directory.resolve(SOURCES_FILE), UTF_8);
+    Tick tick = new Tick(ticks);
+    CRC32 checksum = new CRC32();
+    long entryCount = 0;
+    for (int index = 0; Files.exists(SampleLogFormat.segment(directory, index)); index++) {
+      ByteBuffer segment = map(SampleLogFormat.segment(directory, index));
+      while (segment.remaining() >= HEADER_SIZE) {
+        int start = segment.position();
+        int kind = segment.getInt(start + KIND);
+        if (kind == END) {
+          break;
+        }
+        int count = segment.getInt(start + COUNT);
+        int recordSize = SampleLogFormat.recordSize(kind);
+        int source = segment.getInt(start + SOURCE);
+        if (recordSize < 0
+            || count < 0
+            || source < 0
+            || source >= sources.size()
+            || (long) count * recordSize > segment.remaining() - HEADER_SIZE) {
+          return torn(directory, index, start, tick, entryCount);
+        }
+        int end = start + HEADER_SIZE + count * recordSize;
+        ByteBuffer entry = segment.duplicate();
+        entry.position(start + SOURCE).limit(end);
+        checksum.reset();
+        checksum.update(entry);
+        if ((int) checksum.getValue() != segment.getInt(start + CHECKSUM)) {
+          return torn(directory, index, start, tick, entryCount);
+        }
+
+        Instant timestamp =
+            Instant.ofEpochSecond(
+                segment.getLong(start + SECONDS), segment.getInt(start + NANOS));
+        segment.position(start + HEADER_SIZE);
+        Object sample = decode(segment, kind, count, segment.getLong(start + KEY), timestamp);
+        tick.add(timestamp, sources.get(source), sample);
+        entryCount++;
+        segment.position(end);
+      }
+    }
+    tick.flush();
+    return entryCount;
+  }
+
+  private static long torn(Path directory, int index, int offset, Tick tick, long entryCount) {
+    logger.info(
+        String.format(
+            "sample log at %s ends with a partial entry in segment %d at %d; ignoring the rest",
+            directory, index, offset));
+    tick.flush();
+    return entryCount;
+  }
+
+  /** Reads the records of an entry back into the sample they were taken from. */
+  private static Object decode(
+      ByteBuffer segment, int kind, int count, long key, Instant timestamp) {
+    switch (kind) {
+      case PROC_STAT:
+        return ProcStat.readingToSample(getLongs(segment, 11 * count), 0, count, timestamp);
+      case PROC_TASK:
+        return ProcTask.readingToSample(key, getLongs(segment, 4 * count), 0, count, timestamp);
+      case PROC_TREE:
+        return ProcTask.treeReadingToSample(
+            key, getLongs(segment, 5 * count), 0, count, timestamp);
+      case POWERCAP:
+        return Powercap.readingToSample(getDoubles(segment, 2 * count), timestamp);
+      case RAPL:
+        return Rapl.socketsToSample(getDoubles(segment, 4 * count), timestamp);
+      case THERMAL:
+        {
+          int[] zones = new int[count];
+          int[] temperatures = new int[count];
+          String[] types = new String[count];
+          for (int i = 0; i < count; i++) {
+            zones[i] = segment.getInt();
+            temperatures[i] = segment.getInt();
+            types[i] = getName(segment);
+          }
+          return SysThermal.readingsToSample(zones, types, temperatures, timestamp);
+        }
+      case FREQUENCY:
+        {
+          int[] cpus = new int[count];
+          long[] frequencies = new long[count];
+          long[] setFrequencies = new long[count];
+          String[] governors = new String[count];
+          for (int i = 0; i < count; i++) {
+            cpus[i] = (int) segment.getLong();
+            frequencies[i] = segment.getLong();
+            setFrequencies[i] = segment.getLong();
+            governors[i] = getName(segment);
+          }
+          return CpuFreq.readingsToSample(cpus, governors, frequencies, setFrequencies, timestamp);
+        }
+      default:
+        throw new IllegalArgumentException(String.format("unknown entry kind %d", kind));
+    }
+  }
+
+  private static long[] getLongs(ByteBuffer segment, int length) {
+    long[] values = new long[length];
+    segment.asLongBuffer().get(values);
+    segment.position(segment.position() + Long.BYTES * length);
+    return values;
+  }
+
+  private static double[] getDoubles(ByteBuffer segment, int length) {
+    double[] values = new double[length];
+    segment.asDoubleBuffer().get(values);
+    segment.position(segment.position() + Double.BYTES * length);
+    return values;
+  }
+
+  private static String getName(ByteBuffer segment) {
+    byte[] bytes = new byte[NAME_SIZE];
+    segment.get(bytes);
+    int length = 0;
+    while (length < NAME_SIZE && bytes[length] != 0) {
+      length++;
+    }
+    return new String(bytes, 0, length, UTF_8);
+  }
+
+  private static ByteBuffer map(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      segment.order(BYTE_ORDER);
+      return segment;
+    }
+  }
+
+  /** Collects the entries of a tick until an entry with a new timestamp shows up. */
+  private static final class Tick {
+    private final Consumer<? super CompositeSample> ticks;
+    private final HashMap<String, Object> samples = new HashMap<>();
+
+    private Instant timestamp;
+
+    private Tick(Consumer<? super CompositeSample> ticks) {
+      this.ticks = ticks;
+    }
+
+    private void add(Instant timestamp, String source, Object sample) {
+      if (!timestamp.equals(this.timestamp)) {
+        flush();
+        this.timestamp = timestamp;
+      }
+      samples.put(source, sample);
+    }
+
+    private void flush() {
+      if (timestamp != null && !samples.isEmpty()) {
+        ticks.accept(CompositeSample.of(timestamp, samples));
+      }
+      samples.clear();
+      timestamp = null;
+    }
+  }
+
+  private SampleLogReader() {}
+}
@@ -0,0 +1,302 @@
+package yuca.log;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static yuca.log.SampleLogFormat.BYTE_ORDER;
+import static yuca.log.SampleLogFormat.CHECKSUM;
+import static yuca.log.SampleLogFormat.COUNT;
+import static yuca.log.SampleLogFormat.FREQUENCY;
+import static yuca.log.SampleLogFormat.HEADER_SIZE;
+import static yuca.log.SampleLogFormat.KEY;
+import static yuca.log.SampleLogFormat.KIND;
+import static yuca.log.SampleLogFormat.NAME_SIZE;
+import static yuca.log.SampleLogFormat.NANOS;
+import static yuca.log.SampleLogFormat.POWERCAP;
+import static yuca.log.SampleLogFormat.PROC_STAT;
+import static yuca.log.SampleLogFormat.PROC_TASK;
+import static yuca.log.SampleLogFormat.PROC_TREE;
+import static yuca.log.SampleLogFormat.RAPL;
+import static yuca.log.SampleLogFormat.SECONDS;
+import static yuca.log.SampleLogFormat.SOURCE;
+import static yuca.log.SampleLogFormat.SOURCES_FILE;
+import static yuca.log.SampleLogFormat.THERMAL;
+import static yuca.util.LoggerUtil.getLogger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import yuca.linux.freq.CpuFrequency;
+import yuca.linux.freq.CpuFrequencySample;
+import yuca.linux.jiffies.CpuJiffies;
+import yuca.linux.jiffies.ProcessSample;
+import yuca.linux.jiffies.SystemSample;
+import yuca.linux.jiffies.TaskJiffies;
+import yuca.linux.powercap.PowercapReading;
+import yuca.linux.powercap.PowercapSample;
+import yuca.linux.thermal.ThermalZoneTemperature;
+import yuca.linux.thermal.ThermalZonesSample;
+import yuca.rapl.RaplReading;
+import yuca.rapl.RaplSample;
+import yuca.util.CompositeSample;
+
+/**
+ * Appends raw samples to a segmented, memory-mapped log (see {@link SampleLogFormat}). Entries are
+ * written straight into the mapped segment, so the log lives in the page cache rather than the heap
+ * and survives the JVM going down. A new segment is mapped whenever the current one is full.
+ *
+ * <p>Only {@link SystemSample}s, {@link ProcessSample}s, {@link RaplSample}s, {@link
+ * PowercapSample}s, {@link ThermalZonesSample}s and {@link CpuFrequencySample}s are logged; samples
+ * of any other type are skipped.
+ */
+public final class SampleLogWriter implements AutoCloseable {
+  private static final Logger logger = getLogger();
+
+  public static final int DEFAULT_SEGMENT_SIZE = 8 * 1024 * 1024;
+
+  /** Creates a log in a directory that doesn't have one yet. */
+  public static SampleLogWriter create(Path directory, List<String> sources) throws IOException {
+    return new SampleLogWriter(directory, sources, DEFAULT_SEGMENT_SIZE);
+  }
+
+  /** Creates a log whose segments are at least {@code segmentSize} bytes. */
+  public static SampleLogWriter create(Path directory, List<String> sources, int segmentSize)
+      throws IOException {
+    return new SampleLogWriter(directory, sources, segmentSize);
+  }
+
+  /** Deletes a log once it is no longer needed. */
+  public static void delete(Path directory) throws IOException {
+    for (int index = 0; Files.exists(SampleLogFormat.segment(directory, index)); index++) {
+      Files.delete(SampleLogFormat.segment(directory, index));
+    }
+    Files.deleteIfExists(directory.resolve(SOURCES_FILE));
+    Files.deleteIfExists(directory);
+  }
+
+  private final Path directory;
+  private final int segmentSize;
+  private final LinkedHashMap<String, Integer> sources = new LinkedHashMap<>();
+  private final CRC32 checksum = new CRC32();
+
+  private int segmentIndex = -1;
+  private FileChannel channel;
+  private MappedByteBuffer segment;
+  private long entryCount = 0;
+
+  private SampleLogWriter(Path directory, List<String> sources, int segmentSize)
+      throws IOException {
+    if (segmentSize < HEADER_SIZE) {
+      throw new IllegalArgumentException(
+          String.format("segments must fit a header (%d < %d)", segmentSize, HEADER_SIZE));
+    }
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+    for (String source : sources) {
+      this.sources.put(source, this.sources.size());
+    }
+    Files.createDirectories(directory);
+    if (Files.exists(directory.resolve(SOURCES_FILE))) {
+      throw new IOException(String.format("%s already has a sample log", directory));
+    }
+    Files.write(directory.resolve(SOURCES_FILE), sources, UTF_8);
+    nextSegment(0);
+  }
+
+  /** Returns the number of entries that have been appended. */
+  public synchronized long entryCount() {
+    return entryCount;
+  }
+
+  /** Appends the sample of each logged source in the tick. */
+  public synchronized void append(CompositeSample sample) {
+    if (channel == null) {
+      return;
+    }
+    for (Map.Entry<String, Integer> source : sources.entrySet()) {
+      sample
+          .get(source.getKey(), Object.class)
+          .ifPresent(data -> append(source.getValue(), sample.timestamp(), data));
+    }
+  }
+
+  /** Flushes the current segment to the device. */
+  public synchronized void sync() {
+    if (segment != null) {
+      segment.force();
+    }
+  }
+
+  @Override
+  public synchronized void close() {
+    if (channel == null) {
+      return;
+    }
+    sync();
+    try {
+      channel.close();
+    } catch (IOException e) {
+      logger.log(
+          Level.WARNING, String.format("unable to close the sample log at %s", directory), e);
+    }
+    channel = null;
+    segment = null;
+  }
+
+  private void append(int source, Instant timestamp, Object sample) {
+    if (channel == null) {
+      // a previous entry failed and closed the log
+      return;
+    }
+    try {
+      if (sample instanceof SystemSample) {
+        List<CpuJiffies> cpus = ((SystemSample) sample).data();
+        int start = begin(PROC_STAT, source, timestamp, cpus.size(), 0);
+        for (CpuJiffies cpu : cpus) {
+          segment.putLong(cpu.cpu);
+          segment.putLong(cpu.user);
+          segment.putLong(cpu.nice);
+          segment.putLong(cpu.system);
+          segment.putLong(cpu.idle);
+          segment.putLong(cpu.iowait);
+          segment.putLong(cpu.irq);
+          segment.putLong(cpu.softirq);
+          segment.putLong(cpu.steal);
+          segment.putLong(cpu.guest);
+          segment.putLong(cpu.guestNice);
+        }
+        commit(start, PROC_STAT);
+      } else if (sample instanceof ProcessSample && ((ProcessSample) sample).isTree()) {
+        ProcessSample tree = (ProcessSample) sample;
+        List<TaskJiffies> tasks = tree.data();
+        int start = begin(PROC_TREE, source, timestamp, tasks.size(), tree.processId);
+        for (TaskJiffies task : tasks) {
+          segment.putLong(task.processId);
+          segment.putLong(task.taskId);
+          segment.putLong(task.cpu);
+          segment.putLong(task.userJiffies);
+          segment.putLong(task.systemJiffies);
+        }
+        commit(start, PROC_TREE);
+      } else if (sample instanceof ProcessSample) {
+        ProcessSample process = (ProcessSample) sample;
+        List<TaskJiffies> tasks = process.data();
+        int start = begin(PROC_TASK, source, timestamp, tasks.size(), process.processId);
+        for (TaskJiffies task : tasks) {
+          segment.putLong(task.taskId);
+          segment.putLong(task.cpu);
+          segment.putLong(task.userJiffies);
+          segment.putLong(task.systemJiffies);
+        }
+        commit(start, PROC_TASK);
+      } else if (sample instanceof PowercapSample) {
+        List<PowercapReading> readings = ((PowercapSample) sample).data();
+        int start = begin(POWERCAP, source, timestamp, readings.size(), 0);
+        for (PowercapReading reading : readings) {
+          segment.putDouble(reading.pkg);
+          segment.putDouble(reading.dram);
+        }
+        commit(start, POWERCAP);
+      } else if (sample instanceof RaplSample) {
+        List<RaplReading> readings = ((RaplSample) sample).data();
+        int start = begin(RAPL, source, timestamp, readings.size(), 0);
+        for (RaplReading reading : readings) {
+          segment.putDouble(reading.pkg);
+          segment.putDouble(reading.dram);
+          segment.putDouble(reading.core);
+          segment.putDouble(reading.gpu);
+        }
+        commit(start, RAPL);
+      } else if (sample instanceof ThermalZonesSample) {
+        List<ThermalZoneTemperature> readings = ((ThermalZonesSample) sample).data();
+        int start = begin(THERMAL, source, timestamp, readings.size(), 0);
+        for (ThermalZoneTemperature reading : readings) {
+          segment.putInt(reading.zone);
+          segment.putInt(reading.temperature);
+          putName(reading.type);
+        }
+        commit(start, THERMAL);
+      } else if (sample instanceof CpuFrequencySample) {
+        List<CpuFrequency> readings = ((CpuFrequencySample) sample).data();
+        int start = begin(FREQUENCY, source, timestamp, readings.size(), 0);
+        for (CpuFrequency reading : readings) {
+          segment.putLong(reading.cpu);
+          segment.putLong(reading.frequency);
+          segment.putLong(reading.setFrequency);
+          putName(reading.governor);
+        }
+        commit(start, FREQUENCY);
+      }
+    } catch (IOException e) {
+      logger.log(
+          Level.WARNING, String.format("unable to extend the sample log at %s", directory), e);
+      close();
+    }
+  }
+
+  /**
+   * Makes room for an entry and writes everything in its header except the kind and checksum.
+   * Returns the offset of the entry; the segment is left at the start of its records.
+   */
+  private int begin(int kind, int source, Instant timestamp, int count, long key)
+      throws IOException {
+    int size = HEADER_SIZE + count * SampleLogFormat.recordSize(kind);
+    if (segment.remaining() < size) {
+      nextSegment(size);
+    }
+    int start = segment.position();
+    segment.putInt(start + SOURCE, source);
+    segment.putInt(start + COUNT, count);
+    segment.putLong(start + SECONDS, timestamp.getEpochSecond());
+    segment.putInt(start + NANOS, timestamp.getNano());
+    segment.putLong(start + KEY, key);
+    segment.position(start + HEADER_SIZE);
+    return start;
+  }
+
+  /** Checksums the entry and then marks it as written. */
+  private void commit(int start, int kind) {
+    ByteBuffer entry = segment.duplicate();
+    entry.position(start + SOURCE).limit(segment.position());
+    checksum.reset();
+    checksum.update(entry);
+    segment.putInt(start + CHECKSUM, (int) checksum.getValue());
+    segment.putInt(start + KIND, kind);
+    entryCount++;
+  }
+
+  private void putName(String name) {
+    byte[] bytes = name != null ? name.getBytes(UTF_8) : new byte[0];
+    int length = Math.min(bytes.length, NAME_SIZE);
+    segment.put(bytes, 0, length);
+    for (int i = length; i < NAME_SIZE; i++) {
+      segment.put((byte) 0);
+    }
+  }
+
+  /** Maps a new segment that fits at least {@code size} bytes. The old segment is left as-is. */
+  private void nextSegment(int size) throws IOException {
+    if (channel != null) {
+      segment.force();
+      channel.close();
+    }
+    segmentIndex++;
+    channel =
+        FileChannel.open(
+            SampleLogFormat.segment(directory, segmentIndex),
+            StandardOpenOption.CREATE_NEW,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+    segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(segmentSize, size));
+    segment.order(BYTE_ORDER);
+  }
+}
@@ -42,8 +42,13 @@ public final class Rapl {
    * will be [package_0, dram_0, package_1, dram_1, unixtime_seconds].
    */
   public static double[] read() {
+    return parseReading(readNative());
+  }
+
+  /** Parses a string in the format of {@code readNative} into the entries {@code read} returns. */
+  public static double[] parseReading(String reading) {
     double[] entries =
-        Arrays.stream(readNative().split(ENERGY_STRING_DELIMITER))
+        Arrays.stream(reading.split(ENERGY_STRING_DELIMITER))
             .mapToDouble(e -> Double.parseDouble(e))
             .toArray();
     entries[entries.length - 1] /= 1000000; // convert to seconds to be consistent
@@ -54,8 +59,11 @@ public final class Rapl {
     // get the timestamp
     long secs = (long) entries[entries.length - 1];
     long nanos = (long) (1000000 * (entries[entries.length - 1] - (double) secs));
-    Instant timestamp = Instant.ofEpochSecond(secs, nanos);
+    return readingToSample(entries, Instant.ofEpochSecond(secs, nanos));
+  }
 
+  /** Converts the entries to a {@link RaplSample} using a timestamp instead of the native one. */
+  public static RaplSample readingToSample(double[] entries, Instant timestamp) {
     // pull out energy values
     ArrayList<RaplReading> readings = new ArrayList<>();
     for (int socket = 0; socket < MicroArchitecture.SOCKETS; socket++) {
@@ -87,6 +95,23 @@ public final class Rapl {
     return new RaplSample(timestamp, readings);
   }
 
+  /** Converts (pkg, dram, core, gpu) entries for each socket to a {@link RaplSample}. */
+  public static RaplSample socketsToSample(double[] entries, Instant timestamp) {
+    if (entries.length % 4 != 0) {
+      throw new IllegalArgumentException(
+          String.format(
+              "entries are not (pkg, dram, core, gpu) tuples (%d entries)", entries.length));
+    }
+    ArrayList<RaplReading> readings = new ArrayList<>(entries.length / 4);
+    for (int socket = 0; socket < entries.length / 4; socket++) {
+      int entry = 4 * socket;
+      readings.add(
+          new RaplReading(
+              socket, entries[entry], entries[entry + 1], entries[entry + 2], entries[entry + 3]));
+    }
+    return new RaplSample(timestamp, readings);
+  }
+
   /** Returns an {@link RaplSample} populated by parsing the string returned by {@ readNative}. */
   public static Optional<RaplSample> sample() {
     if (COMPONENTS.isEmpty()) {
@@ -96,6 +121,15 @@ public final class Rapl {
     return Optional.of(readingToSample(read()));
   }
 
+  /** Returns an {@link RaplSample} stamped with the given timestamp. */
+  public static Optional<RaplSample> sample(Instant timestamp) {
+    if (COMPONENTS.isEmpty()) {
+      logger.warning("no components founds; rapl likely not available");
+      return Optional.empty();
+    }
+    return Optional.of(readingToSample(read(), timestamp));
+  }
+
   /** Computes the difference of two {@link RaplReadings}, applying the wraparound. */
   public static SignalData difference(RaplReading first, RaplReading second) {
     if (first.socket != second.socket) {
@@ -0,0 +1,224 @@
+package yuca.util;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link ScheduledExecutorService} without a thread of its own. Tasks are queued as they are
+ * scheduled and only run when the caller calls {@link #tick}, which runs everything that was queued
+ * before it no matter how long it was delayed by. A {@link SamplingFuture} on this executor takes
+ * exactly one sample per tick, so a host that already has its own loop (i.e. a game loop or a
+ * benchmark harness) can drive the sampling from it.
+ *
+ * <p>The caller decides when things run, so a periodic task runs once per tick and is queued again
+ * for the next one; its period only moves the deadline that its delay is reported against.
+ * Periodic tasks are cancelled when the executor is shut down.
+ */
+public final class CallerDrivenExecutor extends AbstractExecutorService
+    implements ScheduledExecutorService {
+  private final ArrayDeque<Task<?>> queue = new ArrayDeque<>();
+
+  private boolean isShutdown = false;
+
+  /**
+   * Runs the tasks that were queued before the call on the calling thread. Tasks that are queued
+   * while ticking, including the periodic tasks that were run, wait for the next tick. Returns the
+   * number of tasks that were run.
+   */
+  public int tick() {
+    ArrayList<Task<?>> tasks;
+    synchronized (queue) {
+      tasks = new ArrayList<>(queue);
+      queue.clear();
+    }
+    int count = 0;
+    ArrayList<Task<?>> periodic = new ArrayList<>();
+    for (Task<?> task : tasks) {
+      if (!task.isDone()) {
+        task.run();
+        count++;
+        if (task.isPeriodic() && !task.isDone()) {
+          periodic.add(task);
+        }
+      }
+    }
+    boolean isRequeued;
+    synchronized (queue) {
+      isRequeued = !isShutdown;
+      if (isRequeued) {
+        queue.addAll(periodic);
+      }
+      queue.notifyAll();
+    }
+    if (!isRequeued) {
+      periodic.forEach(task -> task.cancel(false));
+    }
+    return count;
+  }
+
+  /** Returns the number of tasks waiting for a tick. */
+  public int pendingCount() {
+    synchronized (queue) {
+      return queue.size();
+    }
+  }
+
+  @Override
+  public void execute(Runnable command) {
+    schedule(command, 0, NANOSECONDS);
+  }
+
+  @Override
+  public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+    return enqueue(new Task<>(Executors.callable(command, null), unit.toNanos(delay), 0));
+  }
+
+  @Override
+  public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+    return enqueue(new Task<>(callable, unit.toNanos(delay), 0));
+  }
+
+  @Override
+  public ScheduledFuture<?> scheduleAtFixedRate(
+      Runnable command, long initialDelay, long period, TimeUnit unit) {
+    checkPeriod(period);
+    return enqueue(
+        new Task<>(
+            Executors.callable(command, null), unit.toNanos(initialDelay), unit.toNanos(period)));
+  }
+
+  @Override
+  public ScheduledFuture<?> scheduleWithFixedDelay(
+      Runnable command, long initialDelay, long delay, TimeUnit unit) {
+    checkPeriod(delay);
+    // a negative period marks a fixed delay, like the ScheduledThreadPoolExecutor
+    return enqueue(
+        new Task<>(
+            Executors.callable(command, null), unit.toNanos(initialDelay), -unit.toNanos(delay)));
+  }
+
+  /** Stops taking tasks and cancels the periodic ones. Queued one-shot tasks still run on ticks. */
+  @Override
+  public void shutdown() {
+    ArrayList<Task<?>> periodic = new ArrayList<>();
+    synchronized (queue) {
+      isShutdown = true;
+      for (Task<?> task : queue) {
+        if (task.isPeriodic()) {
+          periodic.add(task);
+        }
+      }
+      queue.removeAll(periodic);
+      queue.notifyAll();
+    }
+    periodic.forEach(task -> task.cancel(false));
+  }
+
+  /** Stops taking tasks and returns the ones that were never run. */
+  @Override
+  public List<Runnable> shutdownNow() {
+    synchronized (queue) {
+      isShutdown = true;
+      ArrayList<Runnable> tasks = new ArrayList<>(queue);
+      queue.clear();
+      queue.notifyAll();
+      return tasks;
+    }
+  }
+
+  @Override
+  public boolean isShutdown() {
+    synchronized (queue) {
+      return isShutdown;
+    }
+  }
+
+  @Override
+  public boolean isTerminated() {
+    synchronized (queue) {
+      return isShutdown && queue.isEmpty();
+    }
+  }
+
+  /** Waits for the queued tasks to be ticked through after a shutdown. */
+  @Override
+  public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    synchronized (queue) {
+      while (!(isShutdown && queue.isEmpty())) {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+          return false;
+        }
+        NANOSECONDS.timedWait(queue, remaining);
+      }
+      return true;
+    }
+  }
+
+  private <V> Task<V> enqueue(Task<V> task) {
+    synchronized (queue) {
+      if (isShutdown) {
+        throw new RejectedExecutionException("the executor was shut down");
+      }
+      queue.add(task);
+    }
+    return task;
+  }
+
+  private static void checkPeriod(long period) {
+    if (period <= 0) {
+      throw new IllegalArgumentException(String.format("period must be positive (%d)", period));
+    }
+  }
+
+  /** A queued task. Its delay only tells the caller when it was meant to run. */
+  private static final class Task<V> extends FutureTask<V> implements ScheduledFuture<V> {
+    // positive for a fixed rate, negative for a fixed delay, and 0 for a one-shot task
+    private final long periodNanos;
+
+    private volatile long dueNanos;
+
+    private Task(Callable<V> callable, long delayNanos, long periodNanos) {
+      super(callable);
+      this.periodNanos = periodNanos;
+      this.dueNanos = System.nanoTime() + delayNanos;
+    }
+
+    private boolean isPeriodic() {
+      return periodNanos != 0;
+    }
+
+    /** Runs the task, moving its deadline up by its period if it is periodic. */
+    @Override
+    public void run() {
+      if (!isPeriodic()) {
+        super.run();
+      } else if (runAndReset()) {
+        dueNanos = periodNanos > 0 ? dueNanos + periodNanos : System.nanoTime() - periodNanos;
+      }
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+      return unit.convert(dueNanos - System.nanoTime(), NANOSECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed other) {
+      return Long.compare(getDelay(NANOSECONDS), other.getDelay(NANOSECONDS));
+    }
+  }
+}
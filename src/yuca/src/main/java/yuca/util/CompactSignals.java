@@ -0,0 +1,172 @@
+package yuca.util;
+
+import static yuca.util.Timestamps.fromNanos;
+import static yuca.util.Timestamps.toNanos;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import yuca.signal.CompactComponent;
+import yuca.signal.CompactReport;
+import yuca.signal.CompactSignal;
+import yuca.signal.Component;
+import yuca.signal.Report;
+import yuca.signal.Signal;
+import yuca.signal.SignalInterval;
+import yuca.signal.SignalInterval.SignalData;
+
+/**
+ * Converters between {@link Report}s and their columnar {@link CompactReport} encoding. The
+ * conversion is lossless for the data that yuca produces; a value that was never set is decoded as
+ * {@code 0}.
+ */
+public final class CompactSignals {
+  /** Encodes every signal of a report. */
+  public static CompactReport encode(Report report) {
+    CompactReport.Builder compact = CompactReport.newBuilder();
+    for (Component component : report.getComponentList()) {
+      CompactComponent.Builder compactComponent =
+          CompactComponent.newBuilder()
+              .setComponentType(component.getComponentType())
+              .setComponentId(component.getComponentId());
+      for (Signal signal : component.getSignalList()) {
+        compactComponent.addSignal(encode(signal));
+      }
+      compact.addComponent(compactComponent);
+    }
+    return compact.build();
+  }
+
+  /** Decodes every signal of a compact report. */
+  public static Report decode(CompactReport compact) {
+    Report.Builder report = Report.newBuilder();
+    for (CompactComponent compactComponent : compact.getComponentList()) {
+      Component.Builder component =
+          Component.newBuilder()
+              .setComponentType(compactComponent.getComponentType())
+              .setComponentId(compactComponent.getComponentId());
+      for (CompactSignal signal : compactComponent.getSignalList()) {
+        component.addSignal(decode(signal));
+      }
+      report.addComponent(component);
+    }
+    return report.build();
+  }
+
+  /** Interns the signal's metadata and flattens its intervals into columns. */
+  public static CompactSignal encode(Signal signal) {
+    CompactSignal.Builder compact =
+        CompactSignal.newBuilder().setUnit(signal.getUnit()).addAllSource(signal.getSourceList());
+    Dictionary<String> names = new Dictionary<>();
+    Dictionary<String> values = new Dictionary<>();
+    Dictionary<List<SignalData.Metadata>> keys = new Dictionary<>();
+    Dictionary<List<Integer>> layouts = new Dictionary<>();
+
+    long previousStart = 0;
+    for (SignalInterval interval : signal.getIntervalList()) {
+      long start = toNanos(interval.getStart());
+      compact.addStart(start - previousStart);
+      compact.addDuration(toNanos(interval.getEnd()) - start);
+      previousStart = start;
+
+      ArrayList<Integer> layout = new ArrayList<>(interval.getDataCount());
+      for (SignalData data : interval.getDataList()) {
+        List<SignalData.Metadata> metadata = data.getMetadataList();
+        int key = keys.intern(metadata);
+        if (key == compact.getKeyCount()) {
+          CompactSignal.Key.Builder compactKey = CompactSignal.Key.newBuilder();
+          for (SignalData.Metadata datum : metadata) {
+            int name = names.intern(datum.getName());
+            if (name == compact.getNameCount()) {
+              compact.addName(datum.getName());
+            }
+            int value = values.intern(datum.getValue());
+            if (value == compact.getValueCount()) {
+              compact.addValue(datum.getValue());
+            }
+            compactKey.addName(name).addValue(value);
+          }
+          compact.addKey(compactKey);
+        }
+        layout.add(key);
+        compact.addDataValue(data.getValue());
+      }
+
+      int layoutIndex = layouts.intern(layout);
+      if (layoutIndex == compact.getLayoutCount()) {
+        compact.addLayout(CompactSignal.Layout.newBuilder().addAllKey(layout));
+      }
+      compact.addIntervalLayout(layoutIndex);
+    }
+    return compact.build();
+  }
+
+  /** Rebuilds the intervals of a compact signal. */
+  public static Signal decode(CompactSignal compact) {
+    Signal.Builder signal =
+        Signal.newBuilder().setUnit(compact.getUnit()).addAllSource(compact.getSourceList());
+    int intervalCount = compact.getStartCount();
+    if (compact.getDurationCount() != intervalCount
+        || compact.getIntervalLayoutCount() != intervalCount) {
+      throw new IllegalArgumentException(
+          String.format(
+              "compact signal has mismatched interval columns (%d starts, %d durations, %d"
+                  + " layouts)",
+              intervalCount, compact.getDurationCount(), compact.getIntervalLayoutCount()));
+    }
+
+    // each key is only materialized once and then shared by every datum that uses it
+    SignalData.Metadata[][] keys = new SignalData.Metadata[compact.getKeyCount()][];
+    for (int i = 0; i < keys.length; i++) {
+      CompactSignal.Key key = compact.getKey(i);
+      keys[i] = new SignalData.Metadata[key.getNameCount()];
+      for (int j = 0; j < keys[i].length; j++) {
+        keys[i][j] =
+            SignalData.Metadata.newBuilder()
+                .setName(compact.getName(key.getName(j)))
+                .setValue(compact.getValue(key.getValue(j)))
+                .build();
+      }
+    }
+
+    long start = 0;
+    int dataIndex = 0;
+    for (int i = 0; i < intervalCount; i++) {
+      start += compact.getStart(i);
+      SignalInterval.Builder interval =
+          SignalInterval.newBuilder()
+              .setStart(fromNanos(start))
+              .setEnd(fromNanos(start + compact.getDuration(i)));
+      CompactSignal.Layout layout = compact.getLayout(compact.getIntervalLayout(i));
+      if (dataIndex + layout.getKeyCount() > compact.getDataValueCount()) {
+        throw new IllegalArgumentException(
+            String.format("compact signal ran out of data values at interval %d", i));
+      }
+      for (int key : layout.getKeyList()) {
+        interval.addData(
+            SignalData.newBuilder()
+                .addAllMetadata(Arrays.asList(keys[key]))
+                .setValue(compact.getDataValue(dataIndex++)));
+      }
+      signal.addInterval(interval);
+    }
+    return signal.build();
+  }
+
+  /** Assigns indices to distinct values in the order they are first seen. */
+  private static final class Dictionary<T> {
+    private final HashMap<T, Integer> indices = new HashMap<>();
+
+    private int intern(T value) {
+      Integer index = indices.get(value);
+      if (index == null) {
+        index = indices.size();
+        indices.put(value, index);
+      }
+      return index;
+    }
+  }
+
+  private CompactSignals() {}
+}
@@ -0,0 +1,58 @@
+package yuca.util;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/** A sample of many sources that were all read in the same tick by a {@link CompositeSampler}. */
+public final class CompositeSample implements Comparable<CompositeSample> {
+  /** Pulls out the samples of a single source in order, skipping ticks where it had no data. */
+  public static <T> List<T> collect(List<CompositeSample> samples, String source, Class<T> cls) {
+    ArrayList<T> data = new ArrayList<>();
+    for (CompositeSample sample : samples) {
+      sample.get(source, cls).ifPresent(data::add);
+    }
+    return data;
+  }
+
+  /** Creates a sample of sources that were read elsewhere, i.e. replayed from a log. */
+  public static CompositeSample of(Instant timestamp, Map<String, ?> samples) {
+    return new CompositeSample(timestamp, Map.copyOf(samples), Map.of());
+  }
+
+  private final Instant timestamp;
+  private final Map<String, Object> samples;
+  private final Map<String, Long> latencies;
+
+  CompositeSample(Instant timestamp, Map<String, Object> samples, Map<String, Long> latencies) {
+    this.timestamp = timestamp;
+    this.samples = samples;
+    this.latencies = latencies;
+  }
+
+  public Instant timestamp() {
+    return timestamp;
+  }
+
+  /** Returns the sample of a source if it produced data this tick. */
+  public <T> Optional<T> get(String source, Class<T> cls) {
+    Object sample = samples.get(source);
+    if (cls.isInstance(sample)) {
+      return Optional.of(cls.cast(sample));
+    }
+    return Optional.empty();
+  }
+
+  /** Returns how long each source took to read in nanoseconds, including ones without data. */
+  public Map<String, Long> latencies() {
+    return Collections.unmodifiableMap(latencies);
+  }
+
+  @Override
+  public int compareTo(CompositeSample other) {
+    return timestamp().compareTo(other.timestamp());
+  }
+}
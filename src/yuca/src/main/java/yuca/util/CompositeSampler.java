@@ -0,0 +1,172 @@
+package yuca.util;
+
+import static yuca.util.LoggerUtil.getLogger;
+import static yuca.util.Timestamps.nowAsInstant;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A {@link Supplier} that reads every registered source in a single tick. All sources are handed
+ * the same timestamp so that samples taken in the same tick line up exactly when they are
+ * differenced.
+ *
+ * <p>Sources are looked up by name in the {@link CompositeSample}. A source may return an {@link
+ * Optional}, in which case an empty value is treated as no data for that tick. The time spent in
+ * each source is kept in the sample as well.
+ *
+ * <p>Sources that block, such as procfs reads, can be read concurrently on another executor (i.e.
+ * virtual threads) with {@link #readConcurrently}. The rest are read on the sampling thread while
+ * those are in flight, and the tick is done once all of them are.
+ *
+ * <p>A source that throws has no data for that tick. Its first failure is logged as a warning and
+ * the rest are only logged at fine, so a broken source doesn't flood the log every tick.
+ */
+public final class CompositeSampler implements Supplier<CompositeSample> {
+  private static final Logger logger = getLogger();
+
+  // the registry is copied on write so the sampling thread never sees a partial update
+  private volatile Map<String, Function<Instant, ?>> sources = Map.of();
+  // the sources that are read on the readers rather than the sampling thread
+  private volatile Set<String> concurrentSources = Set.of();
+  private volatile ExecutorService readers;
+  // the sources that have already failed at least once
+  private final Set<String> failedSources = ConcurrentHashMap.newKeySet();
+
+  /** Registers a source under a name, replacing any source previously registered to it. */
+  public CompositeSampler register(String name, Function<Instant, ?> source) {
+    synchronized (this) {
+      LinkedHashMap<String, Function<Instant, ?>> newSources = new LinkedHashMap<>(sources);
+      newSources.put(name, source);
+      sources = newSources;
+      failedSources.remove(name);
+    }
+    return this;
+  }
+
+  /** Removes the source registered to a name. */
+  public CompositeSampler unregister(String name) {
+    synchronized (this) {
+      LinkedHashMap<String, Function<Instant, ?>> newSources = new LinkedHashMap<>(sources);
+      newSources.remove(name);
+      sources = newSources;
+      failedSources.remove(name);
+    }
+    return this;
+  }
+
+  /**
+   * Reads the named sources on the executor, concurrently with each other and with the other
+   * sources. A source should only be read concurrently if it doesn't care which thread reads it.
+   */
+  public CompositeSampler readConcurrently(ExecutorService readers, Collection<String> sources) {
+    synchronized (this) {
+      this.concurrentSources = Set.copyOf(sources);
+      this.readers = readers;
+    }
+    return this;
+  }
+
+  /** Returns the names of the registered sources in registration order. */
+  public Set<String> sources() {
+    return sources.keySet();
+  }
+
+  /** Reads every registered source against a single timestamp. */
+  @Override
+  public CompositeSample get() {
+    return sample(nowAsInstant());
+  }
+
+  /** Reads every registered source against a timestamp taken elsewhere, e.g. by another sampler. */
+  public CompositeSample sample(Instant timestamp) {
+    Map<String, Function<Instant, ?>> sources = this.sources;
+    Set<String> concurrentSources = this.concurrentSources;
+    ExecutorService readers = this.readers;
+    HashMap<String, Object> samples = new HashMap<>(sources.size());
+    HashMap<String, Long> latencies = new HashMap<>(sources.size());
+    LinkedHashMap<String, Future<TimedSample>> pending = new LinkedHashMap<>();
+    if (readers != null) {
+      for (Map.Entry<String, Function<Instant, ?>> source : sources.entrySet()) {
+        if (concurrentSources.contains(source.getKey())) {
+          try {
+            pending.put(
+                source.getKey(), readers.submit(() -> read(source, timestamp)));
+          } catch (RejectedExecutionException e) {
+            // the readers were shut down so this is read below
+          }
+        }
+      }
+    }
+    for (Map.Entry<String, Function<Instant, ?>> source : sources.entrySet()) {
+      if (!pending.containsKey(source.getKey())) {
+        add(source.getKey(), read(source, timestamp), samples, latencies);
+      }
+    }
+    for (Map.Entry<String, Future<TimedSample>> source : pending.entrySet()) {
+      try {
+        add(source.getKey(), source.getValue().get(), samples, latencies);
+      } catch (ExecutionException e) {
+        // read doesn't throw, so there's nothing to add
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+    }
+    return new CompositeSample(timestamp, samples, latencies);
+  }
+
+  private TimedSample read(Map.Entry<String, Function<Instant, ?>> source, Instant timestamp) {
+    Object sample = null;
+    long start = System.nanoTime();
+    try {
+      sample = source.getValue().apply(timestamp);
+    } catch (Exception e) {
+      // a failing source shouldn't take down the rest of the tick
+      logger.log(
+          failedSources.add(source.getKey()) ? Level.WARNING : Level.FINE,
+          String.format("unable to read source %s", source.getKey()),
+          e);
+    }
+    long latency = System.nanoTime() - start;
+    if (sample instanceof Optional) {
+      sample = ((Optional<?>) sample).orElse(null);
+    }
+    return new TimedSample(sample, latency);
+  }
+
+  private static void add(
+      String name,
+      TimedSample sample,
+      HashMap<String, Object> samples,
+      HashMap<String, Long> latencies) {
+    latencies.put(name, sample.latency);
+    if (sample.sample != null) {
+      samples.put(name, sample.sample);
+    }
+  }
+
+  private static final class TimedSample {
+    private final Object sample;
+    private final long latency;
+
+    private TimedSample(Object sample, long latency) {
+      this.sample = sample;
+      this.latency = latency;
+    }
+  }
+}
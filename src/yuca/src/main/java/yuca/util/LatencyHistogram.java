@@ -0,0 +1,75 @@
+package yuca.util;
+
+/**
+ * A histogram of latencies in nanoseconds with power-of-two buckets. Bucket {@code i > 0} counts
+ * the latencies in {@code [2^(i-1), 2^i)}, so recording is a single array increment.
+ */
+public final class LatencyHistogram {
+  private static final int BUCKET_COUNT = Long.SIZE;
+
+  private final long[] counts = new long[BUCKET_COUNT];
+  private long count = 0;
+  private long totalNanos = 0;
+  private long maxNanos = 0;
+
+  public synchronized void record(long nanos) {
+    nanos = Math.max(0, nanos);
+    counts[bucket(nanos)]++;
+    count++;
+    totalNanos += nanos;
+    maxNanos = Math.max(maxNanos, nanos);
+  }
+
+  public synchronized long count() {
+    return count;
+  }
+
+  public synchronized long totalNanos() {
+    return totalNanos;
+  }
+
+  public synchronized long maxNanos() {
+    return maxNanos;
+  }
+
+  /** Returns the upper bound of the bucket that holds the quantile, i.e. 0.99 for the p99. */
+  public synchronized long quantileUpperBoundNanos(double quantile) {
+    long rank = (long) Math.ceil(quantile * count);
+    long seen = 0;
+    for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+      seen += counts[bucket];
+      if (seen >= rank && seen > 0) {
+        return upperBoundNanos(bucket);
+      }
+    }
+    return 0;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return String.format(
+        "%.1f us mean, < %.1f us p99, %.1f us max",
+        count > 0 ? totalNanos / 1000.0 / count : 0.0,
+        quantileUpperBoundNanos(0.99) / 1000.0,
+        maxNanos / 1000.0);
+  }
+
+  /** Returns the number of buckets; the last one is unbounded. */
+  public static int buckets() {
+    return BUCKET_COUNT;
+  }
+
+  /** Returns the number of latencies in a bucket. */
+  public synchronized long count(int bucket) {
+    return counts[bucket];
+  }
+
+  /** Returns the exclusive upper bound of a bucket in nanoseconds. */
+  public static long upperBoundNanos(int bucket) {
+    return bucket == BUCKET_COUNT - 1 ? Long.MAX_VALUE : 1L << bucket;
+  }
+
+  private static int bucket(long nanos) {
+    return BUCKET_COUNT - Long.numberOfLeadingZeros(nanos);
+  }
+}
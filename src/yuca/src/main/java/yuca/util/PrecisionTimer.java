@@ -0,0 +1,276 @@
+package yuca.util;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A single-threaded {@link ScheduledExecutorService} for sub-millisecond periods. Tasks are kept
+ * against absolute deadlines on the monotonic clock ({@link System#nanoTime}). The timer thread
+ * parks until the next deadline is within the spin window and then spins until it arrives, so a
+ * task starts within a few microseconds of its deadline instead of whenever the kernel's timer
+ * slack (50 us by default on linux) and the executor's wakeup allow.
+ *
+ * <p>The spinning costs up to a spin window of cpu for every task, so the window should be as small
+ * as the machine's park overshoot allows. A periodic task is queued again for its next deadline
+ * after each run; at a fixed rate the deadline advances by the period from the last deadline, so
+ * late runs don't drift. Periodic tasks are cancelled when the timer is shut down.
+ */
+public final class PrecisionTimer extends AbstractExecutorService
+    implements ScheduledExecutorService {
+  /** The default spin window, which covers the park overshoot of most linux machines. */
+  public static final Duration DEFAULT_SPIN_WINDOW = Duration.ofNanos(100000);
+
+  private final long spinNanos;
+  private final Thread thread;
+  private final PriorityQueue<Task<?>> queue = new PriorityQueue<>();
+  private final AtomicLong sequence = new AtomicLong();
+
+  private boolean isShutdown = false;
+
+  public PrecisionTimer(String name) {
+    this(name, DEFAULT_SPIN_WINDOW);
+  }
+
+  public PrecisionTimer(String name, Duration spinWindow) {
+    if (spinWindow.isNegative()) {
+      throw new IllegalArgumentException(
+          String.format("spin window can't be negative (%s)", spinWindow));
+    }
+    this.spinNanos = spinWindow.toNanos();
+    this.thread = new Thread(this::runTasks, name);
+    thread.setDaemon(true);
+    thread.setPriority(Thread.MAX_PRIORITY);
+    thread.start();
+  }
+
+  @Override
+  public void execute(Runnable command) {
+    schedule(command, 0, NANOSECONDS);
+  }
+
+  @Override
+  public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+    return enqueue(new Task<>(Executors.callable(command, null), unit.toNanos(delay), 0));
+  }
+
+  @Override
+  public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+    return enqueue(new Task<>(callable, unit.toNanos(delay), 0));
+  }
+
+  @Override
+  public ScheduledFuture<?> scheduleAtFixedRate(
+      Runnable command, long initialDelay, long period, TimeUnit unit) {
+    checkPeriod(period);
+    return enqueue(
+        new Task<>(
+            Executors.callable(command, null), unit.toNanos(initialDelay), unit.toNanos(period)));
+  }
+
+  @Override
+  public ScheduledFuture<?> scheduleWithFixedDelay(
+      Runnable command, long initialDelay, long delay, TimeUnit unit) {
+    checkPeriod(delay);
+    // a negative period marks a fixed delay, like the ScheduledThreadPoolExecutor
+    return enqueue(
+        new Task<>(
+            Executors.callable(command, null), unit.toNanos(initialDelay), -unit.toNanos(delay)));
+  }
+
+  /** Stops taking tasks and cancels the periodic ones. Queued one-shot tasks still run when due. */
+  @Override
+  public void shutdown() {
+    ArrayList<Task<?>> periodic = new ArrayList<>();
+    synchronized (queue) {
+      isShutdown = true;
+      for (Task<?> task : queue) {
+        if (task.isPeriodic()) {
+          periodic.add(task);
+        }
+      }
+      queue.removeAll(periodic);
+      queue.notifyAll();
+    }
+    periodic.forEach(task -> task.cancel(false));
+    LockSupport.unpark(thread);
+  }
+
+  /** Stops taking tasks and returns the ones that were never run. */
+  @Override
+  public List<Runnable> shutdownNow() {
+    ArrayList<Runnable> tasks;
+    synchronized (queue) {
+      isShutdown = true;
+      tasks = new ArrayList<>(queue);
+      queue.clear();
+      queue.notifyAll();
+    }
+    LockSupport.unpark(thread);
+    return tasks;
+  }
+
+  @Override
+  public boolean isShutdown() {
+    synchronized (queue) {
+      return isShutdown;
+    }
+  }
+
+  @Override
+  public boolean isTerminated() {
+    return isShutdown() && !thread.isAlive();
+  }
+
+  @Override
+  public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+    thread.join(Math.max(1, unit.toMillis(timeout)));
+    return !thread.isAlive();
+  }
+
+  private <V> Task<V> enqueue(Task<V> task) {
+    boolean isNext;
+    synchronized (queue) {
+      if (isShutdown) {
+        throw new RejectedExecutionException("the timer was shut down");
+      }
+      queue.add(task);
+      isNext = queue.peek() == task;
+    }
+    if (isNext && Thread.currentThread() != thread) {
+      // the timer may be parked for a later deadline
+      LockSupport.unpark(thread);
+    }
+    return task;
+  }
+
+  /** Waits out each deadline and runs its task on the timer thread. */
+  private void runTasks() {
+    while (true) {
+      Task<?> task;
+      synchronized (queue) {
+        task = queue.peek();
+        if (task == null && isShutdown) {
+          return;
+        }
+      }
+      if (task == null) {
+        LockSupport.park(this);
+        continue;
+      }
+      if (task.isDone()) {
+        // cancelled while it was queued
+        remove(task);
+        continue;
+      }
+      long remaining = task.dueNanos - System.nanoTime();
+      if (remaining > spinNanos) {
+        // an earlier task unparks us, so the head is checked again either way
+        LockSupport.parkNanos(this, remaining - spinNanos);
+        continue;
+      }
+      while (task.dueNanos - System.nanoTime() > 0) {
+        Thread.onSpinWait();
+      }
+      if (remove(task)) {
+        task.run();
+      }
+    }
+  }
+
+  /** Queues a periodic task for its next deadline. Returns false if the timer was shut down. */
+  private boolean requeue(Task<?> task) {
+    synchronized (queue) {
+      if (isShutdown) {
+        return false;
+      }
+      queue.add(task);
+      return true;
+    }
+  }
+
+  private boolean remove(Task<?> task) {
+    synchronized (queue) {
+      return queue.remove(task);
+    }
+  }
+
+  private static void checkPeriod(long period) {
+    if (period <= 0) {
+      throw new IllegalArgumentException(String.format("period must be positive (%d)", period));
+    }
+  }
+
+  /**
+   * A task that is due at an absolute time, ordered by when it is due and then by arrival. The
+   * deadline of a periodic task is only moved while it is out of the queue.
+   */
+  private final class Task<V> extends FutureTask<V> implements ScheduledFuture<V> {
+    // positive for a fixed rate, negative for a fixed delay, and 0 for a one-shot task
+    private final long periodNanos;
+    private final long order = sequence.getAndIncrement();
+
+    private volatile long dueNanos;
+
+    private Task(Callable<V> callable, long delayNanos, long periodNanos) {
+      super(callable);
+      this.periodNanos = periodNanos;
+      this.dueNanos = System.nanoTime() + Math.max(0, delayNanos);
+    }
+
+    private boolean isPeriodic() {
+      return periodNanos != 0;
+    }
+
+    /** Runs the task, queueing it again for its next deadline if it is periodic. */
+    @Override
+    public void run() {
+      if (!isPeriodic()) {
+        super.run();
+      } else if (runAndReset()) {
+        dueNanos = periodNanos > 0 ? dueNanos + periodNanos : System.nanoTime() - periodNanos;
+        if (!requeue(this)) {
+          super.cancel(false);
+        }
+      }
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      boolean cancelled = super.cancel(mayInterruptIfRunning);
+      if (cancelled) {
+        remove(this);
+      }
+      return cancelled;
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+      return unit.convert(dueNanos - System.nanoTime(), NANOSECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed other) {
+      if (other instanceof Task) {
+        Task<?> task = (Task<?>) other;
+        int byDeadline = Long.compare(dueNanos - task.dueNanos, 0);
+        return byDeadline != 0 ? byDeadline : Long.compare(order, task.order);
+      }
+      return Long.compare(getDelay(NANOSECONDS), other.getDelay(NANOSECONDS));
+    }
+  }
+}
@@ -0,0 +1,95 @@
+package yuca.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * A bounded single-producer/single-consumer append log built from fixed-size chunks. The producer
+ * never blocks or locks; if the log already holds {@code capacity} undrained samples, the new
+ * sample is dropped and counted instead. Drained chunks are unlinked so they can be collected.
+ *
+ * <p>Only one thread may call {@link offer} and only one thread may call {@link drainTo} at a
+ * time.
+ */
+public final class SampleLog<T> {
+  private static final int CHUNK_SIZE = 1024;
+
+  private static final class Chunk {
+    private final Object[] samples = new Object[CHUNK_SIZE];
+    private volatile Chunk next;
+  }
+
+  private final long capacity;
+  // the producer publishes samples by advancing its index after the write
+  private final AtomicLong producerIndex = new AtomicLong(0);
+  private final AtomicLong consumerIndex = new AtomicLong(0);
+  private final AtomicLong dropped = new AtomicLong(0);
+
+  // only touched by the producer
+  private Chunk tail = new Chunk();
+  // only touched by the consumer
+  private Chunk head = tail;
+
+  public SampleLog(long capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException(
+          String.format("capacity must be positive (%d < 1)", capacity));
+    }
+    this.capacity = capacity;
+  }
+
+  /** Appends a sample. Returns false if the log was full and the sample was dropped. */
+  public boolean offer(T sample) {
+    long index = producerIndex.get();
+    if (index - consumerIndex.get() >= capacity) {
+      dropped.incrementAndGet();
+      return false;
+    }
+    int offset = (int) (index % CHUNK_SIZE);
+    if (offset == 0 && index > 0) {
+      Chunk next = new Chunk();
+      tail.next = next;
+      tail = next;
+    }
+    tail.samples[offset] = sample;
+    producerIndex.lazySet(index + 1);
+    return true;
+  }
+
+  /** Hands every published sample to the consumer without blocking. Returns the number drained. */
+  @SuppressWarnings("unchecked")
+  public int drainTo(Consumer<? super T> consumer) {
+    long index = consumerIndex.get();
+    long limit = producerIndex.get();
+    int count = 0;
+    while (index < limit) {
+      int offset = (int) (index % CHUNK_SIZE);
+      if (offset == 0 && index > 0) {
+        // the producer links the next chunk before publishing into it
+        head = head.next;
+      }
+      T sample = (T) head.samples[offset];
+      head.samples[offset] = null;
+      consumer.accept(sample);
+      index++;
+      count++;
+    }
+    consumerIndex.lazySet(index);
+    return count;
+  }
+
+  /** Returns the number of samples waiting to be drained. */
+  public long size() {
+    return producerIndex.get() - consumerIndex.get();
+  }
+
+  /** Returns the number of samples that were appended over the log's lifetime. */
+  public long appended() {
+    return producerIndex.get();
+  }
+
+  /** Returns the number of samples that were dropped because the log was full. */
+  public long dropped() {
+    return dropped.get();
+  }
+}
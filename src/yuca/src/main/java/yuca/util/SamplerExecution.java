@@ -0,0 +1,167 @@
+package yuca.util;
+
+import static yuca.util.LoggerUtil.getLogger;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * How a monitor's samples are scheduled and read. There are four modes:
+ *
+ * <ul>
+ *   <li>{@link #platform}: a dedicated daemon thread at the highest priority that times the
+ *       samples and reads every source itself. Note that the jvm only applies thread priorities on
+ *       linux with {@code -XX:ThreadPriorityPolicy=1} and enough privilege.
+ *   <li>{@link #virtualThreads}: the same timer thread, but sources that block on procfs are read
+ *       concurrently on virtual threads, so many slow sources don't add up. This needs a jvm with
+ *       virtual threads, which are looked up reflectively; otherwise a cached pool of platform
+ *       threads is used.
+ *   <li>{@link #precise}: a {@link PrecisionTimer} that parks and then spins up to each deadline,
+ *       for periods below a millisecond. It reads every source itself like the platform mode.
+ *   <li>{@link #callerDriven}: no threads at all. Samples are only taken when the caller calls
+ *       {@link #tick}, which is meant for embedding yuca in something that has its own loop.
+ * </ul>
+ */
+public final class SamplerExecution implements AutoCloseable {
+  private static final Logger logger = getLogger();
+
+  public enum Mode {
+    PLATFORM,
+    VIRTUAL,
+    PRECISE,
+    CALLER
+  }
+
+  /** Samples on a dedicated high-priority platform thread. */
+  public static SamplerExecution platform(String threadName) {
+    return new SamplerExecution(Mode.PLATFORM, timerThread(threadName), null);
+  }
+
+  /** Samples on a dedicated high-priority platform thread and reads slow sources concurrently. */
+  public static SamplerExecution virtualThreads(String threadName) {
+    return new SamplerExecution(Mode.VIRTUAL, timerThread(threadName), newReaders(threadName));
+  }
+
+  /** Samples on a timer thread that spins up to each deadline. */
+  public static SamplerExecution precise(String threadName) {
+    return new SamplerExecution(Mode.PRECISE, new PrecisionTimer(threadName), null);
+  }
+
+  /** Samples only when {@link #tick} is called. */
+  public static SamplerExecution callerDriven() {
+    return new SamplerExecution(Mode.CALLER, new CallerDrivenExecutor(), null);
+  }
+
+  /** Creates an execution for a mode by its name (i.e. "platform"), ignoring case. */
+  public static SamplerExecution forMode(String mode, String threadName) {
+    switch (Mode.valueOf(mode.toUpperCase())) {
+      case VIRTUAL:
+        return virtualThreads(threadName);
+      case PRECISE:
+        return precise(threadName);
+      case CALLER:
+        return callerDriven();
+      case PLATFORM:
+      default:
+        return platform(threadName);
+    }
+  }
+
+  private final Mode mode;
+  private final ScheduledExecutorService executor;
+  // null unless sources are read concurrently
+  private final ExecutorService readers;
+
+  private SamplerExecution(Mode mode, ScheduledExecutorService executor, ExecutorService readers) {
+    this.mode = mode;
+    this.executor = executor;
+    this.readers = readers;
+  }
+
+  public Mode mode() {
+    return mode;
+  }
+
+  /** Returns the executor that samples are scheduled on. */
+  public ScheduledExecutorService executor() {
+    return executor;
+  }
+
+  /** Returns the executor that slow sources are read on if they are read concurrently. */
+  public Optional<ExecutorService> readers() {
+    return Optional.ofNullable(readers);
+  }
+
+  /**
+   * Sets up a sampler to read the named sources concurrently if this execution has readers. The
+   * sources have to be safe to read from any thread.
+   */
+  public CompositeSampler configure(CompositeSampler sampler, String... slowSources) {
+    if (readers != null) {
+      sampler.readConcurrently(readers, List.of(slowSources));
+    }
+    return sampler;
+  }
+
+  /**
+   * Takes the samples that are due if this execution is caller-driven. Returns the number of
+   * samples that were taken.
+   */
+  public int tick() {
+    if (mode != Mode.CALLER) {
+      throw new IllegalStateException(String.format("%s samplers tick by themselves", mode));
+    }
+    return ((CallerDrivenExecutor) executor).tick();
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+    if (readers != null) {
+      readers.shutdownNow();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return mode.name().toLowerCase();
+  }
+
+  private static ScheduledExecutorService timerThread(String name) {
+    ScheduledThreadPoolExecutor executor =
+        new ScheduledThreadPoolExecutor(
+            1,
+            r -> {
+              Thread t = new Thread(r, name);
+              t.setDaemon(true);
+              t.setPriority(Thread.MAX_PRIORITY);
+              return t;
+            });
+    // cancelled samples shouldn't sit in the queue until they were due
+    executor.setRemoveOnCancelPolicy(true);
+    return executor;
+  }
+
+  private static ExecutorService newReaders(String name) {
+    try {
+      return (ExecutorService)
+          Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      logger.log(
+          Level.INFO, "virtual threads aren't available; reading on a pool of threads instead", e);
+      String readerName = String.format("%s-reader", name);
+      return Executors.newCachedThreadPool(
+          r -> {
+            Thread t = new Thread(r, readerName);
+            t.setDaemon(true);
+            return t;
+          });
+    }
+  }
+}
@@ -4,16 +4,19 @@ import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static java.util.stream.Collectors.toList;
 
 import java.time.Duration;
-import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.Optional;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 import java.util.function.IntSupplier;
 import java.util.function.Supplier;
 import java.util.stream.Stream;
@@ -22,23 +25,59 @@ import java.util.stream.Stream;
  * A {@link Future} that allows for collecting many pieces of data from a {@link Supplier}. Note
  * that since this class uses a {@link ScheduledExecutorService}, the sampling precision is limited
  * by the executor's precision, assuming the data source is not slow. Out of the box impls, like
- * {@link Executors.newScheduledThreadPool} seems to behave well at 1-2ms (system dependent).
+ * {@link Executors.newScheduledThreadPool} seems to behave well at 1-2ms (system dependent); a
+ * {@link PrecisionTimer} can hold periods of a few hundred microseconds.
+ *
+ * <p>Samples are appended to a {@link SampleLog} by the sampling task and can be pulled out while
+ * sampling continues with {@link drain}. Alternatively, a sink can be provided that consumes each
+ * sample on the sampling thread, in which case nothing is retained. Only one sampling task is
+ * pending at any time, so stopping completes as soon as the in-flight sample (if any) finishes.
+ *
+ * <p>Samples are scheduled against absolute deadlines, so a sample that starts late because of
+ * scheduling slop doesn't push back the ones after it. How late each sample started is kept in a
+ * jitter histogram. A sample that misses the next deadline entirely is counted as an overrun and
+ * the missed samples are either skipped or caught up on depending on the {@link OverrunPolicy}.
  */
 public final class SamplingFuture<T> implements Future<List<T>> {
-  /** Start a {@link SamplingFuture} that samples at a fixed {@link Duration}. */
+  /**
+   * The default number of undrained samples a future will hold before dropping new ones. This is
+   * about 17 minutes of samples at a 1ms period (or almost 3 hours at 10ms), which covers a future
+   * that is drained every few minutes or only read once a short run stops. Futures that go longer
+   * between drains should be given a capacity.
+   */
+  public static final long DEFAULT_CAPACITY = 1 << 20;
+
+  /** What to do about the samples that were due while a slow sample was being collected. */
+  public enum OverrunPolicy {
+    /** Drop the missed samples and wait for the next deadline, so samples stay on the grid. */
+    SKIP,
+    /** Take the missed samples back to back until the deadlines are caught up. */
+    CATCH_UP
+  }
+
+  /**
+   * Start a {@link SamplingFuture} that samples at a fixed {@link Duration}. At most {@link
+   * DEFAULT_CAPACITY} undrained samples are held.
+   */
   public static <T> SamplingFuture<T> fixedPeriod(
       Supplier<? extends T> source, Duration period, ScheduledExecutorService executor) {
     return new SamplingFuture<>(source, () -> period, executor);
   }
 
-  /** Start a {@link SamplingFuture} that samples at a fixed millisecond period. */
+  /**
+   * Start a {@link SamplingFuture} that samples at a fixed millisecond period. At most {@link
+   * DEFAULT_CAPACITY} undrained samples are held.
+   */
   public static <T> SamplingFuture<T> fixedPeriodMillis(
       Supplier<? extends T> source, int periodMillis, ScheduledExecutorService executor) {
     Duration period = Duration.ofMillis(periodMillis);
     return fixedPeriod(source, period, executor);
   }
 
-  /** Start a {@link SamplingFuture} that samples using an {@link IntSupplier} of milliseconds. */
+  /**
+   * Start a {@link SamplingFuture} that samples using an {@link IntSupplier} of milliseconds. At
+   * most {@link DEFAULT_CAPACITY} undrained samples are held.
+   */
   public static <T> SamplingFuture<T> fromMillisSupplier(
       Supplier<? extends T> source,
       IntSupplier periodMillisSupplier,
@@ -47,6 +86,52 @@ public final class SamplingFuture<T> implements Future<List<T>> {
         source, () -> Duration.ofMillis(periodMillisSupplier.getAsInt()), executor);
   }
 
+  /**
+   * Start a {@link SamplingFuture} that samples at a fixed millisecond period and hands each sample
+   * to a sink instead of retaining it.
+   */
+  public static <T> SamplingFuture<T> fixedPeriodMillis(
+      Supplier<? extends T> source,
+      Consumer<? super T> sink,
+      int periodMillis,
+      ScheduledExecutorService executor) {
+    Duration period = Duration.ofMillis(periodMillis);
+    return new SamplingFuture<>(
+        source, sink, () -> period, executor, DEFAULT_CAPACITY, OverrunPolicy.SKIP);
+  }
+
+  /**
+   * Start a {@link SamplingFuture} that samples at a fixed {@link Duration}, which may be below a
+   * millisecond, and hands each sample to a sink instead of retaining it.
+   */
+  public static <T> SamplingFuture<T> fixedPeriod(
+      Supplier<? extends T> source,
+      Consumer<? super T> sink,
+      Duration period,
+      OverrunPolicy overrunPolicy,
+      ScheduledExecutorService executor) {
+    return new SamplingFuture<>(
+        source, sink, () -> period, executor, DEFAULT_CAPACITY, overrunPolicy);
+  }
+
+  /**
+   * Start a {@link SamplingFuture} that samples using an {@link IntSupplier} of milliseconds and
+   * hands each sample to a sink instead of retaining it.
+   */
+  public static <T> SamplingFuture<T> fromMillisSupplier(
+      Supplier<? extends T> source,
+      Consumer<? super T> sink,
+      IntSupplier periodMillisSupplier,
+      ScheduledExecutorService executor) {
+    return new SamplingFuture<>(
+        source,
+        sink,
+        () -> Duration.ofMillis(periodMillisSupplier.getAsInt()),
+        executor,
+        DEFAULT_CAPACITY,
+        OverrunPolicy.SKIP);
+  }
+
   /** Reduces multiple sampling futures into a single list. */
   public static <T> List<T> flatten(Collection<SamplingFuture<T>> data) {
     return data.stream()
@@ -61,31 +146,84 @@ public final class SamplingFuture<T> implements Future<List<T>> {
         .collect(toList());
   }
 
+  private final Supplier<? extends T> source;
+  private final Consumer<? super T> sink;
   private final Supplier<Duration> nextInterval;
   private final ScheduledExecutorService executor;
+  private final SampleLog<T> samples;
+  private final OverrunPolicy overrunPolicy;
 
   private final AtomicBoolean isCollecting = new AtomicBoolean(true);
+  // held while a sample is being collected so that stopping can wait for it
+  private final ReentrantLock sampleLock = new ReentrantLock();
+  private final AtomicLong sampled = new AtomicLong(0);
+  private final AtomicLong overruns = new AtomicLong(0);
+  private final AtomicLong skipped = new AtomicLong(0);
+  private final AtomicLong failures = new AtomicLong(0);
   private final List<T> collectedData = new ArrayList<>();
-  private final List<Future<Optional<? extends T>>> dataFutures = new ArrayList<>();
+  // how late each sample started against its deadline
+  private final LatencyHistogram jitter = new LatencyHistogram();
 
+  private volatile Future<?> nextSample;
+  // when the next sample is due in System.nanoTime; only touched while holding the sample lock
+  private long deadline = -1;
+
+  /**
+   * Starts sampling the source at each interval. At most {@link DEFAULT_CAPACITY} undrained samples
+   * are held; samples past that are dropped and counted until the future is drained.
+   */
   public SamplingFuture(
       Supplier<? extends T> source,
       Supplier<Duration> nextInterval,
       ScheduledExecutorService executor) {
+    this(source, nextInterval, executor, DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Starts sampling the source at each interval. At most {@code capacity} undrained samples are
+   * held, which should cover the samples taken between drains.
+   */
+  public SamplingFuture(
+      Supplier<? extends T> source,
+      Supplier<Duration> nextInterval,
+      ScheduledExecutorService executor,
+      long capacity) {
+    this(source, null, nextInterval, executor, capacity, OverrunPolicy.SKIP);
+  }
+
+  private SamplingFuture(
+      Supplier<? extends T> source,
+      Consumer<? super T> sink,
+      Supplier<Duration> nextInterval,
+      ScheduledExecutorService executor,
+      long capacity,
+      OverrunPolicy overrunPolicy) {
+    this.source = source;
+    this.sink = sink;
     this.nextInterval = nextInterval;
     this.executor = executor;
-    synchronized (dataFutures) {
-      // TODO: there is a very strange failure case here. if the source throws an exception,
-      // i can't catch it and it just get propagated to the caller of get
-      dataFutures.add(executor.submit(() -> collectDataAndReschedule(source)));
+    this.samples = new SampleLog<>(capacity);
+    this.overrunPolicy = overrunPolicy;
+    // the first sample can't replace the pending future until we've recorded it
+    sampleLock.lock();
+    try {
+      nextSample = executor.submit(this::collectDataAndReschedule);
+    } finally {
+      sampleLock.unlock();
     }
   }
 
   /** Stops collecting data. If {@code mayInterruptIfRunning} is true, the data is extracted. */
   @Override
   public boolean cancel(boolean mayInterruptIfRunning) {
-    // this will kill all pending futures
     isCollecting.set(false);
+    // drop the pending sample, then wait out the one in flight (if any)
+    sampleLock.lock();
+    try {
+      cancelNextSample();
+    } finally {
+      sampleLock.unlock();
+    }
     if (mayInterruptIfRunning) {
       extractAllData();
     }
@@ -97,14 +235,24 @@ public final class SamplingFuture<T> implements Future<List<T>> {
   public List<T> get() {
     if (isCollecting.get()) {
       cancel(true);
+    } else {
+      extractAllData();
     }
     return collectedData;
   }
 
-  /** Delegates to {@code get}. */
-  // TODO: some re-wiring of extractAllData is required to get this to work.
+  /** Cancels the future, waiting at most {@code timeout} for an in-flight sample to finish. */
   @Override
-  public List<T> get(long timeout, TimeUnit unit) {
+  public List<T> get(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+    isCollecting.set(false);
+    if (!sampleLock.tryLock(timeout, unit)) {
+      throw new TimeoutException("a sample was still being collected");
+    }
+    try {
+      cancelNextSample();
+    } finally {
+      sampleLock.unlock();
+    }
     return get();
   }
 
@@ -117,76 +265,126 @@ public final class SamplingFuture<T> implements Future<List<T>> {
   /** Returns if data is still being collected. */
   @Override
   public boolean isDone() {
-    synchronized (dataFutures) {
-      return isCancelled() && dataFutures.stream().allMatch(Future::isDone);
-    }
+    return isCancelled() && !sampleLock.isLocked();
   }
 
   /**
-   * Collect from the {@link Supplier}, re-schedule for the next period start, and return the data.
+   * Removes and returns the samples collected since the last drain without blocking the sampling
+   * task. Drained samples are not returned by {@link get}.
    */
-  private Optional<? extends T> collectDataAndReschedule(Supplier<? extends T> source) {
-    if (isCancelled()) {
-      isCollecting.set(false);
-      return Optional.empty();
+  public List<T> drain() {
+    ArrayList<T> data = new ArrayList<>();
+    synchronized (samples) {
+      samples.drainTo(data::add);
     }
+    return data;
+  }
+
+  /** Returns the number of samples that have been collected. */
+  public long sampleCount() {
+    return sampled.get();
+  }
+
+  /** Returns the number of samples that took longer than the period to collect. */
+  public long overrunCount() {
+    return overruns.get();
+  }
+
+  /** Returns the number of samples that were dropped because the future was holding too many. */
+  public long droppedCount() {
+    return samples.dropped();
+  }
+
+  /** Returns the number of samples that were skipped after overruns. */
+  public long skippedCount() {
+    return skipped.get();
+  }
 
-    // TODO: need some sort of safety mechanism so this doesn't kill the chain on throw
-    Optional<? extends T> data = Optional.empty();
-    Instant start = Instant.now();
+  /** Returns a histogram of how many nanoseconds after its deadline each sample started. */
+  public LatencyHistogram jitter() {
+    return jitter;
+  }
+
+  /** Returns the number of samples that were lost because the source or sink threw. */
+  public long failureCount() {
+    return failures.get();
+  }
+
+  /**
+   * Collect from the {@link Supplier}, store the data, and re-schedule for the next period start.
+   */
+  private void collectDataAndReschedule() {
+    sampleLock.lock();
     try {
-      data = Optional.of(source.get());
-    } catch (Exception e) {
-      // TODO: bad! we are throwing away the error
-    }
-    Duration rescheduleTime = nextInterval.get().minus(Duration.between(start, Instant.now()));
+      if (isCancelled()) {
+        isCollecting.set(false);
+        return;
+      }
+
+      long start = System.nanoTime();
+      if (deadline < 0) {
+        deadline = start;
+      } else {
+        jitter.record(start - deadline);
+      }
+      try {
+        T data = source.get();
+        if (data == null) {
+          failures.incrementAndGet();
+        } else if (sink != null) {
+          sink.accept(data);
+          sampled.incrementAndGet();
+        } else if (samples.offer(data)) {
+          sampled.incrementAndGet();
+        }
+      } catch (Exception e) {
+        failures.incrementAndGet();
+      }
+      long period = nextInterval.get().toNanos();
+      deadline += period;
+      long rescheduleNanos = deadline - System.nanoTime();
+      if (rescheduleNanos <= 0) {
+        overruns.incrementAndGet();
+        if (overrunPolicy == OverrunPolicy.SKIP && period > 0) {
+          // move up to the first deadline that is still ahead of us
+          long missed = 1 + (-rescheduleNanos) / period;
+          skipped.addAndGet(missed);
+          deadline += missed * period;
+          rescheduleNanos = deadline - System.nanoTime();
+        }
+      }
 
-    if (!isCancelled()) {
-      synchronized (dataFutures) {
-        if (rescheduleTime.toNanos() > 0) {
+      if (!isCancelled()) {
+        if (rescheduleNanos > 0) {
           // if we have some extra time, schedule the next one in the future
-          dataFutures.add(
-              executor.schedule(
-                  () -> collectDataAndReschedule(source), rescheduleTime.toNanos(), NANOSECONDS));
+          nextSample =
+              executor.schedule(this::collectDataAndReschedule, rescheduleNanos, NANOSECONDS);
         } else {
           // if we don't, run the next one immediately
-          dataFutures.add(executor.submit(() -> collectDataAndReschedule(source)));
+          nextSample = executor.submit(this::collectDataAndReschedule);
         }
       }
+    } catch (RejectedExecutionException e) {
+      // the executor was shut down underneath us
+      isCollecting.set(false);
+    } finally {
+      sampleLock.unlock();
     }
-    return data;
   }
 
-  /** Wait until {@link Futures} in {@code dataFutures} are done, then extract all the data. */
-  private void extractAllData() {
-    // TODO: should i do this with lock.notify()?
-    while (!isDone()) {
-      try {
-        Thread.sleep(nextInterval.get().toMillis());
-      } catch (Exception e) {
-        e.printStackTrace();
-      }
-    }
-    synchronized (collectedData) {
-      dataFutures.stream()
-          .map(this::extractValue)
-          .filter(Optional::isPresent)
-          .map(Optional::get)
-          .forEach(collectedData::add);
-      dataFutures.clear();
+  /** Cancels the pending sample. Must be called while holding the sample lock. */
+  private void cancelNextSample() {
+    Future<?> next = nextSample;
+    if (next != null) {
+      next.cancel(false);
+      nextSample = null;
     }
   }
 
-  /**
-   * Forcibly retrieve the value from a {@link Future}; if it can't be retrieved, then return an
-   * empty {@link Optional}.
-   */
-  private Optional<? extends T> extractValue(Future<Optional<? extends T>> future) {
-    try {
-      return future.get();
-    } catch (Exception e) {
-      System.out.println("could not consume a future");
+  /** Move everything left in the log into {@code collectedData}. */
+  private void extractAllData() {
+    synchronized (samples) {
+      samples.drainTo(collectedData::add);
     }
-    return Optional.empty();
   }
 }
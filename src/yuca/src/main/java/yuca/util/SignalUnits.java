@@ -0,0 +1,27 @@
+package yuca.util;
+
+import yuca.signal.Signal;
+
+/** Utilities for the units of {@link Signal}s. */
+public final class SignalUnits {
+  /**
+   * Returns if the values of a signal are amounts over their intervals, like joules or jiffies,
+   * which are summed when intervals are merged, rather than levels, like temperatures or
+   * frequencies, which are averaged over the time their intervals cover.
+   */
+  public static boolean isAmount(Signal.Unit unit) {
+    switch (unit) {
+      case GRAMS_OF_CO2:
+      case JOULES:
+      case JIFFIES:
+      case BYTES:
+      case SAMPLES:
+      case EVENTS:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private SignalUnits() {}
+}
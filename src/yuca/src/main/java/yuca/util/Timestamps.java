@@ -6,6 +6,8 @@ import yuca.signal.SignalInterval.Timestamp;
 
 /** Utilities for algebra with {@link Instants} and {@link Durations}. */
 public final class Timestamps {
+  private static final long NANOS_PER_SECOND = 1000000000L;
+
   /** Returns the maximum (i.e. furthest in the future) {@link Instant}. */
   public static Instant toInstant(Timestamp timestamp) {
     return Instant.ofEpochSecond(timestamp.getSecs(), timestamp.getNanos());
@@ -86,6 +88,24 @@ public final class Timestamps {
     return (double) dividend.toNanos() / divisor.toNanos();
   }
 
+  /** Returns the nanoseconds since the epoch of a {@link Timestamp}. */
+  public static long toNanos(Timestamp timestamp) {
+    return NANOS_PER_SECOND * timestamp.getSecs() + timestamp.getNanos();
+  }
+
+  /** Returns the nanoseconds since the epoch of an {@link Instant}. */
+  public static long toNanos(Instant timestamp) {
+    return NANOS_PER_SECOND * timestamp.getEpochSecond() + timestamp.getNano();
+  }
+
+  /** Returns the {@link Timestamp} of a number of nanoseconds since the epoch. */
+  public static Timestamp fromNanos(long nanos) {
+    return Timestamp.newBuilder()
+        .setSecs(Math.floorDiv(nanos, NANOS_PER_SECOND))
+        .setNanos(Math.floorMod(nanos, NANOS_PER_SECOND))
+        .build();
+  }
+
   // Native methods
   private static final boolean HAS_NATIVE;
 